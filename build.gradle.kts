@@ -11,6 +11,7 @@ plugins {
 	alias(libs.plugins.git.version)
 	alias(libs.plugins.spotless)
 	alias(libs.plugins.protobuf)
+	alias(libs.plugins.jmh) // Microbenchmarks in src/jmh
 }
 
 // =================================================================
@@ -37,6 +38,11 @@ sourceSets {
 			setSrcDirs(listOf("src/test/resources"))
 		}
 	}
+	named("jmh") {
+		java {
+			setSrcDirs(listOf("src/jmh/"))
+		}
+	}
 }
 
 java {
@@ -169,6 +175,11 @@ dependencies {
 	runtimeOnly(libs.hadoop.client.api)
 	runtimeOnly(libs.hadoop.client.runtime)
 
+	// Arrow support
+	implementation(libs.arrow.vector)
+	implementation(libs.arrow.memory.core)
+	runtimeOnly(libs.arrow.memory.unsafe)
+
 	// Testing
 	testImplementation(libs.junit.jupiter.api)
 	testImplementation(libs.junit.jupiter.params)
@@ -654,7 +665,9 @@ tasks.withType<Test>().configureEach {
 
 	maxHeapSize = "1G"
 	jvmArgs = (listOf(
-		"-Dlog4j1.compatibility=true"
+		"-Dlog4j1.compatibility=true",
+		// Needed by Arrow's memory module
+		"--add-opens=java.base/java.nio=ALL-UNNAMED"
 	))
 
 	environment("ARCHAPPL_SHORT_TERM_FOLDER", temporaryDir.resolve("sts").path)
@@ -805,6 +818,21 @@ tasks.register<JavaExec>("testRun") {
 	args("-c2")
 }
 
+// =================================================================
+// Benchmarks
+// =================================================================
+
+// Run with ./gradlew jmh; pass -PjmhIncludes=SampleBuffer (or PBFile, Parquet, PostProcessor...) to run a subset.
+// The results are written to build/results/jmh/results.json; keep these around to compare the hot paths across commits.
+jmh {
+	jmhVersion.set(libs.versions.jmh.get())
+	(findProperty("jmhIncludes") as? String)?.let { includes.set(listOf(it)) }
+	fork.set(1)
+	warmupIterations.set(3)
+	iterations.set(5)
+	resultFormat.set("JSON")
+}
+
 // =================================================================
 // Code Quality and Formatting
 // =================================================================
@@ -0,0 +1,98 @@
+package edu.stanford.slac.archiverappliance.PB.data;
+
+import org.epics.archiverappliance.ByteArray;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.data.VectorValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Marshalling events into their escaped PB form (what the engine and ETL write) and unmarshalling them back
+ * (what retrieval does for every sample it touches).
+ */
+public class PBMarshalBenchmark {
+    private static final int EVENT_COUNT = 1024;
+
+    @State(Scope.Thread)
+    public static class EventState {
+        @Param({"1", "1024"})
+        public int elementCount;
+
+        DBRTimeEvent[] scalars;
+        DBRTimeEvent[] vectors;
+        ByteArray[] scalarLines;
+        ByteArray[] vectorLines;
+        short year;
+
+        @Setup
+        public void setup() {
+            year = TimeUtils.getCurrentYear();
+            Instant start = TimeUtils.getStartOfYear(year);
+            scalars = new DBRTimeEvent[EVENT_COUNT];
+            vectors = new DBRTimeEvent[EVENT_COUNT];
+            scalarLines = new ByteArray[EVENT_COUNT];
+            vectorLines = new ByteArray[EVENT_COUNT];
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                Instant ts = start.plusMillis(i * 100L);
+                scalars[i] = new POJOEvent(
+                        ArchDBRTypes.DBR_SCALAR_DOUBLE, ts, new ScalarValue<>(Math.sin(i / 100.0)), 0, 0);
+                List<Double> values = new ArrayList<>(elementCount);
+                for (int j = 0; j < elementCount; j++) {
+                    values.add(Math.sin((i + j) / 100.0));
+                }
+                vectors[i] = new POJOEvent(ArchDBRTypes.DBR_WAVEFORM_DOUBLE, ts, new VectorValue<>(values), 0, 0);
+                scalarLines[i] = new PBScalarDouble(scalars[i]).getRawForm();
+                vectorLines[i] = new PBVectorDouble(vectors[i]).getRawForm();
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void marshalScalarDouble(EventState state, Blackhole bh) {
+        for (DBRTimeEvent event : state.scalars) {
+            bh.consume(new PBScalarDouble(event).getRawForm());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void unmarshalScalarDouble(EventState state, Blackhole bh) {
+        for (ByteArray line : state.scalarLines) {
+            PBScalarDouble event = new PBScalarDouble(state.year, line);
+            bh.consume(event.getEventTimeStamp());
+            bh.consume(event.getSampleValue().getValue().doubleValue());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void marshalVectorDouble(EventState state, Blackhole bh) {
+        for (DBRTimeEvent event : state.vectors) {
+            bh.consume(new PBVectorDouble(event).getRawForm());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void unmarshalVectorDouble(EventState state, Blackhole bh) {
+        for (ByteArray line : state.vectorLines) {
+            PBVectorDouble event = new PBVectorDouble(state.year, line);
+            bh.consume(event.getEventTimeStamp());
+            bh.consume(event.getSampleValue().getElementCount());
+        }
+    }
+}
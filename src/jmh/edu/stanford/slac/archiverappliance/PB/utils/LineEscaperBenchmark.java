@@ -0,0 +1,70 @@
+package edu.stanford.slac.archiverappliance.PB.utils;
+
+import org.epics.archiverappliance.ByteArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Escaping and unescaping of the newline characters in a serialized PB message.
+ * <code>escapeFraction</code> is the fraction of the bytes that need escaping; binary PB payloads are usually close to 1%.
+ */
+public class LineEscaperBenchmark {
+
+    @State(Scope.Thread)
+    public static class LineState {
+        @Param({"32", "8192"})
+        public int size;
+
+        @Param({"0.01", "0.1"})
+        public double escapeFraction;
+
+        byte[] raw;
+        byte[] escaped;
+        ByteArray line;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(size);
+            byte[] special = {LineEscaper.ESCAPE_CHAR, LineEscaper.NEWLINE_CHAR, LineEscaper.CARRIAGERETURN_CHAR};
+            raw = new byte[size];
+            for (int i = 0; i < size; i++) {
+                if (random.nextDouble() < escapeFraction) {
+                    raw[i] = special[random.nextInt(special.length)];
+                } else {
+                    byte b;
+                    do {
+                        b = (byte) random.nextInt(256);
+                    } while (b == LineEscaper.ESCAPE_CHAR
+                            || b == LineEscaper.NEWLINE_CHAR
+                            || b == LineEscaper.CARRIAGERETURN_CHAR);
+                    raw[i] = b;
+                }
+            }
+            escaped = LineEscaper.escapeNewLines(raw);
+            line = new ByteArray(escaped);
+        }
+    }
+
+    @Benchmark
+    public byte[] escape(LineState state) {
+        return LineEscaper.escapeNewLines(state.raw);
+    }
+
+    @Benchmark
+    public byte[] unescape(LineState state) {
+        return LineEscaper.unescapeNewLines(state.escaped);
+    }
+
+    /**
+     * The retrieval path unescapes into a buffer that is reused across lines.
+     */
+    @Benchmark
+    public ByteArray inPlaceUnescape(LineState state) {
+        return state.line.inPlaceUnescape();
+    }
+}
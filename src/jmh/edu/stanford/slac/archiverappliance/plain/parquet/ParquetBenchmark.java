@@ -0,0 +1,111 @@
+package edu.stanford.slac.archiverappliance.plain.parquet;
+
+import edu.stanford.slac.archiverappliance.plain.URLKey;
+import org.epics.archiverappliance.BenchmarkData;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.ScalarBatchEventStream;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.ScalarEventBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writing a day's worth of 1Hz data into a Parquet file and reading it back;
+ * both as events (the generic retrieval path) and as column wise batches (the summary statistics path).
+ */
+public class ParquetBenchmark {
+    private static final int DAY_SECONDS = 86400;
+
+    @State(Scope.Benchmark)
+    public static class ParquetFileState {
+        @Param({"UNCOMPRESSED", "ZSTD"})
+        public String compression;
+
+        ParquetPlainFileHandler handler;
+        Path rootFolder;
+        Path path;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            handler = new ParquetPlainFileHandler();
+            handler.initCompression(Map.of(URLKey.COMPRESS.key(), compression));
+            rootFolder = Files.createTempDirectory("ParquetBenchmark");
+            BenchmarkData.appendData(handler, rootFolder, BenchmarkData.sineWave(DAY_SECONDS, 1));
+            path = BenchmarkData.getPaths(handler, rootFolder)[0];
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            BenchmarkData.deleteFolder(rootFolder);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WriteState {
+        ArrayListEventStream events;
+        Path rootFolder;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            events = BenchmarkData.sineWaveEvents(DAY_SECONDS, 1);
+        }
+
+        @Setup(Level.Invocation)
+        public void createFolder() throws IOException {
+            rootFolder = Files.createTempDirectory("ParquetWriteBenchmark");
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteFolder() {
+            BenchmarkData.deleteFolder(rootFolder);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAY_SECONDS)
+    public int write(ParquetFileState fileState, WriteState state) throws IOException {
+        return BenchmarkData.appendData(fileState.handler, state.rootFolder, state.events);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAY_SECONDS)
+    public void readEvents(ParquetFileState state, Blackhole bh) throws IOException {
+        try (EventStream strm =
+                state.handler.getStream(BenchmarkData.PV_NAME, state.path, ArchDBRTypes.DBR_SCALAR_DOUBLE)) {
+            for (Event e : strm) {
+                bh.consume(e.getEpochSeconds());
+                bh.consume(e.getSampleValue().getValue().doubleValue());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAY_SECONDS)
+    public void readBatches(ParquetFileState state, Blackhole bh) throws IOException {
+        try (EventStream strm =
+                state.handler.getStream(BenchmarkData.PV_NAME, state.path, ArchDBRTypes.DBR_SCALAR_DOUBLE)) {
+            Iterator<ScalarEventBatch> batches = ((ScalarBatchEventStream) strm).batchIterator();
+            while (batches.hasNext()) {
+                ScalarEventBatch batch = batches.next();
+                for (int i = 0; i < batch.size(); i++) {
+                    bh.consume(batch.getValue(i));
+                }
+            }
+        }
+    }
+}
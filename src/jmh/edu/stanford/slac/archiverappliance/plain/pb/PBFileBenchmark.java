@@ -0,0 +1,118 @@
+package edu.stanford.slac.archiverappliance.plain.pb;
+
+import edu.stanford.slac.archiverappliance.PB.search.FileEventStreamSearch;
+import edu.stanford.slac.archiverappliance.PB.utils.LineByteStream;
+import org.epics.archiverappliance.BenchmarkData;
+import org.epics.archiverappliance.ByteArray;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.YearSecondTimestamp;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * The PB file hot paths; reading lines out of a file, the binary search for the start of a time range
+ * and appending a day's worth of 1Hz data into a new file.
+ */
+public class PBFileBenchmark {
+    private static final int DAY_SECONDS = 86400;
+    private static final int SEEK_COUNT = 256;
+
+    @State(Scope.Benchmark)
+    public static class PBFileState {
+        @Param({"true", "false"})
+        public boolean memoryMapped;
+
+        Path rootFolder;
+        Path path;
+        long positionOfFirstSample;
+        YearSecondTimestamp[] seekTimes;
+        boolean previousMemoryMapped;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            previousMemoryMapped = LineByteStream.USE_MEMORY_MAPPED_FILES;
+            LineByteStream.USE_MEMORY_MAPPED_FILES = memoryMapped;
+            rootFolder = Files.createTempDirectory("PBFileBenchmark");
+            PBPlainFileHandler handler = new PBPlainFileHandler();
+            BenchmarkData.appendData(handler, rootFolder, BenchmarkData.sineWave(DAY_SECONDS, 1));
+            path = BenchmarkData.getPaths(handler, rootFolder)[0];
+            positionOfFirstSample = new PBFileInfo(path).getPositionOfFirstSample();
+            short year = TimeUtils.getCurrentYear();
+            Random random = new Random(DAY_SECONDS);
+            seekTimes = new YearSecondTimestamp[SEEK_COUNT];
+            for (int i = 0; i < SEEK_COUNT; i++) {
+                seekTimes[i] = new YearSecondTimestamp(year, random.nextInt(DAY_SECONDS), 0);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            LineByteStream.USE_MEMORY_MAPPED_FILES = previousMemoryMapped;
+            BenchmarkData.deleteFolder(rootFolder);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AppendState {
+        ArrayListEventStream events;
+        Path rootFolder;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            events = BenchmarkData.sineWaveEvents(DAY_SECONDS, 1);
+        }
+
+        @Setup(Level.Invocation)
+        public void createFolder() throws IOException {
+            rootFolder = Files.createTempDirectory("PBAppendBenchmark");
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteFolder() {
+            BenchmarkData.deleteFolder(rootFolder);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAY_SECONDS)
+    public void readLine(PBFileState state, Blackhole bh) throws IOException {
+        ByteArray bar = new ByteArray(LineByteStream.MAX_LINE_SIZE);
+        try (LineByteStream lis = new LineByteStream(state.path)) {
+            // Skip the header
+            lis.readLine(bar);
+            while (!lis.readLine(bar).isEmpty()) {
+                bh.consume(bar.len);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEEK_COUNT)
+    public void seekToTime(PBFileState state, Blackhole bh) throws IOException {
+        for (YearSecondTimestamp seekTime : state.seekTimes) {
+            FileEventStreamSearch search = new FileEventStreamSearch(state.path, state.positionOfFirstSample);
+            bh.consume(search.seekToTime(ArchDBRTypes.DBR_SCALAR_DOUBLE, seekTime));
+            bh.consume(search.getFoundPosition());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAY_SECONDS)
+    public int partitionBoundaryAwareAppendData(AppendState state) throws IOException {
+        return BenchmarkData.appendData(new PBPlainFileHandler(), state.rootFolder, state.events);
+    }
+}
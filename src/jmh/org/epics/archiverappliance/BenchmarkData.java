@@ -0,0 +1,122 @@
+package org.epics.archiverappliance;
+
+import edu.stanford.slac.archiverappliance.plain.AppendDataStateData;
+import edu.stanford.slac.archiverappliance.plain.PathNameUtility;
+import edu.stanford.slac.archiverappliance.plain.PlainFileHandler;
+import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.PartitionGranularity;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigService;
+import org.epics.archiverappliance.config.PVNameToKeyMapping;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.utils.simulation.SimulationEventStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Data and file plumbing shared by the benchmarks.
+ * The benchmarks do not have a config service; so we write and read the files using the {@link PlainFileHandler}s directly.
+ */
+public class BenchmarkData {
+    public static final String PV_NAME = "bench:sine:1";
+
+    /**
+     * A sine wave with one sample every <code>periodInSeconds</code> starting at the beginning of the current year.
+     * The values are reproducible given the time; so streams can be merged and compared.
+     */
+    public static SimulationEventStream sineWave(int durationSecs, int periodInSeconds) {
+        Instant start = TimeUtils.getStartOfYear(TimeUtils.getCurrentYear());
+        return new SimulationEventStream(
+                ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                (type, secondsIntoYear) -> new ScalarValue<>(Math.sin(secondsIntoYear * Math.PI / 3600.0)),
+                start,
+                start.plusSeconds(durationSecs),
+                periodInSeconds);
+    }
+
+    /**
+     * The {@link #sineWave} events in memory; so that the generation of the data is not part of the measurement.
+     */
+    public static ArrayListEventStream sineWaveEvents(int durationSecs, int periodInSeconds) {
+        SimulationEventStream strm = sineWave(durationSecs, periodInSeconds);
+        ArrayListEventStream ret = new ArrayListEventStream(durationSecs / periodInSeconds, strm.getDescription());
+        for (Event e : strm) {
+            ret.add(e.makeClone());
+        }
+        return ret;
+    }
+
+    /**
+     * Append the stream into the root folder using the handler; this is what the PlainStoragePlugin does.
+     * @return The number of events appended.
+     */
+    public static int appendData(PlainFileHandler handler, Path rootFolder, EventStream stream) throws IOException {
+        AppendDataStateData state = handler.appendDataStateData(
+                null, PartitionGranularity.PARTITION_YEAR, rootFolder.toString(), "bench", KEY_MAPPING);
+        try (BasicContext context = new BasicContext()) {
+            return state.partitionBoundaryAwareAppendData(
+                    context, PV_NAME, stream, handler.getExtensionString(), null);
+        }
+    }
+
+    /**
+     * The files for the benchmark PV written by {@link #appendData}.
+     */
+    public static Path[] getPaths(PlainFileHandler handler, Path rootFolder) throws IOException {
+        try (BasicContext context = new BasicContext()) {
+            return PathNameUtility.getAllPathsForPV(
+                    context.getPaths(),
+                    rootFolder.toString(),
+                    PV_NAME,
+                    handler.getExtensionString(),
+                    handler.getPathResolver(),
+                    KEY_MAPPING);
+        }
+    }
+
+    public static void deleteFolder(Path folder) {
+        if (!Files.exists(folder)) return;
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Same layout as the default ConvertPVNameToKey with <code>:</code> as the separator.
+     */
+    public static final PVNameToKeyMapping KEY_MAPPING = new PVNameToKeyMapping() {
+        @Override
+        public void initialize(ConfigService configService) {}
+
+        @Override
+        public String convertPVNameToKey(String pvName) {
+            return pvName.replace(':', '/') + ":";
+        }
+
+        @Override
+        public String[] breakIntoParts(String pvName) {
+            return pvName.split(":");
+        }
+
+        @Override
+        public PVNameToKeyMapping overrideTerminator(char terminator) {
+            return this;
+        }
+    };
+}
@@ -0,0 +1,111 @@
+package org.epics.archiverappliance.config;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.mgmt.policy.PolicyConfig.SamplingMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.function.Function;
+
+/**
+ * Typeinfo lookups/sec as seen by {@link DefaultConfigService#getTypeInfoForPV(String)}.
+ * <code>javaSerialization</code> and <code>clusterSerializers</code> are the deserialization cost of a lookup that goes to
+ * the cluster (without the network round trip) using Java serialization and {@link ClusterSerializers} respectively;
+ * <code>nearCacheHit</code> is a lookup that is served from the {@link PVTypeInfoNearCache}.
+ */
+public class PVTypeInfoLookupBenchmark {
+    private static final int PV_COUNT = 1024;
+
+    @State(Scope.Thread)
+    public static class LookupState {
+        String[] pvNames;
+        HashMap<String, byte[]> javaSerialized = new HashMap<>();
+        HashMap<String, Data> clusterSerialized = new HashMap<>();
+        InternalSerializationService serializationService;
+        PVTypeInfoNearCache nearCache = new PVTypeInfoNearCache();
+        Function<String, PVTypeInfo> clusterLoader;
+        int next = 0;
+
+        @Setup
+        public void setup() throws IOException {
+            SerializationConfig serializationConfig = new SerializationConfig();
+            ClusterSerializers.register(serializationConfig);
+            serializationService = new DefaultSerializationServiceBuilder()
+                    .setConfig(serializationConfig)
+                    .build();
+            pvNames = new String[PV_COUNT];
+            for (int i = 0; i < PV_COUNT; i++) {
+                String pvName = "bench:typeInfo:" + i;
+                pvNames[i] = pvName;
+                PVTypeInfo typeInfo = makeTypeInfo(pvName);
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+                    oos.writeObject(typeInfo);
+                }
+                javaSerialized.put(pvName, bos.toByteArray());
+                clusterSerialized.put(pvName, serializationService.toData(typeInfo));
+            }
+            clusterLoader = pvName -> serializationService.toObject(clusterSerialized.get(pvName));
+            for (String pvName : pvNames) {
+                nearCache.get(pvName, clusterLoader);
+            }
+        }
+
+        String nextPVName() {
+            String pvName = pvNames[next];
+            next = (next + 1) % PV_COUNT;
+            return pvName;
+        }
+    }
+
+    private static PVTypeInfo makeTypeInfo(String pvName) {
+        PVTypeInfo typeInfo = new PVTypeInfo(pvName, ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1);
+        typeInfo.setApplianceIdentity("appliance0");
+        typeInfo.setChunkKey(pvName.replace(':', '/') + ":");
+        typeInfo.setHostName("ioc0");
+        typeInfo.setUnits("mm");
+        typeInfo.setCreationTime(TimeUtils.now());
+        typeInfo.setModificationTime(TimeUtils.now());
+        typeInfo.setSamplingMethod(SamplingMethod.MONITOR);
+        typeInfo.setSamplingPeriod(1.0f);
+        typeInfo.setPolicyName("default");
+        typeInfo.setDataStores(new String[] {
+            "pb://localhost?name=STS&rootFolder=${ARCHAPPL_SHORT_TERM_FOLDER}&partitionGranularity=PARTITION_HOUR",
+            "pb://localhost?name=MTS&rootFolder=${ARCHAPPL_MEDIUM_TERM_FOLDER}&partitionGranularity=PARTITION_DAY",
+            "pb://localhost?name=LTS&rootFolder=${ARCHAPPL_LONG_TERM_FOLDER}&partitionGranularity=PARTITION_YEAR"
+        });
+        typeInfo.getExtraFields().put("ADEL", "0.1");
+        typeInfo.setArchiveFields(new String[] {"HIHI", "LOLO", "HIGH", "LOW"});
+        return typeInfo;
+    }
+
+    @Benchmark
+    public PVTypeInfo javaSerialization(LookupState state) throws IOException, ClassNotFoundException {
+        byte[] bytes = state.javaSerialized.get(state.nextPVName());
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (PVTypeInfo) ois.readObject();
+        }
+    }
+
+    @Benchmark
+    public PVTypeInfo clusterSerializers(LookupState state) {
+        return state.clusterLoader.apply(state.nextPVName());
+    }
+
+    @Benchmark
+    public PVTypeInfo nearCacheHit(LookupState state) {
+        return state.nearCache.get(state.nextPVName(), state.clusterLoader);
+    }
+}
@@ -0,0 +1,95 @@
+package org.epics.archiverappliance.engine.model;
+
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.engine.pv.PVMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+
+/**
+ * Events/sec through a {@link SampleBuffer} as seen by the engine.
+ * <code>addAndSwap</code> simulates one write period of a single channel on one core;
+ * the <code>engine</code> group runs a CA callback thread and the writer thread against the same buffer.
+ * Run with <code>-prof gc</code> to see the allocation rate per event.
+ */
+public class SampleBufferBenchmark {
+    private static final int EVENT_COUNT = 1024;
+
+    @State(Scope.Group)
+    public static class BufferState {
+        @Param({"100", "1000"})
+        public int capacity;
+
+        SampleBuffer buffer;
+        DBRTimeEvent[] events;
+        int next = 0;
+
+        @Setup
+        public void setup() {
+            String pvName = "bench:sampleBuffer";
+            buffer = new SampleBuffer(
+                    pvName,
+                    capacity,
+                    ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                    new PVMetrics(pvName, null, TimeUtils.getCurrentEpochSeconds(), ArchDBRTypes.DBR_SCALAR_DOUBLE));
+            buffer.addYearListener(b -> {});
+            events = new DBRTimeEvent[EVENT_COUNT];
+            Instant start = TimeUtils.getStartOfYear(TimeUtils.getCurrentYear());
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                events[i] = new POJOEvent(
+                        ArchDBRTypes.DBR_SCALAR_DOUBLE, start.plusMillis(i * 100L), new ScalarValue<>((double) i), 0, 0);
+            }
+        }
+
+        DBRTimeEvent nextEvent() {
+            DBRTimeEvent event = events[next];
+            next = (next + 1) % EVENT_COUNT;
+            return event;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public void addAndSwap(BufferState state, Blackhole bh) {
+        SampleBuffer buffer = state.buffer;
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            bh.consume(buffer.add(state.nextEvent()));
+        }
+        buffer.resetSamples();
+        ArrayListEventStream previousSamples = buffer.getPreviousSamples();
+        bh.consume(previousSamples.size());
+        buffer.releasePreviousSamples(previousSamples);
+    }
+
+    @Benchmark
+    @Group("engine")
+    @GroupThreads(1)
+    public boolean caCallback(BufferState state) {
+        return state.buffer.add(state.nextEvent());
+    }
+
+    @Benchmark
+    @Group("engine")
+    @GroupThreads(1)
+    public int writer(BufferState state) {
+        SampleBuffer buffer = state.buffer;
+        buffer.resetSamples();
+        ArrayListEventStream previousSamples = buffer.getPreviousSamples();
+        int size = previousSamples.size();
+        buffer.releasePreviousSamples(previousSamples);
+        return size;
+    }
+}
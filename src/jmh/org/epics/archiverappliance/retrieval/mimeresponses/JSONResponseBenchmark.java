@@ -0,0 +1,157 @@
+package org.epics.archiverappliance.retrieval.mimeresponses;
+
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarDouble;
+import edu.stanford.slac.archiverappliance.PB.data.PBVectorDouble;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.data.VectorValue;
+import org.json.simple.JSONValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding double and double waveform events as JSON; the streaming {@link JSONResponse} against the String concatenation
+ * encoder it replaced.
+ * The scores are per event; run with <code>-prof gc</code> to compare the allocation rate per event as well.
+ */
+public class JSONResponseBenchmark {
+    private static final int EVENT_COUNT = 1024;
+
+    @State(Scope.Thread)
+    public static class EventState {
+        @Param({"1", "1024"})
+        public int elementCount;
+
+        DBRTimeEvent[] scalars;
+        DBRTimeEvent[] vectors;
+
+        @Setup
+        public void setup() {
+            Instant start = TimeUtils.getStartOfYear(TimeUtils.getCurrentYear());
+            scalars = new DBRTimeEvent[EVENT_COUNT];
+            vectors = new DBRTimeEvent[EVENT_COUNT];
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                Instant ts = start.plusMillis(i * 100L);
+                scalars[i] = new PBScalarDouble(new POJOEvent(
+                        ArchDBRTypes.DBR_SCALAR_DOUBLE, ts, new ScalarValue<>(Math.sin(i / 100.0)), 0, 0));
+                List<Double> values = new ArrayList<>(elementCount);
+                for (int j = 0; j < elementCount; j++) {
+                    values.add(Math.sin((i + j) / 100.0));
+                }
+                vectors[i] = new PBVectorDouble(
+                        new POJOEvent(ArchDBRTypes.DBR_WAVEFORM_DOUBLE, ts, new VectorValue<>(values), 0, 0));
+            }
+        }
+    }
+
+    /**
+     * Discard the bytes but count them so that the JIT cannot elide the writes.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * The event encoding from before the streaming writer; a String per event, written through a PrintWriter.
+     */
+    private static void legacyConsumeEvent(PrintWriter out, DBRTimeEvent evnt, boolean needComma) {
+        if (needComma) {
+            out.println(",");
+        }
+        out.print("{ \"secs\": " + evnt.getEpochSeconds()
+                + ", \"val\": " + evnt.getSampleValue().toJSONString()
+                + ", \"nanos\": " + Integer.toString(evnt.getEventTimeStamp().getNano())
+                + ", \"severity\":" + Integer.toString(evnt.getSeverity())
+                + ", \"status\":" + Integer.toString(evnt.getStatus())
+                + legacyConsumeMetadata(evnt)
+                + " }");
+    }
+
+    private static String legacyConsumeMetadata(DBRTimeEvent evnt) {
+        if (!evnt.hasFieldValues()) return "";
+        StringBuilder buf = new StringBuilder();
+        buf.append(", \"fields\": { ");
+        boolean metaComma = false;
+        for (Map.Entry<String, String> keyValue : evnt.getFields().entrySet()) {
+            if (metaComma) buf.append(",");
+            metaComma = true;
+            buf.append("\"").append(keyValue.getKey()).append("\": \"");
+            buf.append(JSONValue.escape(keyValue.getValue())).append("\"");
+        }
+        buf.append("}");
+        return buf.toString();
+    }
+
+    private static long legacy(DBRTimeEvent[] events) {
+        CountingOutputStream os = new CountingOutputStream();
+        PrintWriter out = new PrintWriter(os);
+        out.println("[ ");
+        boolean needComma = false;
+        for (DBRTimeEvent event : events) {
+            legacyConsumeEvent(out, event, needComma);
+            needComma = true;
+        }
+        out.println(" ]");
+        out.close();
+        return os.count;
+    }
+
+    private static long streaming(DBRTimeEvent[] events) throws Exception {
+        CountingOutputStream os = new CountingOutputStream();
+        JSONResponse response = new JSONResponse();
+        response.setOutputStream(os);
+        for (DBRTimeEvent event : events) {
+            response.consumeEvent(event);
+        }
+        response.close();
+        return os.count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public long legacyScalarDouble(EventState state) {
+        return legacy(state.scalars);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public long streamingScalarDouble(EventState state) throws Exception {
+        return streaming(state.scalars);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public long legacyVectorDouble(EventState state) {
+        return legacy(state.vectors);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENT_COUNT)
+    public long streamingVectorDouble(EventState state) throws Exception {
+        return streaming(state.vectors);
+    }
+}
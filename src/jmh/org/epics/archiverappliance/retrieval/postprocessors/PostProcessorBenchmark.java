@@ -0,0 +1,76 @@
+package org.epics.archiverappliance.retrieval.postprocessors;
+
+import org.epics.archiverappliance.BenchmarkData;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.PVTypeInfo;
+import org.epics.archiverappliance.retrieval.CallableEventStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+
+/**
+ * The main post processors over a day's worth of 1Hz data; measured per input event.
+ * This goes through the same initialize, estimateMemoryConsumption and wrap sequence as the retrieval servlet.
+ */
+public class PostProcessorBenchmark {
+    private static final int DAY_SECONDS = 86400;
+
+    @State(Scope.Benchmark)
+    public static class DataState {
+        @Param({
+            "mean_600",
+            "max_600",
+            "std_600",
+            "median_600",
+            "firstSample_600",
+            "lastSample_600",
+            "linear_600",
+            "optimized_1000",
+            "rollup_600"
+        })
+        public String postProcessorUserArg;
+
+        ArrayListEventStream events;
+        PVTypeInfo typeInfo;
+        Instant start;
+        Instant end;
+
+        @Setup
+        public void setup() {
+            events = BenchmarkData.sineWaveEvents(DAY_SECONDS, 1);
+            typeInfo = new PVTypeInfo(BenchmarkData.PV_NAME, ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1);
+            start = events.get(0).getEventTimeStamp();
+            end = start.plusSeconds(DAY_SECONDS);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DAY_SECONDS)
+    public void postProcess(DataState state, Blackhole bh) throws Exception {
+        PostProcessor postProcessor = PostProcessors.findPostProcessor(state.postProcessorUserArg);
+        postProcessor.initialize(state.postProcessorUserArg, BenchmarkData.PV_NAME);
+        postProcessor.estimateMemoryConsumption(BenchmarkData.PV_NAME, state.typeInfo, state.start, state.end, null);
+        try (EventStream strm = postProcessor.wrap(new CallableEventStream(state.events)).call()) {
+            for (Event e : strm) {
+                bh.consume(e);
+            }
+        }
+        if (postProcessor instanceof PostProcessorWithConsolidatedEventStream) {
+            try (EventStream strm =
+                    ((PostProcessorWithConsolidatedEventStream) postProcessor).getConsolidatedEventStream()) {
+                for (Event e : strm) {
+                    bh.consume(e);
+                }
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@
 package edu.stanford.slac.archiverappliance.PB.data;
 
 import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
 import edu.stanford.slac.archiverappliance.PB.EPICSEvent;
 import edu.stanford.slac.archiverappliance.PB.EPICSEvent.FieldValue;
 import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarDouble.Builder;
@@ -21,6 +22,7 @@ import org.epics.archiverappliance.common.YearSecondTimestamp;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.data.DBRAlarm;
 import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.DoubleSampleValues;
 import org.epics.archiverappliance.data.SampleValue;
 import org.epics.archiverappliance.data.ScalarValue;
 import org.epics.pva.data.PVADouble;
@@ -36,10 +38,11 @@ import java.util.List;
  * @author mshankar
  *
  */
-public class PBScalarDouble implements DBRTimeEvent {
+public class PBScalarDouble implements DBRTimeEvent, DoubleSampleValues {
     ByteArray bar = null;
     short year = 0;
     EPICSEvent.ScalarDouble dbevent = null;
+    PBScalarWireFormat wire = null;
 
     public PBScalarDouble(short year, ByteArray bar) {
         this.year = year;
@@ -116,14 +119,18 @@ public class PBScalarDouble implements DBRTimeEvent {
 
     @Override
     public Instant getEventTimeStamp() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) {
+            return TimeUtils.convertFromYearSecondTimestamp(new YearSecondTimestamp(year, w.secondsIntoYear, w.nano));
+        }
         return TimeUtils.convertFromYearSecondTimestamp(
                 new YearSecondTimestamp(year, dbevent.getSecondsintoyear(), dbevent.getNano()));
     }
 
     @Override
     public long getEpochSeconds() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return TimeUtils.getStartOfYearInSeconds(year) + w.secondsIntoYear;
         return TimeUtils.getStartOfYearInSeconds(year) + dbevent.getSecondsintoyear();
     }
 
@@ -134,25 +141,46 @@ public class PBScalarDouble implements DBRTimeEvent {
 
     @Override
     public SampleValue getSampleValue() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return new ScalarValue<Double>(w.getDoubleVal());
         return new ScalarValue<Double>(dbevent.getVal());
     }
 
+    @Override
+    public boolean isVector() {
+        return false;
+    }
+
+    @Override
+    public int getDoubleValueCount() {
+        return 1;
+    }
+
+    @Override
+    public double getDoubleValue(int index) {
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.getDoubleVal();
+        return dbevent.getVal();
+    }
+
     @Override
     public int getStatus() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.status;
         return dbevent.getStatus();
     }
 
     @Override
     public int getSeverity() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.severity;
         return dbevent.getSeverity();
     }
 
     @Override
     public int getRepeatCount() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.repeatCount;
         return dbevent.getRepeatcount();
     }
 
@@ -197,6 +225,19 @@ public class PBScalarDouble implements DBRTimeEvent {
         return;
     }
 
+    /**
+     * Most callers only need the timestamp, value and alarm fields; decode these straight from the line.
+     * @return null if we have the protobuf message; either from the constructor or because we had to fall back to it.
+     */
+    private PBScalarWireFormat decodeWireIfNotParsed() {
+        if (dbevent != null) return null;
+        if (wire == null) {
+            wire = PBScalarWireFormat.decode(bar, WireFormat.WIRETYPE_FIXED64);
+            if (wire == null) unmarshallEventIfNull();
+        }
+        return wire;
+    }
+
     private void unmarshallEventIfNull() {
         if (dbevent == null) {
             dbevent = PBEventRecovery.parseWithRecovery(EPICSEvent.ScalarDouble::newBuilder, bar);
@@ -205,13 +246,15 @@ public class PBScalarDouble implements DBRTimeEvent {
 
     @Override
     public boolean hasFieldValues() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.fieldValuesCount > 0;
         return dbevent.getFieldvaluesCount() > 0;
     }
 
     @Override
     public boolean isActualChange() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.fieldActualChange;
         return dbevent.getFieldactualchange();
     }
 
@@ -8,6 +8,7 @@
 package edu.stanford.slac.archiverappliance.PB.data;
 
 import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
 import edu.stanford.slac.archiverappliance.PB.EPICSEvent;
 import edu.stanford.slac.archiverappliance.PB.EPICSEvent.FieldValue;
 import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarShort.Builder;
@@ -40,6 +41,7 @@ public class PBScalarShort implements DBRTimeEvent {
     ByteArray bar = null;
     short year = 0;
     EPICSEvent.ScalarShort dbevent = null;
+    PBScalarWireFormat wire = null;
 
     public PBScalarShort(short year, ByteArray bar) {
         this.bar = bar;
@@ -116,14 +118,18 @@ public class PBScalarShort implements DBRTimeEvent {
 
     @Override
     public Instant getEventTimeStamp() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) {
+            return TimeUtils.convertFromYearSecondTimestamp(new YearSecondTimestamp(year, w.secondsIntoYear, w.nano));
+        }
         return TimeUtils.convertFromYearSecondTimestamp(
                 new YearSecondTimestamp(year, dbevent.getSecondsintoyear(), dbevent.getNano()));
     }
 
     @Override
     public long getEpochSeconds() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return TimeUtils.getStartOfYearInSeconds(year) + w.secondsIntoYear;
         return TimeUtils.getStartOfYearInSeconds(year) + dbevent.getSecondsintoyear();
     }
 
@@ -134,25 +140,29 @@ public class PBScalarShort implements DBRTimeEvent {
 
     @Override
     public SampleValue getSampleValue() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return new ScalarValue<Short>((short) w.getSInt32Val());
         return new ScalarValue<Short>((short) dbevent.getVal());
     }
 
     @Override
     public int getStatus() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.status;
         return dbevent.getStatus();
     }
 
     @Override
     public int getSeverity() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.severity;
         return dbevent.getSeverity();
     }
 
     @Override
     public int getRepeatCount() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.repeatCount;
         return dbevent.getRepeatcount();
     }
 
@@ -197,6 +207,19 @@ public class PBScalarShort implements DBRTimeEvent {
         return;
     }
 
+    /**
+     * Most callers only need the timestamp, value and alarm fields; decode these straight from the line.
+     * @return null if we have the protobuf message; either from the constructor or because we had to fall back to it.
+     */
+    private PBScalarWireFormat decodeWireIfNotParsed() {
+        if (dbevent != null) return null;
+        if (wire == null) {
+            wire = PBScalarWireFormat.decode(bar, WireFormat.WIRETYPE_VARINT);
+            if (wire == null) unmarshallEventIfNull();
+        }
+        return wire;
+    }
+
     private void unmarshallEventIfNull() {
         if (dbevent == null) {
             dbevent = PBEventRecovery.parseWithRecovery(EPICSEvent.ScalarShort::newBuilder, bar);
@@ -205,13 +228,15 @@ public class PBScalarShort implements DBRTimeEvent {
 
     @Override
     public boolean hasFieldValues() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.fieldValuesCount > 0;
         return dbevent.getFieldvaluesCount() > 0;
     }
 
     @Override
     public boolean isActualChange() {
-        unmarshallEventIfNull();
+        PBScalarWireFormat w = decodeWireIfNotParsed();
+        if (w != null) return w.fieldActualChange;
         return dbevent.getFieldactualchange();
     }
 
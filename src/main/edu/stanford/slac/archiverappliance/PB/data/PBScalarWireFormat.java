@@ -0,0 +1,208 @@
+package edu.stanford.slac.archiverappliance.PB.data;
+
+import com.google.protobuf.WireFormat;
+import edu.stanford.slac.archiverappliance.PB.utils.LineEscaper;
+import org.epics.archiverappliance.ByteArray;
+
+/**
+ * Decodes the timestamp, value and alarm fields of the numeric scalar PB messages straight from the escaped line.
+ * Most consumers (the summary statistics, merge dedup etc) only need these; so we avoid unescaping the line into a
+ * separate buffer and materializing the protobuf message (with its field value lists) for each event.
+ * The field values themselves are only counted here;
+ * the PB event classes parse the full message when they are asked for the field values.
+ * <p>
+ * If the line does not look like a well formed message (missing required fields, truncated, unexpected wire types),
+ * {@link #decode} returns null and the caller should fall back to the protobuf parse (which has the recovery logic).
+ */
+final class PBScalarWireFormat {
+    private static final int SECONDSINTOYEAR_FIELD = 1;
+    private static final int NANO_FIELD = 2;
+    private static final int VAL_FIELD = 3;
+    private static final int SEVERITY_FIELD = 4;
+    private static final int STATUS_FIELD = 5;
+    private static final int REPEATCOUNT_FIELD = 6;
+    private static final int FIELDVALUES_FIELD = 7;
+    private static final int FIELDACTUALCHANGE_FIELD = 8;
+
+    int secondsIntoYear;
+    int nano;
+    int severity;
+    int status;
+    int repeatCount;
+    int fieldValuesCount;
+    boolean fieldActualChange;
+    private long valBits;
+
+    // Parse state; only valid during decode.
+    private byte[] data;
+    private int pos;
+    private int end;
+
+    private PBScalarWireFormat() {}
+
+    /**
+     * @param bar The escaped line as read from the file.
+     * @param valWireType The wire type of the <code>val</code> field for this message; one of the WireFormat constants.
+     * @return The decoded fields or null if we could not decode the line.
+     */
+    static PBScalarWireFormat decode(ByteArray bar, int valWireType) {
+        if (bar == null || bar.data == null) return null;
+        PBScalarWireFormat ret = new PBScalarWireFormat();
+        ret.data = bar.data;
+        ret.pos = bar.off;
+        ret.end = bar.off + bar.len;
+        boolean decoded = ret.parse(valWireType);
+        ret.data = null;
+        return decoded ? ret : null;
+    }
+
+    double getDoubleVal() {
+        return Double.longBitsToDouble(valBits);
+    }
+
+    float getFloatVal() {
+        return Float.intBitsToFloat((int) valBits);
+    }
+
+    /**
+     * For <code>sfixed32</code> values.
+     */
+    int getFixed32Val() {
+        return (int) valBits;
+    }
+
+    /**
+     * For <code>sint32</code> values.
+     */
+    int getSInt32Val() {
+        int raw = (int) valBits;
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    private boolean parse(int valWireType) {
+        boolean hasSeconds = false;
+        boolean hasNano = false;
+        boolean hasVal = false;
+        while (pos < end) {
+            long tag = readVarint();
+            if (pos > end) return false;
+            int fieldNumber = (int) (tag >>> 3);
+            int wireType = (int) (tag & 0x7);
+            switch (fieldNumber) {
+                case SECONDSINTOYEAR_FIELD, NANO_FIELD, SEVERITY_FIELD, STATUS_FIELD, REPEATCOUNT_FIELD -> {
+                    if (wireType != WireFormat.WIRETYPE_VARINT) return false;
+                    long value = readVarint();
+                    if (pos > end) return false;
+                    switch (fieldNumber) {
+                        case SECONDSINTOYEAR_FIELD -> {
+                            secondsIntoYear = (int) value;
+                            hasSeconds = true;
+                        }
+                        case NANO_FIELD -> {
+                            nano = (int) value;
+                            hasNano = true;
+                        }
+                        case SEVERITY_FIELD -> severity = (int) value;
+                        case STATUS_FIELD -> status = (int) value;
+                        default -> repeatCount = (int) value;
+                    }
+                }
+                case VAL_FIELD -> {
+                    if (wireType != valWireType) return false;
+                    valBits = switch (wireType) {
+                        case WireFormat.WIRETYPE_VARINT -> readVarint();
+                        case WireFormat.WIRETYPE_FIXED32 -> readFixed(4);
+                        case WireFormat.WIRETYPE_FIXED64 -> readFixed(8);
+                        default -> 0;
+                    };
+                    if (pos > end) return false;
+                    hasVal = true;
+                }
+                case FIELDVALUES_FIELD -> {
+                    if (wireType != WireFormat.WIRETYPE_LENGTH_DELIMITED || !skipField(wireType)) return false;
+                    fieldValuesCount++;
+                }
+                case FIELDACTUALCHANGE_FIELD -> {
+                    if (wireType != WireFormat.WIRETYPE_VARINT) return false;
+                    long value = readVarint();
+                    if (pos > end) return false;
+                    fieldActualChange = value != 0;
+                }
+                default -> {
+                    if (fieldNumber == 0 || !skipField(wireType)) return false;
+                }
+            }
+        }
+        return pos == end && hasSeconds && hasNano && hasVal;
+    }
+
+    /**
+     * Read the next unescaped byte.
+     * @return The byte as an unsigned int or -1 (after moving past the end) if we are out of data.
+     */
+    private int readByte() {
+        if (pos >= end) {
+            pos = end + 1;
+            return -1;
+        }
+        byte b = data[pos++];
+        if (b == LineEscaper.ESCAPE_CHAR) {
+            if (pos >= end) {
+                pos = end + 1;
+                return -1;
+            }
+            b = switch (data[pos++]) {
+                case LineEscaper.ESCAPE_ESCAPE_CHAR -> LineEscaper.ESCAPE_CHAR;
+                case LineEscaper.NEWLINE_ESCAPE_CHAR -> LineEscaper.NEWLINE_CHAR;
+                case LineEscaper.CARRIAGERETURN_ESCAPE_CHAR -> LineEscaper.CARRIAGERETURN_CHAR;
+                default -> data[pos - 1];
+            };
+        }
+        return b & 0xFF;
+    }
+
+    /**
+     * As a varint can legitimately be -1 (negative int32s), running out of data is signalled by moving past the end;
+     * callers check for <code>pos &gt; end</code>.
+     */
+    private long readVarint() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            if (b < 0) return 0;
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        pos = end + 1;
+        return 0;
+    }
+
+    private long readFixed(int bytes) {
+        long result = 0;
+        for (int i = 0; i < bytes; i++) {
+            int b = readByte();
+            if (b < 0) return 0;
+            result |= (long) b << (8 * i);
+        }
+        return result;
+    }
+
+    private boolean skipField(int wireType) {
+        switch (wireType) {
+            case WireFormat.WIRETYPE_VARINT -> readVarint();
+            case WireFormat.WIRETYPE_FIXED64 -> readFixed(8);
+            case WireFormat.WIRETYPE_FIXED32 -> readFixed(4);
+            case WireFormat.WIRETYPE_LENGTH_DELIMITED -> {
+                long length = readVarint();
+                if (pos > end || length < 0 || length > end - pos) return false;
+                for (long i = 0; i < length; i++) {
+                    if (readByte() < 0) return false;
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return pos <= end;
+    }
+}
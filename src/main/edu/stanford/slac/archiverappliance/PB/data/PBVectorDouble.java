@@ -21,6 +21,7 @@ import org.epics.archiverappliance.common.YearSecondTimestamp;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.data.DBRAlarm;
 import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.DoubleSampleValues;
 import org.epics.archiverappliance.data.SampleValue;
 import org.epics.archiverappliance.data.VectorValue;
 import org.epics.pva.data.PVADoubleArray;
@@ -37,7 +38,7 @@ import java.util.List;
  * @author mshankar
  *
  */
-public class PBVectorDouble implements DBRTimeEvent {
+public class PBVectorDouble implements DBRTimeEvent, DoubleSampleValues {
     ByteArray bar = null;
     short year = 0;
     EPICSEvent.VectorDouble dbevent = null;
@@ -147,6 +148,23 @@ public class PBVectorDouble implements DBRTimeEvent {
         return new VectorValue<Double>(dbevent.getValList());
     }
 
+    @Override
+    public boolean isVector() {
+        return true;
+    }
+
+    @Override
+    public int getDoubleValueCount() {
+        unmarshallEventIfNull();
+        return dbevent.getValCount();
+    }
+
+    @Override
+    public double getDoubleValue(int index) {
+        unmarshallEventIfNull();
+        return dbevent.getVal(index);
+    }
+
     @Override
     public int getStatus() {
         unmarshallEventIfNull();
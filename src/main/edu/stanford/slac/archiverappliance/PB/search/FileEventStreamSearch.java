@@ -69,6 +69,12 @@ public class FileEventStreamSearch {
      */
     private long startPosition = 0;
 
+    /**
+     * If we know that the event we are looking for is before this position, we can limit the search to before this.
+     * -1 if we search till the end of the file.
+     */
+    private long endPosition = -1;
+
     /**
      * @param path Path
      * @param startPosn a starting position of search PB files
@@ -78,6 +84,18 @@ public class FileEventStreamSearch {
         this.startPosition = startPosn;
     }
 
+    /**
+     * Limit the search to a part of the file; for example, using a time index.
+     * @param path Path
+     * @param startPosn a starting position of search PB files
+     * @param endPosn the event we are looking for starts before this position
+     */
+    public FileEventStreamSearch(Path path, long startPosn, long endPosn) {
+        this.path = path;
+        this.startPosition = startPosn;
+        this.endPosition = endPosn;
+    }
+
     public long getFoundPosition() {
         return foundPosition;
     }
@@ -158,6 +176,9 @@ public class FileEventStreamSearch {
             // Set up binary search.
             min = this.startPosition;
             max = Files.size(path) - 1;
+            if (endPosition >= 0) {
+                max = Math.min(max, endPosition);
+            }
             do {
                 mid = min + ((max - min) / 2);
                 // System.out.println("Min: " + min + " Mid: " + mid + " Max: " + max);
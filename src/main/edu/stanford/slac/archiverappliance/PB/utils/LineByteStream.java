@@ -15,8 +15,14 @@ import org.epics.archiverappliance.utils.nio.ArchPaths;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 
@@ -25,6 +31,12 @@ import java.nio.file.StandardOpenOption;
  * In addition it also maintains a count of the bytes read.
  * We expect the file channel to be positioned correctly for the initial read.
  * After each read, the channel is positioned just after the newline.
+ * <p>
+ * When reading a bounded range (start and end positions) of a plain file, we memory map the range instead of reading it
+ * through the channel; newlines are located directly in the mapping and each line is copied once into the caller's
+ * ByteArray.
+ * Files inside tar/zip ArchPaths cannot be mapped; these (and small ranges where a mapping costs more than a read) use
+ * the channel.
  * @author mshankar
  *
  */
@@ -32,6 +44,14 @@ public class LineByteStream implements Closeable {
     private static final Logger logger = LogManager.getLogger(LineByteStream.class.getName());
     public static int MAX_LINE_SIZE = 16 * 1024;
     public static int MAX_ITERATIONS_TO_DETERMINE_LINE = 16 * 1024;
+    /** Set to false to always read through the channel. */
+    public static boolean USE_MEMORY_MAPPED_FILES = true;
+    /** Ranges smaller than this are read through the channel; mapping them costs more than it saves. */
+    public static long MIN_MAPPED_RANGE_SIZE = 256 * 1024;
+
+    private static final ValueLayout.OfLong LONG_LE =
+            ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final long NEWLINE_IN_EVERY_BYTE = 0x0101010101010101L * LineEscaper.NEWLINE_CHAR;
     private SeekableByteChannel byteChannel = null;
     private Path path = null;
     byte[] buf = null;
@@ -41,6 +61,11 @@ public class LineByteStream implements Closeable {
     long totalBytesToRead = Long.MAX_VALUE;
     long totalBytesReadSoFar = 0L;
     ByteBuffer byteBuf = null;
+    // Mapped mode; mappedArena is null when we are reading through the channel.
+    private Arena mappedArena = null;
+    private MemorySegment mapped = null;
+    private long mappedStartPosition = 0L;
+    private long mappedReadPosition = 0L;
 
     public LineByteStream(Path path) throws IOException {
         this.path = path;
@@ -63,6 +88,12 @@ public class LineByteStream implements Closeable {
 
     public LineByteStream(Path path, long startPosition, long endPosition) throws IOException {
         this.path = path;
+        if (USE_MEMORY_MAPPED_FILES
+                && path.getFileSystem() == FileSystems.getDefault()
+                && endPosition - startPosition >= MIN_MAPPED_RANGE_SIZE) {
+            mapRange(startPosition, endPosition);
+            return;
+        }
         this.byteChannel = ArchPaths.newByteChannel(path, StandardOpenOption.READ);
         this.byteChannel.position(startPosition);
         totalBytesToRead = endPosition - startPosition + 1;
@@ -72,6 +103,103 @@ public class LineByteStream implements Closeable {
         readNextBatch();
     }
 
+    /**
+     * Map the range so that we return the same lines as the channel based reads.
+     * That is, all lines whose terminating newline is at or before endPosition.
+     */
+    private void mapRange(long startPosition, long endPosition) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long mapEnd = Math.min(endPosition + 1, fileChannel.size());
+            mappedArena = Arena.ofShared();
+            mapped = mapEnd > startPosition
+                    ? fileChannel.map(FileChannel.MapMode.READ_ONLY, startPosition, mapEnd - startPosition, mappedArena)
+                    : MemorySegment.NULL;
+        } catch (IOException | RuntimeException ex) {
+            if (mappedArena != null) {
+                mappedArena.close();
+                mappedArena = null;
+            }
+            throw ex;
+        }
+        mappedStartPosition = startPosition;
+        mappedReadPosition = 0L;
+        lastReadPointer = startPosition;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Mapped " + mapped.byteSize() + " bytes from " + startPosition + " of " + path);
+        }
+    }
+
+    private boolean isMapped() {
+        return mappedArena != null;
+    }
+
+    /**
+     * Find the next newline in the mapping, looking at eight bytes at a time.
+     * See "Determine if a word has a byte equal to n" in Sean Anderson's Bit Twiddling Hacks.
+     * We read little endian so that the lowest flagged byte is also the first in the file.
+     * Like the channel reads, we give up on lines longer than MAX_LINE_SIZE * MAX_ITERATIONS_TO_DETERMINE_LINE so
+     * that a corrupt file without newlines does not have us scan to the end of the mapping.
+     * @return the offset of the newline in the mapping or -1 if there are no more newlines.
+     * @throws LineTooLongException if there is no newline within the maximum line length
+     */
+    private long indexOfNextNewLine(long from) throws LineTooLongException {
+        long end = mapped.byteSize();
+        long limit = Math.min(end, from + (long) MAX_LINE_SIZE * MAX_ITERATIONS_TO_DETERMINE_LINE + 1);
+        long i = from;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long word = mapped.get(LONG_LE, i) ^ NEWLINE_IN_EVERY_BYTE;
+            long found = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < limit; i++) {
+            if (mapped.get(ValueLayout.JAVA_BYTE, i) == LineEscaper.NEWLINE_CHAR) {
+                return i;
+            }
+        }
+        if (limit < end) {
+            throw new LineTooLongException("Unable to determine end of line within " + (limit - from) + " bytes");
+        }
+        return -1;
+    }
+
+    private ByteArray readMappedLine(ByteArray bar) throws IOException {
+        long newLinePosition = indexOfNextNewLine(mappedReadPosition);
+        if (newLinePosition == -1) {
+            // We have not found a new line; we cannot return what we have as we'll get PBParseExceptions upstream.
+            mappedReadPosition = mapped.byteSize();
+            return bar;
+        }
+        int linelength = (int) (newLinePosition - mappedReadPosition);
+        while (bar.data.length < linelength) {
+            bar.doubleBufferSize();
+        }
+        MemorySegment.copy(mapped, ValueLayout.JAVA_BYTE, mappedReadPosition, bar.data, 0, linelength);
+        bar.len = linelength;
+        mappedReadPosition = newLinePosition + 1;
+        return bar;
+    }
+
+    /**
+     * Switch from the mapping to the channel at the same position; used by the methods that seek around in the file.
+     */
+    private void unmap() throws IOException {
+        long position = getCurrentPosition();
+        mappedArena.close();
+        mappedArena = null;
+        mapped = null;
+        this.byteChannel = ArchPaths.newByteChannel(path, StandardOpenOption.READ);
+        this.byteChannel.position(position);
+        buf = new byte[MAX_LINE_SIZE];
+        byteBuf = ByteBuffer.allocate(MAX_LINE_SIZE);
+        lastReadPointer = position;
+        bytesRead = 0;
+        currentReadPosition = 0;
+        totalBytesReadSoFar = 0L;
+        totalBytesToRead = Long.MAX_VALUE;
+    }
+
     private void readNextBatch() throws IOException {
         if (totalBytesReadSoFar >= totalBytesToRead) {
             bytesRead = 0;
@@ -109,6 +237,17 @@ public class LineByteStream implements Closeable {
     }
 
     public byte[] readLine() throws IOException {
+        if (isMapped()) {
+            long newLinePosition = indexOfNextNewLine(mappedReadPosition);
+            if (newLinePosition == -1) {
+                mappedReadPosition = mapped.byteSize();
+                return null;
+            }
+            byte[] line = mapped.asSlice(mappedReadPosition, newLinePosition - mappedReadPosition)
+                    .toArray(ValueLayout.JAVA_BYTE);
+            mappedReadPosition = newLinePosition + 1;
+            return line;
+        }
         if (bytesRead <= 0) return null;
 
         ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -156,6 +295,9 @@ public class LineByteStream implements Closeable {
      */
     public ByteArray readLine(ByteArray bar) throws IOException {
         bar.reset();
+        if (isMapped()) {
+            return readMappedLine(bar);
+        }
         if (bytesRead <= 0 || currentReadPosition >= bytesRead) {
             return bar;
         }
@@ -206,6 +348,12 @@ public class LineByteStream implements Closeable {
      * @throws IOException &emsp;
      */
     public void seekToFirstNewLine() throws IOException {
+        if (isMapped()) {
+            if (mappedStartPosition >= 1L) {
+                readLine();
+            }
+            return;
+        }
         if (lastReadPointer < 1L) {
             // If we are at the start of the file then we return right away.
             return;
@@ -220,6 +368,7 @@ public class LineByteStream implements Closeable {
      * @throws IOException  &emsp;
      */
     public void seekToBeforeLastLine() throws IOException {
+        if (isMapped()) unmap();
         buf = new byte[MAX_LINE_SIZE];
         long seekPos = this.byteChannel.size() - MAX_LINE_SIZE;
         int loopcount = 0;
@@ -257,6 +406,7 @@ public class LineByteStream implements Closeable {
      */
     public void seekToBeforePreviousLine(long posn) throws IOException {
         // This is a variation of seekToBeforeLastLine
+        if (isMapped()) unmap();
         buf = new byte[MAX_LINE_SIZE];
         long seekPos = posn - MAX_LINE_SIZE;
         int loopcount = 0;
@@ -293,6 +443,9 @@ public class LineByteStream implements Closeable {
     }
 
     public long getCurrentPosition() throws IOException {
+        if (isMapped()) {
+            return mappedStartPosition + mappedReadPosition;
+        }
         return lastReadPointer + currentReadPosition;
     }
 
@@ -310,6 +463,9 @@ public class LineByteStream implements Closeable {
 
     @Override
     public void close() throws IOException {
+        if (this.mappedArena != null) this.mappedArena.close();
+        this.mappedArena = null;
+        this.mapped = null;
         if (this.byteChannel != null) this.byteChannel.close();
         this.byteChannel = null;
         buf = null;
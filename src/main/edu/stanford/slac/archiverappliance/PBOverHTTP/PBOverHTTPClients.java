@@ -0,0 +1,138 @@
+package edu.stanford.slac.archiverappliance.PBOverHTTP;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A shared, pooled HTTP client for the {@link PBOverHTTPStoragePlugin}s.
+ * Connections are kept alive and reused across requests and PVs; so proxying many PVs to a peer appliance does not pay
+ * the TCP/TLS setup for each PV.
+ * The pool is bounded per remote server (route) and in total; these can be set using
+ * <code>org.epics.archiverappliance.retrieval.pbraw.maxConnectionsPerServer</code> and
+ * <code>org.epics.archiverappliance.retrieval.pbraw.maxConnections</code> in the installation properties.
+ * A streamed response holds its connection until the event stream is closed;
+ * a request that cannot get a connection within the request timeout fails with an exception.
+ * The client asks for (and transparently decompresses) gzip responses if the remote server supports compression.
+ * Idle and expired connections are closed in the background.
+ */
+public final class PBOverHTTPClients {
+    private static final Logger logger = LogManager.getLogger(PBOverHTTPClients.class.getName());
+
+    public static final String MAX_CONNECTIONS_PER_SERVER_PROPERTY =
+            "org.epics.archiverappliance.retrieval.pbraw.maxConnectionsPerServer";
+    public static final String MAX_CONNECTIONS_PROPERTY = "org.epics.archiverappliance.retrieval.pbraw.maxConnections";
+
+    /**
+     * The maximum number of concurrent connections to each remote server.
+     */
+    public static int MAX_CONNECTIONS_PER_SERVER = 50;
+    /**
+     * The maximum number of concurrent connections to all the remote servers.
+     */
+    public static int MAX_CONNECTIONS = 200;
+    /**
+     * Connections that have been idle for longer than this are closed.
+     */
+    public static int IDLE_CONNECTION_TIMEOUT_SECS = 30;
+    public static int CONNECT_TIMEOUT_MS = 10 * 1000;
+    /**
+     * How long a request waits for a connection from the pool.
+     */
+    public static int CONNECTION_REQUEST_TIMEOUT_MS = 30 * 1000;
+
+    private static PoolingHttpClientConnectionManager connectionManager;
+    private static CloseableHttpClient client;
+
+    private PBOverHTTPClients() {}
+
+    /**
+     * Size the pool from the installation properties.
+     * This can be called more than once; the pool is resized if it has already been created.
+     * @param installationProperties The installation properties
+     */
+    public static synchronized void configure(Properties installationProperties) {
+        if (installationProperties == null) return;
+        MAX_CONNECTIONS_PER_SERVER = Integer.parseInt(installationProperties
+                .getProperty(MAX_CONNECTIONS_PER_SERVER_PROPERTY, Integer.toString(MAX_CONNECTIONS_PER_SERVER))
+                .trim());
+        MAX_CONNECTIONS = Integer.parseInt(installationProperties
+                .getProperty(MAX_CONNECTIONS_PROPERTY, Integer.toString(MAX_CONNECTIONS))
+                .trim());
+        if (connectionManager != null) {
+            sizePool(connectionManager);
+        }
+    }
+
+    /**
+     * @param url A URL on the remote server
+     * @return The shared client
+     */
+    public static synchronized CloseableHttpClient getClient(String url) throws IOException {
+        checkServer(url);
+        if (client == null) {
+            connectionManager = new PoolingHttpClientConnectionManager();
+            sizePool(connectionManager);
+            // Check connections that have been idle for a while before reusing them; the server may have closed them.
+            connectionManager.setValidateAfterInactivity(2000);
+            RequestConfig requestConfig = RequestConfig.custom()
+                    .setConnectTimeout(CONNECT_TIMEOUT_MS)
+                    .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MS)
+                    .build();
+            client = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(requestConfig)
+                    .evictExpiredConnections()
+                    .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_SECS, TimeUnit.SECONDS)
+                    .build();
+        }
+        return client;
+    }
+
+    /**
+     * Close the client and its pooled connections.
+     */
+    public static synchronized void closeAll() {
+        if (client == null) return;
+        try {
+            client.close();
+        } catch (IOException ex) {
+            logger.warn("Exception closing the HTTP client", ex);
+        }
+        client = null;
+        connectionManager = null;
+    }
+
+    static synchronized PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    private static void sizePool(PoolingHttpClientConnectionManager manager) {
+        logger.debug(
+                "Allowing {} connections per server and {} connections in total",
+                MAX_CONNECTIONS_PER_SERVER,
+                MAX_CONNECTIONS);
+        manager.setMaxTotal(MAX_CONNECTIONS);
+        manager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_SERVER);
+    }
+
+    private static void checkServer(String url) throws IOException {
+        try {
+            URI uri = new URI(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                throw new IOException("Cannot determine the server for URL " + url);
+            }
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
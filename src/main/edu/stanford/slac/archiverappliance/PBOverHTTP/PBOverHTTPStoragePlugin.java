@@ -9,27 +9,36 @@ package edu.stanford.slac.archiverappliance.PBOverHTTP;
 
 import edu.stanford.slac.archiverappliance.PB.EPICSEvent;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.Event;
 import org.epics.archiverappliance.EventStream;
 import org.epics.archiverappliance.StoragePlugin;
 import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.EmptyEventIterator;
 import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.common.remotable.RemotableOverRaw;
 import org.epics.archiverappliance.config.ConfigService;
 import org.epics.archiverappliance.etl.ConversionFunction;
 import org.epics.archiverappliance.retrieval.CallableEventStream;
 import org.epics.archiverappliance.retrieval.postprocessors.PostProcessor;
+import org.epics.archiverappliance.utils.ui.MimeTypeConstants;
 import org.epics.archiverappliance.utils.ui.URIUtils;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -37,11 +46,13 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 
 /**
  * A read-only storage plugin that gets data using the PB/http protocol from a server.
+ * Requests use a pooled keep-alive client shared by all the plugins; see {@link PBOverHTTPClients}.
  * @author mshankar
  *
  */
@@ -68,69 +79,187 @@ public class PBOverHTTPStoragePlugin implements StoragePlugin {
                 + (postProcessor != null ? "&pp=" + postProcessor.getExtension() : "")
                 + (skipExternalServers ? "&skipExternalServers=true" : "");
         logger.info("URL to fetch data is " + getURL);
-        return getDataBehindURL(getURL, startTime, postProcessor);
+        return getDataBehindURL(new HttpGet(getURL), startTime, postProcessor);
     }
 
+    /**
+     * Get data for many PVs in one request.
+     * The PV names are POSTed to the <code>getDataForPVs</code> endpoint on the remote server; so there is no limit on the number of PVs.
+     * The response is a single stream with the data for all the PVs; each PV starts with its own header.
+     */
     public List<Callable<EventStream>> getDataForMultiPVs(
             BasicContext context, List<String> pvNames, Instant startTime, Instant endTime, PostProcessor postProcessor)
             throws IOException {
-        String getURL = accessURL;
-        for (int i = 0; i < pvNames.size(); i++)
-            if (i == 0) getURL += "?pv=" + pvNames.get(i);
-            else getURL += "&pv=" + pvNames.get(i);
-        getURL += "&from=" + TimeUtils.convertToISO8601String(startTime)
+        String postURL = getMultiPVAccessURL() + "?from=" + TimeUtils.convertToISO8601String(startTime)
                 + "&to=" + TimeUtils.convertToISO8601String(endTime)
                 + (postProcessor != null ? "&pp=" + postProcessor.getExtension() : "")
                 + (skipExternalServers ? "&skipExternalServers=true" : "");
-        logger.info("URL to fetch data is " + getURL);
-        return getDataBehindURL(getURL, startTime, postProcessor);
+        logger.info("URL to fetch data for " + pvNames.size() + " PVs is " + postURL);
+        HttpPost postMethod = new HttpPost(postURL);
+        ByteArrayEntity pvNamesEntity =
+                new ByteArrayEntity(String.join("\n", pvNames).getBytes(StandardCharsets.UTF_8));
+        // The server expects exactly text/plain; a charset suffix makes it look for a form parameter instead.
+        pvNamesEntity.setContentType(MimeTypeConstants.TEXT_PLAIN);
+        postMethod.setEntity(pvNamesEntity);
+        return getDataBehindURL(postMethod, startTime, postProcessor);
     }
 
+    /**
+     * The multi PV endpoint is a sibling of the single PV endpoint; for example, <code>getDataForPVs.raw</code> for <code>getData.raw</code>.
+     * @throws IOException If the access URL is not a <code>getData</code> URL; the server only accepts POSTs on the multi PV endpoint.
+     */
+    String getMultiPVAccessURL() throws IOException {
+        int lastSlash = accessURL.lastIndexOf('/');
+        String lastPathComponent = accessURL.substring(lastSlash + 1);
+        if (lastPathComponent.startsWith("getData.")) {
+            return accessURL.substring(0, lastSlash + 1) + "getDataForPVs."
+                    + lastPathComponent.substring("getData.".length());
+        }
+        throw new IOException("Cannot determine the multi PV endpoint for " + accessURL);
+    }
+
+    /**
+     * The request is only executed when the event stream is first used; see {@link ResponseEventStream}.
+     * So resolving the data sources for many PVs does not lease a pooled connection for every PV up front.
+     */
     private List<Callable<EventStream>> getDataBehindURL(
-            String getURL, Instant startTime, PostProcessor postProcessor) {
+            HttpRequestBase request, Instant startTime, PostProcessor postProcessor) {
+        return CallableEventStream.makeOneStreamCallableList(
+                new ResponseEventStream(request, startTime), postProcessor, true);
+    }
+
+    /**
+     * Execute the request using the shared pooled client.
+     * The event stream reads the response as it arrives; the events are parsed as soon as the first chunk is available.
+     * Closing the event stream releases the connection back to the pool.
+     * @return The event stream or null if the remote server has no data for this request.
+     * @throws IOException If we could not get the data; this includes timing out waiting for a pooled connection.
+     */
+    private InputStreamBackedEventStream executeRequest(HttpRequestBase request, Instant startTime)
+            throws IOException {
+        String requestURL = request.getURI().toString();
+        CloseableHttpResponse response = null;
         try {
-            CloseableHttpClient httpclient = HttpClients.createDefault();
-            HttpGet getMethod = new HttpGet(getURL);
-            getMethod.addHeader(
-                    "Connection",
-                    "close"); // https://www.nuxeo.com/blog/using-httpclient-properly-avoid-closewait-tcp-connections/
-            try (CloseableHttpResponse response = httpclient.execute(getMethod)) {
-                if (response.getStatusLine().getStatusCode() == 200) {
-                    HttpEntity entity = response.getEntity();
-                    if (entity != null) {
-                        logger.debug("Obtained a HTTP entity of length " + entity.getContentLength());
-                        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                        entity.writeTo(bos);
-                        bos.close();
-                        ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
-                        InputStreamBackedEventStream isStream = new InputStreamBackedEventStream(bis, startTime);
-                        if (isStream.getDescription() != null) {
-                            isStream.getDescription().setSource(this.getName());
-                        } else {
-                            logger.warn("No desc attached to input stream for url " + getURL);
-                        }
-                        return CallableEventStream.makeOneStreamCallableList(isStream, postProcessor, true);
-                    } else {
-                        logger.debug("Obtained empty HTTP entity from " + getURL);
-                    }
-                } else {
-                    logger.warn("Invalid status code "
-                            + response.getStatusLine().getStatusCode() + " when connecting to URL " + getURL);
-                    HttpEntity entity = response.getEntity();
-                    if (entity != null) {
-                        ByteArrayOutputStream sbuf = new ByteArrayOutputStream();
-                        entity.writeTo(sbuf);
-                        logger.debug(sbuf.toString("UTF-8"));
-                    }
+            CloseableHttpClient httpclient = PBOverHTTPClients.getClient(requestURL);
+            response = httpclient.execute(request);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_NOT_FOUND) {
+                logger.debug("No data from remote site " + requestURL);
+                return null;
+            }
+            if (statusCode != HttpStatus.SC_OK) {
+                HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    ByteArrayOutputStream sbuf = new ByteArrayOutputStream();
+                    entity.writeTo(sbuf);
+                    logger.debug(sbuf.toString("UTF-8"));
+                }
+                throw new IOException("Invalid status code " + statusCode + " when connecting to URL " + requestURL);
+            }
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                logger.debug("Obtained empty HTTP entity from " + requestURL);
+                return null;
+            }
+            logger.debug("Obtained a HTTP entity of length " + entity.getContentLength());
+            InputStreamBackedEventStream isStream = new InputStreamBackedEventStream(
+                    new BufferedInputStream(new ResponseInputStream(response, entity.getContent())), startTime);
+            response = null;
+            if (isStream.getDescription() != null) {
+                isStream.getDescription().setSource(this.getName());
+            } else {
+                logger.warn("No desc attached to input stream for url " + requestURL);
+            }
+            return isStream;
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException ex) {
+                    logger.debug("Exception closing response from " + requestURL, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * An event stream that executes the request the first time it is used.
+     * The retrieval resolves the data sources for all the PVs in a request before it reads any of them;
+     * so we only lease a pooled connection when the stream is read and release it when the stream is closed.
+     * If the request fails, the exception is thrown to the reader instead of the stream looking empty.
+     */
+    private class ResponseEventStream implements EventStream, RemotableOverRaw {
+        private final HttpRequestBase request;
+        private final Instant startTime;
+        private boolean executed = false;
+        private InputStreamBackedEventStream isStream;
+
+        ResponseEventStream(HttpRequestBase request, Instant startTime) {
+            this.request = request;
+            this.startTime = startTime;
+        }
+
+        private synchronized InputStreamBackedEventStream getStream() {
+            if (!executed) {
+                executed = true;
+                try {
+                    isStream = executeRequest(request, startTime);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(
+                            "Exception fetching data from URL " + request.getURI().toString(), ex);
+                }
+            }
+            return isStream;
+        }
+
+        @Override
+        public RemotableEventStreamDesc getDescription() {
+            InputStreamBackedEventStream stream = getStream();
+            return stream != null ? stream.getDescription() : null;
+        }
+
+        @Override
+        public Iterator<Event> iterator() {
+            InputStreamBackedEventStream stream = getStream();
+            return stream != null ? stream.iterator() : new EmptyEventIterator();
+        }
+
+        @Override
+        public synchronized void close() {
+            // Once closed, we do not make the request.
+            executed = true;
+            if (isStream != null) {
+                isStream.close();
+                isStream = null;
+            }
+        }
+    }
+
+    /**
+     * Close the HTTP response when the event stream is closed.
+     * If the response has been read to the end, the connection has already gone back to the pool.
+     * Otherwise, we close the response first so that the connection is discarded instead of draining the rest of the response.
+     */
+    private static class ResponseInputStream extends FilterInputStream {
+        private final CloseableHttpResponse response;
+
+        ResponseInputStream(CloseableHttpResponse response, InputStream content) {
+            super(content);
+            this.response = response;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                response.close();
+            } finally {
+                try {
+                    super.close();
+                } catch (IOException ex) {
+                    logger.debug("Exception closing a partially read response", ex);
                 }
             }
-        } catch (FileNotFoundException fex) {
-            logger.debug("No data from remote site " + getURL);
-            return null;
-        } catch (Throwable t) {
-            logger.warn("Exception fetching data from URL " + getURL, t);
         }
-        return null;
     }
 
     @Override
@@ -145,6 +274,9 @@ public class PBOverHTTPStoragePlugin implements StoragePlugin {
 
     @Override
     public void initialize(String configURL, ConfigService configService) throws IOException {
+        if (configService != null) {
+            PBOverHTTPClients.configure(configService.getInstallationProperties());
+        }
         try {
             URI srcURI = new URI(configURL);
             HashMap<String, String> queryNVPairs = URIUtils.parseQueryString(srcURI);
@@ -41,11 +41,30 @@ public abstract class AppendDataStateData {
     protected Instant lastKnownTimeStamp = Instant.ofEpochSecond(0);
     private Instant nextPartitionFirstSecond = Instant.ofEpochSecond(0);
     private final PathResolver pathResolver;
+    /** The bulk append copied the bytes through a buffer in the JVM. */
+    public static final String BULK_APPEND_BUFFERED = "buffered";
+    /** The bulk append had the kernel copy the bytes from one file to the other. */
+    public static final String BULK_APPEND_TRANSFER = "transfer";
+    /** The bulk append combined the source files into the destination. */
+    public static final String BULK_APPEND_COMBINE = "combine";
+    /** Bytes moved by the last bulk append and how they were moved; for the ETL metrics. */
+    protected long bulkAppendedBytes = 0;
+
+    protected String bulkAppendMethod = BULK_APPEND_BUFFERED;
+    /** Record an {@link AppendJournal} before appending to a file; used by ETL instead of making backup copies. */
+    private boolean journalAppends = false;
 
     protected PathResolver getPathResolver() {
         return this.pathResolver;
     }
 
+    /**
+     * @param journalAppends If true, record the length of each file in an {@link AppendJournal} before appending to it.
+     */
+    public void setJournalAppends(boolean journalAppends) {
+        this.journalAppends = journalAppends;
+    }
+
     /**
      * @param partitionGranularity partitionGranularity of the PB plugin.
      * @param rootFolder           RootFolder of the PB plugin
@@ -160,6 +179,20 @@ public abstract class AppendDataStateData {
             String pvName, ETLContext context, ETLBulkStream bulkStream, String extension, String extensionToCopyFrom)
             throws IOException;
 
+    /**
+     * @return The number of bytes moved by the last {@link #bulkAppend}; this is used for the ETL metrics.
+     */
+    public long getBulkAppendedBytes() {
+        return bulkAppendedBytes;
+    }
+
+    /**
+     * @return How the last {@link #bulkAppend} moved the bytes; for example, {@value #BULK_APPEND_TRANSFER}.
+     */
+    public String getBulkAppendMethod() {
+        return bulkAppendMethod;
+    }
+
     /**
      * Should we switch to a new partition? If so, return the new partition, else return the current partition.
      *
@@ -286,6 +319,10 @@ public abstract class AppendDataStateData {
             preparePath = pvPath;
         }
 
+        if (journalAppends) {
+            AppendJournal.begin(preparePath);
+        }
+
         if (!Files.exists(preparePath)) {
             if (extensionToCopyFrom != null && !extensionToCopyFrom.contentEquals("")) {
                 // If the file has not been created yet and if we have an extension to copy from
@@ -0,0 +1,146 @@
+package edu.stanford.slac.archiverappliance.plain;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A small journal that makes in place ETL appends crash safe.
+ * Before ETL first appends to a file in an ETL run, we record the length of the file in a sidecar file next to it.
+ * Once the ETL run is committed, we flush the file to disk and remove the sidecar.
+ * If we find a sidecar when we start the next ETL run for the PV, the previous run did not complete;
+ * so we truncate the file back to the recorded length (removing the file if it did not exist before).
+ * The data in the source is deleted only after the commit; so it will be moved again in the next ETL run.
+ * <p>
+ * Unlike the backup copies made when <code>backupFilesBeforeETL</code> is set, this costs O(appended bytes) instead of
+ * O(file size); which matters for yearly partitions in the LTS.
+ * This only works for formats where truncating a file back to an earlier length leaves a valid file; see
+ * {@link PlainFileHandler#supportsAppendJournal()}.
+ * The journal is only maintained on the default file system; we do not truncate files inside zip files and the like.
+ */
+public class AppendJournal {
+    private static final Logger logger = LogManager.getLogger(AppendJournal.class.getName());
+    public static final String JOURNAL_EXTENSION = ".etljournal";
+    /** The journal is written to a file with this extension appended and then moved into place. */
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    private static final int MAGIC = 0x41504A4E; // APJN
+    private static final int JOURNAL_SIZE = 12;
+
+    public static Path journalPath(Path file) {
+        return file.resolveSibling(file.getFileName().toString() + JOURNAL_EXTENSION);
+    }
+
+    public static boolean isSupported(Path file) {
+        return file.getFileSystem() == FileSystems.getDefault();
+    }
+
+    /**
+     * Record the current length of the file before we append to it; 0 if the file does not exist yet.
+     * If there is already a journal for this file, this was recorded earlier in this ETL run and we leave it alone.
+     * The journal is on disk before this returns.
+     * @param file The file we are about to append to
+     * @throws IOException &emsp;
+     */
+    public static void begin(Path file) throws IOException {
+        if (!isSupported(file)) return;
+        Path journal = journalPath(file);
+        if (Files.exists(journal)) return;
+        long length = Files.exists(file) ? Files.size(file) : 0;
+        ByteBuffer buf = ByteBuffer.allocate(JOURNAL_SIZE);
+        buf.putInt(MAGIC).putLong(length).flip();
+        // We write to a temporary file and move it into place so that we never see a partial journal.
+        Path tmp = journal.resolveSibling(journal.getFileName().toString() + TEMP_EXTENSION);
+        try (FileChannel channel = FileChannel.open(
+                tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("Recorded length {} of {} before appending", length, file);
+    }
+
+    /**
+     * The ETL run completed; flush the appended data to disk and remove the journal.
+     * @param journal The journal as returned by {@link #journalPath(Path)}
+     * @throws IOException &emsp;
+     */
+    public static void commit(Path journal) throws IOException {
+        Path file = fileForJournal(journal);
+        if (Files.exists(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        Files.deleteIfExists(journal);
+    }
+
+    /**
+     * A previous ETL run did not complete; truncate the file back to the length it had before that run.
+     * @param journal The journal as returned by {@link #journalPath(Path)}
+     * @return true if we changed the file.
+     * @throws IOException &emsp;
+     */
+    public static boolean rollback(Path journal) throws IOException {
+        Path file = fileForJournal(journal);
+        long length = readLength(journal);
+        boolean changed = false;
+        if (length < 0) {
+            // The journal is not usable; the file itself is checked for incomplete events when we next append to it.
+            logger.warn("Ignoring unreadable ETL append journal " + journal.toAbsolutePath());
+        } else if (length == 0) {
+            changed = Files.deleteIfExists(file);
+            if (changed) logger.warn("Removing " + file.toAbsolutePath() + " created by an incomplete ETL run");
+        } else if (Files.exists(file) && Files.size(file) > length) {
+            logger.warn("Truncating " + file.toAbsolutePath() + " from " + Files.size(file) + " to " + length
+                    + " bytes to undo an incomplete ETL run");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+                channel.force(true);
+            }
+            changed = true;
+        }
+        Files.deleteIfExists(journal);
+        return changed;
+    }
+
+    /**
+     * Remove a temporary journal left behind by a crash in {@link #begin(Path)}.
+     * The journal was never moved into place; so we had not appended anything to the file yet.
+     * There is nothing to undo.
+     * @param tmp The temporary journal
+     * @throws IOException &emsp;
+     */
+    public static void removeTemporaryJournal(Path tmp) throws IOException {
+        if (Files.deleteIfExists(tmp)) {
+            logger.warn("Removing temporary ETL append journal " + tmp.toAbsolutePath()
+                    + " left by an incomplete ETL run");
+        }
+    }
+
+    private static Path fileForJournal(Path journal) {
+        String name = journal.getFileName().toString();
+        return journal.resolveSibling(name.substring(0, name.length() - JOURNAL_EXTENSION.length()));
+    }
+
+    /**
+     * @return The length recorded in the journal or -1 if the journal is not valid.
+     */
+    private static long readLength(Path journal) throws IOException {
+        byte[] bytes = Files.readAllBytes(journal);
+        if (bytes.length != JOURNAL_SIZE) return -1;
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.getInt() != MAGIC) return -1;
+        return buf.getLong();
+    }
+}
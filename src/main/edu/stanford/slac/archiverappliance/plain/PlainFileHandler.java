@@ -50,8 +50,17 @@ public interface PlainFileHandler extends PlainStreams {
 
     EventFileWriter createEventFileWriter(String pvName, Path path, ArchDBRTypes type, short year) throws IOException;
 
+    /**
+     * The data file at this path has been deleted; remove any files kept alongside it.
+     */
     void markForDeletion(Path path) throws IOException;
 
+    /**
+     * Remove any index kept alongside the data file at this path.
+     * Used when the data for a PV has been copied over to a new name; the index for the copy is built afresh.
+     */
+    default void deleteIndexes(Path path) throws IOException {}
+
     static void movePaths(
             BasicContext context,
             String pvName,
@@ -105,6 +114,14 @@ public interface PlainFileHandler extends PlainStreams {
 
     boolean backUpFiles(boolean backupFilesBeforeETL);
 
+    /**
+     * Can ETL append to files of this format in place using an {@link AppendJournal}?
+     * This needs a format where truncating a file back to an earlier length leaves a valid file.
+     */
+    default boolean supportsAppendJournal() {
+        return false;
+    }
+
     Map<URLKey, String> urlOptions();
 
     String getPathKey(Path path);
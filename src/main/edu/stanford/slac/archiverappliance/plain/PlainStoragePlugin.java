@@ -23,6 +23,9 @@ import org.epics.archiverappliance.common.DataAtTime;
 import org.epics.archiverappliance.common.PartitionGranularity;
 import org.epics.archiverappliance.common.TimeUtils;
 import org.epics.archiverappliance.common.mergededup.TimeSpanLimitEventStream;
+import org.epics.archiverappliance.common.metrics.Counter;
+import org.epics.archiverappliance.common.metrics.Histogram;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.config.ChunkKeyKeyMapping;
@@ -45,6 +48,8 @@ import org.epics.archiverappliance.retrieval.postprocessors.DefaultRawPostProces
 import org.epics.archiverappliance.retrieval.postprocessors.PostProcessor;
 import org.epics.archiverappliance.retrieval.postprocessors.PostProcessorWithConsolidatedEventStream;
 import org.epics.archiverappliance.retrieval.postprocessors.PostProcessors;
+import org.epics.archiverappliance.retrieval.postprocessors.Rollup;
+import org.epics.archiverappliance.retrieval.postprocessors.SummaryStatsPostProcessor;
 import org.epics.archiverappliance.utils.nio.ArchPaths;
 import org.epics.archiverappliance.utils.nio.PVPath;
 import org.epics.archiverappliance.utils.ui.URIUtils;
@@ -147,6 +152,11 @@ import java.util.stream.Stream;
  * For example, if you add a <code>etlOutofStoreIf=testFlag</code>; then data will be moved ouf of this store
  * only if the value of the named flag <code>testFlag</code> is true.
  * </dd>
+ * <dt>journalETLAppends</dt><dd>An optional parameter; if <code>true</code>, ETL appends data into the existing
+ * partitions in place and uses a small journal to undo incomplete ETL runs after a crash
+ * (see {@link AppendJournal}). This is only supported for PB files; it takes precedence over
+ * <code>backupFilesBeforeETL</code> and avoids copying entire (perhaps yearly) partitions on each ETL run.
+ * </dd>
  * </dl>
  * @author mshankar
  *
@@ -154,6 +164,13 @@ import java.util.stream.Stream;
 public class PlainStoragePlugin
         implements StoragePlugin, ETLSource, ETLDest, StorageMetrics, DataAtTime, ETLPostOptimizers {
     private static final Logger logger = LogManager.getLogger(PlainStoragePlugin.class.getName());
+    private static final Instrumentation.Family<Counter> bulkAppendBytes = Instrumentation.counterFamily(
+            "archappl_etl_bulk_append_bytes",
+            "Bytes moved by ETL bulk appends into the destination and how they were moved",
+            "dest",
+            "method");
+    private static final Instrumentation.Family<Histogram> bulkAppendSeconds = Instrumentation.histogramFamily(
+            "archappl_etl_bulk_append_seconds", "Time taken by one ETL bulk append into the destination", "dest");
     private final String appendExtension;
     private final PlainFileHandler plainFileHandler;
     private final ConcurrentHashMap<String, AppendDataStateData> appendDataStates = new ConcurrentHashMap<>();
@@ -169,6 +186,11 @@ public class PlainStoragePlugin
      * This has some performance implications as we will be copying the file on each run
      */
     private boolean backupFilesBeforeETL = false;
+    /**
+     * Should ETL append in place recording the length of the affected partitions in an {@link AppendJournal}.
+     * This makes ETL appends crash safe at a cost that is proportional to the data appended.
+     */
+    private boolean journalETLAppends = false;
 
     private List<String> postProcessorUserArgs = null;
     private String reduceDataPostProcessor = null;
@@ -298,6 +320,11 @@ public class PlainStoragePlugin
                         partitionGranularity,
                         this.pv2key);
                 if (paths.length == 0) {
+                    List<Callable<EventStream>> rollupCallables =
+                            getDataFromRollups(context, pvName, startTime, endTime, postProcessor);
+                    if (rollupCallables != null) {
+                        return rollupCallables;
+                    }
                     logger.info("Did not find any cached entries for " + pvName + " for post processor " + extension
                             + ". Defaulting to using the raw streams and computing the data at runtime.");
                     askingForProcessedDataButAbsentInCache = true;
@@ -378,6 +405,91 @@ public class PlainStoragePlugin
         }
     }
 
+    /**
+     * If this store maintains {@link Rollup}s (as cached post processors) and one of them can be used to compute the
+     * requested summary statistic, return the data from the coarsest such rollup.
+     * We only use the rollups if each partition with raw data in the time range has a rollup that is up to date and if
+     * the rollup buckets line up with the bins and the time range.
+     * @return The callables over the rollups or null if we should use the raw data.
+     */
+    private List<Callable<EventStream>> getDataFromRollups(
+            BasicContext context, String pvName, Instant startTime, Instant endTime, PostProcessor postProcessor)
+            throws Exception {
+        if (!(postProcessor instanceof SummaryStatsPostProcessor summaryStatsPostProcessor)
+                || summaryStatsPostProcessor.getRollupStatistic() == null) {
+            return null;
+        }
+        int rollupIntervalSecs =
+                Rollup.getCoarsestRollupInterval(postProcessorUserArgs, summaryStatsPostProcessor.getIntervalSecs());
+        if (rollupIntervalSecs == 0) {
+            return null;
+        }
+        if (!summaryStatsPostProcessor.canUseRollups(rollupIntervalSecs, startTime, endTime)) {
+            logger.debug("The time range is not aligned with the rollups of " + rollupIntervalSecs + "(s) for " + pvName);
+            return null;
+        }
+        String rollupExt = "." + Rollup.IDENTITY + "_" + rollupIntervalSecs;
+        Path[] rawPaths = PathNameUtility.getPathsWithData(
+                context.getPaths(),
+                rootFolder,
+                pvName,
+                startTime,
+                endTime,
+                plainFileHandler.getExtensionString(),
+                partitionGranularity,
+                this.pv2key);
+        Path[] rollupPaths = PathNameUtility.getPathsWithData(
+                context.getPaths(),
+                rootFolder,
+                pvName,
+                startTime,
+                endTime,
+                rollupExt,
+                partitionGranularity,
+                this.pv2key);
+        if (rawPaths.length == 0 || rawPaths.length != rollupPaths.length) {
+            return null;
+        }
+        for (int i = 0; i < rawPaths.length; i++) {
+            Path expectedRollupPath = rawPaths[i].resolveSibling(
+                    rawPaths[i].getFileName().toString().replace(plainFileHandler.getExtensionString(), rollupExt));
+            if (!expectedRollupPath.equals(rollupPaths[i])
+                    || Files.getLastModifiedTime(rawPaths[i]).compareTo(Files.getLastModifiedTime(rollupPaths[i]))
+                            > 0) {
+                logger.debug("Rollup " + expectedRollupPath + " is missing or older than the raw data for " + pvName);
+                return null;
+            }
+        }
+
+        logger.info("Using " + rollupPaths.length + " rollups with extension " + rollupExt + " for pv " + pvName
+                + " for post processor " + postProcessor.getExtension());
+        boolean doNotUseSearchForPositions = !plainFileHandler.useSearchForPositions();
+        ArrayList<Callable<EventStream>> ret = new ArrayList<Callable<EventStream>>();
+        // The last sample before the start time gets a bin of its own like in the raw path; this comes from the raw data.
+        FileInfo firstRawFileInfo = fileInfo(rawPaths[0]);
+        if (firstRawFileInfo.getFirstEventInstant() == null
+                || firstRawFileInfo.getFirstEventInstant().isAfter(startTime)) {
+            Callable<EventStream> lastEventOfPreviousStream =
+                    getLastEventOfPreviousPartitionBeforeTimeAsStream(context, pvName, startTime, postProcessor, false);
+            if (lastEventOfPreviousStream != null) {
+                ret.add(summaryStatsPostProcessor.wrapLastSampleBeforeStart(lastEventOfPreviousStream));
+            }
+        } else {
+            ret.add(summaryStatsPostProcessor.wrapLastSampleBeforeStart(
+                    new CallableEventStream(plainFileHandler.getTimeStream(
+                            pvName, rawPaths[0], startTime, startTime, doNotUseSearchForPositions, firstRawFileInfo))));
+        }
+        for (Path rollupPath : rollupPaths) {
+            ret.add(summaryStatsPostProcessor.wrapRollups(new CallableEventStream(plainFileHandler.getTimeStream(
+                    pvName, rollupPath, startTime, endTime, doNotUseSearchForPositions, fileInfo(rollupPath)))));
+        }
+        // A sample at exactly the end time is in the rollup bucket after the end time; this comes from the raw data.
+        Path lastRawPath = rawPaths[rawPaths.length - 1];
+        ret.add(summaryStatsPostProcessor.wrap(new CallableEventStream(plainFileHandler.getTimeStream(
+                pvName, lastRawPath, endTime, endTime, doNotUseSearchForPositions, fileInfo(lastRawPath)))));
+        return ret;
+    }
+
     private Callable<EventStream> getLastEventOfPreviousPartitionBeforeTimeAsStream(
             BasicContext context,
             String pvName,
@@ -471,6 +583,7 @@ public class PlainStoragePlugin
     @Override
     public int appendData(BasicContext context, String pvName, EventStream stream) throws IOException {
         AppendDataStateData state = getAppendDataState(context, pvName);
+        state.setJournalAppends(false);
         return state.partitionBoundaryAwareAppendData(
                 context, pvName, stream, plainFileHandler.getExtensionString(), null);
     }
@@ -490,7 +603,13 @@ public class PlainStoragePlugin
             }
         }
 
+        boolean journal = isJournalingETLAppends();
+        if (journal) {
+            rollbackIncompleteETLAppends(pvName, context);
+        }
+        boolean backup = backupFilesBeforeETL && !journal;
         AppendDataStateData state = getAppendDataState(context, pvName);
+        state.setJournalAppends(journal);
 
         if (this.reduceDataPostProcessor != null) {
             try {
@@ -515,17 +634,24 @@ public class PlainStoragePlugin
 
         boolean bulkInserted = false;
         if (stream instanceof ETLBulkStream bulkStream && !context.isSkipBulkAppend()) {
-            if (backupFilesBeforeETL) {
+            long bulkAppendStart = System.nanoTime();
+            if (backup) {
                 bulkInserted = state.bulkAppend(
                         pvName, context, bulkStream, appendExtension, plainFileHandler.getExtensionString());
             } else {
                 bulkInserted =
                         state.bulkAppend(pvName, context, bulkStream, plainFileHandler.getExtensionString(), null);
             }
+            if (bulkInserted) {
+                bulkAppendSeconds.labels(this.getName()).observeNanos(System.nanoTime() - bulkAppendStart);
+                bulkAppendBytes
+                        .labels(this.getName(), state.getBulkAppendMethod())
+                        .add(state.getBulkAppendedBytes());
+            }
         }
 
         if (!bulkInserted) {
-            if (backupFilesBeforeETL) {
+            if (backup) {
                 state.partitionBoundaryAwareAppendData(
                         context, pvName, stream, appendExtension, plainFileHandler.getExtensionString());
             } else {
@@ -621,6 +747,10 @@ public class PlainStoragePlugin
                 this.etlOutOfStoreIf = queryNVPairs.get(URLKey.ETL_OUT_OF_STORE_IF.key());
             }
 
+            if (queryNVPairs.containsKey(URLKey.JOURNAL_ETL_APPENDS.key())) {
+                this.journalETLAppends = Boolean.parseBoolean(queryNVPairs.get(URLKey.JOURNAL_ETL_APPENDS.key()));
+            }
+
             if (queryNVPairs.containsKey(URLKey.TERMINATOR.key())) {
                 this.pv2key = pv2key.overrideTerminator(
                         queryNVPairs.get(URLKey.TERMINATOR.key()).charAt(0));
@@ -660,6 +790,11 @@ public class PlainStoragePlugin
                 buf.append(true);
             }
 
+            if (this.journalETLAppends) {
+                buf.append("&").append(URLKey.JOURNAL_ETL_APPENDS.key()).append("=");
+                buf.append(true);
+            }
+
             this.plainFileHandler.urlOptions().forEach((key, value) -> buf.append("&")
                     .append(URLKey.COMPRESS.key())
                     .append("=")
@@ -800,6 +935,7 @@ public class PlainStoragePlugin
                                 + path.toAbsolutePath());
                         try {
                             Files.delete(path);
+                            plainFileHandler.markForDeletion(path);
                         } catch (Exception ex) {
                             logger.error("Exception deleting file " + path.toAbsolutePath(), ex);
                         }
@@ -836,6 +972,7 @@ public class PlainStoragePlugin
                                     + path.toAbsolutePath());
                             try {
                                 Files.delete(path);
+                                plainFileHandler.markForDeletion(path);
                             } catch (Exception ex) {
                                 logger.error("Exception deleting file " + path.toAbsolutePath(), ex);
                             }
@@ -930,15 +1067,16 @@ public class PlainStoragePlugin
     public void markForDeletion(ETLInfo info, ETLContext context) {
         try {
             Path path = info.getKey();
-            this.plainFileHandler.markForDeletion(path);
             long size = Files.size(path);
             long sizeFromInfo = info.getSize();
             if (sizeFromInfo == -1) {
                 logger.error("We are missing size information from ETLInfo for " + info.getKey());
                 Files.delete(path);
+                this.plainFileHandler.markForDeletion(path);
             } else {
                 if (sizeFromInfo == size) {
                     Files.delete(path);
+                    this.plainFileHandler.markForDeletion(path);
                 } else {
                     logger.error("The path " + info.getKey()
                             + " has changed since we generate the ETLInfo. Not deleting it this time around. If this persists, please manually remove the file. Current Size "
@@ -1035,8 +1173,56 @@ public class PlainStoragePlugin
         return Instant.ofEpochMilli(0);
     }
 
+    private boolean isJournalingETLAppends() {
+        return journalETLAppends && this.plainFileHandler.supportsAppendJournal();
+    }
+
+    private Path[] getAppendJournalPaths(String pvName, BasicContext context) throws IOException {
+        return getAppendJournalPaths(pvName, context, AppendJournal.JOURNAL_EXTENSION);
+    }
+
+    private Path[] getAppendJournalPaths(String pvName, BasicContext context, String journalExtension)
+            throws IOException {
+        return PathNameUtility.getAllPathsForPV(
+                context.getPaths(),
+                rootFolder,
+                pvName,
+                plainFileHandler.getExtensionString() + journalExtension,
+                this.getPathResolver(),
+                this.pv2key);
+    }
+
+    /**
+     * Before the first ETL append for a PV in an ETL run, undo any appends from earlier ETL runs that did not commit.
+     * If we change any file, we also discard the cached append state as the last known event may have changed.
+     * Temporary journals left behind by a crash while recording a journal are removed.
+     */
+    private void rollbackIncompleteETLAppends(String pvName, ETLContext context) throws IOException {
+        String checkedKey = "AppendJournalChecked:" + this.getName() + ":" + pvName;
+        if (context.get(checkedKey) != null) return;
+        context.put(checkedKey, Boolean.TRUE);
+        boolean changed = false;
+        for (Path journalPath : getAppendJournalPaths(pvName, context)) {
+            changed |= AppendJournal.rollback(journalPath);
+        }
+        for (Path tmpJournalPath : getAppendJournalPaths(
+                pvName, context, AppendJournal.JOURNAL_EXTENSION + AppendJournal.TEMP_EXTENSION)) {
+            AppendJournal.removeTemporaryJournal(tmpJournalPath);
+        }
+        if (changed) {
+            AppendDataStateData state = appendDataStates.remove(pvName);
+            if (state != null) state.closeStreams();
+        }
+    }
+
     @Override
     public boolean commitETLAppendData(String pvName, ETLContext context) throws IOException {
+        if (isJournalingETLAppends()) {
+            for (Path journalPath : getAppendJournalPaths(pvName, context)) {
+                AppendJournal.commit(journalPath);
+            }
+            return true;
+        }
         if (this.plainFileHandler.backUpFiles(backupFilesBeforeETL)) {
             // Get all append data files for the specified PV name and partition granularity.
             Path[] appendDataPaths = PathNameUtility.getAllPathsForPV(
@@ -1075,10 +1261,11 @@ public class PlainStoragePlugin
                             logger.debug("Generating pp data for " + missingOrOlderPath.ppsPath.toString() + " from "
                                     + missingOrOlderPath.srcPath.toString() + " and pp with extension" + ppExt
                                     + ". Size of src before " + Files.size(missingOrOlderPath.srcPath));
-                        Callable<EventStream> callable = CallableEventStream.makeOneStreamCallable(
-                                plainFileHandler.getStream(pvName, missingOrOlderPath.srcPath, dbrtype),
-                                postProcessor,
-                                true);
+                        EventStream srcStream = postProcessor instanceof Rollup rollup
+                                ? getRollupSourceStream(pvName, dbrtype, missingOrOlderPath, rollup)
+                                : plainFileHandler.getStream(pvName, missingOrOlderPath.srcPath, dbrtype);
+                        Callable<EventStream> callable =
+                                CallableEventStream.makeOneStreamCallable(srcStream, postProcessor, true);
                         try (EventStream stream = callable.call()) {
                             // The post processor data can be generated at any time in any sequence; so we suspend the
                             // initial monotonicity checks for the post processor where we compare with the last known
@@ -1110,10 +1297,44 @@ public class PlainStoragePlugin
         return true;
     }
 
+    /**
+     * Rollups are extended with the samples after the last rollup instead of being regenerated from the whole partition.
+     * As the timestamp of a rollup is that of the last sample in it, a bucket can span ETL runs without counting any sample twice.
+     */
+    private EventStream getRollupSourceStream(
+            String pvName, ArchDBRTypes dbrtype, PPMissingPaths missingOrOlderPath, Rollup rollup) throws IOException {
+        rollup.setStartAfter(null);
+        if (Files.exists(missingOrOlderPath.ppsPath)) {
+            Instant lastRollup = fileInfo(missingOrOlderPath.ppsPath).getLastEventInstant();
+            FileInfo rawInfo = fileInfo(missingOrOlderPath.srcPath);
+            if (lastRollup != null && rawInfo.getLastEventInstant() != null) {
+                rollup.setStartAfter(lastRollup);
+                if (rawInfo.getLastEventInstant().isAfter(lastRollup)) {
+                    return plainFileHandler.getTimeStream(
+                            pvName,
+                            missingOrOlderPath.srcPath,
+                            lastRollup,
+                            rawInfo.getLastEventInstant(),
+                            !plainFileHandler.useSearchForPositions(),
+                            rawInfo);
+                }
+            }
+        }
+        return plainFileHandler.getStream(pvName, missingOrOlderPath.srcPath, dbrtype);
+    }
+
     public void setBackupFilesBeforeETL(boolean backupFilesBeforeETL) {
         this.backupFilesBeforeETL = backupFilesBeforeETL;
     }
 
+    public boolean isJournalETLAppends() {
+        return journalETLAppends;
+    }
+
+    public void setJournalETLAppends(boolean journalETLAppends) {
+        this.journalETLAppends = journalETLAppends;
+    }
+
     /**
      * The hold and gather are used to implement a high/low watermark for ETL.
      * ETL is skipped until the first known event in the partitions available
@@ -1200,12 +1421,12 @@ public class PlainStoragePlugin
         for (Path rawPath : rawPaths) {
             Path expectedPPPath = rawPath.resolveSibling(
                     rawPath.getFileName().toString().replace(plainFileHandler.getExtensionString(), ppExt));
-            if (!ppPathsMap.containsKey(expectedPPPath)) {
+            if (!ppPathsMap.containsKey(expectedPPPath.toUri().toString())) {
                 if (logger.isDebugEnabled()) logger.debug("Missing pp path " + expectedPPPath);
                 ret.add(new PPMissingPaths(rawPath, expectedPPPath));
             } else {
                 if (logger.isDebugEnabled()) logger.debug("pp path " + expectedPPPath + " already present");
-                Path actualPPPath = ppPathsMap.get(expectedPPPath);
+                Path actualPPPath = ppPathsMap.get(expectedPPPath.toUri().toString());
                 FileTime rawPathTime = Files.getLastModifiedTime(rawPath);
                 FileTime ppPathTime = Files.getLastModifiedTime(actualPPPath);
                 if (logger.isDebugEnabled())
@@ -1260,6 +1481,8 @@ public class PlainStoragePlugin
                 logger.debug("Copying over data from " + path.toString() + " to new pv " + newName);
                 FileInfo info = fileInfo(path);
                 this.appendData(context, newName, plainFileHandler.getStream(oldName, path, info.getType()));
+                // The old name is no longer used; do not leave its index behind.
+                plainFileHandler.deleteIndexes(path);
             }
         }
 
@@ -1274,6 +1497,7 @@ public class PlainStoragePlugin
                 AppendDataStateData state = getAppendDataState(context, newName);
                 state.partitionBoundaryAwareAppendData(
                         context, newName, plainFileHandler.getStream(oldName, path, info.getType()), ppExt, null);
+                plainFileHandler.deleteIndexes(path);
             }
         }
     }
@@ -1370,7 +1594,8 @@ public class PlainStoragePlugin
                 + configService + ", pv2key="
                 + pv2key + ", desc='"
                 + desc + '\'' + ", backupFilesBeforeETL="
-                + backupFilesBeforeETL + ", postProcessorUserArgs="
+                + backupFilesBeforeETL + ", journalETLAppends="
+                + journalETLAppends + ", postProcessorUserArgs="
                 + postProcessorUserArgs + ", reduceDataPostProcessor='"
                 + reduceDataPostProcessor + '\'' + ", holdETLForPartitions="
                 + holdETLForPartitions + ", gatherETLinPartitions="
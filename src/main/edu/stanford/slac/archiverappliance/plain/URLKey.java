@@ -13,6 +13,7 @@ public enum URLKey {
     CONSOLIDATE_ON_SHUTDOWN("consolidateOnShutdown"),
     POST_PROCESSORS("pp"),
     TERMINATOR("terminator"),
+    JOURNAL_ETL_APPENDS("journalETLAppends"),
     /**
      * ZSTD buffer pool only used with @see #ZSTD
      * Values are true or false, default true.
@@ -231,6 +231,11 @@ public class ParquetAppendDataStateData extends AppendDataStateData {
         assert pvPath != null;
 
         this.closeStreams();
+        this.bulkAppendedBytes = 0;
+        for (Path srcPath : etlParquetFilesStream.getPaths()) {
+            this.bulkAppendedBytes += Files.size(srcPath);
+        }
+        this.bulkAppendMethod = BULK_APPEND_COMBINE;
         combineFiles(
                 etlParquetFilesStream.getPaths(),
                 pvPath,
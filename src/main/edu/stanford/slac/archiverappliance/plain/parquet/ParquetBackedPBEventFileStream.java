@@ -18,6 +18,7 @@ import org.apache.parquet.filter2.predicate.FilterPredicate;
 import org.apache.parquet.hadoop.ParquetReader;
 import org.apache.parquet.proto.ProtoParquetReader;
 import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.ScalarBatchEventStream;
 import org.epics.archiverappliance.common.BasicContext;
 import org.epics.archiverappliance.common.EmptyEventIterator;
 import org.epics.archiverappliance.common.TimeUtils;
@@ -26,10 +27,12 @@ import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.common.remotable.RemotableOverRaw;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarEventBatch;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -50,8 +53,9 @@ import java.util.List;
  * @see ParquetETLInfoListProcessor
  * @see ETLParquetFilesStream
  */
-public class ParquetBackedPBEventFileStream implements ETLParquetFilesStream, RemotableOverRaw {
+public class ParquetBackedPBEventFileStream implements ETLParquetFilesStream, RemotableOverRaw, ScalarBatchEventStream {
     private static final Logger logger = LogManager.getLogger(ParquetBackedPBEventFileStream.class.getName());
+    private static final TimePeriod NO_OVERLAP = new TimePeriod(null, null);
     private final String pvName;
     private final ArchDBRTypes type;
     private final List<Path> paths;
@@ -178,19 +182,12 @@ public class ParquetBackedPBEventFileStream implements ETLParquetFilesStream, Re
     @Override
     public Iterator<Event> iterator() {
         var builders = paths.stream().map(NIOInputFile::new).map(ProtoParquetReader::builder);
-        if (this.startTime != null && this.endTime != null) {
-            YearSecondTimestamp startYst = TimeUtils.convertToYearSecondTimestamp(startTime);
-            YearSecondTimestamp endYst = TimeUtils.convertToYearSecondTimestamp(endTime);
-            // if no overlap in year return empty
-            YearSecondTimestamp firstEventTime = ((PartionedTime) this.getFirstEvent()).getYearSecondTimestamp();
-            YearSecondTimestamp lastEventTime = (getLastFileInfo().getLastEvent()).getYearSecondTimestamp();
-            if (endYst.compareTo(firstEventTime) < 0) {
-                return new EmptyEventIterator();
-            }
-            YearSecondTimestamp lastEventBeforeTime = getLastEventBeforeTime(startYst);
-            builders = builders.map(
-                    b -> b.withFilter(trimDates(startYst, endYst, firstEventTime, lastEventTime, lastEventBeforeTime)
-                            .filter()));
+        TimePeriod timePeriod = getTimePeriod();
+        if (timePeriod == NO_OVERLAP) {
+            return new EmptyEventIterator();
+        }
+        if (timePeriod != null) {
+            builders = builders.map(b -> b.withFilter(timePeriod.filter()));
         }
         try {
             return createEventIterator(builders.toList());
@@ -201,6 +198,46 @@ public class ParquetBackedPBEventFileStream implements ETLParquetFilesStream, Re
         }
     }
 
+    /**
+     * Scalar numeric types can be read a column at a time using a {@link ParquetScalarBatchIterator}.
+     * This applies the same time filter as the event iterator.
+     */
+    @Override
+    public Iterator<ScalarEventBatch> batchIterator() {
+        if (!ParquetScalarBatchIterator.isSupported(this.type)) {
+            return null;
+        }
+        TimePeriod timePeriod = getTimePeriod();
+        if (timePeriod == NO_OVERLAP) {
+            return Collections.emptyIterator();
+        }
+        return new ParquetScalarBatchIterator(
+                paths,
+                type,
+                this.getDescription().getYear(),
+                timePeriod != null ? timePeriod.startYst() : null,
+                timePeriod != null ? timePeriod.endYst() : null);
+    }
+
+    /**
+     * @return The time period to filter on; null if this stream has no time bounds and {@link #NO_OVERLAP} if there is no data in the time bounds.
+     */
+    private TimePeriod getTimePeriod() {
+        if (this.startTime == null || this.endTime == null) {
+            return null;
+        }
+        YearSecondTimestamp startYst = TimeUtils.convertToYearSecondTimestamp(startTime);
+        YearSecondTimestamp endYst = TimeUtils.convertToYearSecondTimestamp(endTime);
+        // if no overlap in year return empty
+        YearSecondTimestamp firstEventTime = ((PartionedTime) this.getFirstEvent()).getYearSecondTimestamp();
+        YearSecondTimestamp lastEventTime = (getLastFileInfo().getLastEvent()).getYearSecondTimestamp();
+        if (endYst.compareTo(firstEventTime) < 0) {
+            return NO_OVERLAP;
+        }
+        YearSecondTimestamp lastEventBeforeTime = getLastEventBeforeTime(startYst);
+        return trimDates(startYst, endYst, firstEventTime, lastEventTime, lastEventBeforeTime);
+    }
+
     /**
      * Finds the timestamp of the last event occurring at or before the given start time.
      * This is used to adjust the query window to include the sample immediately preceding the start time.
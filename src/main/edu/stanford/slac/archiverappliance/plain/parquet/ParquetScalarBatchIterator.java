@@ -0,0 +1,307 @@
+package edu.stanford.slac.archiverappliance.plain.parquet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.schema.MessageType;
+import org.epics.archiverappliance.common.YearSecondTimestamp;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.ScalarEventBatch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reads scalar Parquet files a column at a time into {@link ScalarEventBatch}es.
+ * We go through the <code>secondsintoyear</code>, <code>nano</code>, <code>val</code>, <code>severity</code>, <code>status</code>
+ * and <code>fieldvalues</code> columns of each row group in step and skip the row groups that are outside the time period using the column statistics.
+ * Unlike the <code>ProtoParquetReader</code>, this does not create a protobuf message (and a PB event) per row.
+ * The same batch is reused for all the calls to next.
+ */
+public class ParquetScalarBatchIterator implements Iterator<ScalarEventBatch>, Closeable {
+    private static final Logger logger = LogManager.getLogger(ParquetScalarBatchIterator.class.getName());
+    public static int BATCH_SIZE = 4096;
+    private static final Set<ArchDBRTypes> SUPPORTED_TYPES = Set.of(
+            ArchDBRTypes.DBR_SCALAR_DOUBLE,
+            ArchDBRTypes.DBR_SCALAR_FLOAT,
+            ArchDBRTypes.DBR_SCALAR_INT,
+            ArchDBRTypes.DBR_SCALAR_SHORT,
+            ArchDBRTypes.DBR_SCALAR_ENUM);
+
+    private final List<Path> paths;
+    private final YearSecondTimestamp startYst;
+    private final YearSecondTimestamp endYst;
+    private final ScalarEventBatch batch;
+    private int pathIndex = -1;
+    private ParquetFileReader fileReader;
+    private MessageType schema;
+    private List<BlockMetaData> rowGroups;
+    private int rowGroupIndex = 0;
+    private RowGroupColumns columns;
+    private long rowsLeftInRowGroup = 0;
+    private boolean batchReady = false;
+    private boolean finished = false;
+
+    /**
+     * @param paths The Parquet files in time order
+     * @param type The type of the data
+     * @param year The year of the data
+     * @param startYst The start of the time period (inclusive); null to read all the data.
+     * @param endYst The end of the time period (inclusive); null to read all the data.
+     */
+    public ParquetScalarBatchIterator(
+            List<Path> paths, ArchDBRTypes type, short year, YearSecondTimestamp startYst, YearSecondTimestamp endYst) {
+        this.paths = paths;
+        this.startYst = startYst;
+        this.endYst = endYst;
+        this.batch = new ScalarEventBatch(type, year, BATCH_SIZE);
+    }
+
+    public static boolean isSupported(ArchDBRTypes type) {
+        return SUPPORTED_TYPES.contains(type);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (batchReady) return true;
+        if (finished) return false;
+        try {
+            fillBatch();
+        } catch (IOException ex) {
+            close();
+            throw new IllegalStateException(ex.toString(), ex);
+        }
+        if (batch.size() == 0) {
+            close();
+            return false;
+        }
+        batchReady = true;
+        return true;
+    }
+
+    @Override
+    public ScalarEventBatch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more batches");
+        }
+        batchReady = false;
+        return batch;
+    }
+
+    private void fillBatch() throws IOException {
+        batch.clear();
+        while (!batch.isFull()) {
+            if (rowsLeftInRowGroup == 0 && !nextRowGroup()) {
+                return;
+            }
+            while (rowsLeftInRowGroup > 0 && !batch.isFull()) {
+                rowsLeftInRowGroup--;
+                int secs = columns.secondsIntoYear.getInteger();
+                columns.secondsIntoYear.consume();
+                int nano = columns.nano.getInteger();
+                columns.nano.consume();
+                double value = columns.readValue();
+                int severity = columns.readOptionalInt(columns.severity);
+                int status = columns.readOptionalInt(columns.status);
+                Map<String, String> fieldValues = columns.readFieldValues();
+                if (startYst != null && compare(secs, nano, startYst) < 0) {
+                    continue;
+                }
+                if (endYst != null && compare(secs, nano, endYst) > 0) {
+                    // The data is sorted; nothing more of interest in this file.
+                    rowsLeftInRowGroup = 0;
+                    rowGroupIndex = rowGroups.size();
+                    break;
+                }
+                batch.add(secs, nano, value, severity, status, fieldValues);
+            }
+        }
+    }
+
+    private static int compare(int secs, int nano, YearSecondTimestamp yst) {
+        int cmp = Integer.compare(secs, yst.getSecondsintoyear());
+        return cmp != 0 ? cmp : Integer.compare(nano, yst.getNano());
+    }
+
+    /**
+     * Move to the next row group that may have data in the time period, opening the next file if needed.
+     * @return false if we are out of data.
+     */
+    private boolean nextRowGroup() throws IOException {
+        while (true) {
+            if (fileReader == null || rowGroupIndex >= rowGroups.size()) {
+                closeFileReader();
+                pathIndex++;
+                if (pathIndex >= paths.size()) {
+                    finished = true;
+                    return false;
+                }
+                fileReader = ParquetFileReader.open(new NIOInputFile(paths.get(pathIndex)), ParquetInfo.baseOptions);
+                schema = fileReader.getFooter().getFileMetaData().getSchema();
+                rowGroups = fileReader.getRowGroups();
+                rowGroupIndex = 0;
+                continue;
+            }
+            BlockMetaData rowGroup = rowGroups.get(rowGroupIndex++);
+            if (!overlaps(rowGroup)) {
+                fileReader.skipNextRowGroup();
+                continue;
+            }
+            PageReadStore pages = fileReader.readNextRowGroup();
+            if (pages == null) {
+                rowGroupIndex = rowGroups.size();
+                continue;
+            }
+            columns = new RowGroupColumns(
+                    new ColumnReadStoreImpl(
+                            pages,
+                            new GroupRecordConverter(schema).getRootConverter(),
+                            schema,
+                            fileReader.getFooter().getFileMetaData().getCreatedBy()),
+                    schema);
+            rowsLeftInRowGroup = pages.getRowCount();
+            return true;
+        }
+    }
+
+    /**
+     * Use the statistics for the secondsintoyear column to determine if the row group has data for the time period.
+     */
+    private boolean overlaps(BlockMetaData rowGroup) {
+        for (ColumnChunkMetaData column : rowGroup.getColumns()) {
+            if (column.getPath().toDotString().equals(ParquetInfo.ColumnName.SECONDS.key)) {
+                Statistics<?> stats = column.getStatistics();
+                if (stats == null || stats.isEmpty() || !stats.hasNonNullValue()) return true;
+                int min = (Integer) stats.genericGetMin();
+                int max = (Integer) stats.genericGetMax();
+                return !((startYst != null && max < startYst.getSecondsintoyear())
+                        || (endYst != null && min > endYst.getSecondsintoyear()));
+            }
+        }
+        return true;
+    }
+
+    private void closeFileReader() {
+        if (fileReader != null) {
+            try {
+                fileReader.close();
+            } catch (IOException ex) {
+                logger.debug("Exception closing parquet file reader", ex);
+            }
+            fileReader = null;
+            columns = null;
+            rowsLeftInRowGroup = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeFileReader();
+        finished = true;
+        batchReady = false;
+    }
+
+    /**
+     * The column readers for one row group.
+     */
+    private static class RowGroupColumns {
+        final ColumnReader secondsIntoYear;
+        final ColumnReader nano;
+        final ColumnReader val;
+        final ColumnReader severity;
+        final ColumnReader status;
+        final ColumnReader fieldName;
+        final ColumnReader fieldValue;
+        long fieldValuesLeft;
+
+        RowGroupColumns(ColumnReadStoreImpl store, MessageType schema) {
+            this.secondsIntoYear = reader(store, schema, "secondsintoyear");
+            this.nano = reader(store, schema, "nano");
+            this.val = reader(store, schema, "val");
+            this.severity = reader(store, schema, "severity");
+            this.status = reader(store, schema, "status");
+            // Depending on how the protobuf schema was converted, this could be fieldvalues.name or
+            // fieldvalues.list.element.name
+            ColumnDescriptor nameColumn = null;
+            ColumnDescriptor valueColumn = null;
+            for (ColumnDescriptor column : schema.getColumns()) {
+                String[] path = column.getPath();
+                if (path.length > 1 && path[0].equals("fieldvalues")) {
+                    if (path[path.length - 1].equals("name")) nameColumn = column;
+                    if (path[path.length - 1].equals("val")) valueColumn = column;
+                }
+            }
+            this.fieldName = nameColumn != null ? store.getColumnReader(nameColumn) : null;
+            this.fieldValue = valueColumn != null ? store.getColumnReader(valueColumn) : null;
+            this.fieldValuesLeft = this.fieldName != null ? this.fieldName.getTotalValueCount() : 0;
+        }
+
+        private static ColumnReader reader(ColumnReadStoreImpl store, MessageType schema, String name) {
+            if (!schema.containsField(name)) return null;
+            return store.getColumnReader(schema.getColumnDescription(new String[] {name}));
+        }
+
+        double readValue() {
+            double value;
+            ColumnDescriptor descriptor = val.getDescriptor();
+            if (val.getCurrentDefinitionLevel() < descriptor.getMaxDefinitionLevel()) {
+                value = Double.NaN;
+            } else {
+                value = switch (descriptor.getPrimitiveType().getPrimitiveTypeName()) {
+                    case DOUBLE -> val.getDouble();
+                    case FLOAT -> val.getFloat();
+                    case INT64 -> val.getLong();
+                    default -> val.getInteger();
+                };
+            }
+            val.consume();
+            return value;
+        }
+
+        int readOptionalInt(ColumnReader reader) {
+            if (reader == null) return 0;
+            int value = reader.getCurrentDefinitionLevel()
+                            == reader.getDescriptor().getMaxDefinitionLevel()
+                    ? reader.getInteger()
+                    : 0;
+            reader.consume();
+            return value;
+        }
+
+        /**
+         * The field values are a repeated column; the values for a row continue while the repetition level is above 0.
+         */
+        Map<String, String> readFieldValues() {
+            if (fieldName == null || fieldValuesLeft <= 0) return null;
+            Map<String, String> fields = null;
+            int maxDefinitionLevel = fieldName.getDescriptor().getMaxDefinitionLevel();
+            do {
+                if (fieldName.getCurrentDefinitionLevel() == maxDefinitionLevel) {
+                    if (fields == null) fields = new HashMap<>();
+                    fields.put(
+                            fieldName.getBinary().toStringUsingUTF8(),
+                            fieldValue.getBinary().toStringUsingUTF8());
+                }
+                fieldName.consume();
+                fieldValue.consume();
+                fieldValuesLeft--;
+            } while (fieldValuesLeft > 0 && fieldName.getCurrentRepetitionLevel() > 0);
+            return fields;
+        }
+    }
+}
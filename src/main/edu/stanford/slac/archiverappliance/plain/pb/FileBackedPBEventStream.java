@@ -58,6 +58,8 @@ public class FileBackedPBEventStream implements EventStream, RemotableOverRaw, E
     private RemotableEventStreamDesc desc;
     private PBFileInfo fileInfo = null;
     private BiDirectionalIterable.IterationDirection direction = null;
+    private PBTimeIndex timeIndex = null;
+    private boolean timeIndexLoaded = false;
 
     private enum POSITION {
         START,
@@ -392,8 +394,8 @@ public class FileBackedPBEventStream implements EventStream, RemotableOverRaw, E
         long endPosition = -1;
         YearSecondTimestamp queryEndYTS = TimeUtils.convertToYearSecondTimestamp(queryEndTime);
         if (fileInfo.getInfo().getYear() == queryEndYTS.getYear()) {
-            FileEventStreamSearch bsend = new FileEventStreamSearch(path, startFilePos);
-            boolean endfound = bsend.seekToTime(dbrtype, queryEndYTS);
+            FileEventStreamSearch bsend = seekToTime(path, dbrtype, queryEndYTS);
+            boolean endfound = bsend != null;
             if (endfound) {
                 endPosition = bsend.getFoundPosition();
 
@@ -447,15 +449,41 @@ public class FileBackedPBEventStream implements EventStream, RemotableOverRaw, E
         }
 
         if (fileInfo.getInfo().getYear() == queryStartYTS.getYear()) {
-            FileEventStreamSearch bsstart = new FileEventStreamSearch(path, startFilePos);
-            boolean startfound = bsstart.seekToTime(dbrtype, queryStartYTS);
-            if (startfound) {
+            FileEventStreamSearch bsstart = seekToTime(path, dbrtype, queryStartYTS);
+            if (bsstart != null) {
                 startPosition = bsstart.getFoundPosition();
             }
         }
         return startPosition;
     }
 
+    /**
+     * Search for the time in the file; if we have a time index, we only search the part of the file suggested by the index.
+     * If the index does not help, we fall back to searching the whole file.
+     * @return The search if we found the time; else null.
+     */
+    private FileEventStreamSearch seekToTime(Path path, ArchDBRTypes dbrtype, YearSecondTimestamp yts)
+            throws IOException {
+        if (!timeIndexLoaded) {
+            timeIndex = PBTimeIndex.forSearch(path, fileInfo);
+            timeIndexLoaded = true;
+        }
+        if (timeIndex != null) {
+            long[] window = timeIndex.searchWindow(yts, startFilePos, Files.size(path) - 1);
+            FileEventStreamSearch indexedSearch = new FileEventStreamSearch(path, window[0], window[1]);
+            try {
+                if (indexedSearch.seekToTime(dbrtype, yts)) {
+                    return indexedSearch;
+                }
+            } catch (IOException ex) {
+                logger.warn("Exception searching " + path.toAbsolutePath() + " using the time index", ex);
+            }
+            logger.debug("Time index did not help when searching " + path.toAbsolutePath() + "; searching whole file");
+        }
+        FileEventStreamSearch search = new FileEventStreamSearch(path, startFilePos);
+        return search.seekToTime(dbrtype, yts) ? search : null;
+    }
+
     @Override
     public Event getFirstEvent(BasicContext context) throws IOException {
         PBFileInfo fileInfo = new PBFileInfo(path, false);
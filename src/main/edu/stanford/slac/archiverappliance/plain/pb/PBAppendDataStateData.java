@@ -14,9 +14,9 @@ import org.epics.archiverappliance.etl.ETLContext;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ByteChannel;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -32,6 +32,11 @@ public class PBAppendDataStateData extends AppendDataStateData {
 
     private static final Logger logger = LogManager.getLogger(PBAppendDataStateData.class.getName());
     public static final int BULK_BUFFER_INITIAL_CAPACITY = 1024 * 1024;
+    /**
+     * When both the source and the destination are plain files, let the kernel copy the bytes using FileChannel.transferTo.
+     * On Linux, this uses copy_file_range/sendfile and the data does not pass through the JVM heap.
+     */
+    public static boolean USE_TRANSFER_TO = true;
 
     /**
      * @param partitionGranularity partitionGranularity of the PB plugin.
@@ -100,6 +105,7 @@ public class PBAppendDataStateData extends AppendDataStateData {
             try (FileChannel fc = FileChannel.open(pvPath, StandardOpenOption.WRITE)) {
                 fc.truncate(truncationPoint);
             }
+            PBTimeIndex.deleteSidecar(pvPath);
         }
     }
 
@@ -160,16 +166,30 @@ public class PBAppendDataStateData extends AppendDataStateData {
 
         this.closeStreams();
 
-        // The preparePartition should have created the needed file; so we only append
+        // The preparePartition should have created the needed file; so we only append.
+        // We do not open the file in APPEND mode as copy_file_range/sendfile do not accept a destination opened with
+        // O_APPEND; transferTo would then silently fall back to copying thru a mapped buffer.
+        // Instead, we position the channel at the end of the file ourselves; transferTo writes at this position.
         assert pvPath != null;
-        try (ByteChannel destChannel = Files.newByteChannel(pvPath, StandardOpenOption.APPEND);
+        try (SeekableByteChannel destChannel = Files.newByteChannel(pvPath, StandardOpenOption.WRITE);
                 ReadableByteChannel srcChannel = byteStream.getByteChannel(context)) {
+            destChannel.position(destChannel.size());
             logger.debug("ETL bulk appends for pv " + pvName);
+            this.bulkAppendedBytes = 0;
+            this.bulkAppendMethod = BULK_APPEND_BUFFERED;
+            if (USE_TRANSFER_TO
+                    && srcChannel instanceof FileChannel srcFileChannel
+                    && destChannel instanceof FileChannel destFileChannel) {
+                this.bulkAppendedBytes = transferTo(srcFileChannel, destFileChannel);
+                this.bulkAppendMethod = BULK_APPEND_TRANSFER;
+            }
+            // Files inside tar/zip ArchPaths do not have FileChannels; so we copy these thru a buffer.
+            // This also copies anything that transferTo did not.
             ByteBuffer buf = ByteBuffer.allocate(BULK_BUFFER_INITIAL_CAPACITY);
             int bytesRead = srcChannel.read(buf);
             while (bytesRead > 0) {
                 buf.flip();
-                destChannel.write(buf);
+                this.bulkAppendedBytes += destChannel.write(buf);
                 buf.clear();
                 bytesRead = srcChannel.read(buf);
             }
@@ -183,4 +203,24 @@ public class PBAppendDataStateData extends AppendDataStateData {
         }
         return true;
     }
+
+    /**
+     * Copy the rest of the source file into the destination using FileChannel.transferTo.
+     * transferTo can move fewer bytes than asked for; so we loop until we are done or it stops making progress.
+     * The bytes are written at the destination's current position.
+     * On return, the source is positioned after the bytes that were copied.
+     * @return The number of bytes copied
+     */
+    private static long transferTo(FileChannel srcChannel, FileChannel destChannel) throws IOException {
+        long startPosition = srcChannel.position();
+        long position = startPosition;
+        long size = srcChannel.size();
+        while (position < size) {
+            long transferred = srcChannel.transferTo(position, size - position, destChannel);
+            if (transferred <= 0) break;
+            position += transferred;
+        }
+        srcChannel.position(position);
+        return position - startPosition;
+    }
 }
@@ -7,6 +7,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.ByteArray;
 import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.YearSecondTimestamp;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 
 import java.io.BufferedOutputStream;
@@ -20,12 +22,34 @@ public class PBEventFileWriter implements EventFileWriter {
 
     private static final Logger logger = LogManager.getLogger(PBEventFileWriter.class.getName());
     private final OutputStream os;
+    private final Path path;
+    /**
+     * The position in the file where the next event will be written.
+     */
+    private long position;
+    /**
+     * We maintain the sparse time index for the events that we write; null if we are not maintaining one.
+     * When appending to an existing file, this only has the entries for the events appended by this writer.
+     */
+    private PBTimeIndex timeIndex;
+
+    private final long appendStartPosition;
 
     public PBEventFileWriter(String pvName, Path path, ArchDBRTypes type, short year, boolean append)
             throws IOException {
         if (!append && Files.exists(path) && Files.size(path) > 0) {
             throw new IOException("Trying to write a header into a file that exists " + path.toAbsolutePath());
         }
+        this.path = path;
+        this.position = append && Files.exists(path) ? Files.size(path) : 0L;
+        this.appendStartPosition = this.position;
+        if (PBTimeIndex.isSupported(path)) {
+            this.timeIndex = new PBTimeIndex();
+            if (!append) {
+                // Any index here is for a file that has since been removed.
+                PBTimeIndex.deleteSidecar(path);
+            }
+        }
 
         StandardOpenOption[] options = append
                 ? new StandardOpenOption[] {
@@ -46,6 +70,7 @@ public class PBEventFileWriter implements EventFileWriter {
                     .toByteArray());
             this.os.write(headerBytes);
             this.os.write(LineEscaper.NEWLINE_CHAR);
+            this.position += headerBytes.length + 1;
         }
     }
 
@@ -56,12 +81,54 @@ public class PBEventFileWriter implements EventFileWriter {
     @Override
     public void append(Event event) throws IOException {
         ByteArray val = event.getRawForm();
+        if (timeIndex != null && indexEvent()) {
+            YearSecondTimestamp yts = TimeUtils.convertToYearSecondTimestamp(event.getEventTimeStamp());
+            timeIndex.add(yts.getSecondsintoyear(), yts.getNano(), position);
+        }
         this.os.write(val.data, val.off, val.len);
         this.os.write(LineEscaper.NEWLINE_CHAR);
+        this.position += val.len + 1;
+    }
+
+    /**
+     * When appending, we do not know where the last index entry in the file is.
+     * So, we skip the first interval to make sure we do not add entries more often than INDEX_INTERVAL_BYTES.
+     */
+    private boolean indexEvent() {
+        if (timeIndex.size() == 0 && appendStartPosition > 0) {
+            return position - appendStartPosition >= PBTimeIndex.INDEX_INTERVAL_BYTES;
+        }
+        return timeIndex.shouldIndex(position);
     }
 
     @Override
     public void close() throws IOException {
         this.os.close();
+        if (timeIndex != null && timeIndex.size() > 0) {
+            saveTimeIndex();
+        }
+    }
+
+    private void saveTimeIndex() {
+        if (appendStartPosition == 0) {
+            if (position >= PBTimeIndex.MIN_FILE_SIZE_FOR_INDEX) {
+                timeIndex.setIndexedUpTo(position);
+                timeIndex.save(path);
+            }
+            return;
+        }
+        // Add our entries to the existing index; any gaps are filled in on the background thread.
+        PBTimeIndex existing = PBTimeIndex.load(path);
+        if (existing == null) {
+            if (position >= PBTimeIndex.MIN_FILE_SIZE_FOR_INDEX) {
+                PBTimeIndex.scheduleBuild(path);
+            }
+            return;
+        }
+        existing.appendEntries(timeIndex, appendStartPosition, position);
+        existing.save(path);
+        if (position - existing.getIndexedUpTo() >= PBTimeIndex.INDEX_INTERVAL_BYTES) {
+            PBTimeIndex.scheduleBuild(path);
+        }
     }
 }
@@ -89,7 +89,13 @@ public class PBPlainFileHandler implements PlainFileHandler {
 
     @Override
     public void markForDeletion(Path path) {
-        // Nothing for PB files
+        // The PB file has been deleted; remove its time index.
+        PBTimeIndex.deleteSidecar(path);
+    }
+
+    @Override
+    public void deleteIndexes(Path path) {
+        PBTimeIndex.deleteSidecar(path);
     }
 
     @Override
@@ -228,6 +234,12 @@ public class PBPlainFileHandler implements PlainFileHandler {
         return backupFilesBeforeETL;
     }
 
+    @Override
+    public boolean supportsAppendJournal() {
+        // PB files are a header followed by events; truncating at an event boundary leaves a valid file.
+        return true;
+    }
+
     @Override
     public Map<URLKey, String> urlOptions() {
         return Map.of();
@@ -0,0 +1,421 @@
+package edu.stanford.slac.archiverappliance.plain.pb;
+
+import edu.stanford.slac.archiverappliance.PB.data.DBR2PBTypeMapping;
+import edu.stanford.slac.archiverappliance.PB.data.PartionedTime;
+import edu.stanford.slac.archiverappliance.PB.utils.LineByteStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.ByteArray;
+import org.epics.archiverappliance.common.YearSecondTimestamp;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sparse time index for a PB file; this is stored in a sidecar file next to the PB file.
+ * We record the time and the position of the first event in every <code>INDEX_INTERVAL_BYTES</code> of the file.
+ * Searches for a time can then be limited to the bytes between two index entries instead of the whole file.
+ * This matters for files on NAS where each probe of the binary search in <code>FileEventStreamSearch</code> is a network round trip.
+ * <p>
+ * The index is only a hint.
+ * <ol>
+ * <li>The writer maintains it as it appends events into new files.</li>
+ * <li>Appends that bypass the writer (ETL bulk appends, engine appends into existing files) leave the tail of the file unindexed.
+ * The index is extended from where it stops on a background thread.</li>
+ * <li>Readers validate the index against the PB file before using it (for example, the PB file may have been truncated or replaced).
+ * Readers never scan the PB file themselves; if the index is missing or stale, they ask for it to be built in the background
+ * and fall back to searching the whole file until it is.</li>
+ * </ol>
+ * The sidecar is only maintained on the default file system; we do not write into zip files and the like.
+ * If we cannot write the sidecar into a folder (for example, a read only mount), we do not try again for that folder.
+ */
+public class PBTimeIndex {
+    private static final Logger logger = LogManager.getLogger(PBTimeIndex.class.getName());
+    public static final String SIDECAR_EXTENSION = ".tidx";
+    public static boolean USE_TIME_INDEX = true;
+    public static int INDEX_INTERVAL_BYTES = 64 * 1024;
+    /**
+     * Searching small files is cheap; we do not bother with an index for these.
+     */
+    public static long MIN_FILE_SIZE_FOR_INDEX = 256 * 1024;
+    /**
+     * Builds requested while this many are waiting are dropped; the next search will ask again.
+     */
+    private static final int MAX_PENDING_BUILDS = 1024;
+
+    private static final int MAGIC = 0x50425449; // PBTI
+    private static final short VERSION = 1;
+
+    /**
+     * Building a sidecar scans the whole PB file; we do this on one background thread so that retrieval requests do not have to.
+     */
+    private static final ThreadPoolExecutor builder = newBuilder();
+
+    private static final Set<Path> pendingBuilds = ConcurrentHashMap.newKeySet();
+    /**
+     * Folders where we could not write a sidecar.
+     */
+    private static final Set<Path> unwritableFolders = ConcurrentHashMap.newKeySet();
+
+    private int size = 0;
+    private int[] secondsIntoYear = new int[16];
+    private int[] nanos = new int[16];
+    private long[] offsets = new long[16];
+    /**
+     * We have an entry for (roughly) every INDEX_INTERVAL_BYTES of the PB file before this position.
+     */
+    private long indexedUpTo = 0;
+
+    public static Path sidecarPath(Path pbFile) {
+        return pbFile.resolveSibling(pbFile.getFileName().toString() + SIDECAR_EXTENSION);
+    }
+
+    public static boolean isSupported(Path pbFile) {
+        return USE_TIME_INDEX && pbFile.getFileSystem() == FileSystems.getDefault();
+    }
+
+    private static ThreadPoolExecutor newBuilder() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(MAX_PENDING_BUILDS), r -> {
+                    Thread t = new Thread(r, "PBTimeIndexBuilder");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Get a valid index for a PB file for use in searches.
+     * This only reads the sidecar; if the sidecar is missing, stale or does not cover the tail of the PB file, we
+     * schedule a build in the background.
+     * @param pbFile The PB file
+     * @param fileInfo The header information for the PB file
+     * @return The index or null if we should search the whole file instead.
+     * An index that does not cover the tail of the file is still valid; the searches past its last entry are just wider.
+     */
+    public static PBTimeIndex forSearch(Path pbFile, PBFileInfo fileInfo) {
+        if (!isSupported(pbFile)) return null;
+        try {
+            long fileSize = Files.size(pbFile);
+            if (fileSize < MIN_FILE_SIZE_FOR_INDEX || fileInfo.getFirstEvent() == null) return null;
+            PBTimeIndex index = load(pbFile);
+            if (index != null
+                    && !index.isValidFor(
+                            pbFile,
+                            fileSize,
+                            fileInfo.getPositionOfFirstSample(),
+                            fileInfo.getType(),
+                            fileInfo.getDataYear())) {
+                logger.debug("Time index for " + pbFile.toAbsolutePath() + " is stale");
+                index = null;
+            }
+            if (index == null || fileSize - index.indexedUpTo >= INDEX_INTERVAL_BYTES) {
+                scheduleBuild(pbFile);
+            }
+            return index;
+        } catch (Exception ex) {
+            logger.warn("Cannot use the time index for " + pbFile.toAbsolutePath() + "; searching the whole file", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Build or extend the sidecar for a PB file on the background thread.
+     * We skip PB files that already have a build pending and the folders where we could not write a sidecar earlier.
+     * @param pbFile The PB file
+     */
+    public static void scheduleBuild(Path pbFile) {
+        if (!isSupported(pbFile)) return;
+        Path absolutePath = pbFile.toAbsolutePath();
+        if (unwritableFolders.contains(absolutePath.getParent()) || !pendingBuilds.add(absolutePath)) return;
+        try {
+            builder.execute(() -> {
+                try {
+                    build(absolutePath);
+                } finally {
+                    pendingBuilds.remove(absolutePath);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pendingBuilds.remove(absolutePath);
+            logger.debug("Too many time index builds pending; skipping " + absolutePath);
+        }
+    }
+
+    /**
+     * Build, rebuild or extend the sidecar for a PB file.
+     */
+    private static void build(Path pbFile) {
+        try {
+            if (!Files.isWritable(pbFile.getParent())) {
+                markUnwritable(pbFile);
+                return;
+            }
+            long fileSize = Files.size(pbFile);
+            if (fileSize < MIN_FILE_SIZE_FOR_INDEX) return;
+            PBFileInfo fileInfo = new PBFileInfo(pbFile, false);
+            if (fileInfo.getFirstEvent() == null) return;
+            ArchDBRTypes type = fileInfo.getType();
+            short year = fileInfo.getDataYear();
+            PBTimeIndex index = load(pbFile);
+            if (index != null && !index.isValidFor(pbFile, fileSize, fileInfo.getPositionOfFirstSample(), type, year)) {
+                logger.info("Time index for " + pbFile + " is stale; rebuilding it");
+                index = null;
+            }
+            if (index == null) {
+                index = new PBTimeIndex();
+                index.scan(pbFile, fileInfo.getPositionOfFirstSample(), fileSize, type, year);
+                index.save(pbFile);
+            } else if (fileSize - index.indexedUpTo >= INDEX_INTERVAL_BYTES) {
+                logger.debug("Extending time index for " + pbFile + " from " + index.indexedUpTo);
+                index.truncateTo(index.indexedUpTo);
+                index.scan(pbFile, index.indexedUpTo, fileSize, type, year);
+                index.save(pbFile);
+            }
+        } catch (NoSuchFileException ex) {
+            logger.debug("PB file " + pbFile + " went away before we could index it");
+        } catch (Exception ex) {
+            logger.warn("Exception building the time index for " + pbFile, ex);
+        }
+    }
+
+    private static void markUnwritable(Path pbFile) {
+        Path folder = pbFile.toAbsolutePath().getParent();
+        if (folder != null && unwritableFolders.add(folder)) {
+            logger.warn("Cannot write time indexes into " + folder + "; we will not try again for this folder");
+        }
+    }
+
+    /**
+     * Load the index from the sidecar; this does not validate the index against the PB file.
+     * @param pbFile The PB file
+     * @return The index or null if there is no sidecar or if it is unreadable.
+     */
+    static PBTimeIndex load(Path pbFile) {
+        Path sidecar = sidecarPath(pbFile);
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (dis.readInt() != MAGIC || dis.readShort() != VERSION) {
+                logger.warn("Unknown format for time index " + sidecar.toAbsolutePath());
+                return null;
+            }
+            PBTimeIndex index = new PBTimeIndex();
+            index.indexedUpTo = dis.readLong();
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                index.add(dis.readInt(), dis.readInt(), dis.readLong());
+            }
+            return index;
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException ex) {
+            logger.warn("Exception reading time index " + sidecar.toAbsolutePath(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Write the sidecar; we write to a temporary file and move it into place so that readers never see a partial index.
+     * Failures are logged and ignored; the index is only a hint. We do not try again for a folder once a write fails.
+     * @param pbFile The PB file
+     */
+    void save(Path pbFile) {
+        if (!isSupported(pbFile) || unwritableFolders.contains(pbFile.toAbsolutePath().getParent())) return;
+        Path sidecar = sidecarPath(pbFile);
+        Path tmp = sidecar.resolveSibling(sidecar.getFileName().toString() + ".tmp" + Thread.currentThread().threadId());
+        try {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeShort(VERSION);
+                dos.writeLong(indexedUpTo);
+                dos.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    dos.writeInt(secondsIntoYear[i]);
+                    dos.writeInt(nanos[i]);
+                    dos.writeLong(offsets[i]);
+                }
+            }
+            Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.warn("Exception writing time index " + sidecar.toAbsolutePath(), ex);
+            markUnwritable(pbFile);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // Best effort
+            }
+        }
+    }
+
+    /**
+     * Remove the sidecar for a PB file; used when the PB file is deleted or rewritten.
+     * @param pbFile The PB file
+     */
+    public static void deleteSidecar(Path pbFile) {
+        if (pbFile.getFileSystem() != FileSystems.getDefault()) return;
+        try {
+            Files.deleteIfExists(sidecarPath(pbFile));
+        } catch (IOException ex) {
+            logger.warn("Exception deleting time index for " + pbFile.toAbsolutePath(), ex);
+        }
+    }
+
+    /**
+     * Make sure the index describes this PB file.
+     * The first entry must be the first sample, the index cannot extend past the end of the file
+     * and the last entry must point to the start of an event with the same timestamp.
+     */
+    private boolean isValidFor(
+            Path pbFile, long fileSize, long positionOfFirstSample, ArchDBRTypes type, short year) throws Exception {
+        if (size == 0 || offsets[0] != positionOfFirstSample || indexedUpTo > fileSize) return false;
+        for (int i = 1; i < size; i++) {
+            if (offsets[i] <= offsets[i - 1] || compare(i, secondsIntoYear[i - 1], nanos[i - 1]) < 0) return false;
+        }
+        if (offsets[size - 1] >= fileSize) return false;
+        Constructor<? extends DBRTimeEvent> unmarshallingConstructor =
+                DBR2PBTypeMapping.getPBClassFor(type).getUnmarshallingFromByteArrayConstructor();
+        try (LineByteStream lis = new LineByteStream(pbFile, offsets[size - 1] - 1)) {
+            lis.seekToFirstNewLine();
+            if (lis.getCurrentPosition() != offsets[size - 1]) return false;
+            byte[] line = lis.readLine();
+            if (line == null || line.length == 0) return false;
+            YearSecondTimestamp ts = ((PartionedTime) unmarshallingConstructor.newInstance(year, new ByteArray(line)))
+                    .getYearSecondTimestamp();
+            return ts.getSecondsintoyear() == secondsIntoYear[size - 1] && ts.getNano() == nanos[size - 1];
+        }
+    }
+
+    /**
+     * Index the complete lines in the PB file between <code>from</code> (which must be the start of a line) and <code>to</code>.
+     */
+    private void scan(Path pbFile, long from, long to, ArchDBRTypes type, short year) throws Exception {
+        Constructor<? extends DBRTimeEvent> unmarshallingConstructor =
+                DBR2PBTypeMapping.getPBClassFor(type).getUnmarshallingFromByteArrayConstructor();
+        ByteArray line = new ByteArray(LineByteStream.MAX_LINE_SIZE);
+        try (LineByteStream lis = new LineByteStream(pbFile, from - 1, to)) {
+            lis.seekToFirstNewLine();
+            long lineStart = lis.getCurrentPosition();
+            lis.readLine(line);
+            while (!line.isEmpty()) {
+                if (shouldIndex(lineStart)) {
+                    YearSecondTimestamp ts = ((PartionedTime) unmarshallingConstructor.newInstance(year, line))
+                            .getYearSecondTimestamp();
+                    add(ts.getSecondsintoyear(), ts.getNano(), lineStart);
+                }
+                lineStart = lis.getCurrentPosition();
+                lis.readLine(line);
+            }
+            indexedUpTo = lineStart;
+        }
+    }
+
+    /**
+     * @param lineStart The position of the start of an event in the PB file.
+     * @return true if we should add an entry for the event.
+     */
+    boolean shouldIndex(long lineStart) {
+        return size == 0 || lineStart - offsets[size - 1] >= INDEX_INTERVAL_BYTES;
+    }
+
+    void add(int secondsIntoYear, int nanos, long offset) {
+        if (size == this.offsets.length) {
+            this.secondsIntoYear = Arrays.copyOf(this.secondsIntoYear, size * 2);
+            this.nanos = Arrays.copyOf(this.nanos, size * 2);
+            this.offsets = Arrays.copyOf(this.offsets, size * 2);
+        }
+        this.secondsIntoYear[size] = secondsIntoYear;
+        this.nanos[size] = nanos;
+        this.offsets[size] = offset;
+        size++;
+    }
+
+    /**
+     * Add the entries for events that were appended to the PB file between <code>from</code> and <code>to</code>.
+     * If we had indexed the file up to <code>from</code>, the index now covers the file up to <code>to</code>.
+     * Otherwise, there is a gap in the index that readers will fill in.
+     */
+    void appendEntries(PBTimeIndex appended, long from, long to) {
+        // Anything we have at or after from describes bytes that are no longer in the file.
+        truncateTo(from);
+        indexedUpTo = Math.min(indexedUpTo, from);
+        for (int i = 0; i < appended.size; i++) {
+            if (size == 0 || appended.offsets[i] > offsets[size - 1]) {
+                add(appended.secondsIntoYear[i], appended.nanos[i], appended.offsets[i]);
+            }
+        }
+        if (indexedUpTo == from) {
+            indexedUpTo = to;
+        }
+    }
+
+    void setIndexedUpTo(long indexedUpTo) {
+        this.indexedUpTo = indexedUpTo;
+    }
+
+    long getIndexedUpTo() {
+        return indexedUpTo;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Drop the entries at or after the specified position.
+     */
+    private void truncateTo(long position) {
+        while (size > 0 && offsets[size - 1] >= position) {
+            size--;
+        }
+    }
+
+    private int compare(int i, int secs, int nanosToCompare) {
+        int cmp = Integer.compare(secondsIntoYear[i], secs);
+        return cmp != 0 ? cmp : Integer.compare(nanos[i], nanosToCompare);
+    }
+
+    /**
+     * Determine the part of the PB file that we need to search to find the time <code>yts</code>.
+     * The event before (or at) <code>yts</code> starts at or after the last entry at or before <code>yts</code>
+     * and the event after <code>yts</code> starts at or before the first entry after <code>yts</code>.
+     * @param yts The time we are searching for
+     * @param defaultStart The search start position to use if <code>yts</code> is before the first entry
+     * @param defaultEnd The search end position to use if <code>yts</code> is after the last entry
+     * @return The start and end positions for the search.
+     */
+    public long[] searchWindow(YearSecondTimestamp yts, long defaultStart, long defaultEnd) {
+        int secs = yts.getSecondsintoyear();
+        int ns = yts.getNano();
+        // Find the first entry after yts
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, secs, ns) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        long start = lo > 0 ? Math.max(defaultStart, offsets[lo - 1] - 1) : defaultStart;
+        long end = lo < size ? Math.min(defaultEnd, offsets[lo]) : defaultEnd;
+        return new long[] {start, end};
+    }
+}
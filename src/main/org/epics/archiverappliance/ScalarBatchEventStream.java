@@ -0,0 +1,18 @@
+package org.epics.archiverappliance;
+
+import org.epics.archiverappliance.data.ScalarEventBatch;
+
+import java.util.Iterator;
+
+/**
+ * An EventStream that can also hand out its events in column wise batches.
+ * Consumers that only need the timestamp, value and alarm information can use the batches to avoid creating an object per event.
+ * As with the event iterator, you can only get one of these iterators out of a stream and you should not use both.
+ */
+public interface ScalarBatchEventStream extends EventStream {
+    /**
+     * Each call to next may reuse the batch returned by the previous call.
+     * @return An iterator over the batches or null if this stream cannot provide batches; use the event iterator in this case.
+     */
+    Iterator<ScalarEventBatch> batchIterator();
+}
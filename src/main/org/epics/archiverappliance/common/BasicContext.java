@@ -63,6 +63,18 @@ public class BasicContext implements Closeable {
 	}
 	
 
+	/**
+	 * Units of work that run concurrently on behalf of this one (for example, the UnitOfRetrieval's for one PV) each need a context of their own.
+	 * The child has the same expected DBR type and PV name and is closed when this context is closed.
+	 * Call this from the thread that owns this context.
+	 * @return child BasicContext
+	 */
+	public BasicContext newChildContext() {
+		BasicContext child = new BasicContext(retrievalExpectedDBRType, pvNameFromRequest);
+		resources.add(child);
+		return child;
+	}
+
 	@Override
 	public void close() throws IOException {
 		try { paths.close(); } catch (Throwable t) {}
@@ -0,0 +1,79 @@
+package org.epics.archiverappliance.common.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of latencies (in seconds) over a fixed set of log spaced buckets.
+ * Observations are lock free; each observation is a binary search over the bucket bounds and an increment.
+ * The buckets are fixed at creation so that the exported series are stable from scrape to scrape.
+ */
+public final class Histogram {
+    /**
+     * 1, 2.5 and 5 per decade from a millisecond to five minutes.
+     * This covers everything from appending a few samples to a ramdisk to a large retrieval request.
+     */
+    public static final double[] LATENCY_BUCKETS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 25.0, 50.0, 100.0, 300.0
+    };
+
+    private final double[] upperBounds;
+    // One more than the upper bounds; the last one is for the +Inf bucket.
+    private final LongAdder[] bucketCounts;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(double[] upperBounds) {
+        this.upperBounds = upperBounds;
+        this.bucketCounts = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param seconds The observed value in seconds
+     */
+    public void observe(double seconds) {
+        int pos = Arrays.binarySearch(upperBounds, seconds);
+        // The buckets are inclusive of their upper bounds.
+        int bucket = pos >= 0 ? pos : -pos - 1;
+        bucketCounts[bucket].increment();
+        sum.add(seconds);
+    }
+
+    public void observeMillis(long millis) {
+        observe(millis / 1000.0);
+    }
+
+    public void observeNanos(long nanos) {
+        observe(nanos / 1.0e9);
+    }
+
+    double[] getUpperBounds() {
+        return upperBounds;
+    }
+
+    /**
+     * @return The count in each bucket (not cumulative); the last entry is the +Inf bucket.
+     */
+    long[] getBucketCounts() {
+        long[] counts = new long[bucketCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucketCounts[i].sum();
+        }
+        return counts;
+    }
+
+    double getSum() {
+        return sum.sum();
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucketCount : bucketCounts) {
+            count += bucketCount.sum();
+        }
+        return count;
+    }
+}
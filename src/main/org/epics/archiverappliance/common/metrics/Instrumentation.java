@@ -0,0 +1,234 @@
+package org.epics.archiverappliance.common.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The registry for the low overhead instrumentation in each web app; this is served in the OpenMetrics text format
+ * (see {@link org.epics.archiverappliance.common.reports.OpenMetricsReport}) for scraping by Prometheus and the like.
+ * <p>
+ * Counters and histograms are created once (typically into a static final) and updated in place from the hot paths.
+ * Gauges are computed when scraped; so they should only use state that is cheap to get to.
+ * In particular, gauges should not iterate over all the PVs/channels in the appliance.
+ * <p>
+ * Metric names follow the Prometheus conventions; all names start with <code>archappl_</code>.
+ * Counters are exported with a <code>_total</code> suffix.
+ * Asking for a metric that already exists returns the existing one; gauges are replaced.
+ */
+public final class Instrumentation {
+    private static final char LABEL_SEPARATOR = '\u0000';
+    private static final Map<String, Family<?>> families = new ConcurrentSkipListMap<>();
+
+    private Instrumentation() {}
+
+    private enum Type {
+        counter,
+        gauge,
+        histogram
+    }
+
+    /**
+     * All the series with the same name; one per combination of label values.
+     * @param <T> Counter or Histogram
+     */
+    public static class Family<T> {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final String[] labelNames;
+        private final Supplier<T> factory;
+        private final ConcurrentHashMap<String, T> children = new ConcurrentHashMap<>();
+
+        private Family(String name, String help, Type type, String[] labelNames, Supplier<T> factory) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+            this.factory = factory;
+        }
+
+        /**
+         * Get the series for these label values; this is created on first use.
+         * Keep the label values to a small set (store names, mime types etc); never use PV names as label values.
+         * @param labelValues One for each label name in the order the label names were specified.
+         * @return The series
+         */
+        public T labels(String... labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(
+                        "Metric " + name + " expects " + labelNames.length + " label values");
+            }
+            String key = labelValues.length == 1 ? labelValues[0] : String.join("" + LABEL_SEPARATOR, labelValues);
+            T child = children.get(key);
+            if (child == null) {
+                child = children.computeIfAbsent(key, k -> factory.get());
+            }
+            return child;
+        }
+    }
+
+    /**
+     * A gauge (or a set of gauges distinguished by one label) that is computed when scraped.
+     */
+    private static final class GaugeFamily extends Family<Void> {
+        private final Supplier<Map<String, ? extends Number>> values;
+
+        private GaugeFamily(String name, String help, String labelName, Supplier<Map<String, ? extends Number>> values) {
+            super(name, help, Type.gauge, labelName == null ? new String[0] : new String[] {labelName}, () -> null);
+            this.values = values;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Family<T> family(String name, String help, Type type, String[] labelNames, Supplier<T> factory) {
+        Family<?> family = families.computeIfAbsent(name, k -> new Family<>(name, help, type, labelNames, factory));
+        if (family.type != type || family.labelNames.length != labelNames.length) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a different metric");
+        }
+        return (Family<T>) family;
+    }
+
+    /**
+     * @param name The name of the counter without the <code>_total</code> suffix.
+     * @param help A one line description.
+     * @return The counter
+     */
+    public static Counter counter(String name, String help) {
+        return counterFamily(name, help).labels();
+    }
+
+    public static Family<Counter> counterFamily(String name, String help, String... labelNames) {
+        return family(name, help, Type.counter, labelNames, Counter::new);
+    }
+
+    /**
+     * @param name The name of the histogram; by convention, this ends with <code>_seconds</code>.
+     * @param help A one line description.
+     * @return A latency histogram with the {@link Histogram#LATENCY_BUCKETS}
+     */
+    public static Histogram histogram(String name, String help) {
+        return histogramFamily(name, help).labels();
+    }
+
+    public static Family<Histogram> histogramFamily(String name, String help, String... labelNames) {
+        return family(name, help, Type.histogram, labelNames, () -> new Histogram(Histogram.LATENCY_BUCKETS));
+    }
+
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        families.put(name, new GaugeFamily(name, help, null, () -> Map.of("", value.getAsDouble())));
+    }
+
+    /**
+     * @param name The name of the gauge
+     * @param help A one line description.
+     * @param labelName The label that distinguishes the gauges; for example, the store name.
+     * @param values Computes the value for each label value when scraped.
+     */
+    public static void gauges(
+            String name, String help, String labelName, Supplier<Map<String, ? extends Number>> values) {
+        families.put(name, new GaugeFamily(name, help, labelName, values));
+    }
+
+    /**
+     * @return All the metrics in the OpenMetrics text format; this includes the terminating <code># EOF</code>.
+     */
+    public static String toOpenMetrics() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        for (Family<?> family : families.values()) {
+            writeFamily(out, family);
+        }
+        out.append("# EOF\n");
+        return out.toString();
+    }
+
+    private static void writeFamily(StringBuilder out, Family<?> family) {
+        out.append("# TYPE ").append(family.name).append(' ').append(family.type.name()).append('\n');
+        out.append("# HELP ").append(family.name).append(' ');
+        escape(out, family.help, false);
+        out.append('\n');
+        if (family instanceof GaugeFamily gaugeFamily) {
+            Map<String, ? extends Number> values;
+            try {
+                values = gaugeFamily.values.get();
+            } catch (Exception ex) {
+                // A gauge that cannot be computed right now (for example, during startup) is simply left out.
+                return;
+            }
+            for (Map.Entry<String, ? extends Number> entry : values.entrySet()) {
+                writeSample(out, family.name, family.labelNames, new String[] {entry.getKey()}, null, null);
+                out.append(' ').append(formatValue(entry.getValue().doubleValue())).append('\n');
+            }
+            return;
+        }
+        for (Map.Entry<String, ?> child : family.children.entrySet()) {
+            String[] labelValues = family.labelNames.length == 1
+                    ? new String[] {child.getKey()}
+                    : child.getKey().split("" + LABEL_SEPARATOR, -1);
+            if (child.getValue() instanceof Counter counter) {
+                writeSample(out, family.name + "_total", family.labelNames, labelValues, null, null);
+                out.append(' ').append(counter.get()).append('\n');
+            } else if (child.getValue() instanceof Histogram histogram) {
+                double[] upperBounds = histogram.getUpperBounds();
+                long[] bucketCounts = histogram.getBucketCounts();
+                long cumulative = 0;
+                for (int i = 0; i < bucketCounts.length; i++) {
+                    cumulative += bucketCounts[i];
+                    String le = i < upperBounds.length ? Double.toString(upperBounds[i]) : "+Inf";
+                    writeSample(out, family.name + "_bucket", family.labelNames, labelValues, "le", le);
+                    out.append(' ').append(cumulative).append('\n');
+                }
+                writeSample(out, family.name + "_count", family.labelNames, labelValues, null, null);
+                out.append(' ').append(cumulative).append('\n');
+                writeSample(out, family.name + "_sum", family.labelNames, labelValues, null, null);
+                out.append(' ').append(formatValue(histogram.getSum())).append('\n');
+            }
+        }
+    }
+
+    private static void writeSample(
+            StringBuilder out,
+            String sampleName,
+            String[] labelNames,
+            String[] labelValues,
+            String extraLabelName,
+            String extraLabelValue) {
+        out.append(sampleName);
+        if (labelNames.length == 0 && extraLabelName == null) return;
+        out.append('{');
+        boolean first = true;
+        for (int i = 0; i < labelNames.length; i++) {
+            if (!first) out.append(',');
+            first = false;
+            out.append(labelNames[i]).append("=\"");
+            escape(out, labelValues[i], true);
+            out.append('"');
+        }
+        if (extraLabelName != null) {
+            if (!first) out.append(',');
+            out.append(extraLabelName).append("=\"").append(extraLabelValue).append('"');
+        }
+        out.append('}');
+    }
+
+    private static void escape(StringBuilder out, String value, boolean escapeQuotes) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '"' -> out.append(escapeQuotes ? "\\\"" : "\"");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) return "NaN";
+        if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,241 @@
+package org.epics.archiverappliance.common.remotable;
+
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.ScalarBatchEventStream;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.AlarmInfo;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarEventBatch;
+import org.epics.archiverappliance.data.ScalarValue;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An in memory event stream for the numeric scalar types that holds the events column wise in primitive arrays.
+ * An {@link ArrayListEventStream} holds an object (and its sample value, timestamp etc.) per event which is 100+ bytes
+ * per event; this holds 24 bytes per event and keeps the values next to each other.
+ * <p>
+ * The events handed out by {@link #get(int)} and the iterator are views created on demand; changing them does not
+ * change this stream. Events with field values are rare; we keep a copy of these events as is.
+ * Use {@link #newEventList(int, RemotableEventStreamDesc)} to get one of these for the scalar types and an
+ * {@link ArrayListEventStream} for the rest.
+ */
+public class ScalarColumnarEventStream extends AbstractList<Event> implements ScalarBatchEventStream, RemotableOverRaw {
+    /** The batches handed out by {@link #batchIterator()} hold at most these many events. */
+    private static final int BATCH_SIZE = 1024;
+
+    private final RemotableEventStreamDesc desc;
+    private final ArchDBRTypes dbrType;
+    private int size = 0;
+    private long[] epochSeconds;
+    private int[] nanos;
+    private double[] values;
+    private short[] severities;
+    private short[] statuses;
+    /** Copies of the events with field values keyed by their index. */
+    private final HashMap<Integer, Event> eventsWithFieldValues = new HashMap<>();
+
+    public ScalarColumnarEventStream(int initialSize, RemotableEventStreamDesc desc) {
+        this.desc = desc;
+        this.dbrType = desc.getArchDBRType();
+        int capacity = Math.max(initialSize, 16);
+        this.epochSeconds = new long[capacity];
+        this.nanos = new int[capacity];
+        this.values = new double[capacity];
+        this.severities = new short[capacity];
+        this.statuses = new short[capacity];
+    }
+
+    /**
+     * @param dbrType The type of the PV
+     * @return Can events of this type be held in a ScalarColumnarEventStream?
+     */
+    public static boolean isSupported(ArchDBRTypes dbrType) {
+        if (dbrType == null) return false;
+        return switch (dbrType) {
+            case DBR_SCALAR_BYTE,
+                    DBR_SCALAR_SHORT,
+                    DBR_SCALAR_ENUM,
+                    DBR_SCALAR_INT,
+                    DBR_SCALAR_FLOAT,
+                    DBR_SCALAR_DOUBLE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * An in memory list of events for collecting the events of a PV; this is a ScalarColumnarEventStream for the
+     * numeric scalar types and an ArrayListEventStream otherwise.
+     * @param initialSize The expected number of events
+     * @param desc The description of the stream; the type of the PV comes from here.
+     * @return A list of events that is also an EventStream
+     */
+    public static List<Event> newEventList(int initialSize, RemotableEventStreamDesc desc) {
+        if (isSupported(desc.getArchDBRType())) {
+            return new ScalarColumnarEventStream(initialSize, desc);
+        }
+        return new ArrayListEventStream(initialSize, desc);
+    }
+
+    @Override
+    public boolean add(Event event) {
+        if (size == values.length) {
+            grow();
+        }
+        Instant ts = event.getEventTimeStamp();
+        epochSeconds[size] = ts.getEpochSecond();
+        nanos[size] = ts.getNano();
+        values[size] = event.getSampleValue().getValue().doubleValue();
+        if (event instanceof AlarmInfo alarmInfo) {
+            severities[size] = (short) alarmInfo.getSeverity();
+            statuses[size] = (short) alarmInfo.getStatus();
+        } else {
+            severities[size] = 0;
+            statuses[size] = 0;
+        }
+        if (event instanceof DBRTimeEvent dbrTimeEvent && dbrTimeEvent.hasFieldValues()) {
+            eventsWithFieldValues.put(size, event.makeClone());
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    private void grow() {
+        int capacity = values.length + (values.length >> 1);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        nanos = Arrays.copyOf(nanos, capacity);
+        values = Arrays.copyOf(values, capacity);
+        severities = Arrays.copyOf(severities, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+    }
+
+    @Override
+    public Event get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size);
+        }
+        Event withFieldValues = eventsWithFieldValues.get(index);
+        if (withFieldValues != null) return withFieldValues;
+        return new POJOEvent(
+                dbrType,
+                Instant.ofEpochSecond(epochSeconds[index], nanos[index]),
+                sampleValue(values[index]),
+                statuses[index],
+                severities[index]);
+    }
+
+    private ScalarValue<?> sampleValue(double value) {
+        return switch (dbrType) {
+            case DBR_SCALAR_BYTE -> new ScalarValue<Byte>((byte) value);
+            case DBR_SCALAR_SHORT, DBR_SCALAR_ENUM -> new ScalarValue<Short>((short) value);
+            case DBR_SCALAR_INT -> new ScalarValue<Integer>((int) value);
+            case DBR_SCALAR_FLOAT -> new ScalarValue<Float>((float) value);
+            default -> new ScalarValue<Double>(value);
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        eventsWithFieldValues.clear();
+        modCount++;
+    }
+
+    public long getEpochSeconds(int index) {
+        return epochSeconds[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+        return new Iterator<Event>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Event next() {
+                if (next >= size) throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * The events in batches; we start a new batch on a change in years as the events in a batch are from the same year.
+     */
+    @Override
+    public Iterator<ScalarEventBatch> batchIterator() {
+        return new Iterator<ScalarEventBatch>() {
+            private int next = 0;
+            private ScalarEventBatch batch;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public ScalarEventBatch next() {
+                if (next >= size) throw new NoSuchElementException();
+                short year = TimeUtils.computeYearForEpochSeconds(epochSeconds[next]);
+                if (batch == null || batch.getYear() != year) {
+                    batch = new ScalarEventBatch(dbrType, year, BATCH_SIZE);
+                } else {
+                    batch.clear();
+                }
+                long startOfYear = TimeUtils.getStartOfYearInSeconds(year);
+                long startOfNextYear = TimeUtils.getStartOfYearInSeconds((short) (year + 1));
+                while (next < size && !batch.isFull() && epochSeconds[next] < startOfNextYear) {
+                    Event withFieldValues = eventsWithFieldValues.get(next);
+                    Map<String, String> fieldValues =
+                            withFieldValues != null ? ((DBRTimeEvent) withFieldValues).getFields() : null;
+                    batch.add(
+                            (int) (epochSeconds[next] - startOfYear),
+                            nanos[next],
+                            values[next],
+                            severities[next],
+                            statuses[next],
+                            fieldValues);
+                    next++;
+                }
+                return batch;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // Nothing to do...
+    }
+
+    @Override
+    public RemotableEventStreamDesc getDescription() {
+        return desc;
+    }
+
+    public short getYear() {
+        return desc.getYear();
+    }
+}
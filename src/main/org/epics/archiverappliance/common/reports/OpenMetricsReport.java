@@ -0,0 +1,28 @@
+package org.epics.archiverappliance.common.reports;
+
+import org.epics.archiverappliance.common.BPLAction;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
+import org.epics.archiverappliance.config.ConfigService;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serve this web app's {@link Instrumentation} in the OpenMetrics text format.
+ * Each war has its own; point the scraper at the <code>/metrics</code> BPL in each of the mgmt, engine, etl and retrieval wars.
+ * Unlike the JSON reports, this does not fan out to the other appliances or wars.
+ */
+public class OpenMetricsReport implements BPLAction {
+    public static final String OPENMETRICS_CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    @Override
+    public void execute(HttpServletRequest req, HttpServletResponse resp, ConfigService configService)
+            throws IOException {
+        resp.setContentType(OPENMETRICS_CONTENT_TYPE);
+        try (PrintWriter out = resp.getWriter()) {
+            out.print(Instrumentation.toOpenMetrics());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.epics.archiverappliance.config;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+import org.epics.archiverappliance.config.pubsub.PubSubEvent;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Compact encodings for the objects that we share in the cluster.
+ * These objects are read on every typeinfo lookup, pubsub event etc.; by default, Hazelcast uses Java serialization
+ * for these which writes class descriptors and uses reflection on each read.
+ * We use custom serializers rather than <code>IdentifiedDataSerializable</code> as the methods that interface adds
+ * would show up as properties in the JSON representation of these objects.
+ * <p>
+ * The same serializers have to be registered in the config of the members and the clients;
+ * so, all the webapps in the cluster need to be upgraded together.
+ */
+public class ClusterSerializers {
+    public static final int PV_TYPE_INFO = 1001;
+    public static final int APPLIANCE_INFO = 1002;
+    public static final int PUB_SUB_EVENT = 1003;
+
+    public static void register(SerializationConfig serializationConfig) {
+        serializationConfig.addSerializerConfig(
+                new SerializerConfig().setTypeClass(PVTypeInfo.class).setImplementation(new PVTypeInfoSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+                .setTypeClass(ApplianceInfo.class)
+                .setImplementation(new ApplianceInfoSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+                .setTypeClass(PubSubEvent.class)
+                .setImplementation(new PubSubEventSerializer()));
+    }
+
+    public static class PVTypeInfoSerializer implements StreamSerializer<PVTypeInfo> {
+        @Override
+        public int getTypeId() {
+            return PV_TYPE_INFO;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, PVTypeInfo typeInfo) throws IOException {
+            typeInfo.writeData(out);
+        }
+
+        @Override
+        public PVTypeInfo read(ObjectDataInput in) throws IOException {
+            PVTypeInfo typeInfo = new PVTypeInfo();
+            typeInfo.readData(in);
+            return typeInfo;
+        }
+    }
+
+    public static class ApplianceInfoSerializer implements StreamSerializer<ApplianceInfo> {
+        @Override
+        public int getTypeId() {
+            return APPLIANCE_INFO;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, ApplianceInfo applianceInfo) throws IOException {
+            out.writeString(applianceInfo.getIdentity());
+            out.writeString(applianceInfo.getMgmtURL());
+            out.writeString(applianceInfo.getEngineURL());
+            out.writeString(applianceInfo.getRetrievalURL());
+            out.writeString(applianceInfo.getEtlURL());
+            out.writeString(applianceInfo.getClusterInetPort());
+            out.writeString(applianceInfo.getDataRetrievalURL());
+        }
+
+        @Override
+        public ApplianceInfo read(ObjectDataInput in) throws IOException {
+            return new ApplianceInfo(
+                    in.readString(),
+                    in.readString(),
+                    in.readString(),
+                    in.readString(),
+                    in.readString(),
+                    in.readString(),
+                    in.readString());
+        }
+    }
+
+    public static class PubSubEventSerializer implements StreamSerializer<PubSubEvent> {
+        @Override
+        public int getTypeId() {
+            return PUB_SUB_EVENT;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, PubSubEvent pubSubEvent) throws IOException {
+            out.writeString(pubSubEvent.getType());
+            out.writeString(pubSubEvent.getDestination());
+            out.writeString(pubSubEvent.getPvName());
+            out.writeString(pubSubEvent.getSource());
+            out.writeString(pubSubEvent.getEventData());
+        }
+
+        @Override
+        public PubSubEvent read(ObjectDataInput in) throws IOException {
+            PubSubEvent pubSubEvent = new PubSubEvent(in.readString(), in.readString(), in.readString());
+            pubSubEvent.setSource(in.readString());
+            pubSubEvent.setEventData(in.readString());
+            return pubSubEvent;
+        }
+    }
+
+    static void writeInstant(ObjectDataOutput out, Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    static Instant readInstant(ObjectDataInput in) throws IOException {
+        if (!in.readBoolean()) return null;
+        long epochSeconds = in.readLong();
+        return Instant.ofEpochSecond(epochSeconds, in.readInt());
+    }
+
+    static <T extends Enum<T>> void writeEnum(ObjectDataOutput out, T value) throws IOException {
+        out.writeString(value == null ? null : value.name());
+    }
+
+    static <T extends Enum<T>> T readEnum(ObjectDataInput in, Class<T> enumClass) throws IOException {
+        String name = in.readString();
+        return name == null ? null : Enum.valueOf(enumClass, name);
+    }
+}
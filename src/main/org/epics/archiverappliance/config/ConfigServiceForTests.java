@@ -98,6 +98,7 @@ public class ConfigServiceForTests extends DefaultConfigService {
             config.setClusterName("archappl-tests");
             config.setProperty("hazelcast.phone.home.enabled", "false");
             config.getMetricsConfig().setEnabled(false);
+            ClusterSerializers.register(config.getSerializationConfig());
             var join = config.getNetworkConfig().getJoin();
             join.getAutoDetectionConfig().setEnabled(false);
             join.getMulticastConfig().setEnabled(false);
@@ -310,6 +311,7 @@ public class ConfigServiceForTests extends DefaultConfigService {
                     || !typeInfo.getApplianceIdentity().equals(applianceInfo.getIdentity())) {
                 typeInfo.setApplianceIdentity(applianceInfo.getIdentity());
                 typeInfos.put(pvName, typeInfo);
+                invalidateCachedTypeInfo(pvName);
             }
         }
         super.registerPVToAppliance(pvName, applianceInfo, registrationType);
@@ -58,6 +58,7 @@ import org.epics.archiverappliance.mgmt.MgmtRuntimeState;
 import org.epics.archiverappliance.mgmt.NonMgmtPostStartup;
 import org.epics.archiverappliance.mgmt.bpl.cahdlers.NamesHandler;
 import org.epics.archiverappliance.mgmt.policy.ExecutePolicy;
+import org.epics.archiverappliance.mgmt.policy.ExecutePolicyPool;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig.SamplingMethod;
 import org.epics.archiverappliance.retrieval.RetrievalState;
@@ -104,7 +105,6 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import jakarta.servlet.ServletContext;
 
@@ -139,6 +139,7 @@ public class DefaultConfigService implements ConfigService {
     protected Map<String, ApplianceInfo> appliances = null;
     // Persisted state begins here.
     protected IMap<String, PVTypeInfo> typeInfos = null;
+    private final PVTypeInfoNearCache typeInfoNearCache = new PVTypeInfoNearCache();
     protected IMap<String, UserSpecifiedSamplingParams> archivePVRequests = null;
     protected IMap<String, String> channelArchiverDataServers = null;
     protected IMap<String, String> aliasNamesToRealNames = null;
@@ -147,9 +148,8 @@ public class DefaultConfigService implements ConfigService {
     // The following two maintain a couple of reverse indices for performance optimization
     // When we make changes to the typeInfo <-> appliance identity mapping, please make sure to keep these upto date
     protected IMap<String, ApplianceInfo> pv2appliancemapping = null;
-    // Maintain a TRIE index for the pvNames in this appliance.
-    protected ConcurrentHashMap<String, ConcurrentSkipListSet<String>> parts2PVNamesForThisAppliance =
-            new ConcurrentHashMap<String, ConcurrentSkipListSet<String>>();
+    // Maintain a trigram index for the pvNames (and aliases) in this appliance for regex searches.
+    protected final PVNameIndex pvNamesForThisAppliance = new PVNameIndex();
 
     // These metrics are not persisted but derived from the typeInfos map.
     // We maintain it here for performance reasons.
@@ -189,16 +189,16 @@ public class DefaultConfigService implements ConfigService {
     protected ScheduledExecutorService startupExecutor = null;
     protected ProcessMetrics processMetrics = new ProcessMetrics();
     private final HashSet<String> runTimeFields = new HashSet<String>();
-    // Use a Guava cache to store one and only one ExecutePolicy object that expires after some inactivity.
+    // Use a Guava cache to store one and only one pool of ExecutePolicy interpreters that expires after some inactivity.
     // The side effect is that it may take this many minutes to update the policy that is cached.
-    private final LoadingCache<String, ExecutePolicy> theExecutionPolicy = CacheBuilder.newBuilder()
+    private final LoadingCache<String, ExecutePolicyPool> theExecutionPolicy = CacheBuilder.newBuilder()
             .expireAfterWrite(1, TimeUnit.MINUTES)
-            .removalListener((RemovalListener<String, ExecutePolicy>)
+            .removalListener((RemovalListener<String, ExecutePolicyPool>)
                     arg -> arg.getValue().close())
-            .build(new CacheLoader<String, ExecutePolicy>() {
-                public ExecutePolicy load(String key) throws IOException {
+            .build(new CacheLoader<String, ExecutePolicyPool>() {
+                public ExecutePolicyPool load(String key) throws IOException {
                     logger.info("Updating the cached execute policy");
-                    return new ExecutePolicy(DefaultConfigService.this);
+                    return new ExecutePolicyPool(DefaultConfigService.this);
                 }
             });
 
@@ -477,6 +477,7 @@ public class DefaultConfigService implements ConfigService {
             }
 
             config.setInstanceName(myIdentity);
+            ClusterSerializers.register(config.getSerializationConfig());
 
             if (!hzThreadCounts.isEmpty()) {
                 logger.info("Reducing the generic clustering thread counts.");
@@ -552,6 +553,7 @@ public class DefaultConfigService implements ConfigService {
                 clientConfig.setClusterName(ARCHAPPL_NAME);
                 clientConfig.setInstanceName(myIdentity + "_" + this.warFile);
                 clientConfig.setProperty("hazelcast.logging.type", "log4j2");
+                ClusterSerializers.register(clientConfig.getSerializationConfig());
 
                 // Non mgmt client can only connect to their MGMT webapp.
                 String[] myAddrParts = myApplianceInfo.getClusterInetPort().split(":");
@@ -602,6 +604,9 @@ public class DefaultConfigService implements ConfigService {
         pv2ChannelArchiverDataServer = hzinstance.getMap("pv2ChannelArchiverDataServer");
         pubSub = hzinstance.getTopic("pubSub");
 
+        // We could miss typeinfo change events while we are disconnected from (or merging back into) the cluster.
+        hzinstance.getLifecycleService().addLifecycleListener(lifecycleEvent -> typeInfoNearCache.clear());
+
         final HazelcastInstance shutdownHzInstance = hzinstance;
         shutdownHooks.add(0, () -> {
             logger.debug(() -> "Shutting down clustering instance in webapp " + warFile.toString());
@@ -758,6 +763,7 @@ public class DefaultConfigService implements ConfigService {
                 .addEntryListener(
                         (EntryAddedListener<Object, Object>) entryEvent -> {
                             logger.debug(() -> "Received entryAdded for pvTypeInfo");
+                            typeInfoNearCache.invalidate((String) entryEvent.getKey());
                             PVTypeInfo typeInfo = (PVTypeInfo) entryEvent.getValue();
                             String pvName = typeInfo.getPvName();
                             eventBus.post(new PVTypeInfoEvent(pvName, typeInfo, ChangeType.TYPEINFO_ADDED));
@@ -780,6 +786,7 @@ public class DefaultConfigService implements ConfigService {
                 .getMap(TYPEINFO)
                 .addEntryListener(
                         (EntryRemovedListener<Object, Object>) entryEvent -> {
+                            typeInfoNearCache.invalidate((String) entryEvent.getKey());
                             PVTypeInfo typeInfo = (PVTypeInfo) entryEvent.getOldValue();
                             String pvName = typeInfo.getPvName();
                             logger.info("Received entryRemoved for pvTypeInfo " + pvName);
@@ -803,6 +810,7 @@ public class DefaultConfigService implements ConfigService {
                 .getMap(TYPEINFO)
                 .addEntryListener(
                         (EntryUpdatedListener<Object, Object>) entryEvent -> {
+                            typeInfoNearCache.invalidate((String) entryEvent.getKey());
                             PVTypeInfo typeInfo = (PVTypeInfo) entryEvent.getValue();
                             PVTypeInfo oldTypeInfo = (PVTypeInfo) entryEvent.getOldValue();
                             String pvName = typeInfo.getPvName();
@@ -888,18 +896,9 @@ public class DefaultConfigService implements ConfigService {
         String pvName = typeInfo.getPvName();
         if (typeInfo.getApplianceIdentity().equals(myApplianceInfo.getIdentity())) {
             if (event.changeType() == ChangeType.TYPEINFO_DELETED) {
-                String[] parts = this.pvName2KeyConverter.breakIntoParts(pvName);
-                for (String part : parts) {
-                    parts2PVNamesForThisAppliance.get(part).remove(pvName);
-                }
+                pvNamesForThisAppliance.remove(pvName);
             } else {
-                String[] parts = this.pvName2KeyConverter.breakIntoParts(pvName);
-                for (String part : parts) {
-                    if (!parts2PVNamesForThisAppliance.containsKey(part)) {
-                        parts2PVNamesForThisAppliance.put(part, new ConcurrentSkipListSet<String>());
-                    }
-                    parts2PVNamesForThisAppliance.get(part).add(pvName);
-                }
+                pvNamesForThisAppliance.add(pvName);
                 applianceAggregateInfo.addInfoForPV(pvName, typeInfo, this);
             }
         }
@@ -1186,60 +1185,7 @@ public class DefaultConfigService implements ConfigService {
     @Override
     public Set<String> getPVsForApplianceMatchingRegex(String nameToMatch) {
         logger.debug(() -> "Finding matching names for " + nameToMatch);
-        LinkedList<String> fixedStringParts = new LinkedList<String>();
-        String[] parts = this.pvName2KeyConverter.breakIntoParts(nameToMatch);
-        Pattern fixedStringParttern = Pattern.compile("[a-zA-Z_0-9-]+");
-        for (String part : parts) {
-            if (fixedStringParttern.matcher(part).matches()) {
-                logger.debug(() -> "Fixed string part " + part);
-                fixedStringParts.add(part);
-            } else {
-                logger.debug(() -> "Regex string part " + part);
-            }
-        }
-
-        if (!fixedStringParts.isEmpty()) {
-            HashSet<String> ret = new HashSet<String>();
-            HashSet<String> namesSubset = new HashSet<String>();
-            // This reverse is probably specific to SLAC's namespace rules but it does make a big difference.
-            // Perhaps we can use a more intelligent way of choosing the specific path thru the trie.
-            Collections.reverse(fixedStringParts);
-            for (String fixedStringPart : fixedStringParts) {
-                ConcurrentSkipListSet<String> pvNamesForPart = parts2PVNamesForThisAppliance.get(fixedStringPart);
-                if (pvNamesForPart != null) {
-                    if (namesSubset.isEmpty()) {
-                        namesSubset.addAll(pvNamesForPart);
-                    } else {
-                        namesSubset.retainAll(pvNamesForPart);
-                    }
-                }
-            }
-            logger.debug(() -> "Using fixed string path matching against names " + namesSubset.size());
-            Pattern pattern = Pattern.compile(nameToMatch);
-            for (String pvName : namesSubset) {
-                if (pattern.matcher(pvName).matches()) {
-                    ret.add(pvName);
-                }
-            }
-            return ret;
-        } else {
-            // The use pattern did not have any fixed elements at all.
-            // In this case we do brute force matching; should take longer.
-            // This is also not optimal but probably don't want yet another list of PV's
-            Pattern pattern = Pattern.compile(nameToMatch);
-            HashSet<String> allNames = new HashSet<String>();
-            HashSet<String> ret = new HashSet<String>();
-            logger.debug(() -> "Using brute force pattern matching against names");
-            for (ConcurrentSkipListSet<String> pvNamesForPart : parts2PVNamesForThisAppliance.values()) {
-                allNames.addAll(pvNamesForPart);
-            }
-            for (String pvName : allNames) {
-                if (pattern.matcher(pvName).matches()) {
-                    ret.add(pvName);
-                }
-            }
-            return ret;
-        }
+        return pvNamesForThisAppliance.getNamesMatchingRegex(nameToMatch);
     }
 
     @Override
@@ -1275,12 +1221,8 @@ public class DefaultConfigService implements ConfigService {
 
     @Override
     public PVTypeInfo getTypeInfoForPV(String pvName) {
-        if (typeInfos.containsKey(pvName)) {
-            logger.debug(() -> "Retrieving typeinfo from cache for pv " + pvName);
-            return typeInfos.get(pvName);
-        }
-
-        return null;
+        // A single get; typeinfos are never null in the map.
+        return typeInfoNearCache.get(pvName, typeInfos::get);
     }
 
     @Override
@@ -1292,6 +1234,16 @@ public class DefaultConfigService implements ConfigService {
         }
 
         typeInfos.put(pvName, typeInfo);
+        invalidateCachedTypeInfo(pvName);
+    }
+
+    /**
+     * Call this after changing the typeinfos map directly.
+     * We do not wait for the entry listener; we should see our own changes right away.
+     * @param pvName The name of the PV
+     */
+    protected void invalidateCachedTypeInfo(String pvName) {
+        typeInfoNearCache.invalidate(pvName);
     }
 
     @Override
@@ -1299,13 +1251,8 @@ public class DefaultConfigService implements ConfigService {
         logger.info("Removing PV from cluster.." + pvName);
         pv2appliancemapping.remove(pvName);
         typeInfos.remove(pvName);
-        String[] parts = this.pvName2KeyConverter.breakIntoParts(pvName);
-        for (String part : parts) {
-            ConcurrentSkipListSet<String> pvNamesForPart = parts2PVNamesForThisAppliance.get(part);
-            if (pvNamesForPart != null) {
-                pvNamesForPart.remove(pvName);
-            }
-        }
+        invalidateCachedTypeInfo(pvName);
+        pvNamesForThisAppliance.remove(pvName);
     }
 
     private static class PVApplianceCombo implements Comparable<PVApplianceCombo> {
@@ -1404,14 +1351,8 @@ public class DefaultConfigService implements ConfigService {
             logger.error("Exception adding alias name to persistence " + aliasName, ex);
         }
 
-        // Add aliases into the trie
-        String[] parts = this.pvName2KeyConverter.breakIntoParts(aliasName);
-        for (String part : parts) {
-            if (!parts2PVNamesForThisAppliance.containsKey(part)) {
-                parts2PVNamesForThisAppliance.put(part, new ConcurrentSkipListSet<String>());
-            }
-            parts2PVNamesForThisAppliance.get(part).add(aliasName);
-        }
+        // Add aliases into the index
+        pvNamesForThisAppliance.add(aliasName);
     }
 
     @Override
@@ -1423,11 +1364,8 @@ public class DefaultConfigService implements ConfigService {
             logger.error("Exception removing alias name from persistence " + aliasName, ex);
         }
 
-        // Remove the aliasname from the trie
-        String[] parts = this.pvName2KeyConverter.breakIntoParts(aliasName);
-        for (String part : parts) {
-            parts2PVNamesForThisAppliance.get(part).remove(aliasName);
-        }
+        // Remove the aliasname from the index
+        pvNamesForThisAppliance.remove(aliasName);
     }
 
     @Override
@@ -1707,65 +1645,63 @@ public class DefaultConfigService implements ConfigService {
     @Override
     public PolicyConfig computePolicyForPV(String pvName, MetaInfo metaInfo, UserSpecifiedSamplingParams userSpecParams)
             throws IOException {
-        try (InputStream is = this.getPolicyText()) {
-            logger.debug(() -> "Computing policy for pvName");
-            HashMap<String, Object> pvInfo = new HashMap<String, Object>();
-            pvInfo.put("dbrtype", metaInfo.getArchDBRTypes().toString());
-            pvInfo.put("elementCount", metaInfo.getCount());
-            pvInfo.put("eventRate", metaInfo.getEventRate());
-            pvInfo.put("eventCount", metaInfo.getEventCount());
-            pvInfo.put("storageRate", metaInfo.getStorageRate());
-            pvInfo.put("aliasName", metaInfo.getAliasName());
-            if (userSpecParams != null && userSpecParams.getPolicyName() != null) {
-                logger.debug(() -> "Passing user override of policy " + userSpecParams.getPolicyName()
-                        + " as the dict entry policyName");
-                pvInfo.put("policyName", userSpecParams.getPolicyName());
-            }
-            if (userSpecParams.getControllingPV() != null) {
-                pvInfo.put("controlPV", userSpecParams.getControllingPV());
-            }
-
-            HashMap<String, String> otherMetaInfo = metaInfo.getOtherMetaInfo();
-            for (String otherMetaInfoKey : this.getExtraFields()) {
-                if (otherMetaInfo.containsKey(otherMetaInfoKey)) {
-                    if (otherMetaInfoKey.equals("ADEL") || otherMetaInfoKey.equals("MDEL")) {
-                        try {
-                            pvInfo.put(otherMetaInfoKey, Double.parseDouble(otherMetaInfo.get(otherMetaInfoKey)));
-                        } catch (Exception ex) {
-                            logger.error("Exception adding MDEL and ADEL to the info", ex);
-                        }
-                    } else {
-                        pvInfo.put(otherMetaInfoKey, otherMetaInfo.get(otherMetaInfoKey));
+        logger.debug(() -> "Computing policy for pvName");
+        HashMap<String, Object> pvInfo = new HashMap<String, Object>();
+        pvInfo.put("dbrtype", metaInfo.getArchDBRTypes().toString());
+        pvInfo.put("elementCount", metaInfo.getCount());
+        pvInfo.put("eventRate", metaInfo.getEventRate());
+        pvInfo.put("eventCount", metaInfo.getEventCount());
+        pvInfo.put("storageRate", metaInfo.getStorageRate());
+        pvInfo.put("aliasName", metaInfo.getAliasName());
+        if (userSpecParams != null && userSpecParams.getPolicyName() != null) {
+            logger.debug(() -> "Passing user override of policy " + userSpecParams.getPolicyName()
+                    + " as the dict entry policyName");
+            pvInfo.put("policyName", userSpecParams.getPolicyName());
+        }
+        if (userSpecParams.getControllingPV() != null) {
+            pvInfo.put("controlPV", userSpecParams.getControllingPV());
+        }
+
+        HashMap<String, String> otherMetaInfo = metaInfo.getOtherMetaInfo();
+        for (String otherMetaInfoKey : this.getExtraFields()) {
+            if (otherMetaInfo.containsKey(otherMetaInfoKey)) {
+                if (otherMetaInfoKey.equals("ADEL") || otherMetaInfoKey.equals("MDEL")) {
+                    try {
+                        pvInfo.put(otherMetaInfoKey, Double.parseDouble(otherMetaInfo.get(otherMetaInfoKey)));
+                    } catch (Exception ex) {
+                        logger.error("Exception adding MDEL and ADEL to the info", ex);
                     }
+                } else {
+                    pvInfo.put(otherMetaInfoKey, otherMetaInfo.get(otherMetaInfoKey));
                 }
             }
+        }
 
-            if (logger.isDebugEnabled()) {
-                StringBuilder buf = new StringBuilder();
-                buf.append("Before computing policy for");
-                buf.append(pvName);
-                buf.append(" pvInfo is \n");
-                for (String key : pvInfo.keySet()) {
-                    buf.append(key);
-                    buf.append("=");
-                    buf.append(pvInfo.get(key));
-                    buf.append("\n");
-                }
-                logger.debug(buf.toString());
+        if (logger.isDebugEnabled()) {
+            StringBuilder buf = new StringBuilder();
+            buf.append("Before computing policy for");
+            buf.append(pvName);
+            buf.append(" pvInfo is \n");
+            for (String key : pvInfo.keySet()) {
+                buf.append(key);
+                buf.append("=");
+                buf.append(pvInfo.get(key));
+                buf.append("\n");
             }
+            logger.debug(buf.toString());
+        }
 
-            try {
-                // We only have one policy in the cache...
-                ExecutePolicy executePolicy = theExecutionPolicy.get("ThePolicy");
-                return executePolicy.computePolicyForPV(pvName, pvInfo);
-            } catch (ExecutionException e) {
-                Throwable cause = e.getCause();
-                logger.error("Exception executing policy for pv " + pvName, cause);
-                if (cause instanceof IOException) {
-                    throw (IOException) cause;
-                } else {
-                    throw new IOException(cause);
-                }
+        try {
+            // We only have one policy pool in the cache; the pool lets several threads compute policies at the same time.
+            ExecutePolicyPool executePolicyPool = theExecutionPolicy.get("ThePolicy");
+            return executePolicyPool.computePolicyForPV(pvName, pvInfo);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            logger.error("Exception executing policy for pv " + pvName, cause);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else {
+                throw new IOException(cause);
             }
         }
     }
@@ -1780,8 +1716,8 @@ public class DefaultConfigService implements ConfigService {
     @Override
     public List<String> getFieldsArchivedAsPartOfStream() throws IOException {
         try {
-            ExecutePolicy executePolicy = theExecutionPolicy.get("ThePolicy");
-            return executePolicy.getFieldsArchivedAsPartOfStream();
+            ExecutePolicyPool executePolicyPool = theExecutionPolicy.get("ThePolicy");
+            return executePolicyPool.getFieldsArchivedAsPartOfStream();
         } catch (ExecutionException ex) {
             throw new IOException(ex);
         }
@@ -1884,13 +1820,7 @@ public class DefaultConfigService implements ConfigService {
                     String pvName = typeInfo.getPvName();
                     newTypeInfos.put(pvName, typeInfo);
                     newPVMappings.put(pvName, appliances.get(typeInfo.getApplianceIdentity()));
-                    String[] parts = this.pvName2KeyConverter.breakIntoParts(pvName);
-                    for (String part : parts) {
-                        if (!parts2PVNamesForThisAppliance.containsKey(part)) {
-                            parts2PVNamesForThisAppliance.put(part, new ConcurrentSkipListSet<String>());
-                        }
-                        parts2PVNamesForThisAppliance.get(part).add(pvName);
-                    }
+                    pvNamesForThisAppliance.add(pvName);
                     this.totalPVCountOnThisAppliance++;
                     if (typeInfo.isPaused()) {
                         this.pausedPVCountOnThisAppliance++;
@@ -1964,14 +1894,8 @@ public class DefaultConfigService implements ConfigService {
                 PVTypeInfo typeInfo = this.typeInfos.get(realName);
                 if (typeInfo != null && typeInfo.getApplianceIdentity().equals(this.myIdentity)) {
                     newAliases.put(pvNameFromPersistence, realName);
-                    // Add the alias into the trie
-                    String[] parts = this.pvName2KeyConverter.breakIntoParts(pvNameFromPersistence);
-                    for (String part : parts) {
-                        if (!parts2PVNamesForThisAppliance.containsKey(part)) {
-                            parts2PVNamesForThisAppliance.put(part, new ConcurrentSkipListSet<>());
-                        }
-                        parts2PVNamesForThisAppliance.get(part).add(pvNameFromPersistence);
-                    }
+                    // Add the alias into the index
+                    pvNamesForThisAppliance.add(pvNameFromPersistence);
                 } else {
                     logger.warn(
                             "Skipping adding alias for {} as the real PV {} is no longer archied on this appliance",
@@ -0,0 +1,414 @@
+package org.epics.archiverappliance.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A trigram index of PV names for regex searches.
+ * <p>
+ * The names are split into shards by hash; each shard maps every trigram (three consecutive characters) to the sorted ids of the names containing it.
+ * To search for a regex, we extract the literal strings that every match must contain (for example, <code>XCOR</code> and <code>:BDES</code> in
+ * <code>XCOR.*:BDES</code>), intersect the postings of their trigrams to get the candidate names and then run the regex over the candidates.
+ * The shards are searched in parallel.
+ * If the regex has no usable literals (for example, <code>.*</code> or a top level alternation), we run the regex over all the names.
+ * <p>
+ * The index is updated incrementally as PVs are added and removed; each shard has its own lock so searches only wait on updates to the same shard.
+ */
+public class PVNameIndex {
+    private static final Logger logger = LogManager.getLogger(PVNameIndex.class.getName());
+    public static final int DEFAULT_SHARD_COUNT = 16;
+
+    private final Shard[] shards;
+
+    public PVNameIndex() {
+        this(DEFAULT_SHARD_COUNT);
+    }
+
+    public PVNameIndex(int shardCount) {
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Add a name to the index; adding a name that is already in the index does nothing.
+     */
+    public void add(String name) {
+        shardFor(name).add(name);
+    }
+
+    /**
+     * Remove a name from the index; removing a name that is not in the index does nothing.
+     */
+    public void remove(String name) {
+        shardFor(name).remove(name);
+    }
+
+    public boolean contains(String name) {
+        return shardFor(name).contains(name);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+    }
+
+    /**
+     * Find the names that match (in the {@link java.util.regex.Matcher#matches()} sense) this regex.
+     * @param regex A Java regex
+     * @return The matching names
+     */
+    public Set<String> getNamesMatchingRegex(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        List<String> literals = requiredLiterals(regex);
+        long[] trigrams = trigramsOf(literals);
+        logger.debug("Searching for {} using {} trigrams from {}", regex, trigrams.length, literals);
+        return Arrays.stream(shards)
+                .parallel()
+                .flatMap(shard -> shard.match(pattern, trigrams).stream())
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private Shard shardFor(String name) {
+        return shards[(name.hashCode() & 0x7fffffff) % shards.length];
+    }
+
+    /**
+     * Extract the literal strings that must appear in any string matching this regex.
+     * This is conservative; we only look at the top level of the regex and stop looking at anything we do not understand.
+     * An empty list means that we cannot use the index for this regex.
+     */
+    static List<String> requiredLiterals(String regex) {
+        List<String> literals = new LinkedList<String>();
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+        int i = 0;
+        boolean lastAtomWasLiteral = false;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (depth > 0) {
+                // We skip the contents of groups; they may be optional or have alternatives.
+                if (c == '\\') {
+                    i += 2;
+                    continue;
+                } else if (c == '[') {
+                    i = skipCharacterClass(regex, i);
+                    if (i < 0) return List.of();
+                    continue;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                }
+                i++;
+                lastAtomWasLiteral = false;
+                continue;
+            }
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= regex.length()) return List.of();
+                    char escaped = regex.charAt(i + 1);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // Character classes and boundaries like \d, \w and \b; anything else (\Q, \x41, \p{...}) we do not handle.
+                        if ("dDwWsSbBhHvVRX".indexOf(escaped) < 0) return List.of();
+                        flush(current, literals);
+                        lastAtomWasLiteral = false;
+                    } else {
+                        current.append(escaped);
+                        lastAtomWasLiteral = true;
+                    }
+                    i += 2;
+                }
+                case '(' -> {
+                    // Inline flags like (?i) change how the rest of the regex matches.
+                    if (i + 1 < regex.length() && regex.charAt(i + 1) == '?') return List.of();
+                    flush(current, literals);
+                    depth++;
+                    lastAtomWasLiteral = false;
+                    i++;
+                }
+                case ')', '|' -> {
+                    // A top level alternation means none of the literals are required.
+                    return List.of();
+                }
+                case '[' -> {
+                    flush(current, literals);
+                    i = skipCharacterClass(regex, i);
+                    if (i < 0) return List.of();
+                    lastAtomWasLiteral = false;
+                }
+                case '.', '^', '$' -> {
+                    flush(current, literals);
+                    lastAtomWasLiteral = false;
+                    i++;
+                }
+                case '?', '*', '+', '{' -> {
+                    int minRepeats;
+                    int end;
+                    if (c == '{') {
+                        int close = regex.indexOf('}', i);
+                        if (close < 0) return List.of();
+                        String bounds = regex.substring(i + 1, close);
+                        try {
+                            minRepeats = Integer.parseInt(
+                                    bounds.contains(",") ? bounds.substring(0, bounds.indexOf(',')) : bounds);
+                        } catch (NumberFormatException ex) {
+                            return List.of();
+                        }
+                        end = close + 1;
+                    } else {
+                        minRepeats = c == '+' ? 1 : 0;
+                        end = i + 1;
+                    }
+                    // Lazy and possessive quantifiers
+                    if (end < regex.length() && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) end++;
+                    if (lastAtomWasLiteral && minRepeats == 0) {
+                        // The last character is optional.
+                        current.setLength(current.length() - 1);
+                    }
+                    flush(current, literals);
+                    lastAtomWasLiteral = false;
+                    i = end;
+                }
+                default -> {
+                    current.append(c);
+                    lastAtomWasLiteral = true;
+                    i++;
+                }
+            }
+        }
+        if (depth != 0) return List.of();
+        flush(current, literals);
+        return literals;
+    }
+
+    /**
+     * @return The index just after the character class that starts at <code>start</code> or -1 if we cannot find its end.
+     */
+    private static int skipCharacterClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') i++;
+        // A ] right at the start is a literal
+        if (i < regex.length() && regex.charAt(i) == ']') i++;
+        int depth = 1;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') depth++;
+            if (c == ']') {
+                depth--;
+                if (depth == 0) return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static void flush(StringBuilder current, List<String> literals) {
+        if (current.length() >= 3) {
+            literals.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    private static long trigram(CharSequence s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long[] trigramsOf(Collection<String> strings) {
+        HashSet<Long> trigrams = new HashSet<Long>();
+        for (String s : strings) {
+            for (int i = 0; i + 3 <= s.length(); i++) {
+                trigrams.add(trigram(s, i));
+            }
+        }
+        return trigrams.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * A sorted, growable array of name ids.
+     */
+    private static class Postings {
+        int[] ids = new int[4];
+        int size = 0;
+
+        void add(int id) {
+            if (size == 0 || ids[size - 1] < id) {
+                // The common case; ids are allocated in increasing order.
+                if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+                ids[size++] = id;
+                return;
+            }
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) return;
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+
+    private static class Shard {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ArrayList<String> names = new ArrayList<String>();
+        private final HashMap<String, Integer> nameToId = new HashMap<String, Integer>();
+        private final ArrayDeque<Integer> freeIds = new ArrayDeque<Integer>();
+        private final HashMap<Long, Postings> postings = new HashMap<Long, Postings>();
+
+        void add(String name) {
+            lock.writeLock().lock();
+            try {
+                if (nameToId.containsKey(name)) return;
+                Integer freeId = freeIds.poll();
+                int id;
+                if (freeId != null) {
+                    id = freeId;
+                    names.set(id, name);
+                } else {
+                    id = names.size();
+                    names.add(name);
+                }
+                nameToId.put(name, id);
+                for (int i = 0; i + 3 <= name.length(); i++) {
+                    postings.computeIfAbsent(trigram(name, i), k -> new Postings())
+                            .add(id);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(String name) {
+            lock.writeLock().lock();
+            try {
+                Integer id = nameToId.remove(name);
+                if (id == null) return;
+                for (int i = 0; i + 3 <= name.length(); i++) {
+                    long trigram = trigram(name, i);
+                    Postings forTrigram = postings.get(trigram);
+                    if (forTrigram != null) {
+                        forTrigram.remove(id);
+                        if (forTrigram.size == 0) postings.remove(trigram);
+                    }
+                }
+                names.set(id, null);
+                freeIds.add(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean contains(String name) {
+            lock.readLock().lock();
+            try {
+                return nameToId.containsKey(name);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return nameToId.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void clear() {
+            lock.writeLock().lock();
+            try {
+                names.clear();
+                nameToId.clear();
+                freeIds.clear();
+                postings.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<String> match(Pattern pattern, long[] trigrams) {
+            List<String> candidates = candidates(trigrams);
+            List<String> ret = new ArrayList<String>();
+            for (String name : candidates) {
+                if (pattern.matcher(name).matches()) {
+                    ret.add(name);
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * Copy the candidate names out under the read lock; the regex is run without holding the lock.
+         */
+        private List<String> candidates(long[] trigrams) {
+            lock.readLock().lock();
+            try {
+                if (trigrams.length == 0) {
+                    return new ArrayList<String>(nameToId.keySet());
+                }
+                List<Postings> required = new ArrayList<Postings>(trigrams.length);
+                for (long trigram : trigrams) {
+                    Postings forTrigram = postings.get(trigram);
+                    if (forTrigram == null) return List.of();
+                    required.add(forTrigram);
+                }
+                // Start with the rarest trigram and check the ids against the others.
+                required.sort(Comparator.comparingInt(p -> p.size));
+                Postings smallest = required.get(0);
+                List<String> ret = new ArrayList<String>();
+                nextId:
+                for (int i = 0; i < smallest.size; i++) {
+                    int id = smallest.ids[i];
+                    for (int j = 1; j < required.size(); j++) {
+                        if (!required.get(j).contains(id)) continue nextId;
+                    }
+                    ret.add(names.get(id));
+                }
+                return ret;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
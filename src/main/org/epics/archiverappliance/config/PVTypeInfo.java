@@ -7,6 +7,8 @@
  *******************************************************************************/
 package org.epics.archiverappliance.config;
 
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.Event;
@@ -188,6 +190,45 @@ public class PVTypeInfo implements Serializable {
         this.modificationTime = TimeUtils.now();
     }
 
+    /**
+     * An exact copy of this typeinfo; unlike the copy constructor, this keeps the chunk key, host name and modification time.
+     * @return A copy that can be changed without affecting this typeinfo
+     */
+    public PVTypeInfo copy() {
+        PVTypeInfo copy = new PVTypeInfo(this.pvName, this.DBRType, this.isScalar, this.elementCount);
+        copy.applianceIdentity = this.applianceIdentity;
+        copy.chunkKey = this.chunkKey;
+        copy.hostName = this.hostName;
+        copy.lowerAlarmLimit = this.lowerAlarmLimit;
+        copy.lowerCtrlLimit = this.lowerCtrlLimit;
+        copy.lowerDisplayLimit = this.lowerDisplayLimit;
+        copy.lowerWarningLimit = this.lowerWarningLimit;
+        copy.upperAlarmLimit = this.upperAlarmLimit;
+        copy.upperCtrlLimit = this.upperCtrlLimit;
+        copy.upperDisplayLimit = this.upperDisplayLimit;
+        copy.upperWarningLimit = this.upperWarningLimit;
+        copy.precision = this.precision;
+        copy.units = this.units;
+        copy.hasReducedDataSet = this.hasReducedDataSet;
+        copy.computedEventRate = this.computedEventRate;
+        copy.computedStorageRate = this.computedStorageRate;
+        copy.computedBytesPerEvent = this.computedBytesPerEvent;
+        copy.userSpecifiedEventRate = this.userSpecifiedEventRate;
+        copy.creationTime = this.creationTime;
+        copy.modificationTime = this.modificationTime;
+        copy.paused = this.paused;
+        copy.samplingMethod = this.samplingMethod;
+        copy.samplingPeriod = this.samplingPeriod;
+        copy.policyName = this.policyName;
+        copy.dataStores = this.dataStores == null ? null : this.dataStores.clone();
+        copy.extraFields = this.extraFields == null ? null : new HashMap<String, String>(this.extraFields);
+        copy.controllingPV = this.controllingPV;
+        copy.archiveFields = this.archiveFields == null ? null : this.archiveFields.clone();
+        copy.usePVAccess = this.usePVAccess;
+        copy.useDBEProperties = this.useDBEProperties;
+        return copy;
+    }
+
     public String getPvName() {
         return pvName;
     }
@@ -626,4 +667,96 @@ public class PVTypeInfo implements Serializable {
     public void setUseDBEProperties(boolean useDBEProperties) {
         this.useDBEProperties = useDBEProperties;
     }
+
+    /**
+     * Used by {@link ClusterSerializers} when we share this typeinfo in the cluster.
+     * These are not bean methods as we use bean introspection for the JSON representation.
+     */
+    void writeData(ObjectDataOutput out) throws IOException {
+        out.writeString(pvName);
+        ClusterSerializers.writeEnum(out, DBRType);
+        out.writeBoolean(isScalar);
+        out.writeInt(elementCount);
+        out.writeString(applianceIdentity);
+        out.writeString(chunkKey);
+        out.writeString(hostName);
+        out.writeDouble(lowerAlarmLimit);
+        out.writeDouble(lowerCtrlLimit);
+        out.writeDouble(lowerDisplayLimit);
+        out.writeDouble(lowerWarningLimit);
+        out.writeDouble(upperAlarmLimit);
+        out.writeDouble(upperCtrlLimit);
+        out.writeDouble(upperDisplayLimit);
+        out.writeDouble(upperWarningLimit);
+        out.writeDouble(precision);
+        out.writeString(units);
+        out.writeBoolean(hasReducedDataSet);
+        out.writeFloat(computedEventRate);
+        out.writeFloat(computedStorageRate);
+        out.writeInt(computedBytesPerEvent);
+        out.writeFloat(userSpecifiedEventRate);
+        ClusterSerializers.writeInstant(out, creationTime);
+        ClusterSerializers.writeInstant(out, modificationTime);
+        out.writeBoolean(paused);
+        ClusterSerializers.writeEnum(out, samplingMethod);
+        out.writeFloat(samplingPeriod);
+        out.writeString(policyName);
+        out.writeStringArray(dataStores);
+        out.writeInt(extraFields == null ? -1 : extraFields.size());
+        if (extraFields != null) {
+            for (var extraField : extraFields.entrySet()) {
+                out.writeString(extraField.getKey());
+                out.writeString(extraField.getValue());
+            }
+        }
+        out.writeString(controllingPV);
+        out.writeStringArray(archiveFields);
+        out.writeBoolean(usePVAccess);
+        out.writeBoolean(useDBEProperties);
+    }
+
+    void readData(ObjectDataInput in) throws IOException {
+        pvName = in.readString();
+        DBRType = ClusterSerializers.readEnum(in, ArchDBRTypes.class);
+        isScalar = in.readBoolean();
+        elementCount = in.readInt();
+        applianceIdentity = in.readString();
+        chunkKey = in.readString();
+        hostName = in.readString();
+        lowerAlarmLimit = in.readDouble();
+        lowerCtrlLimit = in.readDouble();
+        lowerDisplayLimit = in.readDouble();
+        lowerWarningLimit = in.readDouble();
+        upperAlarmLimit = in.readDouble();
+        upperCtrlLimit = in.readDouble();
+        upperDisplayLimit = in.readDouble();
+        upperWarningLimit = in.readDouble();
+        precision = in.readDouble();
+        units = in.readString();
+        hasReducedDataSet = in.readBoolean();
+        computedEventRate = in.readFloat();
+        computedStorageRate = in.readFloat();
+        computedBytesPerEvent = in.readInt();
+        userSpecifiedEventRate = in.readFloat();
+        creationTime = ClusterSerializers.readInstant(in);
+        modificationTime = ClusterSerializers.readInstant(in);
+        paused = in.readBoolean();
+        samplingMethod = ClusterSerializers.readEnum(in, SamplingMethod.class);
+        samplingPeriod = in.readFloat();
+        policyName = in.readString();
+        dataStores = in.readStringArray();
+        int extraFieldCount = in.readInt();
+        if (extraFieldCount < 0) {
+            extraFields = null;
+        } else {
+            extraFields = new HashMap<String, String>(extraFieldCount * 2);
+            for (int i = 0; i < extraFieldCount; i++) {
+                extraFields.put(in.readString(), in.readString());
+            }
+        }
+        controllingPV = in.readString();
+        archiveFields = in.readStringArray();
+        usePVAccess = in.readBoolean();
+        useDBEProperties = in.readBoolean();
+    }
 }
@@ -0,0 +1,85 @@
+package org.epics.archiverappliance.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A local cache of the typeinfos in the cluster; this saves a (perhaps remote) lookup and deserialization for each
+ * typeinfo lookup on the retrieval hot path.
+ * Entries are invalidated by the entry listeners on the typeinfo map; so, a change made on another appliance is seen
+ * once the change event reaches this appliance.
+ * Callers get a copy of the cached typeinfo as they often change the typeinfo and then update the cluster with it.
+ * <p>
+ * A lookup may race with an invalidation; the lookup could then cache the value from before the change.
+ * To prevent this, we count invalidations and drop what we just cached if there was an invalidation while we were
+ * looking up the value.
+ * Only typeinfos that exist are cached; we do not want to miss a PV that was just added.
+ */
+public class PVTypeInfoNearCache {
+    /**
+     * Set this to false to always go to the cluster.
+     */
+    public static boolean ENABLED = true;
+    /**
+     * We clear the cache if it grows beyond this size; this only happens if we look up most of the PVs in a large cluster.
+     */
+    public static int MAX_SIZE = 500_000;
+
+    private final ConcurrentHashMap<String, PVTypeInfo> cache = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param pvName The name of the PV
+     * @param loader Looks up the typeinfo in the cluster; this should be a single call.
+     * @return A copy of the typeinfo; null if there is no typeinfo for this PV.
+     */
+    public PVTypeInfo get(String pvName, Function<String, PVTypeInfo> loader) {
+        if (!ENABLED) return loader.apply(pvName);
+        PVTypeInfo cached = cache.get(pvName);
+        if (cached != null) {
+            hits.increment();
+            return cached.copy();
+        }
+        misses.increment();
+        long invalidationsBefore = invalidations.get();
+        PVTypeInfo typeInfo = loader.apply(pvName);
+        if (typeInfo == null) return null;
+        if (cache.size() >= MAX_SIZE) {
+            cache.clear();
+        }
+        cache.put(pvName, typeInfo.copy());
+        if (invalidations.get() != invalidationsBefore) {
+            cache.remove(pvName);
+        }
+        return typeInfo;
+    }
+
+    public void invalidate(String pvName) {
+        invalidations.incrementAndGet();
+        cache.remove(pvName);
+    }
+
+    /**
+     * Clear the cache; for example, when we reconnect to the cluster and could have missed some change events.
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
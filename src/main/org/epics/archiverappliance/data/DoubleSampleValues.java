@@ -0,0 +1,23 @@
+package org.epics.archiverappliance.data;
+
+/**
+ * Implemented by events whose value is a double or a vector of doubles.
+ * This lets hot paths (for example, the JSON mime response) read the values without boxing them into a {@link SampleValue}.
+ */
+public interface DoubleSampleValues {
+    /**
+     * @return true if the value is a vector (waveform); false for a scalar.
+     */
+    public boolean isVector();
+
+    /**
+     * @return The number of elements; this is 1 for a scalar.
+     */
+    public int getDoubleValueCount();
+
+    /**
+     * @param index The index of the element; this is 0 for a scalar.
+     * @return The value of the element
+     */
+    public double getDoubleValue(int index);
+}
@@ -0,0 +1,123 @@
+package org.epics.archiverappliance.data;
+
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A batch of scalar events from the same year held column wise in primitive arrays.
+ * This lets consumers like the summary statistics post processors go through large amounts of data without creating an object per event.
+ * Batches are typically reused by the producer; so the contents are only valid until the producer is asked for the next batch.
+ * The values for all the numeric scalar types are held as doubles.
+ */
+public class ScalarEventBatch {
+    private final ArchDBRTypes type;
+    private final short year;
+    private final long startOfYearEpochSeconds;
+    private int size = 0;
+    private int[] secondsIntoYear;
+    private int[] nanos;
+    private double[] values;
+    private int[] severities;
+    private int[] statuses;
+    /**
+     * Field values are rare; so this is sparse and null for events without field values.
+     */
+    private Map<String, String>[] fieldValues;
+
+    @SuppressWarnings("unchecked")
+    public ScalarEventBatch(ArchDBRTypes type, short year, int capacity) {
+        this.type = type;
+        this.year = year;
+        this.startOfYearEpochSeconds = TimeUtils.getStartOfYearInSeconds(year);
+        this.secondsIntoYear = new int[capacity];
+        this.nanos = new int[capacity];
+        this.values = new double[capacity];
+        this.severities = new int[capacity];
+        this.statuses = new int[capacity];
+        this.fieldValues = new Map[capacity];
+    }
+
+    public void clear() {
+        Arrays.fill(fieldValues, 0, size, null);
+        size = 0;
+    }
+
+    public boolean isFull() {
+        return size == values.length;
+    }
+
+    public void add(
+            int secondsIntoYear, int nanos, double value, int severity, int status, Map<String, String> fieldValues) {
+        this.secondsIntoYear[size] = secondsIntoYear;
+        this.nanos[size] = nanos;
+        this.values[size] = value;
+        this.severities[size] = severity;
+        this.statuses[size] = status;
+        this.fieldValues[size] = fieldValues;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ArchDBRTypes getType() {
+        return type;
+    }
+
+    public short getYear() {
+        return year;
+    }
+
+    public int getSecondsIntoYear(int i) {
+        return secondsIntoYear[i];
+    }
+
+    public long getEpochSeconds(int i) {
+        return startOfYearEpochSeconds + secondsIntoYear[i];
+    }
+
+    public int getNanos(int i) {
+        return nanos[i];
+    }
+
+    public double getValue(int i) {
+        return values[i];
+    }
+
+    public int getSeverity(int i) {
+        return severities[i];
+    }
+
+    public int getStatus(int i) {
+        return statuses[i];
+    }
+
+    /**
+     * @param i Index of the event in the batch
+     * @return The field values for the event or null if there are none.
+     */
+    public Map<String, String> getFieldValues(int i) {
+        return fieldValues[i];
+    }
+
+    /**
+     * Make an Event for one of the events in this batch; for the occasional consumer that needs an object.
+     * @param i Index of the event in the batch
+     * @return A new event that does not depend on this batch.
+     */
+    public Event toEvent(int i) {
+        return new POJOEvent(
+                type,
+                Instant.ofEpochSecond(getEpochSeconds(i), nanos[i]),
+                new ScalarValue<Double>(values[i]),
+                statuses[i],
+                severities[i]);
+    }
+}
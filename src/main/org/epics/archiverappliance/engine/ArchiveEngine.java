@@ -17,6 +17,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.StoragePlugin;
 import org.epics.archiverappliance.Writer;
+import org.epics.archiverappliance.common.BasicContext;
 import org.epics.archiverappliance.common.TimeUtils;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.config.ConfigService;
@@ -33,6 +34,7 @@ import org.epics.archiverappliance.engine.pv.ControllingPV;
 import org.epics.archiverappliance.engine.pv.EngineContext;
 import org.epics.archiverappliance.engine.pv.PVFactory;
 import org.epics.archiverappliance.engine.pv.PVMetrics;
+import org.epics.archiverappliance.engine.writer.WriteAheadLog;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig.SamplingMethod;
 
@@ -179,6 +181,7 @@ public class ArchiveEngine {
         EngineContext engineContext = configservice.getEngineContext();
 
         if (!engineContext.isWriteThreadStarted()) {
+            replayWriteAheadLog(configservice);
             engineContext.startWriteThread(configservice);
         }
 
@@ -229,6 +232,33 @@ public class ArchiveEngine {
         }
     }
 
+    /**
+     * Replay the samples in the write ahead log from the previous run into the first store of each PV.
+     * These are the samples that were in the sample buffers when the engine went down; this should be called before
+     * the write thread starts so that these samples are written before any new samples for the PV.
+     * Samples that were already written out before the engine went down are skipped by the store.
+     * @param configservice ConfigService
+     */
+    public static void replayWriteAheadLog(final ConfigService configservice) {
+        WriteAheadLog writeAheadLog = configservice.getEngineContext().getWriteAheadLog();
+        if (writeAheadLog == null || !writeAheadLog.hasSegmentsToReplay()) return;
+        String myIdentity = configservice.getMyApplianceInfo().getIdentity();
+        long replayedSamples = writeAheadLog.replay(configservice.getArchiverTypeSystem(), (pvName, samples) -> {
+            PVTypeInfo typeInfo = configservice.getTypeInfoForPV(pvName);
+            if (typeInfo == null || !myIdentity.equals(typeInfo.getApplianceIdentity())) {
+                logger.warn("Skipping samples in the write ahead log for " + pvName
+                        + " as it is no longer archived on this appliance");
+                return;
+            }
+            StoragePlugin firstDest =
+                    StoragePluginURLParser.parseStoragePlugin(typeInfo.getDataStores()[0], configservice);
+            try (BasicContext context = new BasicContext()) {
+                firstDest.appendData(context, pvName, samples);
+            }
+        });
+        logger.info("Replayed " + replayedSamples + " samples from the write ahead log");
+    }
+
     /**
      * Get the meta data for pv - used for policy computation.
      *
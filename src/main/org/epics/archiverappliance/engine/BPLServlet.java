@@ -13,6 +13,7 @@ import org.epics.archiverappliance.common.BPLAction;
 import org.epics.archiverappliance.common.BasicDispatcher;
 import org.epics.archiverappliance.common.GetVersion;
 import org.epics.archiverappliance.common.ProcessMetricsReport;
+import org.epics.archiverappliance.common.reports.OpenMetricsReport;
 import org.epics.archiverappliance.config.ConfigService;
 import org.epics.archiverappliance.engine.bpl.ArchiveChannelObjectDetailsAction;
 import org.epics.archiverappliance.engine.bpl.ChangeArchivalParamsAction;
@@ -21,6 +22,7 @@ import org.epics.archiverappliance.engine.bpl.DeletePV;
 import org.epics.archiverappliance.engine.bpl.GetDataAtTimeEngine;
 import org.epics.archiverappliance.engine.bpl.GetEngineDataAction;
 import org.epics.archiverappliance.engine.bpl.GetLatestMetaDataAction;
+import org.epics.archiverappliance.engine.bpl.GetLatestValuesAction;
 import org.epics.archiverappliance.engine.bpl.PVStatusAction;
 import org.epics.archiverappliance.engine.bpl.PausePVsOnShutdown;
 import org.epics.archiverappliance.engine.bpl.reports.ApplianceMetrics;
@@ -85,6 +87,7 @@ public class BPLServlet extends HttpServlet {
         getActions.put("/deletePV", DeletePV.class);
         getActions.put("/listAllChannels", ListAllChannels.class);
         getActions.put("/getProcessMetrics", ProcessMetricsReport.class);
+        getActions.put("/metrics", OpenMetricsReport.class);
         getActions.put("/pausePVsonShutdown", PausePVsOnShutdown.class);
         getActions.put("/cleanUpAnyImmortalChannels", CleanUpAnyImmortalChannels.class);
         getActions.put("/getVersion", GetVersion.class);
@@ -107,6 +110,7 @@ public class BPLServlet extends HttpServlet {
     static {
         postActions.put("/status", PVStatusAction.class);
         postActions.put("/getDataAtTime", GetDataAtTimeEngine.class);
+        postActions.put("/getLatestValues", GetLatestValuesAction.class);
     }
 
     @Override
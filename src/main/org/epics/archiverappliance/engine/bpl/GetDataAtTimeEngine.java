@@ -90,14 +90,15 @@ public class GetDataAtTimeEngine implements BPLAction {
 
             if (engineContext.getChannelList().containsKey(pvName)) {
                 ArchiveChannel archiveChannel = engineContext.getChannelList().get(pvName);
-                ArrayListEventStream st = archiveChannel.getPVData();
-                DBRTimeEvent potentialEvent = null;
-                for (Event ev : st) {
-                    potentialEvent = evaluatePotentialEvent(atTime, (DBRTimeEvent) ev, potentialEvent);
-                }
-                if (archiveChannel.getLastArchivedValue() != null) {
-                    potentialEvent =
-                            evaluatePotentialEvent(atTime, archiveChannel.getLastArchivedValue(), potentialEvent);
+                DBRTimeEvent lastArchivedValue = archiveChannel.getLastArchivedValue();
+                DBRTimeEvent potentialEvent = evaluatePotentialEvent(atTime, lastArchivedValue, null);
+                if (potentialEvent == null) {
+                    // The last archived value is the latest sample in the buffers; if it is at or before the requested
+                    // time, it is the answer and we skip copying the buffers. Otherwise, look in the buffers.
+                    ArrayListEventStream st = archiveChannel.getPVData();
+                    for (Event ev : st) {
+                        potentialEvent = evaluatePotentialEvent(atTime, (DBRTimeEvent) ev, potentialEvent);
+                    }
                 }
 
                 if (potentialEvent != null) {
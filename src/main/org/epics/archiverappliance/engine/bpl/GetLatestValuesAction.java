@@ -0,0 +1,76 @@
+package org.epics.archiverappliance.engine.bpl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.common.BPLAction;
+import org.epics.archiverappliance.config.ConfigService;
+import org.epics.archiverappliance.config.PVNames;
+import org.epics.archiverappliance.config.PVTypeInfo;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.engine.model.ArchiveChannel;
+import org.epics.archiverappliance.engine.pv.EngineContext;
+import org.epics.archiverappliance.mgmt.bpl.PVsMatchingParameter;
+import org.epics.archiverappliance.retrieval.mimeresponses.JSONResponse;
+import org.epics.archiverappliance.retrieval.mimeresponses.JSONStreamWriter;
+import org.epics.archiverappliance.utils.ui.MimeTypeConstants;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Get the latest value archived by the engine for many PVs in one call.
+ * POST a list of PV names (as for <code>getDataAtTime</code>); the response is a JSON dict with the PV name as the key and
+ * the latest value (in the same format as the samples in the <code>.json</code> retrieval response) as the value.
+ * Aliases are resolved; the value is keyed by the name in the request.
+ * PVs that are not being archived by this engine or that do not have a value yet are left out.
+ * So are fields that are archived as part of the PV (<code>archiveFields</code>) as the engine does not keep a sample for these.
+ * <p>
+ * This uses the channel's last archived value which is maintained as each sample is added to the buffers;
+ * so, unlike <code>getData.raw</code> and <code>getDataAtTime</code>, we do not copy the engine's buffers for each PV.
+ * The samples are written straight into the response.
+ */
+public class GetLatestValuesAction implements BPLAction {
+    private static final Logger logger = LogManager.getLogger(GetLatestValuesAction.class.getName());
+
+    @Override
+    public void execute(HttpServletRequest req, HttpServletResponse resp, ConfigService configService)
+            throws IOException {
+        List<String> pvNames = PVsMatchingParameter.getPVNamesFromPostBody(req);
+        logger.debug("Getting the latest values for {} PVs", pvNames.size());
+
+        EngineContext engineContext = configService.getEngineContext();
+        ConcurrentHashMap<String, ArchiveChannel> channelList = engineContext.getChannelList();
+        int valueCount = 0;
+        resp.setContentType(MimeTypeConstants.APPLICATION_JSON);
+        try (JSONStreamWriter out = new JSONStreamWriter(resp.getOutputStream())) {
+            out.writeAscii("{");
+            for (String pvName : pvNames) {
+                ArchiveChannel archiveChannel = channelList.get(pvName);
+                if (archiveChannel == null) {
+                    // Aliases and fields
+                    PVTypeInfo typeInfo = PVNames.determineAppropriatePVTypeInfo(pvName, configService);
+                    if (typeInfo == null) continue;
+                    if (PVNames.isFieldOrFieldModifier(pvName) && !PVNames.isFieldOrFieldModifier(typeInfo.getPvName())) {
+                        // A field archived as part of the PV (archiveFields); the channel's last value is not the field's.
+                        continue;
+                    }
+                    archiveChannel = channelList.get(typeInfo.getPvName());
+                    if (archiveChannel == null) continue;
+                }
+                DBRTimeEvent latestValue = archiveChannel.getLastArchivedValue();
+                if (latestValue == null) continue;
+                if (valueCount > 0) {
+                    out.writeAscii(",");
+                }
+                out.newLine().writeAscii("\"").writeEscaped(pvName).writeAscii("\": ");
+                JSONResponse.writeEvent(out, latestValue);
+                valueCount++;
+            }
+            out.newLine().writeAscii("}");
+        }
+        logger.debug("Returned the latest values for {} of {} PVs", valueCount, pvNames.size());
+    }
+}
@@ -41,6 +41,10 @@ public class EngineMetrics implements Details {
     private double totalChannelIOSeconds = 0.00;
     private double avgChannelsWrittenPerCycle = 0.00;
     private long skippedWriteCycles = 0;
+    private boolean adaptiveWritePeriod = false;
+    private double idleFlushPeriodSeconds = 0.00;
+    private double avgChannelsDeferredPerCycle = 0.00;
+    private double avgAppendBatchesPerCycle = 0.00;
     // private static Logger logger=Logger.getLogger(EngineMetrics.class.getName());
 
     public double getSecondsConsumedByWriter() {
@@ -75,6 +79,38 @@ public class EngineMetrics implements Details {
         this.skippedWriteCycles = skippedWriteCycles;
     }
 
+    public boolean isAdaptiveWritePeriod() {
+        return adaptiveWritePeriod;
+    }
+
+    public void setAdaptiveWritePeriod(boolean adaptiveWritePeriod) {
+        this.adaptiveWritePeriod = adaptiveWritePeriod;
+    }
+
+    public double getIdleFlushPeriodSeconds() {
+        return idleFlushPeriodSeconds;
+    }
+
+    public void setIdleFlushPeriodSeconds(double idleFlushPeriodSeconds) {
+        this.idleFlushPeriodSeconds = idleFlushPeriodSeconds;
+    }
+
+    public double getAvgChannelsDeferredPerCycle() {
+        return avgChannelsDeferredPerCycle;
+    }
+
+    public void setAvgChannelsDeferredPerCycle(double avgChannelsDeferredPerCycle) {
+        this.avgChannelsDeferredPerCycle = avgChannelsDeferredPerCycle;
+    }
+
+    public double getAvgAppendBatchesPerCycle() {
+        return avgAppendBatchesPerCycle;
+    }
+
+    public void setAvgAppendBatchesPerCycle(double avgAppendBatchesPerCycle) {
+        this.avgAppendBatchesPerCycle = avgAppendBatchesPerCycle;
+    }
+
     public double getEventRate() {
         return eventRate;
     }
@@ -125,6 +161,11 @@ public class EngineMetrics implements Details {
         engineMetrics.put("totalChannelIOSeconds", Double.toString(totalChannelIOSeconds));
         engineMetrics.put("avgChannelsWrittenPerCycle", twoSignificantDigits.format(avgChannelsWrittenPerCycle));
         engineMetrics.put("skippedWriteCycles", Long.toString(skippedWriteCycles));
+        if (adaptiveWritePeriod) {
+            engineMetrics.put("idleFlushPeriodSeconds", twoSignificantDigits.format(idleFlushPeriodSeconds));
+            engineMetrics.put("avgChannelsDeferredPerCycle", twoSignificantDigits.format(avgChannelsDeferredPerCycle));
+            engineMetrics.put("avgAppendBatchesPerCycle", twoSignificantDigits.format(avgAppendBatchesPerCycle));
+        }
 
         return engineMetrics;
     }
@@ -156,6 +197,17 @@ public class EngineMetrics implements Details {
         details.add(this.metricDetail(
                 "Avg channels written per cycle", twoSignificantDigits.format(avgChannelsWrittenPerCycle)));
         details.add(this.metricDetail("Skipped write cycles (backpressure)", Long.toString(skippedWriteCycles)));
+        if (adaptiveWritePeriod) {
+            details.add(this.metricDetail(
+                    "Adaptive write - idle channels flushed every (secs)",
+                    twoSignificantDigits.format(idleFlushPeriodSeconds)));
+            details.add(this.metricDetail(
+                    "Adaptive write - avg channels deferred per cycle",
+                    twoSignificantDigits.format(avgChannelsDeferredPerCycle)));
+            details.add(this.metricDetail(
+                    "Adaptive write - avg append batches per cycle",
+                    twoSignificantDigits.format(avgAppendBatchesPerCycle)));
+        }
         double writePeriod = context.getWritePeriod();
         if (writePeriod > 0) {
             details.add(this.metricDetail(
@@ -243,6 +295,10 @@ public class EngineMetrics implements Details {
         engineMetrics.setTotalChannelIOSeconds(engineContext.getAverageTotalChannelIOSeconds());
         engineMetrics.setAvgChannelsWrittenPerCycle(engineContext.getAverageChannelsWrittenPerCycle());
         engineMetrics.setSkippedWriteCycles(engineContext.getSkippedWriteCycles());
+        engineMetrics.setAdaptiveWritePeriod(engineContext.getWriteThead().isAdaptive());
+        engineMetrics.setIdleFlushPeriodSeconds(engineContext.getIdleFlushPeriodSeconds());
+        engineMetrics.setAvgChannelsDeferredPerCycle(engineContext.getAverageChannelsDeferredPerCycle());
+        engineMetrics.setAvgAppendBatchesPerCycle(engineContext.getAverageAppendBatchesPerCycle());
 
         return engineMetrics;
     }
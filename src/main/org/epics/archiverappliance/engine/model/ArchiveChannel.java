@@ -29,6 +29,7 @@ import org.epics.archiverappliance.engine.pv.PV;
 import org.epics.archiverappliance.engine.pv.PVFactory;
 import org.epics.archiverappliance.engine.pv.PVListener;
 import org.epics.archiverappliance.engine.pv.PVMetrics;
+import org.epics.archiverappliance.engine.writer.WriteAheadLog;
 
 import java.io.IOException;
 import java.time.Instant;
@@ -155,6 +156,8 @@ public abstract class ArchiveChannel {
 
     /** Buffer of received samples, periodically written */
     private SampleBuffer buffer;
+    /** This channel's handle into the engine's write ahead log; null if the write ahead log is not enabled. */
+    private WriteAheadLog.ChannelLog walLog;
     /**
      * the last time stamp when this pv was archived
      */
@@ -199,6 +202,9 @@ public abstract class ArchiveChannel {
         this.last_archived_timestamp = last_archived_timestamp;
         this.pvMetrics = new PVMetrics(name, controlPVname, System.currentTimeMillis() / 1000, archdbrtype);
         this.buffer = new SampleBuffer(name, buffer_capacity, archdbrtype, this.pvMetrics);
+        EngineContext engineContext = configservice.getEngineContext();
+        WriteAheadLog writeAheadLog = engineContext != null ? engineContext.getWriteAheadLog() : null;
+        this.walLog = writeAheadLog != null ? writeAheadLog.register(name, archdbrtype) : null;
         this.JCACommandThreadID = commandThreadID;
 
         this.pv = PVFactory.createPV(name, configservice, false, archdbrtype, commandThreadID, usePVAccess, false);
@@ -452,6 +458,13 @@ public abstract class ArchiveChannel {
         return buffer;
     }
 
+    /**
+     * @return This channel's handle into the write ahead log; null if the write ahead log is not enabled.
+     */
+    public final WriteAheadLog.ChannelLog getWALLog() {
+        return walLog;
+    }
+
     /**
      * Reset counters
      */
@@ -575,7 +588,9 @@ public abstract class ArchiveChannel {
         }
         this.pvMetrics.addConnectionLostRegainedFields(timeevent);
 
+        long walSegment = walLog != null ? walLog.append(timeevent) : WriteAheadLog.NO_SEGMENT;
         boolean incrementEventCounts = buffer.add(timeevent);
+        if (walLog != null) walLog.markUnflushed(walSegment);
         if (incrementEventCounts) {
             this.pvMetrics.addEventCounts();
             this.pvMetrics.addStorageSize(timeevent);
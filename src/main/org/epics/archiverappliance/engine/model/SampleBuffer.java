@@ -9,20 +9,25 @@ package org.epics.archiverappliance.engine.model;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.common.TimeUtils;
 import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.data.DBRTimeEvent;
 import org.epics.archiverappliance.engine.pv.PVMetrics;
 
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-
 /**
  * Buffer for the samples of one channel.
  * <p>
  * Assumes that one thread adds samples, while a different thread removes them.
  * When the queue size is reached, older samples get dropped.
+ * <p>
+ * The two {@link ArrayListEventStream}s used for double buffering are allocated once, pre-sized to the capacity, and
+ * swapped back and forth on every {@link #resetSamples()}.
+ * The writer hands the previous buffer back using {@link #releasePreviousSamples(ArrayListEventStream)} once it has
+ * been written out; if the previous buffer is still in use when the next swap happens (for example, a year change
+ * write is still in flight), we fall back to allocating a fresh buffer so that a writer never sees its samples being
+ * cleared underneath it.
  *
  * @author Kay Kasemir
  * @version Initial version:CSS
@@ -42,6 +47,10 @@ public class SampleBuffer {
      * previous ArrayListEventStream
      */
     private ArrayListEventStream previousSamples;
+    /**
+     * Has the writer finished with previousSamples? If so, we can reuse it as the next currentSamples.
+     */
+    private volatile boolean previousSamplesReleased = false;
 
     /**
      * year listener for this buffer.
@@ -64,7 +73,15 @@ public class SampleBuffer {
      */
     private final ArchDBRTypes archdbrtype;
 
+    /** Guarded by the lock on this buffer, as are the cached start of the year and the next year. */
     private short year;
+    /**
+     * Epoch seconds of the start of <code>year</code> and of the next year.
+     * We cache these so that the year check in add does not have to compute a calendar date for every event.
+     */
+    private long startOfYearEpochSeconds = Long.MAX_VALUE;
+
+    private long startOfNextYearEpochSeconds = Long.MIN_VALUE;
     /**
      * pVMetrics kept for this sample buffer
      */
@@ -81,10 +98,13 @@ public class SampleBuffer {
         this.channel_name = channel_name;
         this.archdbrtype = archdbrtype;
         this.pVMetrics = pVMetrics;
-        RemotableEventStreamDesc desc = new RemotableEventStreamDesc(archdbrtype, channel_name, (short) 0);
-
-        currentSamples = new ArrayListEventStream(capacity, desc);
         this.capacity = capacity;
+        currentSamples = newSampleStream((short) 0);
+    }
+
+    private ArrayListEventStream newSampleStream(short forYear) {
+        RemotableEventStreamDesc desc = new RemotableEventStreamDesc(archdbrtype, channel_name, forYear);
+        return new ArrayListEventStream(capacity, desc);
     }
 
     /** @return channel name of this buffer */
@@ -107,29 +127,54 @@ public class SampleBuffer {
         RemotableEventStreamDesc desc = new RemotableEventStreamDesc(archdbrtype, channel_name, (short) 0);
         ArrayListEventStream combinedSamples = new ArrayListEventStream(capacity * 3, desc);
 
-        if (previousSamples != null) {
-
-            for (org.epics.archiverappliance.Event previousSample : previousSamples) {
-                DBRTimeEvent timeEvent = (DBRTimeEvent) previousSample;
-                combinedSamples.add(timeEvent);
+        // The previous buffer may be cleared and reused by resetSamples; so copy under the same lock.
+        synchronized (this) {
+            if (previousSamples != null) {
+                combinedSamples.addAll(previousSamples);
             }
-        }
 
-        if (currentSamples != null) {
-            for (org.epics.archiverappliance.Event currentSample : currentSamples) {
-                DBRTimeEvent timeEvent22 = (DBRTimeEvent) currentSample;
-                combinedSamples.add(timeEvent22);
+            if (currentSamples != null) {
+                combinedSamples.addAll(currentSamples);
             }
         }
         return combinedSamples;
     }
 
-    public void resetSamples() {
-        RemotableEventStreamDesc desc = new RemotableEventStreamDesc(archdbrtype, channel_name, this.year);
-
+    /**
+     * Swap the current and previous buffers.
+     * After this call, {@link #getPreviousSamples()} returns the samples collected so far and new samples are added
+     * to an empty buffer.
+     * If the writer has released the previous buffer, it is cleared and reused; otherwise a new buffer is allocated.
+     * @return The samples collected so far; the same as {@link #getPreviousSamples()} right after this call.
+     */
+    public ArrayListEventStream resetSamples() {
         synchronized (this) {
+            ArrayListEventStream nextSamples;
+            if (previousSamples != null && previousSamplesReleased) {
+                nextSamples = previousSamples;
+                nextSamples.clear();
+                nextSamples.setYear(this.year);
+            } else {
+                nextSamples = newSampleStream(this.year);
+            }
             previousSamples = currentSamples;
-            currentSamples = new ArrayListEventStream(capacity, desc);
+            currentSamples = nextSamples;
+            previousSamplesReleased = false;
+            return previousSamples;
+        }
+    }
+
+    /**
+     * Called by the writer once it has finished writing out the samples it obtained from
+     * {@link #getPreviousSamples()}; this lets us reuse the buffer on the next {@link #resetSamples()}.
+     * Releasing a buffer that is no longer the previous buffer is a no-op.
+     * @param samples The buffer obtained from {@link #getPreviousSamples()}
+     */
+    public void releasePreviousSamples(ArrayListEventStream samples) {
+        synchronized (this) {
+            if (samples == previousSamples) {
+                previousSamplesReleased = true;
+            }
         }
     }
     /**
@@ -177,15 +222,25 @@ public class SampleBuffer {
             return false;
         }
 
-        @SuppressWarnings("deprecation")
-        short yearTemp = (short) (ZonedDateTime.ofInstant(value.getEventTimeStamp(), ZoneId.of("UTC"))
-                .getYear());
-        // value.getEventTimeStamp().
-        if (currentSamples.getYear() == 0) {
-            currentSamples.setYear(yearTemp);
-            this.year = yearTemp;
-        } else if (yearTemp != this.year) {
-            this.year = yearTemp;
+        // The year cache is shared by the threads adding samples and the writer (in resetSamples); so we check it
+        // under the lock but call the year listener outside the lock as it swaps the buffers and submits a write.
+        long epochSeconds = value.getEpochSeconds();
+        boolean yearChanged = false;
+        synchronized (this) {
+            if (epochSeconds < startOfYearEpochSeconds || epochSeconds >= startOfNextYearEpochSeconds) {
+                short yearTemp = TimeUtils.computeYearForEpochSeconds(epochSeconds);
+                startOfYearEpochSeconds = TimeUtils.getStartOfYearInSeconds((int) yearTemp);
+                startOfNextYearEpochSeconds = TimeUtils.getStartOfYearInSeconds(yearTemp + 1);
+                if (currentSamples.getYear() == 0) {
+                    currentSamples.setYear(yearTemp);
+                    this.year = yearTemp;
+                } else if (yearTemp != this.year) {
+                    this.year = yearTemp;
+                    yearChanged = true;
+                }
+            }
+        }
+        if (yearChanged) {
             yearListener.yearChanged(this);
         }
         try {
@@ -31,6 +31,7 @@ import org.epics.archiverappliance.engine.ArchiveEngine;
 import org.epics.archiverappliance.engine.metadata.MetaCompletedListener;
 import org.epics.archiverappliance.engine.metadata.MetaGet;
 import org.epics.archiverappliance.engine.model.ArchiveChannel;
+import org.epics.archiverappliance.engine.writer.WriteAheadLog;
 import org.epics.archiverappliance.engine.writer.WriterRunnable;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig.SamplingMethod;
 import org.epics.archiverappliance.utils.ui.GetUrlContent;
@@ -41,6 +42,8 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -67,6 +70,8 @@ public class EngineContext {
 
     /** writing thread to write samplebuffer to protocol buffer */
     private final WriterRunnable writer;
+    /** the write ahead log for the samples in the sample buffers; null if this is not enabled */
+    private final WriteAheadLog writeAheadLog;
     /**is the write thread started or not*/
     private boolean isWriteThreadStarted = false;
     /**the thread pool to schedule all the runnable of the engine*/
@@ -91,6 +96,14 @@ public class EngineContext {
     private long countOfWrittingByWriter = 0;
     /** number of write cycles skipped due to backpressure (prior cycle still running) */
     private long skippedWriteCycles = 0;
+    /** channels with samples that were not flushed summed across all adaptive write cycles */
+    private long totalChannelsDeferred = 0;
+    /** batches of appends summed across all adaptive write cycles */
+    private long totalAppendBatches = 0;
+    /** number of completed adaptive write cycles */
+    private long countOfAdaptiveWriteCycles = 0;
+    /** idle channels are flushed every so many seconds in the adaptive mode; as of the last cycle */
+    private double idleFlushPeriodSeconds = 0;
     /**the list of pvs controlling other pvs*/
     private final ConcurrentHashMap<String, ControllingPV> controlingPVList =
             new ConcurrentHashMap<String, ControllingPV>();
@@ -142,6 +155,36 @@ public class EngineContext {
         totalChannelsWritten += channelsWritten;
     }
 
+    /**
+     * Record what the adaptive write period did in a completed write cycle.
+     * @param channelsDeferred  number of channels that had data but were not flushed in this cycle
+     * @param appendBatches  number of batches the appends were coalesced into
+     * @param idleFlushPeriodSeconds  idle channels are now flushed every so many seconds
+     */
+    public void recordAdaptiveWriteCycle(int channelsDeferred, int appendBatches, double idleFlushPeriodSeconds) {
+        countOfAdaptiveWriteCycles++;
+        totalChannelsDeferred += channelsDeferred;
+        totalAppendBatches += appendBatches;
+        this.idleFlushPeriodSeconds = idleFlushPeriodSeconds;
+    }
+
+    /** @return average number of channels deferred per adaptive write cycle */
+    public double getAverageChannelsDeferredPerCycle() {
+        if (countOfAdaptiveWriteCycles == 0) return 0;
+        return (double) totalChannelsDeferred / countOfAdaptiveWriteCycles;
+    }
+
+    /** @return average number of append batches per adaptive write cycle */
+    public double getAverageAppendBatchesPerCycle() {
+        if (countOfAdaptiveWriteCycles == 0) return 0;
+        return (double) totalAppendBatches / countOfAdaptiveWriteCycles;
+    }
+
+    /** @return idle channels are flushed every so many seconds; 0 if we are not using the adaptive write period */
+    public double getIdleFlushPeriodSeconds() {
+        return idleFlushPeriodSeconds;
+    }
+
     /** Record a write cycle that was skipped because the prior cycle was still running. */
     public void recordSkippedWriteCycle() {
         skippedWriteCycles++;
@@ -214,6 +257,22 @@ public class EngineContext {
         configlogger.info("Write concurrency limit: " + writeThreadCountStr + " (0=unlimited) as specified by "
                 + writeThreadCountName + " in archappl.properties");
 
+        String writeAheadLogFolderName = "org.epics.archiverappliance.engine.epics.writeAheadLogFolder";
+        String writeAheadLogFolder = configService.getInstallationProperties().getProperty(writeAheadLogFolderName);
+        if (writeAheadLogFolder != null && !writeAheadLogFolder.isBlank()) {
+            Path walFolder = Paths.get(writeAheadLogFolder)
+                    .resolve(configService.getMyApplianceInfo().getIdentity());
+            try {
+                writeAheadLog = WriteAheadLog.open(walFolder);
+            } catch (IOException ex) {
+                throw new ConfigException("Cannot open the write ahead log in " + walFolder, ex);
+            }
+            configlogger.info("Logging the samples in the sample buffers into " + walFolder + " as specified by "
+                    + writeAheadLogFolderName + " in archappl.properties");
+        } else {
+            writeAheadLog = null;
+        }
+
         writer = new WriterRunnable(configService);
         channelList = new ConcurrentHashMap<String, ArchiveChannel>();
         logger.debug("Registering EngineContext for events");
@@ -252,6 +311,9 @@ public class EngineContext {
 
                 writer.flushBuffer();
                 writer.shutdown();
+                if (writeAheadLog != null) {
+                    writeAheadLog.close();
+                }
                 channelList.clear();
 
                 // stop the controlling pv
@@ -417,6 +479,13 @@ public class EngineContext {
         return writer;
     }
 
+    /**
+     * @return the write ahead log for the samples in the sample buffers; null if this is not enabled
+     */
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
     /**
      * start the write thread of the engine and this is actually called by the first pv when creating channel
      * @param configservice  configservice used by this writer
@@ -428,7 +497,12 @@ public class EngineContext {
         if (scheduler == null) {
             scheduler = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(1);
         }
-        scheduler.scheduleAtFixedRate(writer, 0, (long) (this.write_period * 1000), TimeUnit.MILLISECONDS);
+        if (writer.isAdaptive()) {
+            configlogger.info("Using an adaptive write period; the writer runs every " + writer.getSchedulingPeriod()
+                    + " seconds and flushes channels that need it");
+        }
+        scheduler.scheduleAtFixedRate(
+                writer, 0, (long) (writer.getSchedulingPeriod() * 1000), TimeUnit.MILLISECONDS);
         isWriteThreadStarted = true;
     }
     /**
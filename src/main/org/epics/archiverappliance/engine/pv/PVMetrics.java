@@ -16,6 +16,8 @@ package org.epics.archiverappliance.engine.pv;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.metrics.Counter;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.data.DBRTimeEvent;
 
@@ -33,6 +35,17 @@ import java.util.Map;
 public class PVMetrics {
     private static Logger logger = LogManager.getLogger(PVMetrics.class.getName());
     private static final long ROTATEEVENTS_OR_STORAGE_LIMIT = Long.MAX_VALUE - 100000;
+    // The appliance wide totals; these are what we export as OpenMetrics so that scrapes do not go thru all the PVs.
+    private static final Counter eventsTotal = Instrumentation.counter(
+            "archappl_engine_events", "Events from the control system (CA/PVA) that were added to the sample buffers");
+    private static final Counter bytesTotal =
+            Instrumentation.counter("archappl_engine_event_bytes", "Size of the events added to the sample buffers");
+    private static final Counter bufferFullDropsTotal = Instrumentation.counter(
+            "archappl_engine_sample_buffer_full_dropped_events", "Events dropped as the sample buffer was full");
+    private static final Counter timestampWrongDropsTotal = Instrumentation.counter(
+            "archappl_engine_timestamp_wrong_dropped_events", "Events dropped because of incorrect timestamps");
+    private static final Counter typeChangeDropsTotal = Instrumentation.counter(
+            "archappl_engine_type_change_dropped_events", "Events dropped as the PV changed its DBR type");
 
     /**pv name*/
     private String pvName;
@@ -160,6 +173,7 @@ public class PVMetrics {
 
         lastEventFromIOCTimeStamp = incorrectTimeStamp;
         timestampWrongEventCount++;
+        timestampWrongDropsTotal.increment();
     }
 
     /**
@@ -167,10 +181,12 @@ public class PVMetrics {
      */
     public void addSampleBufferFullLostEventCount() {
         sampleBufferFullLostEventCount++;
+        bufferFullDropsTotal.increment();
     }
 
     public void incrementInvalidTypeLostEventCount(ArchDBRTypes newCADBRType) {
         invalidTypeLostEventCount++;
+        typeChangeDropsTotal.increment();
         this.newCADBRType = newCADBRType;
     }
 
@@ -233,6 +249,7 @@ public class PVMetrics {
      * */
     public void addEventCounts() {
         eventCounts++;
+        eventsTotal.increment();
         if (eventCounts > ROTATEEVENTS_OR_STORAGE_LIMIT) {
             eventCounts = 0;
             storageSize = 0;
@@ -282,7 +299,9 @@ public class PVMetrics {
      */
     public void addStorageSize(final DBRTimeEvent timeevent) {
         // int count =timeevent.getSampleValue().getElementCount();
-        storageSize = storageSize + timeevent.getRawForm().len;
+        int eventSize = timeevent.getRawForm().len;
+        storageSize = storageSize + eventSize;
+        bytesTotal.add(eventSize);
         if (storageSize > ROTATEEVENTS_OR_STORAGE_LIMIT) {
             eventCounts = 0;
             storageSize = 0;
@@ -0,0 +1,615 @@
+package org.epics.archiverappliance.engine.writer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.ByteArray;
+import org.epics.archiverappliance.common.metrics.Counter;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.TypeSystem;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A per appliance write ahead log for the samples in the engine's sample buffers.
+ * Samples sit in the sample buffers for up to the write period (and longer when write cycles are skipped or deferred);
+ * without this log, an engine crash loses these samples for every PV.
+ * <p>
+ * Samples are appended sequentially into memory mapped segment files as they are added to the sample buffers.
+ * Writes into a memory mapped file are in the OS page cache as soon as they are made; so they survive a crash of the JVM
+ * without a system call per sample; the OS writes the pages out in the background in large batches.
+ * Each segment is mapped in its own arena; this is closed (which releases the mapping) when the segment is deleted.
+ * We do not force the segments to disk; so this does not protect against a crash of the OS.
+ * <p>
+ * At the start of each write cycle, the writer starts a new segment; once all the appends in the cycle succeed,
+ * segments that only have samples that are in the STS are deleted.
+ * Each channel tracks the oldest segment with samples that have not been written out yet (for example, if the channel
+ * was deferred in the adaptive mode) so that we do not delete those segments.
+ * If the samples cannot be written out for a long time, we drop the oldest segments beyond {@link #MAX_SEGMENTS};
+ * but never the segments started in the last {@link #ROLLS_KEPT} write cycles, which deferred channels may still need.
+ * On startup, the engine replays the segments left over from the previous run into the STS before it starts the writer;
+ * samples that made it into the STS before the crash are skipped by the STS as they are not newer than its last sample.
+ * <p>
+ * Samples are logged on the CA/PVA callback threads; so the log is split into {@link #STRIPES} stripes, each with its
+ * own lock and segments, and each channel always logs into the same stripe.
+ * We serialize the sample and compute its CRC before we take the stripe's lock; under the lock, we only copy the bytes
+ * into the segment.
+ * Segment ids are unique across the stripes and increase over time; so the segments of a stripe (and therefore the
+ * samples of a channel) are replayed in order.
+ * <p>
+ * Each segment starts with a header (magic, version, segment id); this is followed by records that have the
+ * length of the payload, a CRC32 of the payload and the payload. A record with length 0 marks the end of the segment.
+ * The length is written last; so a record that was being written when we crashed is not seen.
+ * The first time a channel is logged in a segment, we log the PV name and type with an id;
+ * samples refer to the channel using this id.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final Logger logger = LogManager.getLogger(WriteAheadLog.class.getName());
+    private static final Counter walBytes =
+            Instrumentation.counter("archappl_engine_wal_bytes", "Bytes appended to the engine's write ahead log");
+    private static final Counter walReplayedSamples = Instrumentation.counter(
+            "archappl_engine_wal_replayed_samples", "Samples replayed from the engine's write ahead log on startup");
+
+    /** Size of each memory mapped segment. */
+    public static int SEGMENT_SIZE = 32 * 1024 * 1024;
+    /**
+     * If we cannot checkpoint (for example, if the STS is failing), we drop the oldest segments beyond this count so that
+     * the log does not grow without bounds. This is split evenly among the stripes.
+     */
+    public static int MAX_SEGMENTS = 64;
+    /** The number of stripes; channels are spread over these so that they do not all contend on one lock. */
+    public static int STRIPES = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The adaptive mode defers idle channels for up to this many write cycles; we do not drop the segments started in
+     * these cycles even if we are over {@link #MAX_SEGMENTS}. We add a cycle for the current one and one for jitter.
+     */
+    static final int ROLLS_KEPT =
+            (int) Math.ceil(WriterRunnable.MAX_IDLE_FLUSH_MULTIPLIER * WriterRunnable.ADAPTIVE_CYCLES_PER_WRITE_PERIOD)
+                    + 2;
+
+    /** Channels that do not have any samples in the log that have not been written out. */
+    public static final long NO_SEGMENT = Long.MAX_VALUE;
+
+    public static final String SEGMENT_EXTENSION = ".wal";
+    private static final int MAGIC = 0x5741414C; // WAAL
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int SAMPLE_HEADER_SIZE = 1 + 4 + 2;
+    private static final byte DEFINE_CHANNEL = 1;
+    private static final byte SAMPLE = 2;
+
+    private final Path folder;
+    private final AtomicInteger channelIds = new AtomicInteger();
+    /** Segments from the previous run; these are replayed on startup. */
+    private final List<Path> recoveredSegments = new ArrayList<>();
+
+    private final AtomicLong nextSegmentId;
+    private final Stripe[] stripes;
+    private final int maxSegmentsPerStripe;
+    /** The segment ids returned by the last {@link #ROLLS_KEPT} calls to {@link #roll()}; oldest first. */
+    private final ArrayDeque<Long> recentRolls = new ArrayDeque<>();
+    /** Segments older than this may be dropped if we are over {@link #MAX_SEGMENTS}. */
+    private volatile long droppableBefore;
+    /** Set when we fail to append a sample; we only log the first failure till we can append again. */
+    private final AtomicBoolean appendFailing = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private static class Segment {
+        final long id;
+        final Path path;
+        final Arena arena;
+        final ByteBuffer buffer;
+        boolean hasRecords = false;
+
+        Segment(long id, Path path, Arena arena, ByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.arena = arena;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Release the mapping and delete the file; call this while holding the lock on the stripe.
+         */
+        void delete() throws IOException {
+            arena.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * A part of the log with its own lock and segments; all access is while holding the lock on the stripe.
+     */
+    private static class Stripe {
+        /** Segments created in this run, oldest first; the last one is the current segment. */
+        final ArrayDeque<Segment> segments = new ArrayDeque<>();
+        /** Created when the first sample is logged into this stripe. */
+        Segment current;
+    }
+
+    /**
+     * A channel's handle into the log.
+     */
+    public static class ChannelLog {
+        private final WriteAheadLog wal;
+        private final Stripe stripe;
+        private final int id;
+        private final String pvName;
+        private final ArchDBRTypes dbrType;
+        /** Only changed while holding the lock on the stripe. */
+        private long definedInSegment = -1;
+
+        private final AtomicLong oldestUnflushedSegment = new AtomicLong(NO_SEGMENT);
+        /**
+         * The oldest segment with samples in a write that completes outside the write cycle (a year change).
+         * Guarded by the lock on this ChannelLog; as is moving a segment between this and oldestUnflushedSegment.
+         */
+        private long inFlightSegment = NO_SEGMENT;
+
+        private ChannelLog(WriteAheadLog wal, Stripe stripe, int id, String pvName, ArchDBRTypes dbrType) {
+            this.wal = wal;
+            this.stripe = stripe;
+            this.id = id;
+            this.pvName = pvName;
+            this.dbrType = dbrType;
+        }
+
+        /**
+         * Log a sample before it is added to the sample buffer.
+         * @param event The sample
+         * @return The segment that the sample was logged in; pass this to {@link #markUnflushed(long)} once the sample is in the sample buffer.
+         */
+        public long append(DBRTimeEvent event) {
+            if (event.getDBRType() != dbrType) return NO_SEGMENT; // The sample buffer drops these as well.
+            return wal.appendSample(this, event);
+        }
+
+        /**
+         * Call this after the sample is in the sample buffer.
+         * We do this after adding the sample so that a write cycle that swaps the buffers in between does not lose track of the sample.
+         * The writer also calls this with the value returned by {@link #aboutToFlush()} if it could not write the samples.
+         * @param segmentId As returned by {@link #append(DBRTimeEvent)}
+         */
+        public void markUnflushed(long segmentId) {
+            if (segmentId != NO_SEGMENT && oldestUnflushedSegment.get() > segmentId) {
+                oldestUnflushedSegment.accumulateAndGet(segmentId, Math::min);
+            }
+        }
+
+        /**
+         * The writer calls this just before it swaps the sample buffers to write out the samples.
+         * @return The oldest segment with samples that are about to be written.
+         */
+        public long aboutToFlush() {
+            return oldestUnflushedSegment.getAndSet(NO_SEGMENT);
+        }
+
+        /**
+         * Like {@link #aboutToFlush()}, but for a write that is not waited for by the write cycle; for example, the
+         * write on a year change.
+         * The segment is kept in the log till the write is done and {@link #backgroundFlushDone(long, boolean)} is
+         * called; so a checkpoint while the write is in flight does not delete it.
+         * Only one such write can be in flight for a channel.
+         * @return The oldest segment with samples that are about to be written.
+         */
+        public synchronized long aboutToFlushInBackground() {
+            long segmentId = oldestUnflushedSegment.getAndSet(NO_SEGMENT);
+            inFlightSegment = segmentId;
+            return segmentId;
+        }
+
+        /**
+         * The write started using {@link #aboutToFlushInBackground()} is done.
+         * @param segmentId As returned by {@link #aboutToFlushInBackground()}
+         * @param written If false, the samples could not be written; we keep them in the log.
+         */
+        public synchronized void backgroundFlushDone(long segmentId, boolean written) {
+            if (!written) markUnflushed(segmentId);
+            inFlightSegment = NO_SEGMENT;
+        }
+
+        public synchronized long getOldestUnflushedSegment() {
+            return Math.min(oldestUnflushedSegment.get(), inFlightSegment);
+        }
+    }
+
+    /**
+     * Callback used to replay the samples of a PV; the samples in a call are all from the same year.
+     */
+    @FunctionalInterface
+    public interface ReplayConsumer {
+        void replay(String pvName, ArrayListEventStream samples) throws Exception;
+    }
+
+    private WriteAheadLog(Path folder, long firstSegmentId) {
+        this.folder = folder;
+        this.nextSegmentId = new AtomicLong(firstSegmentId);
+        this.droppableBefore = firstSegmentId;
+        int stripeCount = Math.max(1, STRIPES);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.maxSegmentsPerStripe = Math.max(2, MAX_SEGMENTS / stripeCount);
+    }
+
+    /**
+     * Open the log in this folder.
+     * Segments from a previous run are left alone till {@link #replay(TypeSystem, ReplayConsumer)}.
+     * @param folder The folder for the segments; this should be specific to this appliance.
+     * @return The log
+     * @throws IOException &emsp;
+     */
+    public static WriteAheadLog open(Path folder) throws IOException {
+        Files.createDirectories(folder);
+        List<Path> recoveredSegments = new ArrayList<>();
+        long lastSegmentId = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + SEGMENT_EXTENSION)) {
+            for (Path path : stream) {
+                long segmentId = segmentId(path);
+                if (segmentId < 0) continue;
+                recoveredSegments.add(path);
+                lastSegmentId = Math.max(lastSegmentId, segmentId);
+            }
+        }
+        WriteAheadLog wal = new WriteAheadLog(folder, lastSegmentId + 1);
+        wal.recoveredSegments.addAll(recoveredSegments);
+        wal.recoveredSegments.sort((a, b) -> Long.compare(segmentId(a), segmentId(b)));
+        if (!wal.recoveredSegments.isEmpty()) {
+            logger.info("Found {} segments in the write ahead log in {}", wal.recoveredSegments.size(), folder);
+        }
+        return wal;
+    }
+
+    public ChannelLog register(String pvName, ArchDBRTypes dbrType) {
+        int id = channelIds.incrementAndGet();
+        return new ChannelLog(this, stripes[Math.floorMod(id, stripes.length)], id, pvName, dbrType);
+    }
+
+    private long appendSample(ChannelLog channelLog, DBRTimeEvent event) {
+        if (closed) return NO_SEGMENT;
+        ByteArray rawForm = event.getRawForm();
+        int sampleLength = SAMPLE_HEADER_SIZE + rawForm.len;
+        ByteBuffer sampleHeader = ByteBuffer.allocate(SAMPLE_HEADER_SIZE)
+                .put(SAMPLE)
+                .putInt(channelLog.id)
+                .putShort(event.getYearSecondTimestamp().getYear())
+                .flip();
+        CRC32 crc = new CRC32();
+        crc.update(sampleHeader.duplicate());
+        crc.update(rawForm.data, rawForm.off, rawForm.len);
+        int sampleCRC = (int) crc.getValue();
+        int defineLength = defineLength(channelLog);
+        int needed = RECORD_HEADER_SIZE + sampleLength + RECORD_HEADER_SIZE + defineLength;
+        if (needed > SEGMENT_SIZE - SEGMENT_HEADER_SIZE) {
+            logger.debug("Sample for {} is too large for the write ahead log", channelLog.pvName);
+            return NO_SEGMENT;
+        }
+
+        Stripe stripe = channelLog.stripe;
+        synchronized (stripe) {
+            if (closed) return NO_SEGMENT;
+            try {
+                if (stripe.current == null) {
+                    startSegment(stripe);
+                }
+                if (channelLog.definedInSegment == stripe.current.id) {
+                    needed -= RECORD_HEADER_SIZE + defineLength;
+                }
+                if (stripe.current.buffer.remaining() < needed + 4) {
+                    startSegment(stripe);
+                }
+                Segment current = stripe.current;
+                if (channelLog.definedInSegment != current.id) {
+                    writeDefine(current, channelLog);
+                }
+                ByteBuffer buf = current.buffer;
+                int recordStart = buf.position();
+                buf.position(recordStart + RECORD_HEADER_SIZE);
+                buf.put(sampleHeader);
+                buf.put(rawForm.data, rawForm.off, rawForm.len);
+                finishRecord(current, recordStart, sampleLength, sampleCRC);
+                walBytes.add(RECORD_HEADER_SIZE + sampleLength);
+                return current.id;
+            } catch (IOException ex) {
+                if (appendFailing.compareAndSet(false, true)) {
+                    logger.error(
+                            "Exception appending to the write ahead log for " + channelLog.pvName
+                                    + "; further failures are not logged till we can append again",
+                            ex);
+                } else {
+                    logger.debug("Exception appending to the write ahead log for " + channelLog.pvName, ex);
+                }
+                return NO_SEGMENT;
+            }
+        }
+    }
+
+    private static int defineLength(ChannelLog channelLog) {
+        return 1 + 4 + 2 + channelLog.dbrType.name().length()
+                + channelLog.pvName.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeDefine(Segment current, ChannelLog channelLog) {
+        ByteBuffer buf = current.buffer;
+        int recordStart = buf.position();
+        buf.position(recordStart + RECORD_HEADER_SIZE);
+        byte[] typeName = channelLog.dbrType.name().getBytes(StandardCharsets.US_ASCII);
+        byte[] pvName = channelLog.pvName.getBytes(StandardCharsets.UTF_8);
+        buf.put(DEFINE_CHANNEL);
+        buf.putInt(channelLog.id);
+        buf.putShort((short) typeName.length);
+        buf.put(typeName);
+        buf.put(pvName);
+        int payloadLength = buf.position() - recordStart - RECORD_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buf.slice(recordStart + RECORD_HEADER_SIZE, payloadLength));
+        finishRecord(current, recordStart, payloadLength, (int) crc.getValue());
+        channelLog.definedInSegment = current.id;
+    }
+
+    /**
+     * The payload is in place; write the CRC and then the length which makes the record visible.
+     */
+    private static void finishRecord(Segment current, int recordStart, int payloadLength, int payloadCRC) {
+        ByteBuffer buf = current.buffer;
+        buf.putInt(recordStart + 4, payloadCRC);
+        buf.putInt(recordStart, payloadLength);
+        current.hasRecords = true;
+    }
+
+    /**
+     * Start a new segment in this stripe; call this while holding the lock on the stripe.
+     */
+    private void startSegment(Stripe stripe) throws IOException {
+        long segmentId = nextSegmentId.getAndIncrement();
+        Path path = folder.resolve(String.format("%020d", segmentId) + SEGMENT_EXTENSION);
+        Arena arena = Arena.ofShared();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE, arena).asByteBuffer();
+        } catch (IOException | RuntimeException ex) {
+            arena.close();
+            throw ex;
+        }
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(segmentId);
+        stripe.current = new Segment(segmentId, path, arena, buffer);
+        stripe.segments.addLast(stripe.current);
+        if (appendFailing.compareAndSet(true, false)) {
+            logger.info("Started segment " + path + "; appending to the write ahead log again");
+        }
+        while (stripe.segments.size() > maxSegmentsPerStripe && stripe.segments.peekFirst().id < droppableBefore) {
+            Segment dropped = stripe.segments.removeFirst();
+            logger.warn("Dropping segment " + dropped.path + " from the write ahead log as we have not been able to "
+                    + "write the samples in the sample buffers for some time");
+            dropped.delete();
+        }
+    }
+
+    /**
+     * Start a new segment in each stripe whose current segment has any samples; called at the start of a write cycle.
+     * @return A segment id; all the samples logged before this call are in older segments or in the current segment of
+     * a stripe (which {@link #checkpoint(long)} does not delete).
+     */
+    public long roll() {
+        long rolledSegment = nextSegmentId.get();
+        if (closed) return rolledSegment;
+        synchronized (recentRolls) {
+            recentRolls.addLast(rolledSegment);
+            if (recentRolls.size() > ROLLS_KEPT) {
+                droppableBefore = recentRolls.removeFirst();
+            }
+        }
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (!closed && stripe.current != null && stripe.current.hasRecords) {
+                    try {
+                        startSegment(stripe);
+                    } catch (IOException ex) {
+                        logger.error("Exception starting a new segment in the write ahead log", ex);
+                    }
+                }
+            }
+        }
+        return rolledSegment;
+    }
+
+    /**
+     * All the samples in the segments older than this are in the STS; delete these segments.
+     * The current segment of each stripe is kept.
+     * @param segmentId The oldest segment that may still have samples that are not in the STS.
+     */
+    public void checkpoint(long segmentId) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                while (stripe.segments.size() > 1 && stripe.segments.peekFirst().id < segmentId) {
+                    Segment segment = stripe.segments.removeFirst();
+                    try {
+                        segment.delete();
+                    } catch (IOException ex) {
+                        logger.error("Exception deleting segment " + segment.path + " from the write ahead log", ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replay the segments left over from the previous run; we delete these once we have replayed them.
+     * This should be called before the writer starts so that these samples are appended before any new ones.
+     * @param typeSystem Used to create the samples from their raw form.
+     * @param consumer Appends the samples of a PV into the STS
+     * @return The number of samples replayed.
+     */
+    public synchronized long replay(TypeSystem typeSystem, ReplayConsumer consumer) {
+        long replayedSamples = 0;
+        for (Path segmentPath : recoveredSegments) {
+            try {
+                replayedSamples += replaySegment(segmentPath, typeSystem, consumer);
+            } catch (IOException ex) {
+                logger.error("Exception replaying segment " + segmentPath + " from the write ahead log", ex);
+            }
+            try {
+                Files.deleteIfExists(segmentPath);
+            } catch (IOException ex) {
+                logger.error("Exception deleting replayed segment " + segmentPath, ex);
+            }
+        }
+        recoveredSegments.clear();
+        walReplayedSamples.add(replayedSamples);
+        return replayedSamples;
+    }
+
+    private long replaySegment(Path segmentPath, TypeSystem typeSystem, ReplayConsumer consumer) throws IOException {
+        // The segment is deleted once it is replayed; so we release the mapping when we are done.
+        try (Arena arena = Arena.ofConfined();
+                FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena).asByteBuffer();
+            return replaySegment(segmentPath, buf, typeSystem, consumer);
+        }
+    }
+
+    private long replaySegment(Path segmentPath, ByteBuffer buf, TypeSystem typeSystem, ReplayConsumer consumer) {
+        if (buf.remaining() < SEGMENT_HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            logger.warn("Skipping invalid segment " + segmentPath + " in the write ahead log");
+            return 0;
+        }
+        buf.getLong();
+        HashMap<Integer, ChannelLog> channels = new HashMap<>();
+        LinkedHashMap<String, ArrayListEventStream> samplesForPVs = new LinkedHashMap<>();
+        long sampleCount = 0;
+        while (buf.remaining() >= RECORD_HEADER_SIZE) {
+            int recordStart = buf.position();
+            int payloadLength = buf.getInt();
+            int expectedCRC = buf.getInt();
+            if (payloadLength <= 0 || payloadLength > buf.remaining()) break;
+            ByteBuffer payload = buf.slice(recordStart + RECORD_HEADER_SIZE, payloadLength);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != expectedCRC) {
+                logger.warn("Found a damaged record in segment " + segmentPath + "; skipping the rest of the segment");
+                break;
+            }
+            buf.position(recordStart + RECORD_HEADER_SIZE + payloadLength);
+            byte recordType = payload.get();
+            int channelId = payload.getInt();
+            if (recordType == DEFINE_CHANNEL) {
+                byte[] typeName = new byte[payload.getShort()];
+                payload.get(typeName);
+                byte[] pvName = new byte[payload.remaining()];
+                payload.get(pvName);
+                channels.put(
+                        channelId,
+                        new ChannelLog(
+                                this,
+                                null,
+                                channelId,
+                                new String(pvName, StandardCharsets.UTF_8),
+                                ArchDBRTypes.valueOf(new String(typeName, StandardCharsets.US_ASCII))));
+            } else if (recordType == SAMPLE) {
+                ChannelLog channelLog = channels.get(channelId);
+                if (channelLog == null) continue;
+                short year = payload.getShort();
+                byte[] rawForm = new byte[payload.remaining()];
+                payload.get(rawForm);
+                DBRTimeEvent event;
+                try {
+                    event = typeSystem
+                            .getUnmarshallingFromByteArrayConstructor(channelLog.dbrType)
+                            .newInstance(year, new ByteArray(rawForm));
+                } catch (ReflectiveOperationException ex) {
+                    logger.error("Exception replaying a sample for " + channelLog.pvName, ex);
+                    continue;
+                }
+                ArrayListEventStream samples = samplesForPVs.get(channelLog.pvName);
+                if (samples != null && samples.getYear() != year) {
+                    replaySamples(consumer, channelLog.pvName, samples);
+                    samples = null;
+                }
+                if (samples == null) {
+                    samples = new ArrayListEventStream(
+                            64, new RemotableEventStreamDesc(channelLog.dbrType, channelLog.pvName, year));
+                    samplesForPVs.put(channelLog.pvName, samples);
+                }
+                samples.add(event);
+                sampleCount++;
+            }
+        }
+        for (Map.Entry<String, ArrayListEventStream> entry : samplesForPVs.entrySet()) {
+            replaySamples(consumer, entry.getKey(), entry.getValue());
+        }
+        logger.info("Replayed {} samples for {} PVs from {}", sampleCount, samplesForPVs.size(), segmentPath);
+        return sampleCount;
+    }
+
+    private static void replaySamples(ReplayConsumer consumer, String pvName, ArrayListEventStream samples) {
+        try {
+            consumer.replay(pvName, samples);
+        } catch (Exception ex) {
+            logger.error("Exception replaying samples from the write ahead log for " + pvName, ex);
+        }
+    }
+
+    public synchronized boolean hasSegmentsToReplay() {
+        return !recoveredSegments.isEmpty();
+    }
+
+    /**
+     * Stop logging samples; if the writer has checkpointed all the samples, we do not leave anything to replay.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.segments.size() == 1 && !stripe.current.hasRecords) {
+                    stripe.segments.clear();
+                    stripe.current.delete();
+                }
+                // The segments left behind are replayed on the next startup; we only release the mappings.
+                for (Segment segment : stripe.segments) {
+                    segment.arena.close();
+                }
+                stripe.segments.clear();
+                stripe.current = null;
+            }
+        }
+    }
+
+    private static long segmentId(Path path) {
+        String fileName = path.getFileName().toString();
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -9,15 +9,22 @@ package org.epics.archiverappliance.engine.writer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.StoragePlugin;
+import org.epics.archiverappliance.Writer;
 import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.metrics.Counter;
+import org.epics.archiverappliance.common.metrics.Histogram;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
 import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
 import org.epics.archiverappliance.config.ConfigService;
+import org.epics.archiverappliance.config.PVNameToKeyMapping;
 import org.epics.archiverappliance.data.DBRTimeEvent;
 import org.epics.archiverappliance.engine.model.ArchiveChannel;
 import org.epics.archiverappliance.engine.model.SampleBuffer;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,6 +37,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * WriterRunnable is scheduled by the executor in the engine context every writing period.
+ * <p>
+ * In the adaptive mode (<code>org.epics.archiverappliance.engine.epics.adaptiveWritePeriod</code>), we are scheduled
+ * more often than the writing period and decide for each channel whether to flush it in this cycle.
+ * Channels whose sample buffers are filling up are flushed every cycle, channels with very few samples are flushed
+ * less often (more so when the storage is slow) and the others are flushed once every writing period.
+ * The appends for the channels whose files are in the same folder of the same store are coalesced into ordered batches
+ * that are written one after the other.
  * @author Luofeng Li
  *
  */
@@ -37,6 +51,31 @@ public class WriterRunnable implements Runnable {
     private static final Logger logger = LogManager.getLogger(WriterRunnable.class);
     /** Minimum write period [seconds] */
     private static final double MIN_WRITE_PERIOD = 1.0;
+
+    private static final Histogram writeCycleSeconds = Instrumentation.histogram(
+            "archappl_engine_write_cycle_seconds", "Time taken to write all the sample buffers in a write cycle");
+    private static final Counter skippedWriteCycles = Instrumentation.counter(
+            "archappl_engine_skipped_write_cycles", "Write cycles skipped as the previous cycle was still running");
+    private static final Instrumentation.Family<Histogram> appendSeconds = Instrumentation.histogramFamily(
+            "archappl_store_append_seconds", "Time taken to append one PV's samples into a store", "store");
+    private static final Counter deferredChannelWrites = Instrumentation.counter(
+            "archappl_engine_deferred_channel_writes", "Channel writes deferred by the adaptive write period");
+
+    /** In the adaptive mode, we are scheduled this many times every writing period. */
+    static final int ADAPTIVE_CYCLES_PER_WRITE_PERIOD = 2;
+    /** Channels whose sample buffer is at least this full are flushed every cycle in the adaptive mode. */
+    static final double HOT_BUFFER_FILL_FRACTION = 0.5;
+    /** Channels whose sample buffer is less full than this are flushed less often in the adaptive mode. */
+    static final double IDLE_BUFFER_FILL_FRACTION = 0.1;
+    /** Idle channels are deferred for this many writing periods while the storage keeps up. */
+    static final double MIN_IDLE_FLUSH_MULTIPLIER = 2.0;
+    /** Idle channels are deferred for up to this many writing periods while the storage is slow. */
+    static final double MAX_IDLE_FLUSH_MULTIPLIER = 8.0;
+    /** If a cycle takes more than this fraction of the cycle period, we defer idle channels for longer. */
+    static final double BUSY_CYCLE_FRACTION = 0.5;
+    /** Maximum number of appends coalesced into one batch. */
+    public static final int MAX_APPENDS_PER_BATCH = 32;
+
     /** the sample buffer hash map */
     private final ConcurrentHashMap<String, SampleBuffer> buffers = new ConcurrentHashMap<>();
 
@@ -50,6 +89,14 @@ public class WriterRunnable implements Runnable {
     private final ConcurrentHashMap<String, Future<?>> yearChangeFutures = new ConcurrentHashMap<>();
     /** optional semaphore capping concurrent channel writes; null means unlimited */
     private final Semaphore writeSemaphore;
+    /** adaptive write period and coalesced appends */
+    private final boolean adaptive;
+    /** the writing period in seconds as determined by setWritingPeriod */
+    private double writePeriodSeconds = MIN_WRITE_PERIOD;
+    /** idle channels are flushed every idleFlushMultiplier writing periods; only changed by the scheduler thread */
+    private volatile double idleFlushMultiplier = MIN_IDLE_FLUSH_MULTIPLIER;
+    /** per channel state used by the adaptive mode */
+    private final ConcurrentHashMap<String, ChannelWriteState> channelStates = new ConcurrentHashMap<>();
 
     /**
      * the constructor
@@ -66,6 +113,9 @@ public class WriterRunnable implements Runnable {
             logger.warn("Invalid writeThreadCount configuration, using default value: 0", e);
         }
         this.writeSemaphore = (limit > 0) ? new Semaphore(limit) : null;
+        this.adaptive = Boolean.parseBoolean(configservice
+                .getInstallationProperties()
+                .getProperty("org.epics.archiverappliance.engine.epics.adaptiveWritePeriod", "false"));
     }
 
     /** Add a channel's buffer that this thread reads
@@ -85,21 +135,23 @@ public class WriterRunnable implements Runnable {
         if (buffer != null) {
             ConcurrentHashMap<String, ArchiveChannel> channelList =
                     configservice.getEngineContext().getChannelList();
-            buffer.resetSamples();
-            ArrayListEventStream previousSamples = buffer.getPreviousSamples();
-            if (!previousSamples.isEmpty()) {
-                ArchiveChannel channel = channelList.get(channelName);
-                if (channel != null) {
-                    try (BasicContext ctx = new BasicContext()) {
-                        channel.setlastRotateLogsEpochSeconds(System.currentTimeMillis() / 1000);
-                        channel.getWriter().appendData(ctx, channelName, previousSamples);
-                    } catch (IOException e) {
-                        logger.error("Exception flushing buffer on channel removal for " + channelName, e);
-                    }
+            ArrayListEventStream previousSamples = buffer.resetSamples();
+            ArchiveChannel channel = previousSamples.isEmpty() ? null : channelList.get(channelName);
+            if (channel == null) {
+                buffer.releasePreviousSamples(previousSamples);
+            } else {
+                try (BasicContext ctx = new BasicContext()) {
+                    channel.setlastRotateLogsEpochSeconds(System.currentTimeMillis() / 1000);
+                    channel.getWriter().appendData(ctx, channelName, previousSamples);
+                } catch (IOException e) {
+                    logger.error("Exception flushing buffer on channel removal for " + channelName, e);
+                } finally {
+                    buffer.releasePreviousSamples(previousSamples);
                 }
             }
         }
         buffers.remove(channelName);
+        channelStates.remove(channelName);
     }
 
     /**
@@ -109,6 +161,9 @@ public class WriterRunnable implements Runnable {
      */
     void addSampleBuffer(final String name, final SampleBuffer buffer) {
         buffers.put(name, buffer);
+        if (adaptive) {
+            channelStates.put(name, new ChannelWriteState(System.nanoTime()));
+        }
         buffer.addYearListener(this::writeYearChange);
     }
 
@@ -126,24 +181,56 @@ public class WriterRunnable implements Runnable {
         if (tempwrite_period < MIN_WRITE_PERIOD) {
             tempwrite_period = MIN_WRITE_PERIOD;
         }
+        this.writePeriodSeconds = tempwrite_period;
         return tempwrite_period;
     }
 
+    /**
+     * @return the period in seconds at which this should be scheduled.
+     * This is the writing period; in the adaptive mode, we are scheduled more often but no more than once a second.
+     */
+    public double getSchedulingPeriod() {
+        if (!adaptive) return writePeriodSeconds;
+        return Math.max(MIN_WRITE_PERIOD, writePeriodSeconds / ADAPTIVE_CYCLES_PER_WRITE_PERIOD);
+    }
+
+    /** @return true if we are using the adaptive write period */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /** @return idle channels are flushed every so many seconds in the adaptive mode */
+    public double getIdleFlushPeriodSeconds() {
+        return writePeriodSeconds * idleFlushMultiplier;
+    }
+
     @Override
     public void run() {
         try {
             long startMillis = System.currentTimeMillis();
-            WriteCycleMetrics metrics = write();
+            WriteCycleMetrics metrics = write(false);
             long wallClockMillis = System.currentTimeMillis() - startMillis;
+            if (adaptive) {
+                adaptIdleFlushMultiplier(metrics == null, wallClockMillis);
+            }
             if (metrics == null) {
+                skippedWriteCycles.increment();
                 configservice.getEngineContext().recordSkippedWriteCycle();
             } else {
+                writeCycleSeconds.observeMillis(wallClockMillis);
                 configservice
                         .getEngineContext()
                         .recordWriteCycle(
                                 wallClockMillis / 1000.0,
                                 metrics.totalChannelIOMillis() / 1000.0,
                                 metrics.channelsWritten());
+                if (adaptive) {
+                    deferredChannelWrites.add(metrics.channelsDeferred());
+                    configservice
+                            .getEngineContext()
+                            .recordAdaptiveWriteCycle(
+                                    metrics.channelsDeferred(), metrics.appendBatches(), getIdleFlushPeriodSeconds());
+                }
             }
         } catch (Exception e) {
             logger.error("Exception", e);
@@ -165,16 +252,23 @@ public class WriterRunnable implements Runnable {
         ConcurrentHashMap<String, ArchiveChannel> channelList =
                 configservice.getEngineContext().getChannelList();
 
-        buffer.resetSamples();
-        ArrayListEventStream previousSamples = buffer.getPreviousSamples();
-        if (previousSamples.isEmpty()) return;
-
         ArchiveChannel channel = channelList.get(channelName);
-        if (channel == null) return;
-
         Future<?> existing = yearChangeFutures.get(channelName);
-        if (existing != null && !existing.isDone()) {
+        boolean inFlight = existing != null && !existing.isDone();
+        // As in collectWriteTasks, we take the channel's segment before swapping the buffers.
+        // This write is not waited for by the write cycle; so the segment is kept in the log till the write is done.
+        WriteAheadLog.ChannelLog walLog = channel != null && !inFlight ? channel.getWALLog() : null;
+        long walSegment = walLog != null ? walLog.aboutToFlushInBackground() : WriteAheadLog.NO_SEGMENT;
+        ArrayListEventStream previousSamples = buffer.resetSamples();
+        if (previousSamples.isEmpty() || channel == null) {
+            if (walLog != null) walLog.backgroundFlushDone(walSegment, true);
+            buffer.releasePreviousSamples(previousSamples);
+            return;
+        }
+
+        if (inFlight) {
             logger.debug("Year-change write already in-flight for {}; skipping duplicate", channelName);
+            buffer.releasePreviousSamples(previousSamples);
             return;
         }
 
@@ -182,42 +276,99 @@ public class WriterRunnable implements Runnable {
         channel.setlastRotateLogsEpochSeconds(System.currentTimeMillis() / 1000);
 
         Future<?> future = writeExecutor.submit(() -> {
+            boolean written = false;
             try (BasicContext ctx = new BasicContext()) {
                 channel.getWriter().appendData(ctx, channelName, previousSamples);
+                written = true;
                 logger.info(channelName + ": year change write complete");
             } catch (IOException e) {
                 logger.error("Exception writing year-change buffer for " + channelName, e);
             } finally {
+                if (walLog != null) walLog.backgroundFlushDone(walSegment, written);
+                buffer.releasePreviousSamples(previousSamples);
                 yearChangeFutures.remove(channelName);
             }
         });
         yearChangeFutures.put(channelName, future);
     }
 
+    /**
+     * Tune how long we defer idle channels from the time taken by the last cycle.
+     * If the storage cannot keep up, we double the deferral; otherwise, we slowly bring it back down.
+     */
+    private void adaptIdleFlushMultiplier(boolean skipped, long wallClockMillis) {
+        double cycleMillis = getSchedulingPeriod() * 1000;
+        double multiplier = idleFlushMultiplier;
+        if (skipped || wallClockMillis > cycleMillis * BUSY_CYCLE_FRACTION) {
+            multiplier = Math.min(MAX_IDLE_FLUSH_MULTIPLIER, multiplier * 2);
+        } else if (wallClockMillis < cycleMillis * BUSY_CYCLE_FRACTION / 4) {
+            multiplier = Math.max(MIN_IDLE_FLUSH_MULTIPLIER, multiplier - 0.5);
+        }
+        if (multiplier != idleFlushMultiplier) {
+            logger.debug("Idle channels are now flushed every {} writing periods", multiplier);
+            idleFlushMultiplier = multiplier;
+        }
+    }
+
     /** Carries the data needed to write one channel's buffer in a single write cycle. */
-    private record WriteTask(ArchiveChannel channel, String name, ArrayListEventStream samples) {}
+    private record WriteTask(
+            ArchiveChannel channel,
+            SampleBuffer buffer,
+            String name,
+            ArrayListEventStream samples,
+            String batchKey,
+            long walSegment) {}
 
     /** Summary of a completed write cycle returned to run() for metrics reporting. */
-    private record WriteCycleMetrics(int channelsWritten, long totalChannelIOMillis) {}
+    private record WriteCycleMetrics(
+            int channelsWritten, long totalChannelIOMillis, int channelsDeferred, int appendBatches) {}
+
+    /** When the channel was last flushed and the key used to coalesce its appends; used in the adaptive mode. */
+    private static class ChannelWriteState {
+        private volatile long lastFlushNanos;
+        private String batchKey;
+
+        ChannelWriteState(long lastFlushNanos) {
+            this.lastFlushNanos = lastFlushNanos;
+        }
+    }
 
     /**
      * Write all sample buffers into short term storage in parallel using Java 21 virtual threads.
      * All buffer swaps happen on the scheduler thread before fan-out so that every channel shares
      * a consistent epoch snapshot for the write cycle.
+     * @param flushAll Write all sample buffers even in the adaptive mode; for example, when shutting down.
      * @return metrics for the completed cycle, or null if the cycle was skipped due to a prior cycle still running
      * @throws Exception error occurs during writing the sample buffer to the short term storage
      */
-    private WriteCycleMetrics write() throws Exception {
+    private WriteCycleMetrics write(boolean flushAll) throws Exception {
         if (!isRunning.compareAndSet(false, true)) return null;
         try {
             final long writeTimestamp = System.currentTimeMillis() / 1000;
             ConcurrentHashMap<String, ArchiveChannel> channelList =
                     configservice.getEngineContext().getChannelList();
+            WriteAheadLog wal = configservice.getEngineContext().getWriteAheadLog();
+            final long rolledSegment = wal != null ? wal.roll() : WriteAheadLog.NO_SEGMENT;
+
+            if (!adaptive) {
+                List<WriteTask> tasks = collectWriteTasks(channelList, writeTimestamp, false);
+                List<Future<Long>> futures = submitWriteTasks(tasks);
+                long totalChannelIOMillis = awaitWriteCompletion(futures);
+                if (wal != null) checkpointWriteAheadLog(wal, rolledSegment);
+                return new WriteCycleMetrics(tasks.size(), totalChannelIOMillis, 0, tasks.size());
+            }
 
-            List<WriteTask> tasks = collectWriteTasks(channelList, writeTimestamp);
-            List<Future<Long>> futures = submitWriteTasks(tasks);
+            int channelsWithSamples = countChannelsWithSamples();
+            List<WriteTask> tasks = collectWriteTasks(channelList, writeTimestamp, !flushAll);
+            List<List<WriteTask>> batches = coalesceWriteTasks(tasks);
+            List<Future<Long>> futures = submitWriteBatches(batches);
             long totalChannelIOMillis = awaitWriteCompletion(futures);
-            return new WriteCycleMetrics(tasks.size(), totalChannelIOMillis);
+            if (wal != null) checkpointWriteAheadLog(wal, rolledSegment);
+            return new WriteCycleMetrics(
+                    tasks.size(),
+                    totalChannelIOMillis,
+                    Math.max(0, channelsWithSamples - tasks.size()),
+                    batches.size());
         } finally {
             isRunning.set(false);
         }
@@ -227,29 +378,137 @@ public class WriterRunnable implements Runnable {
      * Swaps the double-buffer for every active channel on the scheduler thread, preparing a
      * snapshot of each channel's pending samples. All swaps happen before any I/O is submitted
      * so no channel accumulates new data into its previous buffer while another is still writing.
+     * If <code>adaptively</code>, channels that do not need to be flushed in this cycle are left alone.
      */
     private List<WriteTask> collectWriteTasks(
-            ConcurrentHashMap<String, ArchiveChannel> channelList, long writeTimestamp) {
+            ConcurrentHashMap<String, ArchiveChannel> channelList, long writeTimestamp, boolean adaptively) {
         List<WriteTask> tasks = new ArrayList<>(buffers.size());
+        long nowNanos = System.nanoTime();
         for (Entry<String, SampleBuffer> entry : buffers.entrySet()) {
             SampleBuffer buffer = entry.getValue();
             if (!buffer.hasCurrentSamples()) continue;
+            ChannelWriteState state = adaptive ? channelStates.get(entry.getKey()) : null;
+            if (adaptively && state != null && !needsFlush(buffer, state, nowNanos)) continue;
 
             String channelName = buffer.getChannelName();
-            buffer.resetSamples();
-            ArrayListEventStream previousSamples = buffer.getPreviousSamples();
-            if (previousSamples.isEmpty()) continue;
-
             ArchiveChannel channel = channelList.get(channelName);
-            if (channel == null) continue;
+            WriteAheadLog.ChannelLog walLog = channel != null ? channel.getWALLog() : null;
+            long walSegment = walLog != null ? walLog.aboutToFlush() : WriteAheadLog.NO_SEGMENT;
+            ArrayListEventStream previousSamples = buffer.resetSamples();
+            if (previousSamples.isEmpty() || channel == null) {
+                buffer.releasePreviousSamples(previousSamples);
+                continue;
+            }
 
             channel.aboutToWriteBuffer((DBRTimeEvent) previousSamples.getLast());
             channel.setlastRotateLogsEpochSeconds(writeTimestamp);
-            tasks.add(new WriteTask(channel, channelName, previousSamples));
+            String batchKey = null;
+            if (state != null) {
+                state.lastFlushNanos = nowNanos;
+                if (state.batchKey == null) {
+                    state.batchKey = batchKey(channel.getWriter(), channelName);
+                }
+                batchKey = state.batchKey;
+            }
+            tasks.add(new WriteTask(channel, buffer, channelName, previousSamples, batchKey, walSegment));
         }
         return tasks;
     }
 
+    /**
+     * Should we flush this channel in this cycle?
+     * Channels whose buffers are filling up are always flushed so that we do not drop samples;
+     * idle channels are flushed every {@link #getIdleFlushPeriodSeconds()} and the rest every writing period.
+     * We allow half a cycle of slack as the cycles do not start exactly on time.
+     */
+    private boolean needsFlush(SampleBuffer buffer, ChannelWriteState state, long nowNanos) {
+        double fill = (double) buffer.getQueueSize() / Math.max(1, buffer.getCapacity());
+        if (fill >= HOT_BUFFER_FILL_FRACTION) return true;
+        double flushPeriodSeconds =
+                (fill < IDLE_BUFFER_FILL_FRACTION) ? getIdleFlushPeriodSeconds() : writePeriodSeconds;
+        double secondsSinceLastFlush = (nowNanos - state.lastFlushNanos) / 1_000_000_000.0;
+        return secondsSinceLastFlush >= flushPeriodSeconds - getSchedulingPeriod() / 2;
+    }
+
+    private int countChannelsWithSamples() {
+        int count = 0;
+        for (SampleBuffer buffer : buffers.values()) {
+            if (buffer.hasCurrentSamples()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * The appends for channels whose files live in the same folder of the same store share this key.
+     * The PV's key is what the plain storage plugins use as the path to the PV's files.
+     */
+    private String batchKey(Writer writer, String pvName) {
+        String key = pvName;
+        PVNameToKeyMapping pvNameToKeyConverter = configservice.getPVNameToKeyConverter();
+        if (pvNameToKeyConverter != null) {
+            key = pvNameToKeyConverter.convertPVNameToKey(pvName);
+        }
+        int lastSeparator = key.lastIndexOf('/');
+        return storeName(writer) + "/" + (lastSeparator > 0 ? key.substring(0, lastSeparator) : "");
+    }
+
+    /**
+     * Sort the write tasks by folder and PV name and split them into batches of at most {@link #MAX_APPENDS_PER_BATCH}
+     * appends into the same folder.
+     */
+    private static List<List<WriteTask>> coalesceWriteTasks(List<WriteTask> tasks) {
+        tasks.sort(Comparator.comparing(WriteTask::batchKey, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(WriteTask::name));
+        List<List<WriteTask>> batches = new ArrayList<>();
+        List<WriteTask> currentBatch = null;
+        String currentKey = null;
+        for (WriteTask task : tasks) {
+            if (currentBatch == null
+                    || currentBatch.size() >= MAX_APPENDS_PER_BATCH
+                    || !String.valueOf(task.batchKey()).equals(currentKey)) {
+                currentBatch = new ArrayList<>();
+                currentKey = String.valueOf(task.batchKey());
+                batches.add(currentBatch);
+            }
+            currentBatch.add(task);
+        }
+        return batches;
+    }
+
+    /**
+     * Submits each batch of appends to the virtual thread executor, optionally throttled by the write semaphore.
+     * The appends in a batch run one after the other and share a BasicContext.
+     * Each future returns the elapsed wall-clock milliseconds for that batch.
+     */
+    private List<Future<Long>> submitWriteBatches(List<List<WriteTask>> batches) {
+        List<Future<Long>> futures = new ArrayList<>(batches.size());
+        for (List<WriteTask> batch : batches) {
+            futures.add(writeExecutor.submit(() -> {
+                if (writeSemaphore != null) writeSemaphore.acquireUninterruptibly();
+                long t0 = System.currentTimeMillis();
+                try (BasicContext ctx = new BasicContext()) {
+                    for (WriteTask task : batch) {
+                        Writer writer = task.channel().getWriter();
+                        long appendStart = System.nanoTime();
+                        try {
+                            writer.appendData(ctx, task.name(), task.samples());
+                            appendSeconds.labels(storeName(writer)).observeNanos(System.nanoTime() - appendStart);
+                        } catch (IOException e) {
+                            logger.error("Exception writing channel " + task.name(), e);
+                            keepInWriteAheadLog(task);
+                        } finally {
+                            task.buffer().releasePreviousSamples(task.samples());
+                        }
+                    }
+                } finally {
+                    if (writeSemaphore != null) writeSemaphore.release();
+                }
+                return System.currentTimeMillis() - t0;
+            }));
+        }
+        return futures;
+    }
+
     /**
      * Submits each channel's appendData() call to the virtual thread executor,
      * optionally throttled by the write semaphore.
@@ -261,11 +520,16 @@ public class WriterRunnable implements Runnable {
             futures.add(writeExecutor.submit(() -> {
                 if (writeSemaphore != null) writeSemaphore.acquireUninterruptibly();
                 long t0 = System.currentTimeMillis();
+                Writer writer = task.channel().getWriter();
+                long appendStart = System.nanoTime();
                 try (BasicContext ctx = new BasicContext()) {
-                    task.channel().getWriter().appendData(ctx, task.name(), task.samples());
+                    writer.appendData(ctx, task.name(), task.samples());
+                    appendSeconds.labels(storeName(writer)).observeNanos(System.nanoTime() - appendStart);
                 } catch (IOException e) {
                     logger.error("Exception writing channel " + task.name(), e);
+                    keepInWriteAheadLog(task);
                 } finally {
+                    task.buffer().releasePreviousSamples(task.samples());
                     if (writeSemaphore != null) writeSemaphore.release();
                 }
                 return System.currentTimeMillis() - t0;
@@ -274,6 +538,33 @@ public class WriterRunnable implements Runnable {
         return futures;
     }
 
+    /**
+     * The samples in this task could not be written; keep the segments with these samples in the write ahead log
+     * so that they are replayed on the next startup.
+     */
+    private static void keepInWriteAheadLog(WriteTask task) {
+        WriteAheadLog.ChannelLog walLog = task.channel().getWALLog();
+        if (walLog != null) walLog.markUnflushed(task.walSegment());
+    }
+
+    /**
+     * Delete the segments of the write ahead log whose samples have all been written out.
+     * Samples logged before the segment we rolled to at the start of this cycle are either in the STS now or
+     * are still in the sample buffers of a channel (which then points to the oldest segment that it needs).
+     */
+    private void checkpointWriteAheadLog(WriteAheadLog wal, long rolledSegment) {
+        long oldestNeeded = rolledSegment;
+        for (ArchiveChannel channel : configservice.getEngineContext().getChannelList().values()) {
+            WriteAheadLog.ChannelLog walLog = channel.getWALLog();
+            if (walLog != null) oldestNeeded = Math.min(oldestNeeded, walLog.getOldestUnflushedSegment());
+        }
+        wal.checkpoint(oldestNeeded);
+    }
+
+    private static String storeName(Writer writer) {
+        return (writer instanceof StoragePlugin storagePlugin) ? storagePlugin.getName() : "unknown";
+    }
+
     /**
      * Waits for all submitted write futures to complete and returns the sum of per-channel
      * elapsed times in milliseconds. Joining here preserves backpressure on the scheduler:
@@ -293,7 +584,7 @@ public class WriterRunnable implements Runnable {
      * @throws Exception  error occurs during writing the sample buffer to the short term storage
      */
     public void flushBuffer() throws Exception {
-        write(); // metrics from this flush cycle are intentionally discarded
+        write(true); // metrics from this flush cycle are intentionally discarded
     }
 
     /**
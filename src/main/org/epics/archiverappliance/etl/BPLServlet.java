@@ -13,6 +13,7 @@ import org.epics.archiverappliance.common.BPLAction;
 import org.epics.archiverappliance.common.BasicDispatcher;
 import org.epics.archiverappliance.common.GetVersion;
 import org.epics.archiverappliance.common.ProcessMetricsReport;
+import org.epics.archiverappliance.common.reports.OpenMetricsReport;
 import org.epics.archiverappliance.config.ConfigService;
 import org.epics.archiverappliance.etl.bpl.ChangeStore;
 import org.epics.archiverappliance.etl.bpl.ConsolidatePBFilesForOnePV;
@@ -57,6 +58,7 @@ public class BPLServlet extends HttpServlet {
         getActions.put("/consolidateDataForPV", ConsolidatePBFilesForOnePV.class);
         getActions.put("/deletePV", DeletePV.class);
         getActions.put("/getProcessMetrics", ProcessMetricsReport.class);
+        getActions.put("/metrics", OpenMetricsReport.class);
         getActions.put("/getVersion", GetVersion.class);
         getActions.put("/changeStore", ChangeStore.class);
     }
@@ -0,0 +1,112 @@
+package org.epics.archiverappliance.etl.common;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.InterruptedIOException;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of ETL jobs that move data into one destination at the same time.
+ * The ETL jobs for all the PVs are triggered independently and run in virtual threads;
+ * so without this, all the PVs whose partitions roll over at the same time would hit the destination's device together.
+ * Jobs into the same destination queue up here and are let through a few at a time;
+ * jobs into other destinations are not affected.
+ * <p>
+ * The number of concurrent jobs can be set per destination using
+ * <code>org.epics.archiverappliance.etl.common.maxConcurrentETLJobs.&lt;destName&gt;</code>
+ * or for all destinations using <code>org.epics.archiverappliance.etl.common.maxConcurrentETLJobs</code>.
+ * Otherwise, we pick a default based on the type of the file system the destination is on;
+ * ramdisks can sustain many concurrent writers while network file systems do best with only a couple.
+ */
+public class ETLIOSlots {
+    private static final Logger logger = LogManager.getLogger(ETLIOSlots.class.getName());
+    public static final String MAX_CONCURRENT_ETL_JOBS = "org.epics.archiverappliance.etl.common.maxConcurrentETLJobs";
+    public static final int RAMDISK_CONCURRENT_ETL_JOBS = 16;
+    public static final int LOCALDISK_CONCURRENT_ETL_JOBS = 4;
+    public static final int NETWORKDISK_CONCURRENT_ETL_JOBS = 2;
+
+    private final int maxConcurrentJobs;
+    private final Semaphore slots;
+    private final AtomicInteger jobsWaiting = new AtomicInteger();
+    private final AtomicInteger jobsRunning = new AtomicInteger();
+
+    /**
+     * A slot that was granted to an ETL job; close this when the job is done.
+     */
+    public interface Slot extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    ETLIOSlots(String destName, String fileStoreType, Properties installationProperties) {
+        Properties props = installationProperties != null ? installationProperties : new Properties();
+        String configured = props.getProperty(
+                MAX_CONCURRENT_ETL_JOBS + "." + destName, props.getProperty(MAX_CONCURRENT_ETL_JOBS));
+        this.maxConcurrentJobs = Math.max(
+                1, configured != null ? Integer.parseInt(configured.trim()) : defaultForFileStoreType(fileStoreType));
+        this.slots = new Semaphore(maxConcurrentJobs, true);
+        logger.info(
+                "Allowing {} concurrent ETL jobs into {} on a file store of type {}",
+                maxConcurrentJobs,
+                destName,
+                fileStoreType);
+    }
+
+    /**
+     * @param fileStoreType As returned by FileStore.type(); could be null if we do not know this.
+     * @return The default number of concurrent ETL jobs for this type of file system.
+     */
+    static int defaultForFileStoreType(String fileStoreType) {
+        if (fileStoreType == null) return LOCALDISK_CONCURRENT_ETL_JOBS;
+        String type = fileStoreType.toLowerCase();
+        if (type.equals("tmpfs") || type.equals("ramfs")) return RAMDISK_CONCURRENT_ETL_JOBS;
+        if (type.startsWith("nfs")
+                || type.startsWith("smb")
+                || type.startsWith("fuse")
+                || type.equals("cifs")
+                || type.equals("lustre")
+                || type.equals("gpfs")
+                || type.equals("ceph")) return NETWORKDISK_CONCURRENT_ETL_JOBS;
+        return LOCALDISK_CONCURRENT_ETL_JOBS;
+    }
+
+    /**
+     * Wait for a slot into this destination.
+     * @return The slot; close this when done.
+     * @throws InterruptedIOException If we were interrupted while waiting (for example, when shutting down).
+     */
+    public Slot acquire() throws InterruptedIOException {
+        jobsWaiting.incrementAndGet();
+        try {
+            slots.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for an ETL slot");
+        } finally {
+            jobsWaiting.decrementAndGet();
+        }
+        jobsRunning.incrementAndGet();
+        return () -> {
+            jobsRunning.decrementAndGet();
+            slots.release();
+        };
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    /**
+     * @return The number of ETL jobs waiting for a slot into this destination; the queue depth.
+     */
+    public int getJobsWaiting() {
+        return jobsWaiting.get();
+    }
+
+    public int getJobsRunning() {
+        return jobsRunning.get();
+    }
+}
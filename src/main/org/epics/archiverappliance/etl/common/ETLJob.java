@@ -11,6 +11,7 @@ import org.epics.archiverappliance.etl.ETLInfoListStatistics;
 import org.epics.archiverappliance.etl.ETLOptimizable;
 import org.epics.archiverappliance.etl.ETLPostOptimizers;
 import org.epics.archiverappliance.etl.ETLSource;
+import org.epics.archiverappliance.etl.StorageMetrics;
 
 import java.io.IOException;
 import java.time.Instant;
@@ -72,13 +73,6 @@ public class ETLJob implements Runnable {
     public void processETL(Instant processingTime) throws IOException {
         String pvName = etlStage.getPvName();
         String jobDesc = etlStage.toString();
-        if (this.etlStage.isCurrentlyRunning()) {
-            logger.error("The previous ETL job (" + jobDesc + ") that began at "
-                    + TimeUtils.convertToHumanReadableString(this.etlStage.getLastETLStart())
-                    + " is still running");
-            return;
-        }
-
         String namedFlagForSkippingDataSource =
                 "SKIP_" + this.etlStage.getETLDest().getName() + "_FOR_ETL";
         boolean skipETLForThisDest = this.configService.getNamedFlag(namedFlagForSkippingDataSource);
@@ -110,10 +104,20 @@ public class ETLJob implements Runnable {
         boolean skipBulkAppend = etlStage.getETLDest().getPartitionGranularity().getApproxSecondsPerChunk()
                 <= etlStage.getETLSource().getPartitionGranularity().getApproxSecondsPerChunk();
 
-        // We create a brand new context for each run.
-        try (ETLContext etlContext = new ETLContext(skipBulkAppend)) {
-            this.etlStage.beginRunning();
+        // Mark the stage as running before we wait for an IO slot; the wait can take a while and the scheduled job,
+        // runAll and the consolidation on shutdown could otherwise all run this stage at the same time.
+        if (!this.etlStage.tryBeginRunning()) {
+            logger.error("The previous ETL job (" + jobDesc + ") that began at "
+                    + TimeUtils.convertToHumanReadableString(this.etlStage.getLastETLStart())
+                    + " is still running");
+            return;
+        }
 
+        // Wait for our turn to move data into the destination; the time spent waiting is not counted as ETL time.
+        // We create a brand new context for each run.
+        // The finally below marks the stage as done on all paths, including a failure to get a slot.
+        try (ETLIOSlots.Slot ioSlot = this.getIOSlots().acquire();
+                ETLContext etlContext = new ETLContext(skipBulkAppend)) {
             long pvETLStartEpochMilliSeconds = TimeUtils.getCurrentEpochMilliSeconds();
 
             if (logger.isDebugEnabled()) {
@@ -255,4 +259,21 @@ public class ETLJob implements Runnable {
             this.etlStage.doneRunning();
         }
     }
+
+    /*
+     * The slots are sized on the type of the file system the destination is on.
+     * So, look up the file system before the slots are created; otherwise, they'd be sized for a local disk.
+     */
+    private ETLIOSlots getIOSlots() {
+        ETLMetricsIntoStore metricsIntoStore = this.etlStage.getMetricsForLifetime();
+        if (metricsIntoStore.getFileStoreType() == null
+                && this.etlStage.getETLDest() instanceof StorageMetrics storageMetrics) {
+            try {
+                storageMetrics.getUsableSpace(metricsIntoStore);
+            } catch (IOException ex) {
+                logger.warn("Cannot determine the file system for ETL dest " + this.etlStage.getETLDest().getName(), ex);
+            }
+        }
+        return metricsIntoStore.getIOSlots(this.configService.getInstallationProperties());
+    }
 }
@@ -1,6 +1,7 @@
 package org.epics.archiverappliance.etl.common;
 
 import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
 import org.epics.archiverappliance.common.reports.Details;
 import org.epics.archiverappliance.config.ConfigService;
 
@@ -9,10 +10,34 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.function.ToIntFunction;
 
 public class ETLMetrics implements Details {
     private final LinkedHashMap<String, ETLMetricsIntoStore> etlMetricsIntoStores = new LinkedHashMap<String, ETLMetricsIntoStore>();
 
+    public ETLMetrics() {
+        Instrumentation.gauges(
+                "archappl_etl_jobs_waiting",
+                "ETL jobs waiting for a slot into the destination",
+                "dest",
+                () -> perDest(ETLMetricsIntoStore::getETLJobsWaiting));
+        Instrumentation.gauges(
+                "archappl_etl_jobs_running",
+                "ETL jobs currently moving data into the destination",
+                "dest",
+                () -> perDest(ETLMetricsIntoStore::getETLJobsRunning));
+    }
+
+    private Map<String, Integer> perDest(ToIntFunction<ETLMetricsIntoStore> metric) {
+        LinkedHashMap<String, Integer> ret = new LinkedHashMap<String, Integer>();
+        synchronized (etlMetricsIntoStores) {
+            for (Map.Entry<String, ETLMetricsIntoStore> entry : etlMetricsIntoStores.entrySet()) {
+                ret.put(entry.getKey(), metric.applyAsInt(entry.getValue()));
+            }
+        }
+        return ret;
+    }
+
     public void createMetricIfNoExists(String destName) {
         synchronized(etlMetricsIntoStores) {
             if(!etlMetricsIntoStores.containsKey(destName)) {
@@ -40,6 +65,15 @@ public class ETLMetrics implements Details {
             metrics.put(
                     "timeForOverallETLInSeconds(" + etlMetricsIntoStore.toString() + ")",
                     Long.toString(etlMetricsIntoStore.getTimeForOverallETLInMilliSeconds() / 1000));
+            metrics.put(
+                    "etlJobsWaiting(" + etlMetricsIntoStore.toString() + ")",
+                    Integer.toString(etlMetricsIntoStore.getETLJobsWaiting()));
+            metrics.put(
+                    "etlJobsRunning(" + etlMetricsIntoStore.toString() + ")",
+                    Integer.toString(etlMetricsIntoStore.getETLJobsRunning()));
+            metrics.put(
+                    "etlBytesPerSecond(" + etlMetricsIntoStore.toString() + ")",
+                    Long.toString((long) etlMetricsIntoStore.getThroughputInBytesPerSecond()));
         }
         DecimalFormat twoSignificantDigits = new DecimalFormat("###,###,###,###,###,###.##");
         metrics.put("maxETLPercentage", twoSignificantDigits.format(maxETLPercentage));
@@ -57,6 +91,15 @@ public class ETLMetrics implements Details {
                 String destIdentifier = etlMetricsIntoStore.toString();
                 long totalRunsNum = etlMetricsIntoStore.getTotalETLRuns();
                 RunsFormatter runsFormatter = new RunsFormatter(twoSignificantDigits, totalRunsNum);
+                details.add(metricDetail(
+                        "ETL jobs into " + destIdentifier + " waiting for their turn",
+                        Integer.toString(etlMetricsIntoStore.getETLJobsWaiting())));
+                details.add(metricDetail(
+                        "ETL jobs into " + destIdentifier + " currently running",
+                        Integer.toString(etlMetricsIntoStore.getETLJobsRunning())));
+                details.add(metricDetail(
+                        "ETL triggers skipped as the previous ETL was still running (" + destIdentifier + ")",
+                        Long.toString(etlMetricsIntoStore.getETLRunsSkippedAsStillRunning())));
                 if (totalRunsNum != 0) {
                     long timeForOverallETLInMillis = etlMetricsIntoStore.getTimeForOverallETLInMilliSeconds();
                     details.add(metricDetail(
@@ -122,6 +165,10 @@ public class ETLMetrics implements Details {
                     details.add(metricDetail(
                             "Estimated bytes transferred in ETL (" + destIdentifier + ")" + bytesTransferedUnits,
                             twoSignificantDigits.format(bytesTransferredInUnits)));
+                    details.add(metricDetail(
+                            "ETL throughput into " + destIdentifier + " (MB/s per job)",
+                            twoSignificantDigits.format(
+                                    etlMetricsIntoStore.getThroughputInBytesPerSecond() / (1024.0 * 1024.0))));
                 }
             }
         }
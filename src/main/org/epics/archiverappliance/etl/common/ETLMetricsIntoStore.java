@@ -14,7 +14,9 @@ import java.io.IOException;
 import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import jakarta.validation.constraints.NotNull;
 
 /**
@@ -43,6 +45,12 @@ public class ETLMetricsIntoStore implements StorageMetricsContext {
     private long lastTimeGlobalETLTimeWasUpdatedInEpochSeconds = 0;
     private long[] weeklyETLUsageInMillis = new long[7];
 
+    private volatile String fileStoreType;
+    private volatile ETLIOSlots ioSlots;
+    /** Did we know the file system type when we created ioSlots? */
+    private boolean ioSlotsSizedForFileStore = false;
+    private final AtomicLong etlRunsSkippedAsStillRunning = new AtomicLong();
+
     private record FileStoreSpace(long usableSpace, long totalSpace) {}
     ;
 
@@ -62,6 +70,7 @@ public class ETLMetricsIntoStore implements StorageMetricsContext {
                             Path rootF = paths.get(PVPath.fromRootFolder(rootFolder));
                             logger.info("Loading available space from file store for root folder {}", rootFolder);
                             FileStore fileStore = Files.getFileStore(rootF);
+                            fileStoreType = fileStore.type();
                             return new FileStoreSpace(fileStore.getUsableSpace(), fileStore.getTotalSpace());
                         }
                     }
@@ -116,6 +125,62 @@ public class ETLMetricsIntoStore implements StorageMetricsContext {
         return totalSrcBytes;
     }
 
+    /**
+     * @return The type of the file system this destination is on; null if we have not looked at the file system yet.
+     */
+    public String getFileStoreType() {
+        return fileStoreType;
+    }
+
+    /**
+     * Get the slots that bound the concurrent ETL jobs into this destination.
+     * These are created on first use; the caller should look up the file system the destination is on before this.
+     * If we did not know the file system when we created the slots, we size them again once we do;
+     * the jobs holding the old slots release them into the old slots.
+     * @param installationProperties The installation properties; for the configured number of concurrent jobs.
+     * @return The slots
+     */
+    public synchronized ETLIOSlots getIOSlots(Properties installationProperties) {
+        String currentFileStoreType = this.fileStoreType;
+        if (ioSlots == null || (!ioSlotsSizedForFileStore && currentFileStoreType != null)) {
+            ioSlots = new ETLIOSlots(destName, currentFileStoreType, installationProperties);
+            ioSlotsSizedForFileStore = currentFileStoreType != null;
+        }
+        return ioSlots;
+    }
+
+    /**
+     * @return The number of ETL jobs waiting for a slot into this destination.
+     */
+    public int getETLJobsWaiting() {
+        ETLIOSlots slots = this.ioSlots;
+        return slots != null ? slots.getJobsWaiting() : 0;
+    }
+
+    public int getETLJobsRunning() {
+        ETLIOSlots slots = this.ioSlots;
+        return slots != null ? slots.getJobsRunning() : 0;
+    }
+
+    public void incrementETLRunsSkippedAsStillRunning() {
+        etlRunsSkippedAsStillRunning.incrementAndGet();
+    }
+
+    /**
+     * @return The number of times we skipped triggering ETL for a PV as its previous ETL was still running.
+     */
+    public long getETLRunsSkippedAsStillRunning() {
+        return etlRunsSkippedAsStillRunning.get();
+    }
+
+    /**
+     * @return The bytes moved per second of ETL job time into this destination; the per job throughput.
+     */
+    public double getThroughputInBytesPerSecond() {
+        if (timeForOverallETLInMilliSeconds <= 0) return 0.0;
+        return (totalSrcBytes * 1000.0) / timeForOverallETLInMilliSeconds;
+    }
+
     /**
      * Update the time taken for the last ETL job. Note this is an approximation.
      * @param lastETLTimeWeSpentInETLInMilliSeconds  &emsp;
@@ -11,10 +11,14 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.metrics.Counter;
+import org.epics.archiverappliance.common.metrics.Histogram;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.etl.ETLDest;
 import org.epics.archiverappliance.etl.ETLSource;
@@ -27,6 +31,10 @@ import org.epics.archiverappliance.etl.ETLSource;
  */
 public class ETLStage {
 	private static final Logger logger = LogManager.getLogger();
+	private static final Instrumentation.Family<Counter> etlBytes = Instrumentation.counterFamily(
+			"archappl_etl_bytes", "Bytes moved by ETL from the source into the destination", "dest");
+	private static final Instrumentation.Family<Histogram> etlJobSeconds = Instrumentation.histogramFamily(
+			"archappl_etl_job_seconds", "Time taken by one ETL job for one PV into the destination", "dest");
 	private String pvName;
 	private ArchDBRTypes dbrType;
 	private ETLSource source;
@@ -36,7 +44,7 @@ public class ETLStage {
 	private ETLMetricsIntoStore metricsForLifetime;
 	// Profiling details start here
 	// This bool is to prevent multiple runs of ETL for the same PV for the same stage from interfering with each other
-	private boolean currentlyRunning = false;
+	private final AtomicBoolean currentlyRunning = new AtomicBoolean(false);
 	private Instant lastETLStart = Instant.ofEpochSecond(0);
 	private Instant nextETLStart = Instant.now().plus(366, ChronoUnit.DAYS);
 	private long lastETLCompleteEpochSeconds = 0L;
@@ -126,9 +134,13 @@ public class ETLStage {
 		totalTimeWeSpentInETLInMilliSeconds += lastETLTimeWeSpentInETLInMilliSeconds;
 		numberofTimesWeETLed++;
 		lastETLCompleteEpochSeconds = pvETLEndEpochMilliSeconds/1000;
-		metricsForLifetime.timeForOverallETLInMilliSeconds += lastETLTimeWeSpentInETLInMilliSeconds;
-		metricsForLifetime.totalETLRuns = Math.max(numberofTimesWeETLed, metricsForLifetime.totalETLRuns);
-		metricsForLifetime.updateApproximateGlobalLastETLTime(lastETLTimeWeSpentInETLInMilliSeconds);
+		etlJobSeconds.labels(dest.getName()).observeMillis(lastETLTimeWeSpentInETLInMilliSeconds);
+		// ETL for different PVs runs concurrently; so we need to synchronize the updates to the appliance wide metrics
+		synchronized(metricsForLifetime) {
+			metricsForLifetime.timeForOverallETLInMilliSeconds += lastETLTimeWeSpentInETLInMilliSeconds;
+			metricsForLifetime.totalETLRuns = Math.max(numberofTimesWeETLed, metricsForLifetime.totalETLRuns);
+			metricsForLifetime.updateApproximateGlobalLastETLTime(lastETLTimeWeSpentInETLInMilliSeconds);
+		}
 	}
 
 	public ArchDBRTypes getDbrType() {
@@ -159,16 +171,19 @@ public class ETLStage {
 		this.time4runPostProcessors += time4runPostProcessors;
 		this.time4executePostETLTasks += time4executePostETLTasks;
 		this.totalSrcBytes += totalSrcBytes;
+		etlBytes.labels(dest.getName()).add(totalSrcBytes);
 		
-		metricsForLifetime.timeinMillSecond4getETLStreams += time4getETLStreams;
-		metricsForLifetime.timeinMillSecond4checkSizes += time4checkSizes;
-		metricsForLifetime.timeinMillSecond4prepareForNewPartition += time4prepareForNewPartition;
-		metricsForLifetime.timeinMillSecond4appendToETLAppendData += time4appendToETLAppendData;
-		metricsForLifetime.timeinMillSecond4commitETLAppendData += time4commitETLAppendData; 
-		metricsForLifetime.timeinMillSecond4markForDeletion += time4markForDeletion;
-		metricsForLifetime.timeinMillSecond4runPostProcessors += time4runPostProcessors;
-		metricsForLifetime.timeinMillSecond4executePostETLTasks += time4executePostETLTasks;
-		metricsForLifetime.totalSrcBytes += totalSrcBytes;
+		synchronized(metricsForLifetime) {
+			metricsForLifetime.timeinMillSecond4getETLStreams += time4getETLStreams;
+			metricsForLifetime.timeinMillSecond4checkSizes += time4checkSizes;
+			metricsForLifetime.timeinMillSecond4prepareForNewPartition += time4prepareForNewPartition;
+			metricsForLifetime.timeinMillSecond4appendToETLAppendData += time4appendToETLAppendData;
+			metricsForLifetime.timeinMillSecond4commitETLAppendData += time4commitETLAppendData; 
+			metricsForLifetime.timeinMillSecond4markForDeletion += time4markForDeletion;
+			metricsForLifetime.timeinMillSecond4runPostProcessors += time4runPostProcessors;
+			metricsForLifetime.timeinMillSecond4executePostETLTasks += time4executePostETLTasks;
+			metricsForLifetime.totalSrcBytes += totalSrcBytes;
+		}
 	}
 
 	public long getTime4getETLStreams() {
@@ -234,7 +249,7 @@ public class ETLStage {
 	 * Is a ETLJob for this stage currently running
 	 */
 	public boolean isCurrentlyRunning() {
-		return currentlyRunning;
+		return currentlyRunning.get();
 	}
 
 	public Instant getLastETLStart() {
@@ -245,15 +260,24 @@ public class ETLStage {
 		return nextETLStart;
 	}
 
-	public void beginRunning() {
-		this.currentlyRunning = true;
+	/**
+	 * Mark this stage as running unless it is already running; the check and the mark are one atomic step.
+	 * If this returns true, the caller must call {@link #doneRunning()} when done.
+	 * @return true if we marked this stage as running; false if another ETL job is already running this stage.
+	 */
+	public boolean tryBeginRunning() {
+		if (!this.currentlyRunning.compareAndSet(false, true)) {
+			return false;
+		}
 		this.lastETLStart = Instant.now();
 		this.nextETLStart = this.nextETLStart.plus(this.delaybetweenETLJobsInSecs, ChronoUnit.SECONDS);
 		this.exceptionFromLastRun = null;
+		return true;
 	}
+
 	public void doneRunning() {
-		this.currentlyRunning = false;
 		this.lastETLStart = Instant.ofEpochSecond(0);
+		this.currentlyRunning.set(false);
 	}
 
     /**
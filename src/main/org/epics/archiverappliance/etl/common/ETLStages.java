@@ -19,6 +19,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /*
  * All the ETLStage's for a PV
@@ -30,6 +31,10 @@ public class ETLStages implements Runnable {
     private final LinkedList<ETLStage> etlStages = new LinkedList<ETLStage>();
     private ScheduledFuture<?> cancellingFuture;
     private final ConfigService configService;
+    /*
+     * Set while the stages triggered by the scheduler are running in the worker.
+     */
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
 
     public ETLStages(String pvName, ExecutorService theWorker, ConfigService configService) {
         this.pvName = pvName;
@@ -98,29 +103,70 @@ public class ETLStages implements Runnable {
         return minDelay;
     }
 
+    /*
+     * Offset the start of ETL for this PV by a fixed amount within the spread.
+     * Otherwise, all the PVs with the same partition granularity would start ETL at the same time,
+     * just after the partition boundary.
+     * We derive the offset from the PV name so that it is the same each time we schedule the PV.
+     */
+    public long getStartOffset(long startSpreadInSecs) {
+        long spread = Math.min(startSpreadInSecs, this.getMinDelaybetweenETLJobs() / 2);
+        if (spread <= 0) return 0;
+        return Math.floorMod(this.pvName.hashCode(), spread);
+    }
+
+    /*
+     * Called by the scheduler thread.
+     * We hand off the stages to the worker and return immediately so that the ETL for the other PVs is not held up.
+     * If the ETL triggered the last time is still running, we skip this trigger.
+     */
     @Override
     public void run() {
-        this.runAsIfAtTime(Instant.now());
+        if (!this.inFlight.compareAndSet(false, true)) {
+            logger.warn("Skipping triggering ETL for PV {} as the previous ETL is still running", this.pvName);
+            for (ETLStage etlStage : this.etlStages) {
+                etlStage.getMetricsForLifetime().incrementETLRunsSkippedAsStillRunning();
+            }
+            return;
+        }
+        try {
+            this.runStages(Instant.now()).whenComplete((v, ex) -> {
+                this.inFlight.set(false);
+                if (ex != null) {
+                    logger.error("Exception running ETL Job for PV " + this.pvName, ex);
+                }
+            });
+        } catch (Exception ex) {
+            this.inFlight.set(false);
+            logger.error("Exception running ETL Job for PV " + this.pvName, ex);
+        }
     }
 
     public void runAsIfAtTime(Instant runAsIfAtTime) {
         try {
-            CompletableFuture<Void> f = null;
-            for (ETLStage etlStage : this.etlStages) {
-                f = (f == null)
-                        ? CompletableFuture.runAsync(new ETLJob(etlStage, runAsIfAtTime, configService), this.theWorker)
-                        : f.thenCompose(b -> CompletableFuture.runAsync(
-                                new ETLJob(etlStage, runAsIfAtTime, configService), this.theWorker));
-            }
-            if (f == null) {
-                throw new IOException("Completable future is null");
-            }
-            f.get(); // Wait for the future to complete
+            this.runStages(runAsIfAtTime).get(); // Wait for the future to complete
         } catch (Exception ex) {
             logger.error("Exception running ETL Job for PV " + this.pvName, ex);
         }
     }
 
+    /*
+     * Chain the ETL jobs for the stages in the worker; the later stages start after the earlier stages are done.
+     */
+    private CompletableFuture<Void> runStages(Instant runAsIfAtTime) throws IOException {
+        CompletableFuture<Void> f = null;
+        for (ETLStage etlStage : this.etlStages) {
+            f = (f == null)
+                    ? CompletableFuture.runAsync(new ETLJob(etlStage, runAsIfAtTime, configService), this.theWorker)
+                    : f.thenCompose(b -> CompletableFuture.runAsync(
+                            new ETLJob(etlStage, runAsIfAtTime, configService), this.theWorker));
+        }
+        if (f == null) {
+            throw new IOException("Completable future is null");
+        }
+        return f;
+    }
+
     public void runAll() {
         try {
             CompletableFuture<Void> f = null;
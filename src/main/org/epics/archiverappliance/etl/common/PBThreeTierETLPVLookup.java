@@ -69,8 +69,17 @@ public final class PBThreeTierETLPVLookup {
      */
     private final ETLMetrics applianceMetrics = new ETLMetrics();
 
+    /*
+     * The start of ETL for each PV is offset by up to this many seconds; see ETLStages.getStartOffset
+     */
+    public static final String ETL_START_SPREAD_IN_SECS = "org.epics.archiverappliance.etl.common.ETLStartSpreadInSecs";
+
+    private final long startSpreadInSecs;
+
     public PBThreeTierETLPVLookup(ConfigService configService) {
         this.configService = configService;
+        this.startSpreadInSecs = Long.parseLong(
+                configService.getInstallationProperties().getProperty(ETL_START_SPREAD_IN_SECS, "600"));
         configService.addShutdownHook(new ETLShutdownThread(this));
     }
 
@@ -178,15 +187,15 @@ public final class PBThreeTierETLPVLookup {
                 }
             }
             // We schedule the ETLStages which then runs each ETLStage in a virtual thread.
+            // The scheduler thread only hands off the stages to the virtual threads; so many PVs can ETL concurrently.
+            // The ETL jobs then wait for a slot into their destination (see ETLIOSlots).
             if (!scheduleWorker.isShutdown()) {
+                long initialDelay = etlStages.getInitialDelay() + etlStages.getStartOffset(startSpreadInSecs);
                 ScheduledFuture<?> cancellingFuture = scheduleWorker.scheduleWithFixedDelay(
-                        etlStages,
-                        etlStages.getInitialDelay(),
-                        etlStages.getMinDelaybetweenETLJobs(),
-                        TimeUnit.SECONDS);
+                        etlStages, initialDelay, etlStages.getMinDelaybetweenETLJobs(), TimeUnit.SECONDS);
                 etlStages.setCancellingFuture(cancellingFuture);
                 logger.debug("Scheduled all ETL Stages for " + pvName
-                        + " with initial delay of " + etlStages.getInitialDelay() + " and between job delay of "
+                        + " with initial delay of " + initialDelay + " and between job delay of "
                         + etlStages.getMinDelaybetweenETLJobs());
             } else {
                 logger.error("ETL thread pool executor is already shutdown. Should only happen in tests");
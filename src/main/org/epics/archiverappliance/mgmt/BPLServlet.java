@@ -11,6 +11,7 @@ import org.epics.archiverappliance.common.BPLAction;
 import org.epics.archiverappliance.common.BasicDispatcher;
 import org.epics.archiverappliance.common.ProcessMetricsChartData;
 import org.epics.archiverappliance.common.ProcessMetricsReport;
+import org.epics.archiverappliance.common.reports.OpenMetricsReport;
 import org.epics.archiverappliance.config.ConfigService;
 import org.epics.archiverappliance.mgmt.bpl.AbortArchiveRequest;
 import org.epics.archiverappliance.mgmt.bpl.AbortArchiveRequestForAppliance;
@@ -204,6 +205,7 @@ public class BPLServlet extends HttpServlet {
         addAction("/getApplianceProperties", GetApplianceProps.class);
         addAction("/webAppReady", WebappReady.class);
         addAction("/getProcessMetrics", ProcessMetricsReport.class);
+        addAction("/metrics", OpenMetricsReport.class);
         addAction("/getProcessMetricsDataForAppliance", ProcessMetricsChartData.class);
         addAction("/refreshPVDataFromChannelArchivers", RefreshPVDataFromChannelArchivers.class);
         addAction("/getMatchingPVsForThisAppliance", GetMatchingPVsForAppliance.class);
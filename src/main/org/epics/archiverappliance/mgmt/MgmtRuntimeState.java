@@ -10,12 +10,14 @@ import org.epics.archiverappliance.config.MetaInfo;
 import org.epics.archiverappliance.config.pubsub.PubSubEvent;
 import org.epics.archiverappliance.mgmt.archivepv.ArchivePVState;
 import org.epics.archiverappliance.mgmt.archivepv.ArchivePVState.ArchivePVStateMachine;
+import org.epics.archiverappliance.mgmt.policy.ExecutePolicyPool;
 import org.epics.archiverappliance.utils.ui.JSONDecoder;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -23,7 +25,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -109,17 +113,36 @@ public class MgmtRuntimeState {
 	
 	private ScheduledFuture<?> theArchiveWorkflow = null;
 	
+	/**
+	 * Policies for the PVs in a workflow batch are computed in parallel using these threads; one per interpreter in the policy pool.
+	 * The rest of the workflow is run sequentially in the archivePVWorkflow thread.
+	 */
+	private final int policyThreadCount;
+	private final ExecutorService policyExecutor;
+	
 	public MgmtRuntimeState(final ConfigService configService) {
 		this.configService = configService;
 		myIdentity = this.configService.getMyApplianceInfo().getIdentity();
+		Properties installationProperties = configService.getInstallationProperties();
+		this.policyThreadCount = ExecutePolicyPool.getPoolSize(installationProperties);
+		this.policyExecutor = Executors.newFixedThreadPool(policyThreadCount, new ThreadFactory() {
+			private int policyThreadNumber = 1;
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setName("MgmtComputePolicy" + policyThreadNumber++);
+				t.setDaemon(true);
+				return t;
+			}
+		});
 		configService.addShutdownHook(new Runnable() {
 			@Override
 			public void run() {
 				archivePVWorkflow.shutdown();
+				policyExecutor.shutdown();
 			}
 		});
 		configService.getEventBus().register(this);
-		Properties installationProperties = configService.getInstallationProperties();
 		String batchSizeName = "org.epics.archiverappliance.mgmt.MgmtRuntimeState.archivePVWorkflowBatchSize";
 		if(installationProperties.containsKey(batchSizeName)) { 
 			this.archivePVWorkflowBatchSize = Integer.parseInt(installationProperties.getProperty(batchSizeName));
@@ -172,6 +195,7 @@ public class MgmtRuntimeState {
 					});
 					int totRequests = archivePVStates.size();
 					int maxRequestsToProcess = Math.min(archivePVWorkflowBatchSize, totRequests);
+					precomputePolicies(archivePVStates.subList(0, maxRequestsToProcess));
 					int pvCount = 0;
 					while(pvCount < maxRequestsToProcess) {
 						ArchivePVState runWorkFlowForPV = archivePVStates.pop();
@@ -201,6 +225,23 @@ public class MgmtRuntimeState {
 		}, initialDelayInSeconds, archivePVWorkflowTickSeconds, TimeUnit.SECONDS);
 	}
 	
+	/**
+	 * Policy execution is the expensive part of the METAINFO_OBTAINED step; compute the policies for all the PVs in this batch that are in this state in parallel.
+	 * nextStep then uses these precomputed policies.
+	 */
+	private void precomputePolicies(List<ArchivePVState> batch) throws InterruptedException {
+		if(policyThreadCount <= 1) return;
+		List<Callable<Void>> policyComputations = new ArrayList<Callable<Void>>();
+		for(ArchivePVState archivePVState : batch) {
+			if(archivePVState.getCurrentState() == ArchivePVStateMachine.METAINFO_OBTAINED) {
+				policyComputations.add(() -> { archivePVState.precomputePolicy(); return null; });
+			}
+		}
+		if(policyComputations.size() <= 1) return;
+		logger.debug("Computing policies for " + policyComputations.size() + " PVs in parallel");
+		policyExecutor.invokeAll(policyComputations);
+	}
+	
 	public List<NeverConnectedRequestState> getNeverConnectedRequests() {
 		List<NeverConnectedRequestState> neverConnectedRequests = new LinkedList<NeverConnectedRequestState>();
 		for(String pvName : currentPVRequests.keySet()) {
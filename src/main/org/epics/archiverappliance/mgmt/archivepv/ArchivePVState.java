@@ -56,6 +56,9 @@ public class ArchivePVState {
     private Instant metaInfoRequestedSubmitted = null;
     private String myIdentity;
     private MetaInfo metaInfo = null;
+    // The policy computed (possibly in parallel with other PVs in the same batch) for this metaInfo.
+    private PolicyConfig precomputedPolicy = null;
+    private MetaInfo precomputedPolicyMetaInfo = null;
 
     public ArchivePVState(String pvName, ConfigService configService) {
         this.pvName = pvName;
@@ -119,8 +122,16 @@ public class ArchivePVState {
                         return;
                     }
 
-                    logger.debug("About to compute policy for " + pvName);
-                    PolicyConfig thePolicy = configService.computePolicyForPV(pvName, metaInfo, userSpec);
+                    PolicyConfig thePolicy;
+                    if (precomputedPolicy != null && precomputedPolicyMetaInfo == metaInfo) {
+                        logger.debug("Using the precomputed policy for " + pvName);
+                        thePolicy = precomputedPolicy;
+                    } else {
+                        logger.debug("About to compute policy for " + pvName);
+                        thePolicy = configService.computePolicyForPV(pvName, metaInfo, userSpec);
+                    }
+                    precomputedPolicy = null;
+                    precomputedPolicyMetaInfo = null;
                     if (thePolicy.getSamplingMethod() == SamplingMethod.DONT_ARCHIVE) {
                         logger.error(
                                 "According to the policy, we must not archive pv as the sampling method is DONT_ARCHIVE for PV "
@@ -356,6 +367,28 @@ public class ArchivePVState {
         configService.getEventBus().post(pubSubEvent);
     }
 
+    /**
+     * Compute the policy for this PV ahead of {@link #nextStep()} so that the policies for a batch of PVs can be computed concurrently.
+     * The rest of the METAINFO_OBTAINED step (capacity planning etc) is still done sequentially in nextStep.
+     * This does nothing if we are not in the METAINFO_OBTAINED state; errors are left for nextStep to handle.
+     */
+    public synchronized void precomputePolicy() {
+        if (currentState != ArchivePVStateMachine.METAINFO_OBTAINED) return;
+        MetaInfo currentMetaInfo = metaInfo;
+        if (currentMetaInfo == null || currentMetaInfo.getArchDBRTypes() == null) return;
+        try {
+            UserSpecifiedSamplingParams userSpec = configService.getUserSpecifiedSamplingParams(pvName);
+            if (userSpec == null) return;
+            logger.debug("Precomputing policy for " + pvName);
+            precomputedPolicy = configService.computePolicyForPV(pvName, currentMetaInfo, userSpec);
+            precomputedPolicyMetaInfo = currentMetaInfo;
+        } catch (Throwable t) {
+            logger.error("Exception precomputing policy for pv " + pvName, t);
+            precomputedPolicy = null;
+            precomputedPolicyMetaInfo = null;
+        }
+    }
+
     public Instant getStartOfWorkflow() {
         return startOfWorkflow;
     }
@@ -5,6 +5,7 @@ import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.config.ConfigService;
 import org.epics.archiverappliance.config.StoragePluginURLParser;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig.SamplingMethod;
+import org.python.core.PyCode;
 import org.python.core.PyDictionary;
 import org.python.core.PyList;
 import org.python.util.PythonInterpreter;
@@ -37,12 +38,14 @@ import java.util.List;
  * <li><code>archiveFields</code> -- A optional array of fields that will be archived as part of archiving the .VAL field for this PV.</li>
  * <li><code>appliance</code> -- Optional; assign this PV to this appliance. This is a string and is the identity of the appliance you want to assign this PV to.</li>
  * </ol>
+ * Each ExecutePolicy has its own interpreter and is not thread safe; use a {@link ExecutePolicyPool} to compute policies concurrently.
  *
  * @author mshankar
  */
 public class ExecutePolicy implements AutoCloseable {
     private static final Logger logger = LogManager.getLogger(ExecutePolicy.class.getName());
     private final PythonInterpreter interp;
+    private final PyCode determinePolicyCode;
     private LinkedList<String> fieldsArchivedAsPartOfStream = new LinkedList<String>();
 
     public ExecutePolicy(ConfigService configService) throws IOException {
@@ -56,6 +59,8 @@ public class ExecutePolicy implements AutoCloseable {
             interp.execfile(is);
             fetchFieldsArchivedAsPartOfStream();
         }
+        // Compile the call once; exec'ing a string parses and compiles it every time.
+        determinePolicyCode = interp.compile("pvPolicy = determinePolicy(pvInfo)");
     }
 
     @Override
@@ -76,7 +81,7 @@ public class ExecutePolicy implements AutoCloseable {
         pvInfoDict.put("pvName", pvName);
         pvInfoDict.putAll(pvInfo);
         interp.set("pvInfo", pvInfoDict);
-        interp.exec("pvPolicy = determinePolicy(pvInfo)");
+        interp.exec(determinePolicyCode);
         PyDictionary policy = (PyDictionary) interp.get("pvPolicy");
         PolicyConfig policyConfig = new PolicyConfig();
         Double samplingPeriod = (Double) policy.get("samplingPeriod");
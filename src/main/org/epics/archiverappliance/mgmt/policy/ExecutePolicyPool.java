@@ -0,0 +1,198 @@
+package org.epics.archiverappliance.mgmt.policy;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.config.ConfigService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A pool of pre-warmed {@link ExecutePolicy} interpreters so that policies for several PVs can be computed concurrently.
+ * Interpreters are created on demand up to the pool size; loading policies.py is expensive, so the first one is created eagerly.
+ * <p>
+ * Optionally, the results of the policy execution are memoized.
+ * The key is the information passed into policies.py with the event rate replaced by a logarithmic bucket and
+ * the fields that are unique to each PV (pvName, aliasName, eventCount and storageRate) left out.
+ * This is only correct if the policies.py in the installation does not use these fields; the shipped policies.py uses
+ * pvName and storageRate and therefore memoization is off by default.
+ */
+public class ExecutePolicyPool implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ExecutePolicyPool.class.getName());
+    private static final String PROPERTY_PREFIX = "org.epics.archiverappliance.mgmt.policy.ExecutePolicyPool.";
+    private static final Set<String> PV_SPECIFIC_FIELDS = Set.of("pvName", "aliasName", "eventCount", "storageRate");
+    private static final int MAX_MEMOIZED_POLICIES = 10000;
+
+    private final ConfigService configService;
+    private final int poolSize;
+    private final boolean memoizePolicies;
+    private final int eventRateBucketsPerDecade;
+    private final LinkedBlockingQueue<ExecutePolicy> idle = new LinkedBlockingQueue<ExecutePolicy>();
+    private final ExecutePolicy firstPolicy;
+    private final Cache<Map<String, Object>, PolicyConfig> memoizedPolicies =
+            CacheBuilder.newBuilder().maximumSize(MAX_MEMOIZED_POLICIES).build();
+    private int created = 0;
+    private boolean closed = false;
+
+    public ExecutePolicyPool(ConfigService configService) throws IOException {
+        this.configService = configService;
+        Properties props = configService.getInstallationProperties();
+        this.poolSize = getPoolSize(props);
+        this.memoizePolicies = Boolean.parseBoolean(props.getProperty(PROPERTY_PREFIX + "memoizePolicies", "false"));
+        this.eventRateBucketsPerDecade =
+                Integer.parseInt(props.getProperty(PROPERTY_PREFIX + "memoizeEventRateBucketsPerDecade", "10"));
+        this.firstPolicy = new ExecutePolicy(configService);
+        this.created = 1;
+        this.idle.add(firstPolicy);
+        logger.debug(
+                "Created policy pool of size {} with memoization {}",
+                poolSize,
+                memoizePolicies ? "enabled" : "disabled");
+    }
+
+    /**
+     * @param props The installation properties
+     * @return The maximum number of interpreters in the pool; by default, the smaller of 4 and the number of processors.
+     */
+    public static int getPoolSize(Properties props) {
+        int defaultSize = Math.min(4, Runtime.getRuntime().availableProcessors());
+        return Math.max(1, Integer.parseInt(props.getProperty(PROPERTY_PREFIX + "size", Integer.toString(defaultSize))));
+    }
+
+    /**
+     * Compute the policy for a PV using an interpreter from the pool; this can be called from multiple threads.
+     * @see ExecutePolicy#computePolicyForPV
+     */
+    public PolicyConfig computePolicyForPV(String pvName, HashMap<String, Object> pvInfo) throws IOException {
+        Map<String, Object> memoKey = memoizePolicies ? memoizationKey(pvInfo) : null;
+        if (memoKey != null) {
+            PolicyConfig memoized = memoizedPolicies.getIfPresent(memoKey);
+            if (memoized != null) {
+                logger.debug("Using memoized policy {} for pv {}", memoized.getPolicyName(), pvName);
+                return copyOf(memoized);
+            }
+        }
+
+        ExecutePolicy executePolicy = borrow();
+        try {
+            PolicyConfig policyConfig = executePolicy.computePolicyForPV(pvName, pvInfo);
+            if (memoKey != null) {
+                memoizedPolicies.put(memoKey, copyOf(policyConfig));
+            }
+            return policyConfig;
+        } finally {
+            giveBack(executePolicy);
+        }
+    }
+
+    public HashMap<String, String> getPolicyList() throws IOException {
+        ExecutePolicy executePolicy = borrow();
+        try {
+            return executePolicy.getPolicyList();
+        } finally {
+            giveBack(executePolicy);
+        }
+    }
+
+    public List<String> getFieldsArchivedAsPartOfStream() throws IOException {
+        // This is computed when the interpreter is created and does not touch the interpreter afterwards.
+        return firstPolicy.getFieldsArchivedAsPartOfStream();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Close the idle interpreters; interpreters that are in use are closed when they are returned.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        List<ExecutePolicy> toClose = new ArrayList<ExecutePolicy>();
+        idle.drainTo(toClose);
+        for (ExecutePolicy executePolicy : toClose) {
+            executePolicy.close();
+        }
+        memoizedPolicies.invalidateAll();
+    }
+
+    private ExecutePolicy borrow() throws IOException {
+        ExecutePolicy executePolicy = idle.poll();
+        if (executePolicy != null) return executePolicy;
+        boolean createNew;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("The policy pool has been closed");
+            }
+            createNew = created < poolSize;
+            if (createNew) created++;
+        }
+        if (createNew) {
+            try {
+                logger.debug("Adding an interpreter to the policy pool");
+                return new ExecutePolicy(configService);
+            } catch (IOException | RuntimeException ex) {
+                synchronized (this) {
+                    created--;
+                }
+                throw ex;
+            }
+        }
+        try {
+            return idle.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a policy interpreter", ex);
+        }
+    }
+
+    private synchronized void giveBack(ExecutePolicy executePolicy) {
+        if (closed) {
+            executePolicy.close();
+        } else {
+            idle.add(executePolicy);
+        }
+    }
+
+    private Map<String, Object> memoizationKey(HashMap<String, Object> pvInfo) {
+        TreeMap<String, Object> key = new TreeMap<String, Object>();
+        for (Map.Entry<String, Object> entry : pvInfo.entrySet()) {
+            if (PV_SPECIFIC_FIELDS.contains(entry.getKey())) continue;
+            if (entry.getValue() == null) continue;
+            if (entry.getKey().equals("eventRate")) {
+                key.put("eventRate", eventRateBucket(((Number) entry.getValue()).doubleValue()));
+            } else {
+                key.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return key;
+    }
+
+    private long eventRateBucket(double eventRate) {
+        if (Double.isNaN(eventRate) || eventRate <= 0) return Long.MIN_VALUE;
+        return (long) Math.floor(Math.log10(eventRate) * eventRateBucketsPerDecade);
+    }
+
+    private static PolicyConfig copyOf(PolicyConfig policyConfig) {
+        PolicyConfig copy = new PolicyConfig();
+        copy.setSamplingMethod(policyConfig.getSamplingMethod());
+        copy.setSamplingPeriod(policyConfig.getSamplingPeriod());
+        copy.setDataStores(policyConfig.getDataStores() == null ? null : policyConfig.getDataStores().clone());
+        copy.setPolicyName(policyConfig.getPolicyName());
+        copy.setArchiveFields(
+                policyConfig.getArchiveFields() == null ? null : policyConfig.getArchiveFields().clone());
+        copy.setAppliance(policyConfig.getAppliance());
+        copy.setControlPV(policyConfig.getControlPV());
+        return copy;
+    }
+}
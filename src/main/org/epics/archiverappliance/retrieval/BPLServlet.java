@@ -11,6 +11,7 @@ import org.epics.archiverappliance.common.BPLAction;
 import org.epics.archiverappliance.common.BasicDispatcher;
 import org.epics.archiverappliance.common.GetVersion;
 import org.epics.archiverappliance.common.ProcessMetricsReport;
+import org.epics.archiverappliance.common.reports.OpenMetricsReport;
 import org.epics.archiverappliance.config.ConfigService;
 import org.epics.archiverappliance.retrieval.bpl.AreWeArchivingPV;
 import org.epics.archiverappliance.retrieval.bpl.FilterArchivedPVs;
@@ -53,6 +54,7 @@ public class BPLServlet extends HttpServlet {
         getActions.put("/searchForPVsRegex", SearchForPVsRegex.class);
         getActions.put("/getMatchingPVs", GetMatchingPVs.class);
         getActions.put("/getProcessMetrics", ProcessMetricsReport.class);
+        getActions.put("/metrics", OpenMetricsReport.class);
         getActions.put("/getVersion", GetVersion.class);
         getActions.put("/getClientConfig", GetClientConfiguration.class);
         getActions.put("/getMetadata", GetPVMetaData.class);
@@ -33,6 +33,8 @@ import org.epics.archiverappliance.common.BasicContext;
 import org.epics.archiverappliance.common.PoorMansProfiler;
 import org.epics.archiverappliance.common.TimeSpan;
 import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.metrics.Histogram;
+import org.epics.archiverappliance.common.metrics.Instrumentation;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.config.ApplianceInfo;
 import org.epics.archiverappliance.config.ArchDBRTypes;
@@ -46,6 +48,7 @@ import org.epics.archiverappliance.data.ScalarValue;
 import org.epics.archiverappliance.etl.ETLDest;
 import org.epics.archiverappliance.mgmt.bpl.PVsMatchingParameter;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig.SamplingMethod;
+import org.epics.archiverappliance.retrieval.mimeresponses.ArrowResponse;
 import org.epics.archiverappliance.retrieval.mimeresponses.FlxXMLResponse;
 import org.epics.archiverappliance.retrieval.mimeresponses.JPlotResponse;
 import org.epics.archiverappliance.retrieval.mimeresponses.JSONResponse;
@@ -64,6 +67,7 @@ import org.epics.archiverappliance.retrieval.postprocessors.PostProcessor;
 import org.epics.archiverappliance.retrieval.postprocessors.PostProcessorWithConsolidatedEventStream;
 import org.epics.archiverappliance.retrieval.postprocessors.PostProcessors;
 import org.epics.archiverappliance.retrieval.workers.CurrentThreadExecutorService;
+import org.epics.archiverappliance.retrieval.workers.RetrievalExecutors;
 import org.epics.archiverappliance.utils.simulation.SimulationEvent;
 import org.epics.archiverappliance.utils.ui.GetUrlContent;
 import org.json.simple.JSONObject;
@@ -113,10 +117,14 @@ public class DataRetrievalServlet extends HttpServlet {
     private static final String SEARCH_STORE_FOR_RETIRED_PV_STR =
             "org.epics.archiverappliance.retrieval.SearchStoreForRetiredPvs";
     private static final Logger logger = LogManager.getLogger(DataRetrievalServlet.class.getName());
+    private static final Instrumentation.Family<Histogram> retrievalSeconds = Instrumentation.histogramFamily(
+            "archappl_retrieval_request_seconds", "Time taken to serve a data retrieval request", "mime", "pp");
     private static final HashMap<String, MimeMappingInfo> mimeresponses = new HashMap<String, MimeMappingInfo>();
     // Must be an instance field: with several appliances embedded in one JVM (integration tests),
     // a static here would let the last webapp to initialize hijack every appliance's retrieval.
     private ConfigService configService = null;
+    // Shared by all requests to this webapp; created in init.
+    private RetrievalExecutors retrievalExecutors = null;
 
     static {
         mimeresponses.put("raw", new MimeMappingInfo(PBRAWResponse.class, "application/x-protobuf"));
@@ -128,6 +136,7 @@ public class DataRetrievalServlet extends HttpServlet {
         mimeresponses.put("flx", new MimeMappingInfo(FlxXMLResponse.class, "text/xml"));
         mimeresponses.put("txt", new MimeMappingInfo(TextResponse.class, "text/plain"));
         mimeresponses.put("mat", new MimeMappingInfo(MatlabResponse.class, "application/matlab"));
+        mimeresponses.put("arrow", new MimeMappingInfo(ArrowResponse.class, "application/vnd.apache.arrow.stream"));
     }
 
     private static void processPingPV(HttpServletResponse resp) throws IOException {
@@ -162,12 +171,17 @@ public class DataRetrievalServlet extends HttpServlet {
      * Determine the thread pool to be used for post processing based on some characteristics of the request
      * The plugins will yield a list of callables that could potentially be evaluated in parallel
      * Whether we evaluate in parallel is made here.
+     * Data sources are always resolved concurrently (this is mostly I/O).
+     * Post processors are not thread safe; so the callables for one PV are always evaluated serially and in order.
+     * Post processors that consolidate the data do all their work in these callables; these are evaluated on the shared pool
+     * (and thus in parallel with the other PVs in the request) if their memory estimate fits in the budget.
+     * For everything else, the work happens when the servlet writes out the stream; so we use the current thread.
      *
      * @param pvName        Name of pv
      * @param postProcessor post processor
      * @return result
      */
-    private static RetrievalExecutorResult determineExecutorForPostProcessing(
+    private RetrievalExecutorResult determineExecutorForPostProcessing(
             String pvName,
             PVTypeInfo typeInfo,
             LinkedList<TimeSpan> requestTimes,
@@ -184,15 +198,16 @@ public class DataRetrievalServlet extends HttpServlet {
         logger.debug("Memory consumption estimate from postprocessor for pv " + pvName + " is " + memoryConsumption
                 + "(bytes) ~= " + twoSignificantDigits.format(memoryConsumptionInMB) + "(MB)");
 
-        // For now, we only use the current thread to execute in serial.
-        // Once we get the unit tests for the post processors in a more rigorous shape, we can start using the
-        // ForkJoinPool.
-        // There are some complexities in using the ForkJoinPool - in this case, we need to convert to using
-        // synchronized versions of the SummaryStatistics and DescriptiveStatistics
-        // We also still have the issue where we can add a sample twice because of the non-transactional nature of ETL.
-        // However, there is a lot of work done by the PostProcessors in estimateMemoryConsumption so leave this call in
-        // place.
-        return new RetrievalExecutorResult(new CurrentThreadExecutorService(), requestTimes);
+        if (retrievalExecutors == null) {
+            return new RetrievalExecutorResult(
+                    new CurrentThreadExecutorService(), new CurrentThreadExecutorService(), requestTimes);
+        }
+
+        ExecutorService postProcessingExecutor = (postProcessor instanceof PostProcessorWithConsolidatedEventStream)
+                ? retrievalExecutors.newPostProcessingExecutor(pvName, memoryConsumption)
+                : new CurrentThreadExecutorService();
+        return new RetrievalExecutorResult(
+                postProcessingExecutor, retrievalExecutors.newDataSourceExecutor(), requestTimes);
     }
 
     private static void consolidateEventStream(
@@ -321,7 +336,8 @@ public class DataRetrievalServlet extends HttpServlet {
             }
             case "getDataAtTimeForAppliance" -> {
                 try {
-                    GetDataAtTime.getDataAtTimeForAppliance(req, resp, configService);
+                    GetDataAtTime.getDataAtTimeForAppliance(
+                            req, resp, configService, retrievalExecutors.newDataSourceExecutor());
                 } catch (ExecutionException | InterruptedException ex) {
                     throw new IOException(ex);
                 }
@@ -512,6 +528,7 @@ public class DataRetrievalServlet extends HttpServlet {
             logger.error("Exception when retrieving data ", ex);
         }
         pmansProfiler.mark("After all closes and flushing all buffers");
+        recordRetrievalTime(extension, postProcessor.getIdentity(), pmansProfiler.totalTimeMS());
 
         // Till we determine all the if conditions where we log this, we log sparingly..
         if (pmansProfiler.totalTimeMS() > 5000) {
@@ -755,8 +772,9 @@ public class DataRetrievalServlet extends HttpServlet {
         String extension = req.getPathInfo().split("\\.")[1];
         logger.info("Mime is {}", extension);
 
-        if (!StringUtils.equalsAny(extension, "json", "raw", "jplot", "qw")) {
-            String msg = "Mime type " + extension + " is not supported. Please use \"json\", \"jplot\" or \"raw\".";
+        if (!StringUtils.equalsAny(extension, "json", "raw", "jplot", "qw", "arrow")) {
+            String msg = "Mime type " + extension
+                    + " is not supported. Please use \"json\", \"jplot\", \"raw\" or \"arrow\".";
             logAndRespond(msg, null, resp, HttpServletResponse.SC_BAD_REQUEST);
             return;
         }
@@ -889,197 +907,241 @@ public class DataRetrievalServlet extends HttpServlet {
         }
 
         List<List<Future<EventStream>>> listOfEventStreamFuturesLists = new ArrayList<List<Future<EventStream>>>();
-        Set<String> retrievalURLs = applianceToPVs.keySet();
-        if (!retrievalURLs.isEmpty()) {
-            // Get list of PVs and redirect them to appropriate appliance to be retrieved.
-            String retrievalURL;
-            ArrayList<PVInfoForClusterRetrieval> pvInfos;
-            while ((retrievalURL = retrievalURLs.iterator().next()) == null) {
-                // Get array list of PVs for appliance
-                pvInfos = applianceToPVs.get(retrievalURL);
-                try {
-                    List<List<Future<EventStream>>> resultFromForeignAppliances =
-                            retrieveEventStreamFromForeignAppliance(req, resp, pvInfos, requestTimesOb.requestTimes);
-                    listOfEventStreamFuturesLists.addAll(resultFromForeignAppliances);
-                } catch (Exception ex) {
-                    logger.error(
-                            "Failed to retrieve " + StringUtils.join(pvNames, ", ") + " from " + retrievalURL + ".");
-                    return;
+        // The executors for all the PVs in this request; these are shut down once we have written out all the data.
+        List<RetrievalExecutorResult> allExecutorResults = new ArrayList<RetrievalExecutorResult>();
+        // The contexts used to resolve the data sources; the event streams use these until we have written them out.
+        List<BasicContext> allRetrievalContexts = new ArrayList<BasicContext>();
+        try {
+            Set<String> retrievalURLs = applianceToPVs.keySet();
+            if (!retrievalURLs.isEmpty()) {
+                // Get list of PVs and redirect them to appropriate appliance to be retrieved.
+                String retrievalURL;
+                ArrayList<PVInfoForClusterRetrieval> pvInfos;
+                while ((retrievalURL = retrievalURLs.iterator().next()) == null) {
+                    // Get array list of PVs for appliance
+                    pvInfos = applianceToPVs.get(retrievalURL);
+                    try {
+                        List<List<Future<EventStream>>> resultFromForeignAppliances =
+                                retrieveEventStreamFromForeignAppliance(
+                                        req,
+                                        resp,
+                                        pvInfos,
+                                        requestTimesOb.requestTimes,
+                                        allExecutorResults,
+                                        allRetrievalContexts);
+                        listOfEventStreamFuturesLists.addAll(resultFromForeignAppliances);
+                    } catch (Exception ex) {
+                        logger.error(
+                                "Failed to retrieve " + StringUtils.join(pvNames, ", ") + " from " + retrievalURL + ".");
+                        return;
+                    }
                 }
             }
-        }
 
-        pmansProfiler.mark("After Appliance Info");
+            pmansProfiler.mark("After Appliance Info");
 
-        // Setting post processor for PVs, taking into account whether there is a field in the PV name
-        for (int i = 0; i < pvNames.size(); i++) {
-            String pvName = pvNames.get(i);
-            PVTypeInfo typeInfo = typeInfos.get(i);
-            postProcessorUserArg = postProcessorUserArgs.get(i);
-
-            // If a field is specified in a PV name, it will create a post processor for that
-            String fieldName = PVNames.getFieldName(pvName);
-            if (!StringUtils.isEmpty(fieldName) && !pvName.equals(typeInfo.getPvName())) {
-                logger.debug("We reset the pvName " + pvName + " to one from the typeinfo "
-                        + typeInfo.getPvName() + " as that determines the name of the stream. "
-                        + "Also using ExtraFieldsPostProcessor.");
-                pvNames.set(i, typeInfo.getPvName());
-                postProcessors.set(i, new ExtraFieldsPostProcessor(fieldName));
-            }
-
-            try {
-                // Postprocessors get their mandatory arguments from the request.
-                // If user does not pass in the expected request, throw an exception.
-                postProcessors.get(i).initialize(postProcessorUserArg, pvName);
-            } catch (Exception ex) {
-                String msg = "Postprocessor threw an exception during initialization for " + pvName;
-                logger.error(msg, ex);
-                resp.sendError(HttpServletResponse.SC_NOT_FOUND, msg);
-                return;
-            }
-        }
-
-        /*
-         * MergeDedupConsumer is what writes PB data in its respective format to the HTML response.
-         * The response, after the MergeDedupConsumer is created, contains the following:
-         *
-         * 1) The content type for the response.
-         * 2) Any additional headers for the particular MIME response.
-         *
-         * Additionally, the MergeDedupConsumer instance holds a reference to the output stream
-         * that is used to write to the HTML response. It is stored under the name `os`.
-         */
-        MergeDedupConsumer mergeDedupCountingConsumer;
-        try {
-            mergeDedupCountingConsumer = createMergeDedupConsumer(resp, extension);
-        } catch (ServletException se) {
-            String msg = "Exception when retrieving data " + "-->" + se;
-            logger.error(msg, se);
-            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, msg);
-            return;
-        }
-
-        /*
-         * BasicContext contains the PV name and the expected return type. Used to access PB files.
-         * RetrievalExecutorResult contains a thread service class and the time spans Presumably, the
-         * thread service is what retrieves the data, and the BasicContext is the context in which it
-         * works.
-         */
-        List<HashMap<String, String>> engineMetadatas = new ArrayList<HashMap<String, String>>();
-        try {
-            List<BasicContext> retrievalContexts = new ArrayList<BasicContext>(pvNames.size());
-            List<RetrievalExecutorResult> executorResults = new ArrayList<RetrievalExecutorResult>(pvNames.size());
+            // Setting post processor for PVs, taking into account whether there is a field in the PV name
             for (int i = 0; i < pvNames.size(); i++) {
-                if (fetchLatestMetadata && typeInfos.get(i).getSamplingMethod() != SamplingMethod.DONT_ARCHIVE) {
-                    // Make a call to the engine to fetch the latest metadata; skip external servers, template PVs and
-                    // the like by checking the sampling method.
-                    engineMetadatas.add(fetchLatestMedataFromEngine(pvNames.get(i), applianceForPVs.get(i)));
+                String pvName = pvNames.get(i);
+                PVTypeInfo typeInfo = typeInfos.get(i);
+                postProcessorUserArg = postProcessorUserArgs.get(i);
+
+                // If a field is specified in a PV name, it will create a post processor for that
+                String fieldName = PVNames.getFieldName(pvName);
+                if (!StringUtils.isEmpty(fieldName) && !pvName.equals(typeInfo.getPvName())) {
+                    logger.debug("We reset the pvName " + pvName + " to one from the typeinfo "
+                            + typeInfo.getPvName() + " as that determines the name of the stream. "
+                            + "Also using ExtraFieldsPostProcessor.");
+                    pvNames.set(i, typeInfo.getPvName());
+                    postProcessors.set(i, new ExtraFieldsPostProcessor(fieldName));
+                }
+
+                try {
+                    // Postprocessors get their mandatory arguments from the request.
+                    // If user does not pass in the expected request, throw an exception.
+                    postProcessors.get(i).initialize(postProcessorUserArg, pvName);
+                } catch (Exception ex) {
+                    String msg = "Postprocessor threw an exception during initialization for " + pvName;
+                    logger.error(msg, ex);
+                    resp.sendError(HttpServletResponse.SC_NOT_FOUND, msg);
+                    return;
                 }
-                retrievalContexts.add(new BasicContext(typeInfos.get(i).getDBRType(), pvNamesFromRequests.get(i)));
-                executorResults.add(determineExecutorForPostProcessing(
-                        pvNames.get(i), typeInfos.get(i), requestTimesOb.requestTimes, req, postProcessors.get(i)));
             }
 
             /*
-             * There are as many Future objects in the eventStreamFutures List as there are periods over
-             * which to fetch data. Retrieval of data happen here in parallel.
+             * MergeDedupConsumer is what writes PB data in its respective format to the HTML response.
+             * The response, after the MergeDedupConsumer is created, contains the following:
+             *
+             * 1) The content type for the response.
+             * 2) Any additional headers for the particular MIME response.
+             *
+             * Additionally, the MergeDedupConsumer instance holds a reference to the output stream
+             * that is used to write to the HTML response. It is stored under the name `os`.
              */
-            List<LinkedList<Future<RetrievalResult>>> listOfRetrievalResultFuturesLists =
-                    new ArrayList<LinkedList<Future<RetrievalResult>>>();
-            for (int i = 0; i < pvNames.size(); i++) {
-                listOfRetrievalResultFuturesLists.add(resolveAllDataSources(
-                        pvNames.get(i),
-                        typeInfos.get(i),
-                        postProcessors.get(i),
-                        applianceForPVs.get(i),
-                        retrievalContexts.get(i),
-                        executorResults.get(i),
-                        req));
+            MergeDedupConsumer mergeDedupCountingConsumer;
+            try {
+                mergeDedupCountingConsumer = createMergeDedupConsumer(resp, extension);
+            } catch (ServletException se) {
+                String msg = "Exception when retrieving data " + "-->" + se;
+                logger.error(msg, se);
+                resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, msg);
+                return;
             }
-            pmansProfiler.mark("After data source resolution");
 
-            for (int i = 0; i < pvNames.size(); i++) {
-                // Data is retrieved here
-                List<Future<EventStream>> eventStreamFutures = getEventStreamFuturesFromRetrievalResults(
-                        executorResults.get(i), listOfRetrievalResultFuturesLists.get(i));
-                listOfEventStreamFuturesLists.add(eventStreamFutures);
-            }
+            /*
+             * BasicContext contains the PV name and the expected return type. Used to access PB files.
+             * RetrievalExecutorResult contains a thread service class and the time spans Presumably, the
+             * thread service is what retrieves the data, and the BasicContext is the context in which it
+             * works.
+             */
+            List<HashMap<String, String>> engineMetadatas = new ArrayList<HashMap<String, String>>();
+            try {
+                List<BasicContext> retrievalContexts = new ArrayList<BasicContext>(pvNames.size());
+                List<RetrievalExecutorResult> executorResults = new ArrayList<RetrievalExecutorResult>(pvNames.size());
+                for (int i = 0; i < pvNames.size(); i++) {
+                    if (fetchLatestMetadata && typeInfos.get(i).getSamplingMethod() != SamplingMethod.DONT_ARCHIVE) {
+                        // Make a call to the engine to fetch the latest metadata; skip external servers, template PVs and
+                        // the like by checking the sampling method.
+                        engineMetadatas.add(fetchLatestMedataFromEngine(pvNames.get(i), applianceForPVs.get(i)));
+                    }
+                    BasicContext retrievalContext =
+                            new BasicContext(typeInfos.get(i).getDBRType(), pvNamesFromRequests.get(i));
+                    allRetrievalContexts.add(retrievalContext);
+                    retrievalContexts.add(retrievalContext);
+                    RetrievalExecutorResult executorResult = determineExecutorForPostProcessing(
+                            pvNames.get(i), typeInfos.get(i), requestTimesOb.requestTimes, req, postProcessors.get(i));
+                    allExecutorResults.add(executorResult);
+                    executorResults.add(executorResult);
+                }
 
-        } catch (Exception ex) {
-            logger.error("Exception when retrieving data ", ex);
-        }
+                /*
+                 * There are as many Future objects in the eventStreamFutures List as there are periods over
+                 * which to fetch data. Retrieval of data happen here in parallel.
+                 */
+                List<LinkedList<Future<RetrievalResult>>> listOfRetrievalResultFuturesLists =
+                        new ArrayList<LinkedList<Future<RetrievalResult>>>();
+                for (int i = 0; i < pvNames.size(); i++) {
+                    listOfRetrievalResultFuturesLists.add(resolveAllDataSources(
+                            pvNames.get(i),
+                            typeInfos.get(i),
+                            postProcessors.get(i),
+                            applianceForPVs.get(i),
+                            retrievalContexts.get(i),
+                            executorResults.get(i),
+                            req));
+                }
+                pmansProfiler.mark("After data source resolution");
 
-        long s1 = System.currentTimeMillis();
-        String currentlyProcessingPV = null;
+                for (int i = 0; i < pvNames.size(); i++) {
+                    // Data is retrieved here
+                    List<Future<EventStream>> eventStreamFutures = getEventStreamFuturesFromRetrievalResults(
+                            executorResults.get(i), listOfRetrievalResultFuturesLists.get(i));
+                    listOfEventStreamFuturesLists.add(eventStreamFutures);
+                }
 
-        /*
-         * The following try bracket goes through each of the streams in the list of event stream futures.
-         *
-         * It is intended that the process goes through one PV at a time.
-         */
-        try {
-            for (int i = 0; i < pvNames.size(); i++) {
-                try (BasicContext retrievalContext =
-                        new BasicContext(typeInfos.get(i).getDBRType(), pvNamesFromRequests.get(i))) {
-                    List<Future<EventStream>> eventStreamFutures = listOfEventStreamFuturesLists.get(i);
-                    String pvName = pvNames.get(i);
-                    PVTypeInfo typeInfo = typeInfos.get(i);
-                    HashMap<String, String> engineMetadata = fetchLatestMetadata ? engineMetadatas.get(i) : null;
-                    PostProcessor postProcessor = postProcessors.get(i);
-
-                    configService
-                            .getRetrievalRuntimeState()
-                            .updateRetrievalMetrics(pvName, Instant.now(), req.getRemoteAddr());
-
-                    logger.debug("Done with the RetrievalResults; moving onto the individual event stream "
-                            + "from each source for " + StringUtils.join(pvNames, ", "));
-                    pmansProfiler.mark("After retrieval results");
-                    evaluateEventStreamFutures(
-                            resp,
-                            pmansProfiler,
-                            pvName,
-                            requestTimesOb,
-                            postProcessor,
-                            typeInfo,
-                            retrievalContext,
-                            mergeDedupCountingConsumer,
-                            engineMetadata,
-                            currentlyProcessingPV,
-                            eventStreamFutures);
+            } catch (Exception ex) {
+                logger.error("Exception when retrieving data ", ex);
+            }
 
-                    consolidateEventStream(resp, pvName, postProcessor, mergeDedupCountingConsumer);
+            long s1 = System.currentTimeMillis();
+            String currentlyProcessingPV = null;
 
-                    // If the postProcessor needs to send final data across, give it a chance now...
-                    if (postProcessor instanceof AfterAllStreams) {
-                        EventStream finalEventStream = ((AfterAllStreams) postProcessor).anyFinalData();
-                        if (finalEventStream != null) {
-                            mergeDedupCountingConsumer.consumeEventStream(finalEventStream);
-                            resp.flushBuffer();
+            /*
+             * The following try bracket goes through each of the streams in the list of event stream futures.
+             *
+             * It is intended that the process goes through one PV at a time.
+             */
+            try {
+                for (int i = 0; i < pvNames.size(); i++) {
+                    try (BasicContext retrievalContext =
+                            new BasicContext(typeInfos.get(i).getDBRType(), pvNamesFromRequests.get(i))) {
+                        List<Future<EventStream>> eventStreamFutures = listOfEventStreamFuturesLists.get(i);
+                        String pvName = pvNames.get(i);
+                        PVTypeInfo typeInfo = typeInfos.get(i);
+                        HashMap<String, String> engineMetadata = fetchLatestMetadata ? engineMetadatas.get(i) : null;
+                        PostProcessor postProcessor = postProcessors.get(i);
+
+                        configService
+                                .getRetrievalRuntimeState()
+                                .updateRetrievalMetrics(pvName, Instant.now(), req.getRemoteAddr());
+
+                        logger.debug("Done with the RetrievalResults; moving onto the individual event stream "
+                                + "from each source for " + StringUtils.join(pvNames, ", "));
+                        pmansProfiler.mark("After retrieval results");
+                        evaluateEventStreamFutures(
+                                resp,
+                                pmansProfiler,
+                                pvName,
+                                requestTimesOb,
+                                postProcessor,
+                                typeInfo,
+                                retrievalContext,
+                                mergeDedupCountingConsumer,
+                                engineMetadata,
+                                currentlyProcessingPV,
+                                eventStreamFutures);
+
+                        consolidateEventStream(resp, pvName, postProcessor, mergeDedupCountingConsumer);
+
+                        // If the postProcessor needs to send final data across, give it a chance now...
+                        if (postProcessor instanceof AfterAllStreams) {
+                            EventStream finalEventStream = ((AfterAllStreams) postProcessor).anyFinalData();
+                            if (finalEventStream != null) {
+                                mergeDedupCountingConsumer.consumeEventStream(finalEventStream);
+                                resp.flushBuffer();
+                            }
                         }
-                    }
 
-                    pmansProfiler.mark("After writing all eventstreams to response");
+                        pmansProfiler.mark("After writing all eventstreams to response");
+                    }
                 }
+            } catch (Exception ex) {
+                logger.error("Exception when retrieving data ", ex);
             }
-        } catch (Exception ex) {
-            logger.error("Exception when retrieving data ", ex);
-        }
 
-        long s2 = System.currentTimeMillis();
-        logger.info("For the complete request, found a total of " + mergeDedupCountingConsumer.totalEventsForAllPVs
-                + " in " + (s2 - s1) + "(ms)"
-                + " skipping " + mergeDedupCountingConsumer.skippedEventsForAllPVs + " events"
-                + " deduping involved " + mergeDedupCountingConsumer.comparedEventsForAllPVs + " compares.");
+            long s2 = System.currentTimeMillis();
+            logger.info("For the complete request, found a total of " + mergeDedupCountingConsumer.totalEventsForAllPVs
+                    + " in " + (s2 - s1) + "(ms)"
+                    + " skipping " + mergeDedupCountingConsumer.skippedEventsForAllPVs + " events"
+                    + " deduping involved " + mergeDedupCountingConsumer.comparedEventsForAllPVs + " compares.");
 
-        pmansProfiler.mark("After all closes and flushing all buffers");
+            pmansProfiler.mark("After all closes and flushing all buffers");
+            recordRetrievalTime(
+                    extension,
+                    postProcessors.stream()
+                            .map(PostProcessor::getIdentity)
+                            .distinct()
+                            .reduce((a, b) -> "multiple")
+                            .orElse("none"),
+                    pmansProfiler.totalTimeMS());
+
+            // Till we determine all the if conditions where we log this, we log sparingly..
+            if (pmansProfiler.totalTimeMS() / pvNames.size() > 5000) {
+                logger.error("Retrieval time for " + StringUtils.join(pvNames, ", ") + " from " + requestTimesOb.start
+                        + " to " + requestTimesOb.end + ": " + pmansProfiler);
+            }
 
-        // Till we determine all the if conditions where we log this, we log sparingly..
-        if (pmansProfiler.totalTimeMS() / pvNames.size() > 5000) {
-            logger.error("Retrieval time for " + StringUtils.join(pvNames, ", ") + " from " + requestTimesOb.start
-                    + " to " + requestTimesOb.end + ": " + pmansProfiler);
+            mergeDedupCountingConsumer.close();
+        } finally {
+            // Return the memory budget and the data source slots on all paths; including early returns and exceptions.
+            for (RetrievalExecutorResult executorResult : allExecutorResults) {
+                executorResult.close();
+            }
+            for (BasicContext retrievalContext : allRetrievalContexts) {
+                retrievalContext.close();
+            }
         }
+    }
 
-        mergeDedupCountingConsumer.close();
+    /**
+     * Record the time taken for this request in the retrieval latency histogram.
+     * We limit the mime label to the supported mime types; the post processor identity is from a fixed set as well.
+     */
+    private static void recordRetrievalTime(String extension, String postProcessorIdentity, long millis) {
+        String mime = mimeresponses.containsKey(extension) ? extension : "unsupported";
+        retrievalSeconds
+                .labels(mime, postProcessorIdentity != null ? postProcessorIdentity : "none")
+                .observeMillis(millis);
     }
 
     /**
@@ -1166,7 +1228,7 @@ public class DataRetrievalServlet extends HttpServlet {
             // Submit the units of retrieval to the executor service. This will give us a bunch of Futures.
             for (UnitOfRetrieval unitofretrieval : unitsofretrieval) {
                 // unitofretrieval implements a call() method as it extends Callable<?>
-                retrievalResultFutures.add(executorResult.executorService.submit(unitofretrieval));
+                retrievalResultFutures.add(executorResult.dataSourceExecutor.submit(unitofretrieval));
             }
         }
         return retrievalResultFutures;
@@ -1369,6 +1431,17 @@ public class DataRetrievalServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         configService = (ConfigService) this.getServletContext().getAttribute(ConfigService.CONFIG_SERVICE_NAME);
+        retrievalExecutors =
+                new RetrievalExecutors(configService != null ? configService.getInstallationProperties() : null);
+    }
+
+    @Override
+    public void destroy() {
+        if (retrievalExecutors != null) {
+            retrievalExecutors.close();
+            retrievalExecutors = null;
+        }
+        super.destroy();
     }
 
     /**
@@ -1510,6 +1583,8 @@ public class DataRetrievalServlet extends HttpServlet {
      * @param resp
      * @param requestTimes
      * @param pvInfos
+     * @param allExecutorResults - the executors used for these PVs are added here so that the caller can shut them down.
+     * @param allRetrievalContexts - the contexts used for these PVs are added here so that the caller can close them.
      * @throws IOException
      * @throws ExecutionException
      * @throws InterruptedException
@@ -1518,14 +1593,18 @@ public class DataRetrievalServlet extends HttpServlet {
             HttpServletRequest req,
             HttpServletResponse resp,
             ArrayList<PVInfoForClusterRetrieval> pvInfos,
-            LinkedList<TimeSpan> requestTimes)
+            LinkedList<TimeSpan> requestTimes,
+            List<RetrievalExecutorResult> allExecutorResults,
+            List<BasicContext> allRetrievalContexts)
             throws IOException, InterruptedException, ExecutionException {
 
         // Get the executors for the PVs in other clusters
         List<RetrievalExecutorResult> executorResults = new ArrayList<RetrievalExecutorResult>(pvInfos.size());
         for (PVInfoForClusterRetrieval pvInfo : pvInfos) {
-            executorResults.add(determineExecutorForPostProcessing(
-                    pvInfo.getPVName(), pvInfo.getTypeInfo(), requestTimes, req, pvInfo.getPostProcessor()));
+            RetrievalExecutorResult executorResult = determineExecutorForPostProcessing(
+                    pvInfo.getPVName(), pvInfo.getTypeInfo(), requestTimes, req, pvInfo.getPostProcessor());
+            allExecutorResults.add(executorResult);
+            executorResults.add(executorResult);
         }
 
         // Get list of lists of futures of retrieval results. Basically, this is setting up the data sources for
@@ -1534,12 +1613,14 @@ public class DataRetrievalServlet extends HttpServlet {
                 new ArrayList<LinkedList<Future<RetrievalResult>>>();
         for (int i = 0; i < pvInfos.size(); i++) {
             PVInfoForClusterRetrieval pvInfo = pvInfos.get(i);
+            BasicContext retrievalContext = new BasicContext();
+            allRetrievalContexts.add(retrievalContext);
             listOfRetrievalResultsFutures.add(resolveAllDataSources(
                     pvInfo.getPVName(),
                     pvInfo.getTypeInfo(),
                     pvInfo.getPostProcessor(),
                     pvInfo.getApplianceInfo(),
-                    new BasicContext(),
+                    retrievalContext,
                     executorResults.get(i),
                     req));
         }
@@ -1726,24 +1807,31 @@ public class DataRetrievalServlet extends HttpServlet {
 
     /**
      * Based on the post processor, we make a call on where we can process the request in parallel
-     * Either way, we return the result of this decision as two components
-     * One is an executor to use
+     * Either way, we return the result of this decision as three components
+     * One is an executor to use for post processing
+     * Another is an executor to use for resolving the data sources
      * The other is a list of timespans that we have broken  the request into - the timespans will most likely be the time spans of the individual bins in the request.
      *
      * @author mshankar
      */
     private static class RetrievalExecutorResult implements AutoCloseable {
         ExecutorService executorService;
+        ExecutorService dataSourceExecutor;
         LinkedList<TimeSpan> requestTimespans;
 
-        RetrievalExecutorResult(ExecutorService executorService, LinkedList<TimeSpan> requestTimepans) {
+        RetrievalExecutorResult(
+                ExecutorService executorService,
+                ExecutorService dataSourceExecutor,
+                LinkedList<TimeSpan> requestTimepans) {
             this.executorService = executorService;
+            this.dataSourceExecutor = dataSourceExecutor;
             this.requestTimespans = requestTimepans;
         }
 
         @Override
         public void close() {
             try {
+                this.dataSourceExecutor.shutdown();
                 this.executorService.shutdown();
             } catch (Throwable t) {
                 logger.debug("Exception shutting down executor", t);
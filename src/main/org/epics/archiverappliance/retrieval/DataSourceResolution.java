@@ -62,7 +62,7 @@ public class DataSourceResolution {
      * @param start  Instant
      * @param end Instant
      * @param typeInfo PVTypeInf
-     * @param context BasicContext
+     * @param context BasicContext; the UnitOfRetrieval's can run concurrently, so each gets a child context of this one.
      * @param postProcessor PostProcessor
      * @param req HttpServletRequest
      * @param applianceForPV ApplianceInfo
@@ -103,7 +103,7 @@ public class DataSourceResolution {
                         start,
                         end,
                         postProcessor,
-                        context));
+                        context.newChildContext()));
             } catch (URISyntaxException e) {
                 throw new IOException(e);
             }
@@ -159,7 +159,7 @@ public class DataSourceResolution {
                                     dataSource.getRequestTimeSpan().getStartTime(),
                                     dataSource.getRequestTimeSpan().getEndTime(),
                                     spannedProcessor.getPostProcessor(),
-                                    context));
+                                    context.newChildContext()));
                         } else {
                             if (logger.isDebugEnabled()) {
                                 logger.debug("Adding data source "
@@ -182,7 +182,7 @@ public class DataSourceResolution {
                                     spannedProcessor.getTimeSpan().getStartTime(),
                                     spannedProcessor.getTimeSpan().getEndTime(),
                                     spannedProcessor.getPostProcessor(),
-                                    context));
+                                    context.newChildContext()));
                         }
                     } catch (Exception ex) {
                         logger.error("Exception initializing storage plugin", ex);
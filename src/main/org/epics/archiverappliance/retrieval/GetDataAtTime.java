@@ -31,6 +31,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -38,6 +39,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -46,6 +49,11 @@ import jakarta.servlet.http.HttpServletResponse;
 public class GetDataAtTime {
     private static final Logger logger = LogManager.getLogger(GetDataAtTime.class);
 
+    /**
+     * The number of PVs looked up together in {@link #getDataAtTimeForAppliance}.
+     */
+    public static int PVS_PER_BATCH = 128;
+
     static class Appliance2PVs {
         ApplianceInfo applianceInfo;
         LinkedList<String> pvsFromAppliance;
@@ -343,57 +351,158 @@ public class GetDataAtTime {
         pvName = typeInfo.getPvName();
 
         // There is a separate bulk call for the engine; so we can skip the engine.
-        // Go thru the stores in reverse order...
-        try {
+        try (BasicContext context = new BasicContext()) {
             // Very important we make a copy of the datastores here...
-            List<String> datastores = new ArrayList<>(Arrays.asList(typeInfo.getDataStores()));
-            for (String store : datastores) {
-                StoragePlugin storagePlugin = StoragePluginURLParser.parseStoragePlugin(store, configService);
-                // Check to see if there is a named flag that turns off this data source.
-                String namedFlagForSkippingDataSource = "SKIP_" + storagePlugin.getName() + "_FOR_RETRIEVAL";
-                if (configService.getNamedFlag(namedFlagForSkippingDataSource)) {
-                    logger.warn("Skipping " + storagePlugin.getName() + " as the named flag "
-                            + namedFlagForSkippingDataSource + " is set");
-                    continue;
-                }
-                logger.debug("Looking in store {}", storagePlugin.getName());
-
-                try (BasicContext context = new BasicContext()) {
-                    if (storagePlugin instanceof DataAtTime dataAtTimePlugin) {
-                        // The searchPeriod here is only to get enough chunks to facilitate the search. The iteration
-                        // should stop at the specified time period.
-
-                        Instant startAtTime = atTime.plus(5, ChronoUnit.MINUTES);
-                        Event e = dataAtTimePlugin.dataAtTime(
-                                context,
-                                pvName,
-                                atTime,
-                                startAtTime,
-                                searchPeriod.plusDays(31),
-                                BiDirectionalIterable.IterationDirection.BACKWARDS);
-                        if (e != null) {
-                            return new PVWithData(pvName, e);
-                        }
-                    } else {
-                        logger.info(
-                                "Plugin {} does not implement the BiDirectionalIterable interface",
-                                storagePlugin.getName());
+            List<StoragePlugin> storagePlugins =
+                    parseDataStores(new ArrayList<>(Arrays.asList(typeInfo.getDataStores())), configService);
+            Event e = getDataAtTimeFromStores(context, pvName, storagePlugins, atTime, searchPeriod);
+            if (e != null) {
+                return new PVWithData(pvName, e);
+            }
+        } catch (Exception ex) {
+            logger.error("Getting data at time for PV " + pvName, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Get data at a time for a batch of PVs that have the same data stores.
+     * The storage plugins are parsed once for the batch and the PVs share a BasicContext;
+     * so any file systems opened by the plugins (for example, for zip/tar partitions) are reused across the PVs.
+     * @param typeInfos The typeinfos of the PVs; these should all have the same data stores.
+     * @return A map of PV name to the closest sample at or before the requested time.
+     */
+    private static Map<String, Event> getDataAtTimeForBatch(
+            List<PVTypeInfo> typeInfos, Instant atTime, Period searchPeriod, ConfigService configService) {
+        HashMap<String, Event> ret = new HashMap<>();
+        if (typeInfos.isEmpty()) return ret;
+        try (BasicContext context = new BasicContext()) {
+            List<StoragePlugin> storagePlugins =
+                    parseDataStores(new ArrayList<>(Arrays.asList(typeInfos.get(0).getDataStores())), configService);
+            for (PVTypeInfo typeInfo : typeInfos) {
+                String pvName = typeInfo.getPvName();
+                try {
+                    Event e = getDataAtTimeFromStores(context, pvName, storagePlugins, atTime, searchPeriod);
+                    if (e != null) {
+                        ret.put(pvName, e);
                     }
+                } catch (Exception ex) {
+                    logger.error("Getting data at time for PV " + pvName, ex);
                 }
             }
         } catch (Exception ex) {
-            logger.error("Getting data at time for PV " + pvName, ex);
+            logger.error("Getting data at time for a batch of " + typeInfos.size() + " PVs", ex);
         }
+        return ret;
+    }
 
+    /**
+     * Parse the data stores of a PV into storage plugins, skipping those that have been turned off for retrieval.
+     */
+    private static List<StoragePlugin> parseDataStores(List<String> datastores, ConfigService configService)
+            throws IOException {
+        List<StoragePlugin> storagePlugins = new ArrayList<>(datastores.size());
+        for (String store : datastores) {
+            StoragePlugin storagePlugin = StoragePluginURLParser.parseStoragePlugin(store, configService);
+            // Check to see if there is a named flag that turns off this data source.
+            String namedFlagForSkippingDataSource = "SKIP_" + storagePlugin.getName() + "_FOR_RETRIEVAL";
+            if (configService.getNamedFlag(namedFlagForSkippingDataSource)) {
+                logger.warn("Skipping " + storagePlugin.getName() + " as the named flag "
+                        + namedFlagForSkippingDataSource + " is set");
+                continue;
+            }
+            storagePlugins.add(storagePlugin);
+        }
+        return storagePlugins;
+    }
+
+    /**
+     * Go thru the stores in order till we find the closest sample at or before the requested time.
+     */
+    private static Event getDataAtTimeFromStores(
+            BasicContext context,
+            String pvName,
+            List<StoragePlugin> storagePlugins,
+            Instant atTime,
+            Period searchPeriod)
+            throws IOException {
+        for (StoragePlugin storagePlugin : storagePlugins) {
+            logger.debug("Looking in store {}", storagePlugin.getName());
+            if (storagePlugin instanceof DataAtTime dataAtTimePlugin) {
+                // The searchPeriod here is only to get enough chunks to facilitate the search. The iteration
+                // should stop at the specified time period.
+
+                Instant startAtTime = atTime.plus(5, ChronoUnit.MINUTES);
+                Event e = dataAtTimePlugin.dataAtTime(
+                        context,
+                        pvName,
+                        atTime,
+                        startAtTime,
+                        searchPeriod.plusDays(31),
+                        BiDirectionalIterable.IterationDirection.BACKWARDS);
+                if (e != null) {
+                    return e;
+                }
+            } else {
+                logger.info(
+                        "Plugin {} does not implement the BiDirectionalIterable interface", storagePlugin.getName());
+            }
+        }
         return null;
     }
 
+    /**
+     * Get data at a specified time from the data stores for the specified set of PV's.
+     * This only returns data for those PV's that are on this appliance.
+     * <p>
+     * The PVs are grouped by their data stores and sorted by name (PVs with similar names are in neighbouring folders
+     * in the stores) and then looked up in batches of {@link #PVS_PER_BATCH} on the executor.
+     * The executor bounds the number of concurrent lookups.
+     * @return A map of PV name (from the typeinfo) to the closest sample at or before the requested time.
+     */
+    public static Map<String, Event> getDataAtTimeForPVsFromStores(
+            List<String> pvNames,
+            Instant atTime,
+            Period searchPeriod,
+            ConfigService configService,
+            ExecutorService executor)
+            throws InterruptedException, ExecutionException {
+        String myIdentity = configService.getMyApplianceInfo().getIdentity();
+        HashMap<List<String>, List<PVTypeInfo>> dataStores2TypeInfos = new HashMap<>();
+        HashSet<String> typeInfoNames = new HashSet<>();
+        for (String pvName : pvNames) {
+            PVTypeInfo typeInfo = PVNames.determineAppropriatePVTypeInfo(pvName, configService);
+            if (typeInfo == null || !typeInfo.getApplianceIdentity().equals(myIdentity)) continue;
+            if (!typeInfoNames.add(typeInfo.getPvName())) continue;
+            dataStores2TypeInfos
+                    .computeIfAbsent(List.of(typeInfo.getDataStores()), k -> new ArrayList<>())
+                    .add(typeInfo);
+        }
+
+        List<Future<Map<String, Event>>> retrievalCalls = new LinkedList<>();
+        for (List<PVTypeInfo> typeInfos : dataStores2TypeInfos.values()) {
+            typeInfos.sort(Comparator.comparing(PVTypeInfo::getPvName));
+            for (int i = 0; i < typeInfos.size(); i += PVS_PER_BATCH) {
+                List<PVTypeInfo> batch = typeInfos.subList(i, Math.min(typeInfos.size(), i + PVS_PER_BATCH));
+                retrievalCalls.add(
+                        executor.submit(() -> getDataAtTimeForBatch(batch, atTime, searchPeriod, configService)));
+            }
+        }
+
+        HashMap<String, Event> ret = new HashMap<>();
+        for (Future<Map<String, Event>> res : retrievalCalls) {
+            ret.putAll(res.get());
+        }
+        return ret;
+    }
+
     /**
      * Get data at a specified time from the data stores for the specified set of PV's.
      * This only returns data for those PV's that are on this appliance.
      */
     public static void getDataAtTimeForAppliance(
-            HttpServletRequest req, HttpServletResponse resp, ConfigService configService)
+            HttpServletRequest req, HttpServletResponse resp, ConfigService configService, ExecutorService executor)
             throws ServletException, IOException, InterruptedException, ExecutionException {
         LinkedList<String> pvNames = PVsMatchingParameter.getPVNamesFromPostBody(req);
         String timeStr = req.getParameter("at");
@@ -410,19 +519,11 @@ public class GetDataAtTime {
         logger.debug("Getting data from instance for " + pvNames.size() + " PVs at "
                 + TimeUtils.convertToHumanReadableString(atTime));
 
-        List<CompletableFuture<PVWithData>> retrievalCalls = new LinkedList<>();
-        for (String pvName : pvNames) {
-            retrievalCalls.add(CompletableFuture.supplyAsync(
-                    () -> getDataAtTimeForPVFromStores(pvName, atTime, searchPeriod, configService)));
-        }
-
-        CompletableFuture.allOf(toArray(retrievalCalls)).join();
-        HashMap<String, Event> ret = new HashMap<>();
-        for (CompletableFuture<PVWithData> res : retrievalCalls) {
-            PVWithData pd = res.get();
-            if (pd != null) {
-                ret.put(pd.pvName(), pd.event());
-            }
+        Map<String, Event> ret;
+        try {
+            ret = getDataAtTimeForPVsFromStores(pvNames, atTime, searchPeriod, configService, executor);
+        } finally {
+            executor.shutdown();
         }
 
         try (PrintWriter out = resp.getWriter()) {
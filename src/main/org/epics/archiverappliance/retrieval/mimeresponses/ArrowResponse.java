@@ -0,0 +1,310 @@
+package org.epics.archiverappliance.retrieval.mimeresponses;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampNanoTZVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.EventStreamDesc;
+import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.DoubleSampleValues;
+import org.epics.archiverappliance.data.SampleValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the event data as <a href="https://arrow.apache.org/docs/format/Columnar.html#ipc-streaming-format">Apache Arrow IPC streams</a>.
+ * Each PV in the response is a separate Arrow IPC stream (a schema, the record batches and an end of stream marker).
+ * So, a response for a single PV is a standard Arrow stream and a response for multiple PVs is these streams one after the other.
+ * For example, in pyarrow, call <code>pyarrow.ipc.open_stream</code> on the response repeatedly until the response is exhausted.
+ * <p>
+ * Each stream has these columns
+ * <ol>
+ * <li><code>timestamp</code> - The EPICS record processing timestamp as a UTC timestamp with nanosecond resolution.</li>
+ * <li><code>value</code> - The value; this is a double, float, int or string for scalars and a list of these for waveforms.
+ * V4 generic types are sent as binary. The value is null if it cannot be converted to the type of the PV (for example, if the PV changed type).</li>
+ * <li><code>severity</code> - The alarm severity as an int.</li>
+ * <li><code>status</code> - The alarm status as an int.</li>
+ * </ol>
+ * The name of the PV (as <code>pvName</code>) and the headers (EGU, PREC etc) are in the metadata of the schema.
+ * <p>
+ * Events are accumulated into record batches of {@link #ROWS_PER_BATCH} rows (or {@link #MAX_ELEMENTS_PER_BATCH} waveform elements).
+ * Each batch is written out as soon as it is full; so the memory used does not depend on the size of the request.
+ * The batches are allocated off heap by Arrow; on recent JDKs, Arrow needs <code>--add-opens=java.base/java.nio=ALL-UNNAMED</code> in the JVM arguments.
+ */
+public class ArrowResponse implements MimeResponse {
+    private static final Logger logger = LogManager.getLogger(ArrowResponse.class.getName());
+
+    /**
+     * The maximum number of events in a record batch.
+     */
+    public static int ROWS_PER_BATCH = 16 * 1024;
+    /**
+     * The maximum number of waveform elements in a record batch; this keeps the batches for large waveforms reasonably sized.
+     */
+    public static int MAX_ELEMENTS_PER_BATCH = 1024 * 1024;
+
+    private static final String VALUE_COLUMN = "value";
+
+    private WritableByteChannel channel;
+    private BufferAllocator allocator;
+
+    // The state for the PV that is currently being sent.
+    private String pvName;
+    private Map<String, String> pvMetadata;
+    private ArchDBRTypes streamDBRType;
+    private ArchDBRTypes dbrType;
+    private VectorSchemaRoot root;
+    private ArrowStreamWriter writer;
+    private TimeStampNanoTZVector timestamps;
+    private FieldVector values;
+    private IntVector severities;
+    private IntVector statuses;
+    private int rowCount = 0;
+    private int elementCount = 0;
+
+    @Override
+    public void setOutputStream(OutputStream os) {
+        this.channel = Channels.newChannel(os);
+        this.allocator = new RootAllocator();
+    }
+
+    @Override
+    public void processingPV(
+            BasicContext retrievalContext, String pv, Instant start, Instant end, EventStreamDesc streamDesc) {
+        finishPV();
+        pvName = pv;
+        pvMetadata = new HashMap<String, String>();
+        pvMetadata.put("pvName", pv);
+        streamDBRType = null;
+        if (streamDesc != null) {
+            streamDBRType = streamDesc.getArchDBRType();
+            if (streamDesc instanceof RemotableEventStreamDesc remoteDesc) {
+                for (Map.Entry<String, String> header : remoteDesc.getHeaders().entrySet()) {
+                    if (header.getValue() != null && !header.getValue().isEmpty()) {
+                        pvMetadata.put(header.getKey(), header.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void swicthingToStream(EventStream strm) {
+        // The schema is determined by the first stream; nothing to do here.
+    }
+
+    @Override
+    public void consumeEvent(Event e) throws Exception {
+        DBRTimeEvent evnt = (DBRTimeEvent) e;
+        if (writer == null) {
+            startStream(streamDBRType != null ? streamDBRType : evnt.getDBRType());
+        }
+        Instant ts = evnt.getEventTimeStamp();
+        timestamps.setSafe(rowCount, ts.getEpochSecond() * 1_000_000_000L + ts.getNano());
+        try {
+            setValue(evnt);
+        } catch (RuntimeException ex) {
+            logger.debug("Cannot convert the value of an event for pv " + pvName + " to " + dbrType, ex);
+            values.setNull(rowCount);
+        }
+        severities.setSafe(rowCount, evnt.getSeverity());
+        statuses.setSafe(rowCount, evnt.getStatus());
+        rowCount++;
+        if (rowCount >= ROWS_PER_BATCH || elementCount >= MAX_ELEMENTS_PER_BATCH) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public void close() {
+        finishPV();
+        try {
+            allocator.close();
+        } catch (Exception ex) {
+            logger.error("Exception closing the Arrow allocator", ex);
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.debug("Exception closing the Arrow response", ex);
+        }
+    }
+
+    static Schema makeSchema(ArchDBRTypes dbrType, Map<String, String> metadata) {
+        return new Schema(
+                List.of(
+                        new Field(
+                                "timestamp",
+                                FieldType.notNullable(new ArrowType.Timestamp(TimeUnit.NANOSECOND, "UTC")),
+                                null),
+                        makeValueField(dbrType),
+                        new Field("severity", FieldType.notNullable(new ArrowType.Int(32, true)), null),
+                        new Field("status", FieldType.notNullable(new ArrowType.Int(32, true)), null)),
+                metadata);
+    }
+
+    private static Field makeValueField(ArchDBRTypes dbrType) {
+        ArrowType elementType =
+                switch (dbrType) {
+                    case DBR_SCALAR_DOUBLE, DBR_WAVEFORM_DOUBLE -> new ArrowType.FloatingPoint(
+                            FloatingPointPrecision.DOUBLE);
+                    case DBR_SCALAR_FLOAT, DBR_WAVEFORM_FLOAT -> new ArrowType.FloatingPoint(
+                            FloatingPointPrecision.SINGLE);
+                    case DBR_SCALAR_SHORT,
+                            DBR_WAVEFORM_SHORT,
+                            DBR_SCALAR_ENUM,
+                            DBR_WAVEFORM_ENUM,
+                            DBR_SCALAR_BYTE,
+                            DBR_WAVEFORM_BYTE,
+                            DBR_SCALAR_INT,
+                            DBR_WAVEFORM_INT -> new ArrowType.Int(32, true);
+                    case DBR_SCALAR_STRING, DBR_WAVEFORM_STRING -> ArrowType.Utf8.INSTANCE;
+                    case DBR_V4_GENERIC_BYTES -> ArrowType.Binary.INSTANCE;
+                };
+        if (dbrType.isWaveForm() && dbrType != ArchDBRTypes.DBR_V4_GENERIC_BYTES) {
+            return new Field(
+                    VALUE_COLUMN,
+                    FieldType.nullable(ArrowType.List.INSTANCE),
+                    List.of(new Field("item", FieldType.notNullable(elementType), null)));
+        }
+        return new Field(VALUE_COLUMN, FieldType.nullable(elementType), null);
+    }
+
+    private void startStream(ArchDBRTypes dbrType) throws IOException {
+        this.dbrType = dbrType;
+        root = VectorSchemaRoot.create(makeSchema(dbrType, pvMetadata), allocator);
+        root.allocateNew();
+        timestamps = (TimeStampNanoTZVector) root.getVector(0);
+        values = root.getVector(1);
+        severities = (IntVector) root.getVector(2);
+        statuses = (IntVector) root.getVector(3);
+        writer = new ArrowStreamWriter(root, null, channel);
+        writer.start();
+        rowCount = 0;
+        elementCount = 0;
+    }
+
+    private void setValue(DBRTimeEvent evnt) {
+        if (evnt instanceof DoubleSampleValues doubleValues) {
+            // Skip creating the SampleValue for doubles and double waveforms
+            if (values instanceof ListVector list && list.getDataVector() instanceof Float8Vector doubles) {
+                int count = doubleValues.getDoubleValueCount();
+                int offset = list.startNewValue(rowCount);
+                for (int i = 0; i < count; i++) {
+                    doubles.setSafe(offset + i, doubleValues.getDoubleValue(i));
+                }
+                list.endValue(rowCount, count);
+                elementCount += count;
+                return;
+            } else if (values instanceof Float8Vector doubles) {
+                doubles.setSafe(rowCount, doubleValues.getDoubleValue(0));
+                return;
+            }
+        }
+
+        SampleValue value = evnt.getSampleValue();
+        if (values instanceof ListVector list) {
+            int count = value.getElementCount();
+            int offset = list.startNewValue(rowCount);
+            FieldVector elements = list.getDataVector();
+            for (int i = 0; i < count; i++) {
+                setElement(elements, offset + i, value, i);
+            }
+            list.endValue(rowCount, count);
+            elementCount += count;
+        } else if (values instanceof VarCharVector strings) {
+            strings.setSafe(rowCount, value.toString().getBytes(StandardCharsets.UTF_8));
+        } else if (values instanceof VarBinaryVector bytes) {
+            ByteBuffer buf = value.getValueAsBytes();
+            bytes.setSafe(rowCount, buf, buf.position(), buf.remaining());
+            elementCount += buf.remaining();
+        } else {
+            setNumber(values, rowCount, value.getValue());
+        }
+    }
+
+    private static void setElement(FieldVector elements, int index, SampleValue value, int i) {
+        if (elements instanceof VarCharVector strings) {
+            strings.setSafe(index, value.getStringValue(i).getBytes(StandardCharsets.UTF_8));
+        } else {
+            setNumber(elements, index, value.getValue(i));
+        }
+    }
+
+    private static void setNumber(FieldVector vector, int index, Number number) {
+        if (vector instanceof Float8Vector doubles) {
+            doubles.setSafe(index, number.doubleValue());
+        } else if (vector instanceof Float4Vector floats) {
+            floats.setSafe(index, number.floatValue());
+        } else {
+            ((IntVector) vector).setSafe(index, number.intValue());
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        root.setRowCount(rowCount);
+        writer.writeBatch();
+        // Reset the vectors for the next batch.
+        root.allocateNew();
+        rowCount = 0;
+        elementCount = 0;
+    }
+
+    /**
+     * Write out the remaining events and the end of stream marker for the current PV.
+     * PVs without any events still get an empty stream so that there is one stream per PV in the response.
+     */
+    private void finishPV() {
+        if (pvName == null) return;
+        try {
+            if (writer == null) {
+                startStream(streamDBRType != null ? streamDBRType : ArchDBRTypes.DBR_SCALAR_DOUBLE);
+            }
+            if (rowCount > 0) {
+                writeBatch();
+            }
+            // We do not close the writer as that closes the channel.
+            writer.end();
+        } catch (IOException ex) {
+            logger.debug("Exception finishing the Arrow stream for pv " + pvName, ex);
+        } finally {
+            if (root != null) {
+                root.close();
+            }
+            root = null;
+            writer = null;
+            values = null;
+            pvName = null;
+        }
+    }
+}
@@ -7,18 +7,23 @@
  *******************************************************************************/
 package org.epics.archiverappliance.retrieval.mimeresponses;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.Event;
 import org.epics.archiverappliance.EventStream;
 import org.epics.archiverappliance.EventStreamDesc;
 import org.epics.archiverappliance.common.BasicContext;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.data.DBRTimeEvent;
-import org.json.simple.JSONValue;
+import org.epics.archiverappliance.data.DoubleSampleValues;
+import org.epics.archiverappliance.data.SampleValue;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.data.VectorValue;
 
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -27,9 +32,14 @@ import java.util.Map.Entry;
  * Sends the event data as a JSON response.
  * The response is a array of PV elements, each PV has a meta and data section.
  * The data section has timestamp in epoch seconds and the value
+ * <p>
+ * Events are encoded directly into the output buffer using a {@link JSONStreamWriter}.
+ * Double and double waveform events (and numeric {@link ScalarValue}s and {@link VectorValue}s) are written without creating
+ * intermediate Strings; other values fall back to {@link SampleValue#toJSONString()}.
  */
 public class JSONResponse implements MimeResponse {
-    private PrintWriter out;
+    private static final Logger logger = LogManager.getLogger(JSONResponse.class.getName());
+    private JSONStreamWriter out;
     boolean needComma = false;
     boolean firstPV = true;
     boolean closePV = false;
@@ -40,91 +50,155 @@ public class JSONResponse implements MimeResponse {
         if (!needComma) {
             needComma = true;
         } else {
-            out.println(",");
+            out.writeAscii(",").newLine();
         }
-        out.print("{ \"secs\": " + evnt.getEpochSeconds()
-                + ", \"val\": " + evnt.getSampleValue().toJSONString()
-                + ", \"nanos\": " + Integer.toString(evnt.getEventTimeStamp().getNano())
-                + ", \"severity\":" + Integer.toString(evnt.getSeverity())
-                + ", \"status\":" + Integer.toString(evnt.getStatus())
-                + consumeMetadata(evnt)
-                + " }");
+        writeEvent(out, evnt);
     }
 
-    private static String consumeMetadata(DBRTimeEvent evnt) {
+    /**
+     * Write an event as a JSON object in the format used by this response.
+     * @param out The writer
+     * @param evnt The event
+     * @throws IOException &emsp;
+     */
+    public static void writeEvent(JSONStreamWriter out, DBRTimeEvent evnt) throws IOException {
+        out.writeAscii("{ \"secs\": ").writeLong(evnt.getEpochSeconds());
+        out.writeAscii(", \"val\": ");
+        writeValue(out, evnt);
+        out.writeAscii(", \"nanos\": ").writeLong(evnt.getEventTimeStamp().getNano());
+        out.writeAscii(", \"severity\":").writeLong(evnt.getSeverity());
+        out.writeAscii(", \"status\":").writeLong(evnt.getStatus());
+        writeMetadata(out, evnt);
+        out.writeAscii(" }");
+    }
+
+    private static void writeValue(JSONStreamWriter out, DBRTimeEvent evnt) throws IOException {
+        if (evnt instanceof DoubleSampleValues doubleValues) {
+            if (doubleValues.isVector()) {
+                int count = doubleValues.getDoubleValueCount();
+                out.writeAscii("[");
+                for (int i = 0; i < count; i++) {
+                    if (i != 0) out.writeAscii(",");
+                    out.writeDouble(doubleValues.getDoubleValue(i));
+                }
+                out.writeAscii("]");
+            } else {
+                out.writeDouble(doubleValues.getDoubleValue(0));
+            }
+            return;
+        }
+
+        SampleValue value = evnt.getSampleValue();
+        if (value instanceof ScalarValue) {
+            writeNumber(out, value.getValue());
+        } else if (value instanceof VectorValue) {
+            out.writeAscii("[");
+            boolean first = true;
+            for (Object element : (List<?>) value.getValues()) {
+                if (first) {
+                    first = false;
+                } else {
+                    out.writeAscii(",");
+                }
+                writeNumber(out, (Number) element);
+            }
+            out.writeAscii("]");
+        } else {
+            out.write(value.toJSONString());
+        }
+    }
+
+    private static void writeNumber(JSONStreamWriter out, Number number) throws IOException {
+        if (number instanceof Double d) {
+            out.writeDouble(d);
+        } else if (number instanceof Float f) {
+            out.writeFloat(f);
+        } else if (number instanceof Integer
+                || number instanceof Short
+                || number instanceof Byte
+                || number instanceof Long) {
+            out.writeLong(number.longValue());
+        } else {
+            out.write(number.toString());
+        }
+    }
+
+    private static void writeMetadata(JSONStreamWriter out, DBRTimeEvent evnt) throws IOException {
         if (evnt.hasFieldValues()) {
-            StringBuilder buf = new StringBuilder();
-            buf.append(", \"fields\": { ");
+            out.writeAscii(", \"fields\": { ");
             boolean metaComma = false;
             for (Entry<String, String> keyValue : evnt.getFields().entrySet()) {
                 if (!metaComma) {
                     metaComma = true;
                 } else {
-                    buf.append(",");
+                    out.writeAscii(",");
                 }
-                buf.append("\"");
-                buf.append(keyValue.getKey());
-                buf.append("\": \"");
-                buf.append(JSONValue.escape(keyValue.getValue()));
-                buf.append("\"");
+                out.writeAscii("\"");
+                out.writeEscaped(keyValue.getKey());
+                out.writeAscii("\": \"");
+                out.writeEscaped(keyValue.getValue());
+                out.writeAscii("\"");
             }
-            buf.append("}");
-            return buf.toString();
-        } else {
-            return "";
+            out.writeAscii("}");
         }
     }
 
     @Override
     public void setOutputStream(OutputStream os) {
-        out = new PrintWriter(os);
+        out = new JSONStreamWriter(os);
         // Perhaps we can use PV name here...
-        out.println("[ ");
+        try {
+            out.writeAscii("[ ").newLine();
+        } catch (IOException ex) {
+            logger.debug("Exception starting JSON response", ex);
+        }
     }
 
     public void close() {
-        if (closePV) {
-            out.println(); // Add a new line to make sure we have a sample per line for JSON as well (as best as we
-            // can anyways)
-            out.println("] }");
-        }
-        out.println(" ]");
         try {
-            out.flush();
+            if (closePV) {
+                out.newLine(); // Add a new line to make sure we have a sample per line for JSON as well (as best as we
+                // can anyways)
+                out.writeAscii("] }").newLine();
+            }
+            out.writeAscii(" ]").newLine();
             out.close();
         } catch (Exception ex) {
+            logger.debug("Exception closing JSON response", ex);
         }
     }
 
     @Override
     public void processingPV(
             BasicContext retrievalContext, String pv, Instant start, Instant end, EventStreamDesc streamDesc) {
-        if (firstPV) {
-            firstPV = false;
-        } else {
-            out.println("] },");
-            needComma = false;
-        }
-        RemotableEventStreamDesc remoteDesc = (RemotableEventStreamDesc) streamDesc;
-        StringWriter buf = new StringWriter();
-        buf.append("{ \"meta\": { \"name\": \"").append(pv).append("\" ");
-        if (streamDesc != null) {
-            Map<String, String> headers = remoteDesc.getHeaders();
-            if (!headers.isEmpty()) {
-                for (String fieldName : headers.keySet()) {
-                    String fieldValue = headers.get(fieldName);
-                    if (fieldValue != null && !fieldValue.isEmpty()) {
-                        buf.append(", \"")
-                                .append(fieldName)
-                                .append("\": \"")
-                                .append(fieldValue)
-                                .append("\" ");
+        try {
+            if (firstPV) {
+                firstPV = false;
+            } else {
+                out.writeAscii("] },").newLine();
+                needComma = false;
+            }
+            RemotableEventStreamDesc remoteDesc = (RemotableEventStreamDesc) streamDesc;
+            out.writeAscii("{ \"meta\": { \"name\": \"").writeEscaped(pv).writeAscii("\" ");
+            if (streamDesc != null) {
+                Map<String, String> headers = remoteDesc.getHeaders();
+                if (!headers.isEmpty()) {
+                    for (String fieldName : headers.keySet()) {
+                        String fieldValue = headers.get(fieldName);
+                        if (fieldValue != null && !fieldValue.isEmpty()) {
+                            out.writeAscii(", \"")
+                                    .writeEscaped(fieldName)
+                                    .writeAscii("\": \"")
+                                    .writeEscaped(fieldValue)
+                                    .writeAscii("\" ");
+                        }
                     }
                 }
             }
+            out.writeAscii("},\n\"data\": [ ").newLine();
+        } catch (IOException ex) {
+            logger.debug("Exception writing the JSON header for pv " + pv, ex);
         }
-        buf.append("},\n\"data\": [ ");
-        out.println(buf);
         closePV = true;
     }
 
@@ -0,0 +1,198 @@
+package org.epics.archiverappliance.retrieval.mimeresponses;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A minimal streaming JSON writer that encodes directly into a reusable byte buffer in front of an OutputStream.
+ * Numbers are formatted into a reusable StringBuilder (which does not allocate for primitives) and copied into the buffer;
+ * so writing numbers and timestamps does not create any intermediate Strings.
+ * Numbers are formatted exactly as {@link Double#toString(double)}, {@link Float#toString(float)} and {@link Long#toString(long)} would.
+ * Strings are encoded as UTF-8; {@link #writeEscaped(CharSequence)} escapes them the same way as <code>JSONValue.escape</code>.
+ * <p>
+ * This is not thread safe.
+ */
+public class JSONStreamWriter implements Closeable, Flushable {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // The longest double is 24 characters; leave some room for the quotes and separators around it.
+    private static final int MAX_NUMBER_LENGTH = 32;
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final OutputStream os;
+    private final byte[] buf;
+    private int pos = 0;
+    private final StringBuilder scratch = new StringBuilder(MAX_NUMBER_LENGTH);
+
+    public JSONStreamWriter(OutputStream os) {
+        this(os, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JSONStreamWriter(OutputStream os, int bufferSize) {
+        this.os = os;
+        this.buf = new byte[Math.max(bufferSize, MAX_NUMBER_LENGTH)];
+    }
+
+    /**
+     * Write a string that we know is ASCII; for example, the punctuation and keys in the JSON response.
+     */
+    public JSONStreamWriter writeAscii(String s) throws IOException {
+        int len = s.length();
+        int off = 0;
+        while (off < len) {
+            if (pos == buf.length) flushBuffer();
+            int chunk = Math.min(len - off, buf.length - pos);
+            for (int i = 0; i < chunk; i++) {
+                buf[pos++] = (byte) s.charAt(off + i);
+            }
+            off += chunk;
+        }
+        return this;
+    }
+
+    /**
+     * Write a string (that has already been escaped if needed) as UTF-8.
+     */
+    public JSONStreamWriter write(CharSequence s) throws IOException {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (pos == buf.length) flushBuffer();
+                buf[pos++] = (byte) c;
+            } else {
+                i = writeNonAscii(s, i);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Write a string escaping the characters that <code>JSONValue.escape</code> escapes.
+     * The surrounding quotes are not written.
+     */
+    public JSONStreamWriter writeEscaped(CharSequence s) throws IOException {
+        if (s == null) return this;
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> writeAscii("\\\"");
+                case '\\' -> writeAscii("\\\\");
+                case '/' -> writeAscii("\\/");
+                case '\b' -> writeAscii("\\b");
+                case '\f' -> writeAscii("\\f");
+                case '\n' -> writeAscii("\\n");
+                case '\r' -> writeAscii("\\r");
+                case '\t' -> writeAscii("\\t");
+                default -> {
+                    if (c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF')) {
+                        writeUnicodeEscape(c);
+                    } else if (c < 0x80) {
+                        if (pos == buf.length) flushBuffer();
+                        buf[pos++] = (byte) c;
+                    } else {
+                        i = writeNonAscii(s, i);
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    public JSONStreamWriter writeLong(long val) throws IOException {
+        scratch.setLength(0);
+        scratch.append(val);
+        return writeScratch();
+    }
+
+    public JSONStreamWriter writeDouble(double val) throws IOException {
+        scratch.setLength(0);
+        scratch.append(val);
+        return writeScratch();
+    }
+
+    public JSONStreamWriter writeFloat(float val) throws IOException {
+        scratch.setLength(0);
+        scratch.append(val);
+        return writeScratch();
+    }
+
+    public JSONStreamWriter newLine() throws IOException {
+        return writeAscii(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        os.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            os.close();
+        }
+    }
+
+    private JSONStreamWriter writeScratch() throws IOException {
+        int len = scratch.length();
+        if (pos + len > buf.length) flushBuffer();
+        for (int i = 0; i < len; i++) {
+            buf[pos++] = (byte) scratch.charAt(i);
+        }
+        return this;
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        if (pos + 6 > buf.length) flushBuffer();
+        buf[pos++] = '\\';
+        buf[pos++] = 'u';
+        buf[pos++] = HEX_DIGITS[(c >> 12) & 0xF];
+        buf[pos++] = HEX_DIGITS[(c >> 8) & 0xF];
+        buf[pos++] = HEX_DIGITS[(c >> 4) & 0xF];
+        buf[pos++] = HEX_DIGITS[c & 0xF];
+    }
+
+    /**
+     * Encode the non ASCII character at index i as UTF-8.
+     * @return The index of the last char consumed; this is i + 1 for a surrogate pair.
+     */
+    private int writeNonAscii(CharSequence s, int i) throws IOException {
+        if (pos + 4 > buf.length) flushBuffer();
+        char c = s.charAt(i);
+        if (c < 0x800) {
+            buf[pos++] = (byte) (0xC0 | (c >> 6));
+            buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            return i;
+        }
+        if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+            buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+            buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            return i + 1;
+        }
+        if (Character.isSurrogate(c)) {
+            // Unpaired surrogates are replaced, as the JDK encoder does.
+            buf[pos++] = '?';
+            return i;
+        }
+        buf[pos++] = (byte) (0xE0 | (c >> 12));
+        buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        return i;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            os.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
@@ -8,10 +8,12 @@ import org.epics.archiverappliance.common.TimeUtils;
 import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.common.remotable.RemotableOverRaw;
+import org.epics.archiverappliance.common.remotable.ScalarColumnarEventStream;
 import org.epics.archiverappliance.retrieval.ChangeInYearsException;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * An event stream that wraps an ArrayList event stream; use this if the data in your consolidated results do not fit a clean binning pattern and you need to return results that span multiple years.
@@ -21,13 +23,21 @@ import java.util.Iterator;
  */
 public class ArrayListCollectorEventStream implements EventStream, RemotableOverRaw {
     private static Logger logger = LogManager.getLogger(ArrayListCollectorEventStream.class.getName());
-    private ArrayListEventStream sourceStream;
+    private List<Event> sourceStream;
     private final RemotableEventStreamDesc desc;
     private Iterator<Event> theOneAndOnlyIterator;
 
     public ArrayListCollectorEventStream(ArrayListEventStream sourceStream) {
+        this(sourceStream, sourceStream.getDescription());
+    }
+
+    /**
+     * @param sourceStream The events; for example, a {@link ScalarColumnarEventStream}
+     * @param sourceDesc The description of the source events
+     */
+    public ArrayListCollectorEventStream(List<Event> sourceStream, RemotableEventStreamDesc sourceDesc) {
         this.sourceStream = sourceStream;
-        this.desc = new RemotableEventStreamDesc(sourceStream.getDescription());
+        this.desc = new RemotableEventStreamDesc(sourceDesc);
     }
 
     @Override
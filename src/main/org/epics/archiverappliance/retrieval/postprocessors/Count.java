@@ -5,6 +5,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.Event;
 
+import java.util.function.ToDoubleFunction;
+
 /**
  * Counts the number of items in an interval.
  * @author mshankar
@@ -19,9 +21,14 @@ public class Count extends SummaryStatsPostProcessor implements PostProcessor {
 		return IDENTITY;
 	}
 
+	@Override
+	public ToDoubleFunction<Rollup.Bucket> getRollupStatistic() {
+		return bucket -> bucket.getCount();
+	}
+
 	@Override
 	public SummaryStatsCollector getCollector() {
-		return new SummaryStatsCollector() {
+		return new SummaryStatsValueCollector() {
 			SummaryStatistics stats = new SummaryStatistics();
 			@Override
 			public void setBinParams(int intervalSecs, long binNum) {
@@ -39,7 +46,11 @@ public class Count extends SummaryStatsPostProcessor implements PostProcessor {
 			
 			@Override
 			public void addEvent(Event e) {
-				double val = e.getSampleValue().getValue().doubleValue();
+				addValue(e.getSampleValue().getValue().doubleValue());
+			}
+
+			@Override
+			public void addValue(double val) {
 				if(!Double.isNaN(val)) { 
 					stats.addValue(val);
 				} else { 
@@ -6,9 +6,9 @@ import org.epics.archiverappliance.Event;
 import org.epics.archiverappliance.EventStream;
 import org.epics.archiverappliance.common.POJOEvent;
 import org.epics.archiverappliance.common.TimeUtils;
-import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.common.remotable.RemotableOverRaw;
+import org.epics.archiverappliance.common.remotable.ScalarColumnarEventStream;
 import org.epics.archiverappliance.data.AlarmInfo;
 import org.epics.archiverappliance.retrieval.ChangeInYearsException;
 
@@ -17,6 +17,7 @@ import java.time.Instant;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -78,7 +79,7 @@ public class FillsCollectorEventStream implements EventStream, RemotableOverRaw
     }
 
     private class FillsCollectorEventStreamIterator implements Iterator<Event> {
-        ArrayListEventStream strm = new ArrayListEventStream(consolidatedData.size(), desc);
+        List<Event> strm = ScalarColumnarEventStream.newEventList(consolidatedData.size(), desc);
         short currentYear = -1;
         int currentEvent = 0;
         int totalEvents = -1;
@@ -126,7 +127,8 @@ public class FillsCollectorEventStream implements EventStream, RemotableOverRaw
                             currentEvent.getSampleValue(),
                             ((AlarmInfo) currentEvent).getStatus(),
                             ((AlarmInfo) currentEvent).getSeverity());
-                    strm.add(pojoEvent.makeClone());
+                    // The columnar stream only copies the values out; so we skip converting into the PB form.
+                    strm.add(strm instanceof ScalarColumnarEventStream ? pojoEvent : pojoEvent.makeClone());
                     if (currentYear == -1) {
                         // Initialize the current year as the year of the first bin with a value it it.
                         currentYear = TimeUtils.computeYearForEpochSeconds(epochSeconds);
@@ -1,27 +1,40 @@
 package org.epics.archiverappliance.retrieval.postprocessors;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.config.PVTypeInfo;
+
+import java.time.Instant;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * Implements the kurtosis over a bin. 
- * For example, kurtosis_600(PV) returns DescriptiveStatistics.getKurtosis() with a bin size of 600 seconds
- * This uses DescriptiveStatistics which stores values; so, this will throw OutOfMemoryExceptions if the bin sizes are large
+ * For example, kurtosis_600(PV) returns the kurtosis with a bin size of 600 seconds
+ * This uses the storeless (streaming moments) Kurtosis from commons-math; this gives the same result as DescriptiveStatistics.getKurtosis() without storing the values in the bin.
  * @author mshankar
  *
  */
 public class Kurtosis extends SummaryStatsPostProcessor implements PostProcessor {
 	static final String IDENTITY = "kurtosis";
+	/**
+	 * The running moments in the storeless statistic; these are a handful of doubles.
+	 */
+	private static final long BYTES_PER_COLLECTOR = 128;
 
 	@Override
 	public String getIdentity() {
 		return IDENTITY;
 	}
 
+	@Override
+	public long estimateMemoryConsumption(String pvName, PVTypeInfo typeInfo, Instant start, Instant end, HttpServletRequest req) {
+		super.estimateMemoryConsumption(pvName, typeInfo, start, end, req);
+		return estimateBoundedMemoryConsumption(BYTES_PER_COLLECTOR);
+	}
+
 	@Override
 	public SummaryStatsCollector getCollector() {
-		return new SummaryStatsCollector() {
-			DescriptiveStatistics stats = new DescriptiveStatistics();
+		return new SummaryStatsValueCollector() {
+			org.apache.commons.math3.stat.descriptive.moment.Kurtosis stats = new org.apache.commons.math3.stat.descriptive.moment.Kurtosis();
 			@Override
 			public void setBinParams(int intervalSecs, long binNum) {
 			}
@@ -33,14 +46,18 @@ public class Kurtosis extends SummaryStatsPostProcessor implements PostProcessor
 			
 			@Override
 			public double getStat() {
-				return stats.getKurtosis();
+				return stats.getResult();
 			}
 			
 			@Override
 			public void addEvent(Event e) {
-				double val = e.getSampleValue().getValue().doubleValue();
+				addValue(e.getSampleValue().getValue().doubleValue());
+			}
+
+			@Override
+			public void addValue(double val) {
 				if(!Double.isNaN(val)) { 
-					stats.addValue(val);
+					stats.increment(val);
 				}
 			}
 		};
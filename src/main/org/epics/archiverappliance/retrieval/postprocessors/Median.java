@@ -1,12 +1,16 @@
 package org.epics.archiverappliance.retrieval.postprocessors;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.config.PVTypeInfo;
+
+import java.time.Instant;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * Implements the median over a bin. 
- * For example, median_600(PV) returns DescriptiveStatistics.getPercentile(50) with a bin size of 600 seconds
- * This uses DescriptiveStatistics which stores values; so, this will throw OutOfMemoryExceptions if the bin sizes are large
+ * For example, median_600(PV) returns the 50th percentile with a bin size of 600 seconds
+ * This uses a {@link QuantileSketch}; this is exact (and the same as DescriptiveStatistics.getPercentile(50)) for bins with a few hundred samples. 
+ * Larger bins use a bounded amount of memory and the result is within about a percent (in rank) of the true median.
  * @author mshankar
  *
  */
@@ -18,30 +22,39 @@ public class Median extends SummaryStatsPostProcessor implements PostProcessor {
 		return IDENTITY;
 	}
 
+	@Override
+	public long estimateMemoryConsumption(String pvName, PVTypeInfo typeInfo, Instant start, Instant end, HttpServletRequest req) {
+		super.estimateMemoryConsumption(pvName, typeInfo, start, end, req);
+		return estimateBoundedMemoryConsumption(QuantileSketch.estimateMemoryConsumption(estimateSamplesPerBin(typeInfo), QuantileSketch.DEFAULT_K));
+	}
+
 	@Override
 	public SummaryStatsCollector getCollector() {
-		return new SummaryStatsCollector() {
-			DescriptiveStatistics stats = new DescriptiveStatistics();
+		return new SummaryStatsValueCollector() {
+			QuantileSketch sketch = new QuantileSketch();
 			@Override
 			public void setBinParams(int intervalSecs, long binNum) {
 			}
 			
 			@Override
 			public boolean haveEventsBeenAdded() {
-				return stats.getN() > 0;
+				return sketch.getN() > 0;
 			}
 			
 			@Override
 			public double getStat() {
-				return stats.getPercentile(50);
+				return sketch.getPercentile(50);
 			}
 			
 			@Override
 			public void addEvent(Event e) {
-				double val = e.getSampleValue().getValue().doubleValue();
-				if(!Double.isNaN(val)) { 
-					stats.addValue(val);
-				}
+				addValue(e.getSampleValue().getValue().doubleValue());
+			}
+
+			@Override
+			public void addValue(double val) {
+				// The sketch skips NaN's
+				sketch.addValue(val);
 			}
 		};
 	}
@@ -9,12 +9,14 @@ import org.epics.archiverappliance.common.TimeSpan;
 import org.epics.archiverappliance.common.TimeUtils;
 import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.common.remotable.ScalarColumnarEventStream;
 import org.epics.archiverappliance.config.PVTypeInfo;
 import org.epics.archiverappliance.data.AlarmInfo;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -36,7 +38,10 @@ public class Nth implements PostProcessor, PostProcessorWithConsolidatedEventStr
     private int count;
     private long startTime;
     private long endTime;
-    private ArrayListEventStream data;
+    /** The selected events; for the scalar types, these are held column wise. */
+    private List<Event> data;
+
+    private RemotableEventStreamDesc dataDesc;
     private Instant previousEventTimestamp = Instant.ofEpochMilli(1);
     private int i = 0;
 
@@ -96,7 +101,8 @@ public class Nth implements PostProcessor, PostProcessorWithConsolidatedEventStr
             public EventStream call() throws Exception {
                 try (EventStream strm = callable.call()) {
                     if (data == null) {
-                        data = new ArrayListEventStream(count, (RemotableEventStreamDesc) strm.getDescription());
+                        dataDesc = (RemotableEventStreamDesc) strm.getDescription();
+                        data = ScalarColumnarEventStream.newEventList(count, dataDesc);
                     }
                     for (Event e : strm) {
                         if (e.getEventTimeStamp().isAfter(previousEventTimestamp)) {
@@ -154,7 +160,7 @@ public class Nth implements PostProcessor, PostProcessorWithConsolidatedEventStr
 
     @Override
     public EventStream getConsolidatedEventStream() {
-        return new ArrayListCollectorEventStream(data);
+        return new ArrayListCollectorEventStream(data, dataDesc);
     }
 
     @Override
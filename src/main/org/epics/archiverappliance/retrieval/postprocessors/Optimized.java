@@ -9,6 +9,7 @@ import org.epics.archiverappliance.EventStream;
 import org.epics.archiverappliance.common.TimeSpan;
 import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.common.remotable.ScalarColumnarEventStream;
 import org.epics.archiverappliance.config.PVTypeInfo;
 
 import java.io.IOException;
@@ -36,7 +37,10 @@ public class Optimized implements PostProcessor, PostProcessorWithConsolidatedEv
     private static final String IDENTITY = "optimized";
 
     private int numEvents;
-    private ArrayListEventStream allEvents;
+    /** The first numberOfPoints events; for the scalar types, these are held column wise. */
+    private List<Event> allEvents;
+
+    private RemotableEventStreamDesc allEventsDesc;
     private ArrayListEventStream transformedRawEvents;
     private int numberOfPoints = DEFAULT_NUMBER_OF_POINTS;
 
@@ -167,14 +171,15 @@ public class Optimized implements PostProcessor, PostProcessorWithConsolidatedEv
                     EventStream strm = callable.call();
                     RemotableEventStreamDesc org = (RemotableEventStreamDesc) strm.getDescription();
                     RemotableEventStreamDesc desc = new RemotableEventStreamDesc(org);
-                    allEvents = new ArrayListEventStream(numberOfPoints, desc);
+                    allEventsDesc = desc;
+                    allEvents = ScalarColumnarEventStream.newEventList(numberOfPoints, desc);
                 }
                 Callable<EventStream> stCall = statisticsPostProcessor.wrap(callable);
                 EventStream stream = stCall.call();
                 if (numEvents > allEvents.size()) {
                     return stream;
                 } else {
-                    transformedRawEvents = new ArrayListEventStream(allEvents.size(), allEvents.getDescription());
+                    transformedRawEvents = new ArrayListEventStream(allEvents.size(), allEventsDesc);
                     for (Event e : allEvents) {
                         transformedRawEvents.add(DBR2PBTypeMapping.getPBClassFor(e.getDBRType())
                                 .getSerializingConstructor()
@@ -0,0 +1,103 @@
+package org.epics.archiverappliance.retrieval.postprocessors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.config.PVTypeInfo;
+
+import java.io.IOException;
+import java.time.Instant;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Implements an arbitrary percentile over a bin.
+ * For example, <code>percentile_99.9_600(PV)</code> returns the 99.9th percentile with a bin size of 600 seconds.
+ * The percentile defaults to 50 (the median) and the bin size to the default summarizing interval.
+ * Like {@link Median}, this uses a {@link QuantileSketch}; so the memory used for a bin is bounded.
+ */
+public class Percentile extends SummaryStatsPostProcessor implements PostProcessor {
+    static final String IDENTITY = "percentile";
+    private static final Logger logger = LogManager.getLogger(Percentile.class.getName());
+
+    private double percentile = 50.0;
+    private String percentileStr = "50";
+
+    @Override
+    public String getIdentity() {
+        return IDENTITY;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    @Override
+    public void initialize(String userarg, String pvName) throws IOException {
+        if (userarg != null && userarg.contains("_")) {
+            String[] userparams = userarg.split("_");
+            percentileStr = userparams[1];
+            try {
+                percentile = Double.parseDouble(percentileStr);
+            } catch (NumberFormatException ex) {
+                throw new IOException("Invalid percentile " + percentileStr + " in " + userarg, ex);
+            }
+            if (!(percentile > 0 && percentile <= 100)) {
+                throw new IOException("The percentile in " + userarg + " should be in the range (0, 100]");
+            }
+            if (userparams.length > 2) {
+                intervalSecs = Integer.parseInt(userparams[2]);
+            }
+            logger.debug("Using percentile " + percentile + " and interval " + intervalSecs);
+        } else {
+            logger.debug("Using the default percentile " + percentile + " and interval " + intervalSecs
+                    + " as the user has not specified any arguments.");
+        }
+    }
+
+    @Override
+    public String getExtension() {
+        if (intervalSecs == PostProcessors.DEFAULT_SUMMARIZING_INTERVAL) {
+            return IDENTITY + "_" + percentileStr;
+        } else {
+            return IDENTITY + "_" + percentileStr + "_" + intervalSecs;
+        }
+    }
+
+    @Override
+    public long estimateMemoryConsumption(
+            String pvName, PVTypeInfo typeInfo, Instant start, Instant end, HttpServletRequest req) {
+        super.estimateMemoryConsumption(pvName, typeInfo, start, end, req);
+        return estimateBoundedMemoryConsumption(QuantileSketch.estimateMemoryConsumption(
+                estimateSamplesPerBin(typeInfo), QuantileSketch.DEFAULT_K));
+    }
+
+    @Override
+    public SummaryStatsCollector getCollector() {
+        return new SummaryStatsValueCollector() {
+            private final QuantileSketch sketch = new QuantileSketch();
+
+            @Override
+            public void setBinParams(int intervalSecs, long binNum) {}
+
+            @Override
+            public boolean haveEventsBeenAdded() {
+                return sketch.getN() > 0;
+            }
+
+            @Override
+            public double getStat() {
+                return sketch.getPercentile(percentile);
+            }
+
+            @Override
+            public void addEvent(Event e) {
+                addValue(e.getSampleValue().getValue().doubleValue());
+            }
+
+            @Override
+            public void addValue(double val) {
+                sketch.addValue(val);
+            }
+        };
+    }
+}
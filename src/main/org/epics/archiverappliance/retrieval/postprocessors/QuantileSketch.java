@@ -0,0 +1,196 @@
+package org.epics.archiverappliance.retrieval.postprocessors;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+
+import java.util.Arrays;
+
+/**
+ * A quantile sketch (after Karnin, Lang and Liberty's KLL sketch) whose memory is bounded regardless of the number of
+ * values added to it.
+ * Values are kept exactly until the sketch fills up; so small bins give the same answers as
+ * <code>DescriptiveStatistics.getPercentile</code>.
+ * After that, values are kept in a hierarchy of compactors; a value in level <code>h</code> stands for
+ * <code>2^h</code> of the original values.
+ * When the sketch is full, the lowest level that is over its capacity is sorted and every other value is promoted to
+ * the next level.
+ * The rank error is roughly <code>1.7/k</code> (about 1% for the default <code>k</code>) and the sketch retains at
+ * most about <code>3k</code> values.
+ * <p>
+ * This is not thread safe; each bin in a post processor has its own sketch.
+ */
+public class QuantileSketch {
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_LEVEL_CAPACITY = 8;
+    private static final double LEVEL_CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int INITIAL_LEVEL_SIZE = 16;
+    private static final long OVERHEAD_BYTES = 128;
+
+    private final int k;
+    // levels[h] holds the values with a weight of 2^h; only the first sizes[h] of these are in use.
+    private double[][] levels = new double[][] {new double[INITIAL_LEVEL_SIZE]};
+    private int[] sizes = new int[1];
+    private long count = 0;
+    private int retained = 0;
+    private int capacity;
+    private int compactions = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k The capacity of the top level; larger values are more accurate and use proportionally more memory.
+     */
+    public QuantileSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k should be at least " + MIN_LEVEL_CAPACITY);
+        }
+        this.k = k;
+        this.capacity = totalCapacity();
+    }
+
+    /**
+     * Add a value to the sketch; NaN's are ignored.
+     * @param val The value
+     */
+    public void addValue(double val) {
+        if (Double.isNaN(val)) return;
+        if (count == 0 || val < min) min = val;
+        if (count == 0 || val > max) max = val;
+        count++;
+        append(0, val);
+        retained++;
+        if (retained >= capacity) {
+            compress();
+        }
+    }
+
+    /**
+     * @return The number of values added to the sketch
+     */
+    public long getN() {
+        return count;
+    }
+
+    /**
+     * @return true if the sketch still has all the values added to it and the percentiles are exact.
+     */
+    public boolean isExact() {
+        return levels.length == 1;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Estimate the p'th percentile.
+     * While the sketch is exact, this uses the same estimation as <code>DescriptiveStatistics.getPercentile</code>.
+     * @param p The percentile; this is in the range (0, 100].
+     * @return The percentile or NaN if no values have been added.
+     */
+    public double getPercentile(double p) {
+        if (p <= 0 || p > 100) {
+            throw new IllegalArgumentException("Percentile " + p + " is out of the range (0, 100]");
+        }
+        if (count == 0) return Double.NaN;
+        if (p == 100) return max;
+        if (isExact()) {
+            return new Percentile().evaluate(levels[0], 0, sizes[0], p);
+        }
+
+        // Walk the levels in value order, accumulating the weights, till we get to the rank we want.
+        for (int h = 0; h < levels.length; h++) {
+            Arrays.sort(levels[h], 0, sizes[h]);
+        }
+        double targetRank = p / 100.0 * count;
+        int[] positions = new int[levels.length];
+        long cumulativeWeight = 0;
+        while (true) {
+            int nextLevel = -1;
+            for (int h = 0; h < levels.length; h++) {
+                if (positions[h] < sizes[h]
+                        && (nextLevel < 0 || levels[h][positions[h]] < levels[nextLevel][positions[nextLevel]])) {
+                    nextLevel = h;
+                }
+            }
+            if (nextLevel < 0) return max;
+            double val = levels[nextLevel][positions[nextLevel]++];
+            cumulativeWeight += 1L << nextLevel;
+            if (cumulativeWeight >= targetRank) {
+                return Math.max(min, Math.min(max, val));
+            }
+        }
+    }
+
+    /**
+     * A bound on the heap used by a sketch holding this many values.
+     * @param numValues The number of values expected to be added to the sketch.
+     * @param k The k of the sketch
+     * @return The estimated memory in bytes
+     */
+    public static long estimateMemoryConsumption(long numValues, int k) {
+        long retainedValues = Math.max(INITIAL_LEVEL_SIZE, Math.min(numValues, 3L * k));
+        // The level arrays grow by doubling; so allow for them being half empty.
+        return OVERHEAD_BYTES + retainedValues * Double.BYTES * 2;
+    }
+
+    private int levelCapacity(int h) {
+        int depth = levels.length - 1 - h;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(LEVEL_CAPACITY_DECAY, depth)));
+    }
+
+    private int totalCapacity() {
+        int capacity = 0;
+        for (int h = 0; h < levels.length; h++) {
+            capacity += levelCapacity(h);
+        }
+        return capacity;
+    }
+
+    private void append(int h, double val) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = val;
+    }
+
+    private void compress() {
+        // As the total is over the total capacity, at least one level is over its capacity.
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= levelCapacity(h)) {
+                compact(h);
+                return;
+            }
+        }
+    }
+
+    private void compact(int h) {
+        if (h + 1 == levels.length) {
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            levels[h + 1] = new double[INITIAL_LEVEL_SIZE];
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            capacity = totalCapacity();
+        }
+        double[] level = levels[h];
+        int size = sizes[h];
+        Arrays.sort(level, 0, size);
+        // With an odd number of values, the smallest one stays behind in this level.
+        int from = size & 1;
+        // Alternate between promoting the odd and the even values of each pair so that the errors cancel out.
+        int offset = compactions++ & 1;
+        int promoted = 0;
+        for (int i = from + offset; i < size; i += 2) {
+            append(h + 1, level[i]);
+            promoted++;
+        }
+        sizes[h] = from;
+        retained -= promoted;
+    }
+}
@@ -3,6 +3,8 @@ package org.epics.archiverappliance.retrieval.postprocessors;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.epics.archiverappliance.Event;
 
+import java.util.function.ToDoubleFunction;
+
 /**
  * Implements the RMS across an interval
  * @author mshankar
@@ -16,9 +18,14 @@ public class RMS extends SummaryStatsPostProcessor implements PostProcessor {
 		return IDENTITY;
 	}
 
+	@Override
+	public ToDoubleFunction<Rollup.Bucket> getRollupStatistic() {
+		return Rollup.Bucket::getRMS;
+	}
+
 	@Override
 	public SummaryStatsCollector getCollector() {
-		return new SummaryStatsCollector() {
+		return new SummaryStatsValueCollector() {
 			SummaryStatistics stats = new SummaryStatistics();
 			@Override
 			public void setBinParams(int intervalSecs, long binNum) {
@@ -36,7 +43,11 @@ public class RMS extends SummaryStatsPostProcessor implements PostProcessor {
 			
 			@Override
 			public void addEvent(Event e) {
-				double val = e.getSampleValue().getValue().doubleValue();
+				addValue(e.getSampleValue().getValue().doubleValue());
+			}
+
+			@Override
+			public void addValue(double val) {
 				if(!Double.isNaN(val)) { 
 					stats.addValue(val);
 				}
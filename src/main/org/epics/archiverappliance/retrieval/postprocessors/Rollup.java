@@ -0,0 +1,238 @@
+package org.epics.archiverappliance.retrieval.postprocessors;
+
+import edu.stanford.slac.archiverappliance.PB.data.PBParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.PVTypeInfo;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.VectorValue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Pre-aggregates the samples into buckets of <code>interval</code> seconds.
+ * Each bucket is one DBR_WAVEFORM_DOUBLE event with the elements count, min, max, mean and sum of squares (in that order).
+ * The severity is the max severity in the bucket.
+ * The timestamp of the bucket is the timestamp of the last sample in the bucket; so buckets that are generated in pieces
+ * (for example, by successive ETL runs) have increasing timestamps and can be merged at retrieval time.
+ * <p>
+ * This is meant to be used as a cached post processor in a PlainStoragePlugin (for example, <code>pp=rollup_3600</code>).
+ * ETL then maintains the rollups incrementally and the {@link SummaryStatsPostProcessor}s that can be computed from the
+ * rollups (see {@link SummaryStatsPostProcessor#getRollupStatistic()}) are answered from the coarsest rollup whose
+ * interval divides the requested interval.
+ */
+public class Rollup implements PostProcessor {
+    public static final String IDENTITY = "rollup";
+    public static final int ELEMENT_COUNT = 5;
+    static final String CONNECTION_CHANGED_FIELD = "cnxregainedepsecs";
+    private static final Logger logger = LogManager.getLogger(Rollup.class.getName());
+    private int intervalSecs = PostProcessors.DEFAULT_SUMMARIZING_INTERVAL;
+    private Instant startAfter = null;
+
+    @Override
+    public String getIdentity() {
+        return IDENTITY;
+    }
+
+    @Override
+    public String getExtension() {
+        return IDENTITY + "_" + intervalSecs;
+    }
+
+    @Override
+    public void initialize(String userarg, String pvName) throws IOException {
+        if (userarg != null && userarg.contains("_")) {
+            String[] userparams = userarg.split("_");
+            intervalSecs = Integer.parseInt(userparams[1]);
+            logger.debug("Rollup, using user supplied interval of " + intervalSecs);
+        } else {
+            logger.debug("Rollup, using the default interval of  " + intervalSecs
+                    + " as the user has not specified the interval argument.");
+        }
+    }
+
+    public int getIntervalSecs() {
+        return intervalSecs;
+    }
+
+    /**
+     * Only samples after this time are added to the rollups; used by ETL to extend existing rollups.
+     * @param startAfter Instant; null to use all the samples
+     */
+    public void setStartAfter(Instant startAfter) {
+        this.startAfter = startAfter;
+    }
+
+    @Override
+    public long estimateMemoryConsumption(
+            String pvName, PVTypeInfo typeInfo, Instant start, Instant end, HttpServletRequest req) {
+        long numSeconds = TimeUtils.convertToEpochSeconds(end) - TimeUtils.convertToEpochSeconds(start);
+        // Each bucket is a small vector; add a fudge factor for java
+        return (numSeconds / intervalSecs) * ELEMENT_COUNT * 8 * 4;
+    }
+
+    @Override
+    public Callable<EventStream> wrap(final Callable<EventStream> callable) {
+        return new Callable<EventStream>() {
+            @Override
+            public EventStream call() throws Exception {
+                try (EventStream strm = callable.call()) {
+                    RemotableEventStreamDesc desc =
+                            new RemotableEventStreamDesc((RemotableEventStreamDesc) strm.getDescription());
+                    desc.setArchDBRType(ArchDBRTypes.DBR_WAVEFORM_DOUBLE);
+                    desc.setElementCount(ELEMENT_COUNT);
+                    ArrayListEventStream buf = new ArrayListEventStream(0, desc);
+                    long currentBin = Long.MIN_VALUE;
+                    Bucket bucket = null;
+                    for (Event e : strm) {
+                        try {
+                            if (startAfter != null && !e.getEventTimeStamp().isAfter(startAfter)) {
+                                continue;
+                            }
+                            long binNumber = e.getEpochSeconds() / intervalSecs;
+                            if (binNumber != currentBin) {
+                                if (bucket != null) {
+                                    buf.add(bucket.toEvent());
+                                }
+                                bucket = new Bucket();
+                                currentBin = binNumber;
+                            }
+                            bucket.add((DBRTimeEvent) e);
+                        } catch (PBParseException ex) {
+                            logger.error("Skipping possible corrupted event for pv " + strm.getDescription());
+                        }
+                    }
+                    if (bucket != null) {
+                        buf.add(bucket.toEvent());
+                    }
+                    return buf;
+                }
+            }
+        };
+    }
+
+    /**
+     * Find the coarsest rollup in the list of post processors that can be used to compute bins of the specified size.
+     * @param postProcessorUserArgs The post processors cached by a store; for example, rollup_60, rollup_3600 etc
+     * @param intervalSecs The requested interval
+     * @return The interval of the rollup or 0 if there is no suitable rollup.
+     */
+    public static int getCoarsestRollupInterval(List<String> postProcessorUserArgs, int intervalSecs) {
+        int ret = 0;
+        if (postProcessorUserArgs == null || intervalSecs <= 0) return ret;
+        for (String postProcessorUserArg : postProcessorUserArgs) {
+            if (!postProcessorUserArg.startsWith(IDENTITY + "_")) continue;
+            try {
+                int rollupInterval = Integer.parseInt(postProcessorUserArg.split("_")[1]);
+                if (rollupInterval > 0 && intervalSecs % rollupInterval == 0 && rollupInterval > ret) {
+                    ret = rollupInterval;
+                }
+            } catch (NumberFormatException ex) {
+                logger.error("Invalid rollup interval in " + postProcessorUserArg);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * The count, min, max, sum and sum of squares of the samples in a bucket.
+     * Buckets can be merged; so this is used both when generating the rollups and when computing the summary statistics from them.
+     * NaN's are skipped like in the SummaryStatsCollectors.
+     */
+    public static class Bucket {
+        private long count = 0;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+        private double sum = 0.0;
+        private double sumOfSquares = 0.0;
+        private int severity = 0;
+        private String connectionChanged = null;
+        private Instant lastTimestamp = null;
+
+        void add(DBRTimeEvent e) {
+            add(e.getSampleValue().getValue().doubleValue());
+            severity = Math.max(severity, e.getSeverity());
+            if (e.hasFieldValues() && e.getFields().containsKey(CONNECTION_CHANGED_FIELD)) {
+                connectionChanged = e.getFields().get(CONNECTION_CHANGED_FIELD);
+            }
+            lastTimestamp = e.getEventTimeStamp();
+        }
+
+        public void add(double val) {
+            if (Double.isNaN(val)) return;
+            if (count == 0) {
+                min = val;
+                max = val;
+            } else {
+                min = Math.min(min, val);
+                max = Math.max(max, val);
+            }
+            count++;
+            sum += val;
+            sumOfSquares += val * val;
+        }
+
+        /**
+         * Merge a rollup event generated by this post processor into this bucket.
+         * @param rollupValues The elements of the rollup event
+         */
+        public void merge(List<? extends Number> rollupValues) {
+            long otherCount = rollupValues.get(0).longValue();
+            if (otherCount <= 0) return;
+            double otherMin = rollupValues.get(1).doubleValue();
+            double otherMax = rollupValues.get(2).doubleValue();
+            if (count == 0) {
+                min = otherMin;
+                max = otherMax;
+            } else {
+                min = Math.min(min, otherMin);
+                max = Math.max(max, otherMax);
+            }
+            count += otherCount;
+            sum += rollupValues.get(3).doubleValue() * otherCount;
+            sumOfSquares += rollupValues.get(4).doubleValue();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? sum / count : Double.NaN;
+        }
+
+        public double getRMS() {
+            return count > 0 ? Math.sqrt(sumOfSquares / count) : Double.NaN;
+        }
+
+        private Event toEvent() {
+            List<Double> values = List.of((double) count, min, max, getMean(), sumOfSquares);
+            DBRTimeEvent event = (DBRTimeEvent) new POJOEvent(
+                            ArchDBRTypes.DBR_WAVEFORM_DOUBLE, lastTimestamp, new VectorValue<>(values), 0, severity)
+                    .makeClone();
+            if (connectionChanged != null) {
+                event.addFieldValue(CONNECTION_CHANGED_FIELD, connectionChanged);
+            }
+            return event;
+        }
+    }
+}
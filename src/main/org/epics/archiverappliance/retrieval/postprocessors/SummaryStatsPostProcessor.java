@@ -5,20 +5,25 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.Event;
 import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.ScalarBatchEventStream;
 import org.epics.archiverappliance.common.TimeSpan;
 import org.epics.archiverappliance.common.TimeUtils;
 import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
 import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
 import org.epics.archiverappliance.config.PVTypeInfo;
 import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarEventBatch;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.ToDoubleFunction;
 import jakarta.servlet.http.HttpServletRequest;
 
 /**
@@ -48,6 +53,19 @@ public abstract class SummaryStatsPostProcessor
         return 1;
     }
 
+    /**
+     * Post processors whose statistic can be computed exactly from the count, min, max, sum and sum of squares of the
+     * samples in a bin can be answered from {@link Rollup}s.
+     * @return the function that computes the statistic from a bucket or null if this needs the raw samples
+     */
+    public ToDoubleFunction<Rollup.Bucket> getRollupStatistic() {
+        return null;
+    }
+
+    public int getIntervalSecs() {
+        return intervalSecs;
+    }
+
     private Instant start = Instant.MIN;
     private Instant end = Instant.MAX;
 
@@ -107,6 +125,11 @@ public abstract class SummaryStatsPostProcessor
     int currentMaxSeverity = 0;
     boolean currentConnectionChangedEvents = false;
     SummaryStatsCollector currentBinCollector = null;
+    /**
+     * Set in {@link #estimateMemoryConsumption} if the stores may answer this request from rollups.
+     * This is decided before any of the data sources are resolved; the bins then also keep a bucket for the rollups.
+     */
+    ToDoubleFunction<Rollup.Bucket> rollupStatistic = null;
     RemotableEventStreamDesc srcDesc = null;
     private boolean inheritValuesFromPreviousBins = true;
     Event lastSampleBeforeStart = null;
@@ -133,6 +156,9 @@ public abstract class SummaryStatsPostProcessor
         this.end = end;
         firstBin = TimeUtils.convertToEpochSeconds(start) / intervalSecs;
         lastBin = TimeUtils.convertToEpochSeconds(end) / intervalSecs;
+        rollupStatistic = isProvidingVectorData() || !(getCollector() instanceof SummaryStatsValueCollector)
+                ? null
+                : getRollupStatistic();
         logger.debug("Expecting " + lastBin + " - " + firstBin + " values "
                 + (lastBin + 2 - firstBin)); // Add 2 for the first and last bins..
         float storageRate = typeInfo.getComputedStorageRate();
@@ -142,6 +168,32 @@ public abstract class SummaryStatsPostProcessor
         return estimatedMemoryConsumption;
     }
 
+    /**
+     * Approximate heap used by each bin's {@link SummaryValue} in the consolidated data.
+     */
+    static final long BYTES_PER_SUMMARY_VALUE = 96;
+
+    /**
+     * For post processors whose collectors use a bounded amount of memory irrespective of the number of samples in a bin.
+     * Only the current bin has a collector; the other bins only have their summary value.
+     * Call this after {@link #estimateMemoryConsumption} has set up the bins.
+     * @param bytesPerCollector The memory used by the collector for one bin
+     * @return The estimated memory consumption in bytes
+     */
+    protected long estimateBoundedMemoryConsumption(long bytesPerCollector) {
+        return (lastBin + 2 - firstBin) * BYTES_PER_SUMMARY_VALUE + bytesPerCollector;
+    }
+
+    /**
+     * @param typeInfo The PV's type info
+     * @return The expected number of samples in a bin based on the PV's sampling period.
+     */
+    protected long estimateSamplesPerBin(PVTypeInfo typeInfo) {
+        float samplingPeriod = typeInfo.getSamplingPeriod();
+        if (samplingPeriod <= 0) return intervalSecs;
+        return (long) Math.ceil(intervalSecs / samplingPeriod);
+    }
+
     @Override
     public Callable<EventStream> wrap(final Callable<EventStream> callable) {
         final boolean vectorType = isProvidingVectorData();
@@ -154,6 +206,17 @@ public abstract class SummaryStatsPostProcessor
                     // cached data and then we can replace the stat value for that bin?
                     if (srcDesc == null) srcDesc = (RemotableEventStreamDesc) strm.getDescription();
 
+                    Iterator<ScalarEventBatch> batches = null;
+                    if (!vectorType
+                            && strm instanceof ScalarBatchEventStream batchStream
+                            && getCollector() instanceof SummaryStatsValueCollector) {
+                        batches = batchStream.batchIterator();
+                    }
+                    if (batches != null) {
+                        addBatches(batches, vectorType);
+                        return summarize(vectorType, elementCount);
+                    }
+
                     for (Event e : strm) {
                         try {
                             DBRTimeEvent dbrTimeEvent = (DBRTimeEvent) e;
@@ -223,33 +286,285 @@ public abstract class SummaryStatsPostProcessor
                         }
                     }
 
-                    // If there were zero events in the timespan defined by the query,
-                    // the last sample before start has not been added to a bin yet.
-                    // If that is the case, add it here:
-                    if (lastSampleBeforeStart != null
-                            && shouldAddLastSampleBeforeStart
-                            && !lastSampleBeforeStartAdded) {
-                        switchToNewBin(firstBin - 1);
-                        currentBinCollector.addEvent(lastSampleBeforeStart);
-                        commitSummaryToBin(vectorType);
-                        lastSampleBeforeStartAdded = true;
+                    return summarize(vectorType, elementCount);
+                }
+            }
+        };
+    }
+
+    /**
+     * Can the bins of this post processor be computed from {@link Rollup}s with this interval for this time range?
+     * The rollups cannot be split; so each rollup bucket must fall entirely into one bin and entirely inside or outside the
+     * time range. That is, the bin size must be a multiple of the rollup interval and both the request and the store's
+     * part of it must start and end on rollup bucket boundaries. Call this after {@link #estimateMemoryConsumption}.
+     * A store whose part of the request starts in the middle of a bin can still use the rollups; the raw samples from
+     * the earlier stores and the rollups are merged into the same bucket.
+     * @param rollupIntervalSecs The interval of the rollups
+     * @param storeStart The start of the part of the request served by the store
+     * @param storeEnd The end of the part of the request served by the store
+     * @return true if we can use the rollups; false if we should use the raw data.
+     */
+    public boolean canUseRollups(int rollupIntervalSecs, Instant storeStart, Instant storeEnd) {
+        return rollupStatistic != null
+                && rollupIntervalSecs > 0
+                && intervalSecs % rollupIntervalSecs == 0
+                && isOnRollupBoundary(start, rollupIntervalSecs)
+                && isOnRollupBoundary(end, rollupIntervalSecs)
+                && isOnRollupBoundary(storeStart, rollupIntervalSecs)
+                && isOnRollupBoundary(storeEnd, rollupIntervalSecs);
+    }
+
+    private static boolean isOnRollupBoundary(Instant instant, int rollupIntervalSecs) {
+        return !instant.equals(Instant.MIN)
+                && !instant.equals(Instant.MAX)
+                && instant.getNano() == 0
+                && instant.getEpochSecond() % rollupIntervalSecs == 0;
+    }
+
+    /**
+     * The rollups do not tell us the last sample before the start; the raw path adds that sample as a bin of its own
+     * (firstBin - 1) and the ArchiveViewer depends on the bin count being the same.
+     * So, when using rollups, we look at the raw samples at and before the start time using this.
+     * The samples at the start time are in the rollups; we only note that they exist.
+     * @param callable Callable for a stream of raw samples at and before the start time
+     * @return Callable that returns an empty stream
+     */
+    public Callable<EventStream> wrapLastSampleBeforeStart(final Callable<EventStream> callable) {
+        return new Callable<EventStream>() {
+            @Override
+            public EventStream call() throws Exception {
+                try (EventStream strm = callable.call()) {
+                    for (Event e : strm) {
+                        Instant eventInstant = e.getEventTimeStamp();
+                        if (eventInstant.isBefore(start)) {
+                            if (lastSampleBeforeStart == null
+                                    || eventInstant.isAfter(lastSampleBeforeStart.getEventTimeStamp())) {
+                                lastSampleBeforeStart = e.makeClone();
+                            }
+                        } else if (eventInstant.equals(start)) {
+                            shouldAddLastSampleBeforeStart = false;
+                        }
                     }
+                    return new ArrayListEventStream(0, (RemotableEventStreamDesc) strm.getDescription());
+                }
+            }
+        };
+    }
 
-                    return new SummaryStatsCollectorEventStream(
-                            lastSampleBeforeStartAdded ? firstBin - 1 : firstBin,
-                            lastBin,
-                            intervalSecs,
-                            srcDesc,
-                            consolidatedData,
-                            inheritValuesFromPreviousBins,
-                            zeroOutEmptyBins(),
-                            vectorType,
-                            elementCount);
+    /**
+     * Compute the statistic from a stream of {@link Rollup} events instead of the raw samples.
+     * Only use this if {@link #canUseRollups} says so; each rollup event then falls into exactly one bin.
+     * Any raw samples after the rollups are merged into the same bins as usual.
+     * @param callable Callable for the stream of rollup events
+     * @return Callable for the summarized stream
+     */
+    public Callable<EventStream> wrapRollups(final Callable<EventStream> callable) {
+        if (rollupStatistic == null) {
+            throw new IllegalStateException("Rollups cannot be used for " + getExtension());
+        }
+        return new Callable<EventStream>() {
+            @Override
+            public EventStream call() throws Exception {
+                try (EventStream strm = callable.call()) {
+                    if (srcDesc == null) {
+                        srcDesc = new RemotableEventStreamDesc((RemotableEventStreamDesc) strm.getDescription());
+                        srcDesc.setElementCount(1);
+                    }
+                    for (Event e : strm) {
+                        try {
+                            // The rollup timestamp is that of the last sample in the bucket.
+                            Instant eventInstant = e.getEventTimeStamp();
+                            // Buckets after the end have samples after the end; a sample at the end time comes from
+                            // the raw data after the rollups. So, these do not count towards the previous timestamp.
+                            if (!eventInstant.isAfter(previousEventTimestamp) || eventInstant.isAfter(end)) {
+                                continue;
+                            }
+                            previousEventTimestamp = eventInstant;
+                            if (eventInstant.isBefore(start)) {
+                                continue;
+                            }
+                            // Same as the raw path; the last sample before the start goes into a bin of its own.
+                            if (lastSampleBeforeStart != null
+                                    && shouldAddLastSampleBeforeStart
+                                    && !lastSampleBeforeStartAdded) {
+                                switchToNewBin(firstBin - 1);
+                                currentBinCollector.addEvent(lastSampleBeforeStart);
+                                lastSampleBeforeStartAdded = true;
+                            }
+                            long binNumber = e.getEpochSeconds() / intervalSecs;
+                            if (binNumber != currentBin) {
+                                commitSummaryToBin(false);
+                                switchToNewBin(binNumber);
+                            }
+                            if (!(currentBinCollector instanceof RollupCollector rollupCollector)) {
+                                throw new IllegalStateException("Not collecting rollups in bin " + currentBin);
+                            }
+                            rollupCollector.merge(e.getSampleValue().getValues());
+                            DBRTimeEvent dbrTimeEvent = (DBRTimeEvent) e;
+                            if (dbrTimeEvent.getSeverity() > currentMaxSeverity) {
+                                currentMaxSeverity = dbrTimeEvent.getSeverity();
+                            }
+                            if (dbrTimeEvent.hasFieldValues()
+                                    && dbrTimeEvent.getFields().containsKey(Rollup.CONNECTION_CHANGED_FIELD)) {
+                                currentConnectionChangedEvents = true;
+                            }
+                        } catch (PBParseException ex) {
+                            logger.error("Skipping possible corrupted rollup for pv " + strm.getDescription());
+                        }
+                    }
+                    return summarize(false, 1);
                 }
             }
         };
     }
 
+    /**
+     * Used for all bins if the stores may use rollups.
+     * Raw samples go to both the post processor's collector and the bucket; the rollups only go to the bucket.
+     * A bin can get raw samples from one store and rollups from the next; so bins with rollups use the bucket for the
+     * statistic while bins with only raw samples use the post processor's collector as usual.
+     */
+    private static class RollupCollector implements SummaryStatsValueCollector {
+        private final SummaryStatsValueCollector rawCollector;
+        private final Rollup.Bucket bucket = new Rollup.Bucket();
+        private final ToDoubleFunction<Rollup.Bucket> statistic;
+        private boolean rollupsMerged = false;
+
+        RollupCollector(SummaryStatsValueCollector rawCollector, ToDoubleFunction<Rollup.Bucket> statistic) {
+            this.rawCollector = rawCollector;
+            this.statistic = statistic;
+        }
+
+        void merge(List<? extends Number> rollupValues) {
+            bucket.merge(rollupValues);
+            rollupsMerged = true;
+        }
+
+        @Override
+        public void setBinParams(int intervalSecs, long binNum) {
+            rawCollector.setBinParams(intervalSecs, binNum);
+        }
+
+        @Override
+        public void addEvent(Event e) {
+            addValue(e.getSampleValue().getValue().doubleValue());
+        }
+
+        @Override
+        public void addValue(double val) {
+            rawCollector.addValue(val);
+            bucket.add(val);
+        }
+
+        @Override
+        public boolean haveEventsBeenAdded() {
+            return rollupsMerged ? bucket.getCount() > 0 : rawCollector.haveEventsBeenAdded();
+        }
+
+        @Override
+        public double getStat() {
+            return rollupsMerged ? statistic.applyAsDouble(bucket) : rawCollector.getStat();
+        }
+    }
+
+    private EventStream summarize(boolean vectorType, int elementCount) {
+        // If there were zero events in the timespan defined by the query,
+        // the last sample before start has not been added to a bin yet.
+        // If that is the case, add it here:
+        if (lastSampleBeforeStart != null && shouldAddLastSampleBeforeStart && !lastSampleBeforeStartAdded) {
+            switchToNewBin(firstBin - 1);
+            currentBinCollector.addEvent(lastSampleBeforeStart);
+            commitSummaryToBin(vectorType);
+            lastSampleBeforeStartAdded = true;
+        }
+
+        return new SummaryStatsCollectorEventStream(
+                lastSampleBeforeStartAdded ? firstBin - 1 : firstBin,
+                lastBin,
+                intervalSecs,
+                srcDesc,
+                consolidatedData,
+                inheritValuesFromPreviousBins,
+                zeroOutEmptyBins(),
+                vectorType,
+                elementCount);
+    }
+
+    /**
+     * The same logic as the event loop in wrap but working off the primitive columns in the batches.
+     * Only used for collectors that need just the value; so we do not create an Event per sample.
+     */
+    private void addBatches(Iterator<ScalarEventBatch> batches, boolean vectorType) {
+        long previousSecs = previousEventTimestamp.getEpochSecond();
+        int previousNanos = previousEventTimestamp.getNano();
+        long startSecs = start.getEpochSecond();
+        int startNanos = start.getNano();
+        long endSecs = end.getEpochSecond();
+        int endNanos = end.getNano();
+        long lastBeforeStartSecs = 0;
+        int lastBeforeStartNanos = 0;
+        if (lastSampleBeforeStart != null) {
+            lastBeforeStartSecs = lastSampleBeforeStart.getEpochSeconds();
+            lastBeforeStartNanos = lastSampleBeforeStart.getEventTimeStamp().getNano();
+        }
+        while (batches.hasNext()) {
+            ScalarEventBatch batch = batches.next();
+            for (int i = 0; i < batch.size(); i++) {
+                long epochSeconds = batch.getEpochSeconds(i);
+                int nanos = batch.getNanos(i);
+                if (compareTimes(epochSeconds, nanos, previousSecs, previousNanos) > 0) {
+                    previousSecs = epochSeconds;
+                    previousNanos = nanos;
+                } else {
+                    continue;
+                }
+
+                int startComparison = compareTimes(epochSeconds, nanos, startSecs, startNanos);
+                if (startComparison < 0) {
+                    // Michael Davidsaver's special case; only the last sample before the start needs an Event.
+                    if (lastSampleBeforeStart == null
+                            || compareTimes(epochSeconds, nanos, lastBeforeStartSecs, lastBeforeStartNanos) > 0) {
+                        lastSampleBeforeStart = batch.toEvent(i);
+                        lastBeforeStartSecs = epochSeconds;
+                        lastBeforeStartNanos = nanos;
+                    }
+                    continue;
+                }
+
+                if (startComparison == 0) {
+                    shouldAddLastSampleBeforeStart = false;
+                }
+                if (lastSampleBeforeStart != null && shouldAddLastSampleBeforeStart && !lastSampleBeforeStartAdded) {
+                    switchToNewBin(firstBin - 1);
+                    currentBinCollector.addEvent(lastSampleBeforeStart);
+                    lastSampleBeforeStartAdded = true;
+                }
+
+                if (compareTimes(epochSeconds, nanos, endSecs, endNanos) <= 0) {
+                    long binNumber = epochSeconds / intervalSecs;
+                    if (binNumber != currentBin) {
+                        commitSummaryToBin(vectorType);
+                        switchToNewBin(binNumber);
+                    }
+                    ((SummaryStatsValueCollector) currentBinCollector).addValue(batch.getValue(i));
+                    if (batch.getSeverity(i) > currentMaxSeverity) {
+                        currentMaxSeverity = batch.getSeverity(i);
+                    }
+                    Map<String, String> fieldValues = batch.getFieldValues(i);
+                    if (fieldValues != null && fieldValues.containsKey("cnxregainedepsecs")) {
+                        currentConnectionChangedEvents = true;
+                    }
+                }
+            }
+        }
+        previousEventTimestamp = Instant.ofEpochSecond(previousSecs, previousNanos);
+    }
+
+    private static int compareTimes(long secs1, int nanos1, long secs2, int nanos2) {
+        int cmp = Long.compare(secs1, secs2);
+        return cmp != 0 ? cmp : Integer.compare(nanos1, nanos2);
+    }
+
     private void commitSummaryToBin(boolean vectorType) {
         if (currentBin != -1) {
             SummaryValue summaryValue;
@@ -274,7 +589,9 @@ public abstract class SummaryStatsPostProcessor
         currentBin = binNumber;
         currentMaxSeverity = 0;
         currentConnectionChangedEvents = false;
-        currentBinCollector = getCollector();
+        currentBinCollector = rollupStatistic != null
+                ? new RollupCollector((SummaryStatsValueCollector) getCollector(), rollupStatistic)
+                : getCollector();
         currentBinCollector.setBinParams(intervalSecs, currentBin);
     }
 
@@ -0,0 +1,13 @@
+package org.epics.archiverappliance.retrieval.postprocessors;
+
+/**
+ * A SummaryStatsCollector that only needs the value of the event.
+ * These can be fed directly from column wise batches of scalar events without creating an Event per sample.
+ */
+public interface SummaryStatsValueCollector extends SummaryStatsCollector {
+	/**
+	 * Add the value of an event to the collector
+	 * @param val The value of the event
+	 */
+	public void addValue(double val);
+}
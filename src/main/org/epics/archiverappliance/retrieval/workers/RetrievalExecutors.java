@@ -0,0 +1,196 @@
+package org.epics.archiverappliance.retrieval.workers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executors shared by all the retrieval requests in this webapp.
+ * <ol>
+ * <li>Data source resolution (the <code>UnitOfRetrieval</code>'s that locate the STS/MTS/LTS partitions, call the engine etc) is mostly I/O.
+ * These run on virtual threads; the number of concurrent resolutions across all requests is bounded.</li>
+ * <li>Post processing is CPU bound and runs on a fork join pool sized to the number of cores.
+ * Post processors are not thread safe; so each PV gets its own {@link SerialExecutorService} on this pool.
+ * Different PVs in a multi PV request are therefore post processed in parallel.</li>
+ * </ol>
+ * Post processing in parallel holds the post processor's data in memory until the servlet writes it out.
+ * So, we admit a PV into the pool only if the post processor's memory estimate fits in what is left of the memory budget.
+ * Otherwise, we fall back to processing the PV on the servlet's thread, which is what we did for all PVs before.
+ */
+public class RetrievalExecutors implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(RetrievalExecutors.class.getName());
+    public static final String MAX_CONCURRENT_RESOLUTIONS =
+            "org.epics.archiverappliance.retrieval.maxConcurrentDataSourceResolutions";
+    public static final String POST_PROCESSING_THREADS = "org.epics.archiverappliance.retrieval.postProcessingThreads";
+    public static final String POST_PROCESSING_MEMORY_BUDGET_MB =
+            "org.epics.archiverappliance.retrieval.postProcessingMemoryBudgetMB";
+    private static final long ONE_MB = 1024 * 1024;
+
+    private final ExecutorService dataSourceExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore dataSourceSlots;
+    private final ForkJoinPool postProcessingPool;
+    private final int memoryBudgetMB;
+    private final Semaphore memoryBudget;
+
+    public RetrievalExecutors(Properties installationProperties) {
+        Properties props = installationProperties != null ? installationProperties : new Properties();
+        int maxConcurrentResolutions = Integer.parseInt(props.getProperty(MAX_CONCURRENT_RESOLUTIONS, "64"));
+        int postProcessingThreads = Integer.parseInt(props.getProperty(
+                POST_PROCESSING_THREADS, Integer.toString(Runtime.getRuntime().availableProcessors())));
+        // By default, we let parallel post processing use a quarter of the heap.
+        this.memoryBudgetMB = Integer.parseInt(props.getProperty(
+                POST_PROCESSING_MEMORY_BUDGET_MB, Long.toString(Runtime.getRuntime().maxMemory() / (4 * ONE_MB))));
+        this.dataSourceSlots = new Semaphore(Math.max(1, maxConcurrentResolutions));
+        this.memoryBudget = new Semaphore(Math.max(0, memoryBudgetMB));
+
+        // Pin the worker threads to the webapp's class loader; some of the storage plugins (parquet/hadoop) use the
+        // context class loader.
+        ClassLoader webappClassLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("RetrievalPostProcessing-" + thread.getPoolIndex());
+            thread.setContextClassLoader(webappClassLoader);
+            return thread;
+        };
+        this.postProcessingPool = new ForkJoinPool(Math.max(1, postProcessingThreads), threadFactory, null, true);
+        logger.info("Retrieval executors: " + maxConcurrentResolutions + " concurrent data source resolutions, "
+                + postProcessingThreads + " post processing threads and a post processing memory budget of "
+                + memoryBudgetMB + "(MB)");
+    }
+
+    /**
+     * @return An executor for resolving data sources for one request.
+     * Shutting this down does not affect other requests.
+     */
+    public ExecutorService newDataSourceExecutor() {
+        return new BoundedExecutorService(dataSourceExecutor, dataSourceSlots);
+    }
+
+    /**
+     * Get an executor for post processing the data for one PV.
+     * @param pvName The name of the PV; used for logging.
+     * @param estimatedMemoryConsumption The post processor's estimate of the memory it needs, in bytes.
+     * @return A serial executor on the shared pool if the estimate fits in the memory budget; else an executor that runs on the current thread.
+     */
+    public ExecutorService newPostProcessingExecutor(String pvName, long estimatedMemoryConsumption) {
+        long requiredBytes = Math.max(ONE_MB, estimatedMemoryConsumption);
+        int requiredMB = (int) Math.min(Integer.MAX_VALUE, (requiredBytes + ONE_MB - 1) / ONE_MB);
+        if (requiredMB <= memoryBudgetMB && memoryBudget.tryAcquire(requiredMB)) {
+            logger.debug("Post processing " + pvName + " in parallel using " + requiredMB + "(MB) of the budget");
+            return new SerialExecutorService(postProcessingPool, () -> memoryBudget.release(requiredMB));
+        }
+        logger.debug("Post processing " + pvName + " on the current thread; it needs " + requiredMB
+                + "(MB) and we have " + memoryBudget.availablePermits() + "(MB) left in the budget");
+        return new CurrentThreadExecutorService();
+    }
+
+    /**
+     * @return The amount of the post processing memory budget that is currently not in use, in MB.
+     */
+    public int getAvailableMemoryBudgetMB() {
+        return memoryBudget.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        dataSourceExecutor.shutdown();
+        postProcessingPool.shutdown();
+        try {
+            if (!postProcessingPool.awaitTermination(30, TimeUnit.SECONDS)) {
+                postProcessingPool.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            postProcessingPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A per request view of a shared executor that limits the number of tasks running at the same time across all the views.
+     * Shutting down the view does not shut down the shared executor; the view terminates once the tasks submitted to it have run.
+     */
+    private static class BoundedExecutorService extends AbstractExecutorService {
+        private final ExecutorService sharedExecutor;
+        private final Semaphore slots;
+        private final AtomicInteger tasksInFlight = new AtomicInteger(0);
+        private final CountDownLatch terminationLatch = new CountDownLatch(1);
+        private volatile boolean shutdown = false;
+
+        BoundedExecutorService(ExecutorService sharedExecutor, Semaphore slots) {
+            this.sharedExecutor = sharedExecutor;
+            this.slots = slots;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            // Count the task before checking for shutdown so that shutdown either sees the task or we see the shutdown.
+            tasksInFlight.incrementAndGet();
+            if (shutdown) {
+                taskDone();
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            try {
+                sharedExecutor.execute(() -> {
+                    slots.acquireUninterruptibly();
+                    try {
+                        command.run();
+                    } finally {
+                        slots.release();
+                        taskDone();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                taskDone();
+                throw ex;
+            }
+        }
+
+        private void taskDone() {
+            if (tasksInFlight.decrementAndGet() == 0 && shutdown) {
+                terminationLatch.countDown();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            if (tasksInFlight.get() == 0) {
+                terminationLatch.countDown();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            // The tasks have already been handed to the shared executor; we let them run to completion.
+            shutdown();
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return terminationLatch.getCount() == 0;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return terminationLatch.await(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.epics.archiverappliance.retrieval.workers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An ExecutorService that runs the tasks submitted to it one at a time, in submission order, on a shared executor.
+ * Post processors are not thread safe; so all the post processing for one PV goes into one of these.
+ * Different PVs get different instances and can therefore be post processed in parallel on the shared executor.
+ * <p>
+ * Shutting this down does not affect the shared executor.
+ * Once this has been shut down and all the tasks have been run, the <code>onTermination</code> callback is called exactly once.
+ */
+public class SerialExecutorService extends AbstractExecutorService {
+    private static final Logger logger = LogManager.getLogger(SerialExecutorService.class.getName());
+    private final Executor sharedExecutor;
+    private final Runnable onTermination;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean terminated = new AtomicBoolean(false);
+    private final CountDownLatch terminationLatch = new CountDownLatch(1);
+    private volatile boolean shutdown = false;
+
+    public SerialExecutorService(Executor sharedExecutor, Runnable onTermination) {
+        this.sharedExecutor = sharedExecutor;
+        this.onTermination = onTermination;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Serial executor has been shut down");
+        }
+        tasks.add(command);
+        scheduleRun();
+    }
+
+    private void scheduleRun() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                sharedExecutor.execute(this::runTasks);
+            } catch (RejectedExecutionException ex) {
+                // The shared executor is going away; run the tasks here so that the futures complete.
+                logger.warn("Shared executor rejected tasks; running them on the current thread", ex);
+                runTasks();
+            }
+        }
+    }
+
+    private void runTasks() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.error("Exception running serial task", t);
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+        // A task may have been added after our last poll but before we cleared running.
+        if (!tasks.isEmpty()) {
+            scheduleRun();
+        } else {
+            checkTermination();
+        }
+    }
+
+    private void checkTermination() {
+        if (shutdown && tasks.isEmpty() && !running.get() && terminated.compareAndSet(false, true)) {
+            try {
+                if (onTermination != null) onTermination.run();
+            } finally {
+                terminationLatch.countDown();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        checkTermination();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>();
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            pending.add(task);
+        }
+        checkTermination();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.get();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+}
@@ -13,6 +13,8 @@ import org.apache.commons.compress.archivers.zip.ZipEncoding;
 import org.apache.commons.compress.archivers.zip.ZipEncodingHelper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.utils.nio.tar.TarCatalogIndex.Catalog;
+import org.epics.archiverappliance.utils.nio.tar.TarCatalogIndex.TarState;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -30,6 +32,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -43,6 +46,9 @@ import java.util.function.Predicate;
  * Layer on top of Apache Commons Compress TarArchiveEntry and TarArchiveInputStream.
  * The Wikipedia article on tar files https://en.wikipedia.org/wiki/Tar_(computing) is quite comprehensive.
  * This class can also be used as a command line utility to do basic operations on tar files.
+ * The catalog is persisted in a sidecar file (see {@link TarCatalogIndex}) that is updated as we change the tar file
+ * and the loaded catalogs are shared using the {@link TarCatalogCache}; so we only walk the headers in the tar file
+ * if it has been changed behind our backs.
  **/
 public class EAATar {
     private static final int TAR_RECORD_SIZE = 512;
@@ -107,9 +113,11 @@ public class EAATar {
     }
 
     private final String tarFileName;
+    private final TarCatalogIndex catalogIndex;
 
     public EAATar(String tarFileName) throws IOException {
         this.tarFileName = tarFileName;
+        this.catalogIndex = new TarCatalogIndex(tarFileName);
     }
 
     public String getTarFileName() {
@@ -202,12 +210,79 @@ public class EAATar {
     }
 
     public Map<String, TarEntry> loadCatalog() throws IOException {
+        Catalog catalog = getCatalog();
+        return catalog != null ? catalog.entries() : new LinkedHashMap<String, TarEntry>();
+    }
+
+    public boolean hasDeletedEntries() throws IOException {
+        Catalog catalog = getCatalog();
+        return catalog != null && catalog.deletedEntries() > 0;
+    }
+
+    /**
+     * Get the catalog from the cache, the sidecar or, if neither of these is current, by walking the tar file.
+     * @return The catalog or null if the tar file does not exist.
+     */
+    private Catalog getCatalog() throws IOException {
+        // Get the generation first; if the sidecar changes while we load the catalog, we'll load it again next time.
+        long indexGeneration = this.catalogIndex.generation();
+        TarState current = TarState.of(Paths.get(this.tarFileName));
+        if (current == null || !Files.isRegularFile(Paths.get(this.tarFileName))) {
+            logger.debug("Tar file {} does not exist", this.tarFileName);
+            if (indexGeneration != -1) {
+                logger.debug("Removing the tar catalog index for the deleted tar file {}", this.tarFileName);
+                this.catalogIndex.delete();
+            }
+            TarCatalogCache.invalidate(this.tarFileName);
+            return null;
+        }
+        Catalog catalog = TarCatalogCache.get(this.tarFileName, current, indexGeneration);
+        if (catalog != null) {
+            return catalog;
+        }
+        catalog = this.catalogIndex.read(current);
+        if (catalog == null) {
+            logger.debug("Walking the headers in {} to build the catalog", this.tarFileName);
+            catalog = parseIntoCatalog(current);
+            this.catalogIndex.write(catalog);
+        }
+        catalog = new Catalog(
+                catalog.state(), Collections.unmodifiableMap(catalog.entries()), catalog.deletedEntries());
+        TarCatalogCache.put(this.tarFileName, catalog, indexGeneration);
+        return catalog;
+    }
+
+    /*
+     * Deletes and renames do not change the length of the tar file and may not change its last modified time.
+     * So, if the sidecar could not be updated for one of these, rebuild it now;
+     * otherwise, the catalogs cached in other processes (or other wars) would look current.
+     */
+    private void rebuildCatalogIndex() throws IOException {
+        TarState current = TarState.of(Paths.get(this.tarFileName));
+        if (current != null) {
+            logger.debug("Rebuilding the tar catalog index for {}", this.tarFileName);
+            this.catalogIndex.write(parseIntoCatalog(current));
+        }
+    }
+
+    /**
+     * Delete the tar file and its sidecar.
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(Paths.get(this.tarFileName));
+        this.catalogIndex.delete();
+        TarCatalogCache.invalidate(this.tarFileName);
+    }
+
+    private Catalog parseIntoCatalog(TarState current) throws IOException {
         Map<String, TarEntry> ret = new LinkedHashMap<String, TarEntry>();
+        final int[] deletedEntries = {0};
         this.parseCatalog(new Predicate<TarEntry>() {
             @Override
             public boolean test(TarEntry te) {
                 if (te.isDeleted()) {
                     logger.debug("Skipping logically deleted entry {}", te.entryName());
+                    deletedEntries[0]++;
                     return true;
                 }
                 ret.put(te.entryName(), te);
@@ -215,23 +290,8 @@ public class EAATar {
                 return true;
             }
         });
-
-        return ret;
-    }
-
-    public boolean hasDeletedEntries() throws IOException {
-        final boolean[] hasDeleted = {false};
-        this.parseCatalog(new Predicate<TarEntry>() {
-            @Override
-            public boolean test(TarEntry te) {
-                if (te.isDeleted()) {
-                    hasDeleted[0] = true;
-                    return false;
-                }
-                return true;
-            }
-        });
-        return hasDeleted[0];
+        // If the tar file changed while we were walking it, the catalog has the old state; so it'll be discarded.
+        return new Catalog(current, ret, deletedEntries[0]);
     }
 
     public TarReadOnlyByteChannel getReadOnlyByteChannel(TarEntry entry) throws IOException {
@@ -282,6 +342,8 @@ public class EAATar {
     }
 
     public void appendFiles(List<TarEntry> inputs, TarEntry lastEntryInTarFile) throws IOException {
+        TarState before = TarState.of(Paths.get(this.tarFileName));
+        List<TarEntry> appendedEntries = new ArrayList<TarEntry>(inputs.size());
         ByteBuffer databuf = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
         try (FileOutputStream fos = new FileOutputStream(this.tarFileName, true)) {
             try (FileChannel destChannel = fos.getChannel()) {
@@ -324,6 +386,10 @@ public class EAATar {
                         entry.setGroupName(Long.toString(file.length(), GZTAR_MAX_RADIX));
                         entry.writeEntryHeader(headerbuf, UTF8_ENC, true);
                         destChannel.write(ByteBuffer.wrap(headerbuf));
+                        // Use where the header actually ended up for the catalog.
+                        long dataOffset = destChannel.position();
+                        appendedEntries.add(new TarEntry(
+                                input.entryName(), dataOffset - TAR_RECORD_SIZE, dataOffset, entry.getSize()));
                     } catch (Throwable t) {
                         throw new IOException(t);
                     }
@@ -352,10 +418,19 @@ public class EAATar {
                 }
             }
         }
+        TarState after = TarState.of(Paths.get(this.tarFileName));
+        this.catalogIndex.append(
+                before,
+                after,
+                appendedEntries.stream()
+                        .map(x -> TarCatalogIndex.appendRecord(after, x))
+                        .toList());
+        TarCatalogCache.invalidate(this.tarFileName);
     }
 
     public void markFileAsDeleted(TarEntry entry) throws IOException {
         logger.debug("Marking {} as deleted", entry.entryName());
+        TarState before = TarState.of(Paths.get(this.tarFileName));
         ByteBuffer buffer = ByteBuffer.allocate(TAR_RECORD_SIZE);
         TarArchiveEntry entryFromFile = null;
         try (RandomAccessFile randacess = new RandomAccessFile(this.tarFileName, "rw")) {
@@ -379,10 +454,16 @@ public class EAATar {
                 channel.write(ByteBuffer.wrap(headerbuf));
             }
         }
+        TarState after = TarState.of(Paths.get(this.tarFileName));
+        if (!this.catalogIndex.append(before, after, List.of(TarCatalogIndex.deleteRecord(after, entry)))) {
+            rebuildCatalogIndex();
+        }
+        TarCatalogCache.invalidate(this.tarFileName);
     }
 
     public void renameEntry(TarEntry entry, String newEntryName) throws IOException {
         logger.debug("Renaming {} to {}", entry, newEntryName);
+        TarState before = TarState.of(Paths.get(this.tarFileName));
         ByteBuffer buffer = ByteBuffer.allocate(TAR_RECORD_SIZE);
         TarArchiveEntry entryFromFile = null;
         try (RandomAccessFile randacess = new RandomAccessFile(this.tarFileName, "rw")) {
@@ -405,10 +486,17 @@ public class EAATar {
                 channel.write(ByteBuffer.wrap(headerbuf));
             }
         }
+        TarState after = TarState.of(Paths.get(this.tarFileName));
+        if (!this.catalogIndex.append(
+                before, after, List.of(TarCatalogIndex.renameRecord(after, entry, newEntryName)))) {
+            rebuildCatalogIndex();
+        }
+        TarCatalogCache.invalidate(this.tarFileName);
     }
 
     public void optimize() throws IOException {
         final boolean[] allFilesCopied = {true};
+        final Map<String, TarEntry> optimizedEntries = new LinkedHashMap<String, TarEntry>();
         File optTarFile = File.createTempFile("__eaaoptimize", ".tar", new File(this.tarFileName).getParentFile());
         try (FileOutputStream fos = new FileOutputStream(optTarFile)) {
             try (FileChannel destChannel = fos.getChannel()) {
@@ -422,6 +510,10 @@ public class EAATar {
 
                         logger.debug("Copying over entry {}", te);
                         try {
+                            long headerOffset = destChannel.position();
+                            optimizedEntries.put(
+                                    te.entryName(),
+                                    new TarEntry(te.entryName(), headerOffset, headerOffset + TAR_RECORD_SIZE, te.size()));
                             byte[] headerbuf = new byte[TAR_RECORD_SIZE];
                             TarArchiveEntry entry = new TarArchiveEntry(te.entryName());
                             entry.clearExtraPaxHeaders();
@@ -464,11 +556,21 @@ public class EAATar {
             Files.delete(optTarFile.toPath());
             return;
         }
+        if (optimizedEntries.isEmpty()) {
+            logger.info("All the entries in {} have been deleted; deleting the tar file", this.tarFileName);
+            Files.delete(optTarFile.toPath());
+            this.delete();
+            return;
+        }
         Files.move(
                 optTarFile.toPath(),
                 Paths.get(this.tarFileName),
                 StandardCopyOption.ATOMIC_MOVE,
                 StandardCopyOption.REPLACE_EXISTING);
+        Catalog optimizedCatalog = new Catalog(
+                TarState.of(Paths.get(this.tarFileName)), Collections.unmodifiableMap(optimizedEntries), 0);
+        this.catalogIndex.write(optimizedCatalog);
+        TarCatalogCache.put(this.tarFileName, optimizedCatalog, this.catalogIndex.generation());
     }
 
     public static void main(String[] args) throws Exception {
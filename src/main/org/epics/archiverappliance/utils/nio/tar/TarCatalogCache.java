@@ -0,0 +1,77 @@
+package org.epics.archiverappliance.utils.nio.tar;
+
+import org.epics.archiverappliance.utils.nio.tar.TarCatalogIndex.Catalog;
+import org.epics.archiverappliance.utils.nio.tar.TarCatalogIndex.TarState;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process wide LRU cache of tar catalogs so that the {@link TarFileSystem}s for the same tar file share the catalog.
+ * Entries are keyed by the tar file name and are only used if the tar file's length and last modified time
+ * and the generation of its sidecar (see {@link TarCatalogIndex#generation()}) have not changed.
+ * The cache is bounded by the total number of tar entries across all the cached catalogs.
+ */
+public final class TarCatalogCache {
+    /**
+     * The maximum number of tar entries (across all tar files) to hold in the cache.
+     */
+    public static int MAX_CACHED_ENTRIES = 200_000;
+
+    private record CachedCatalog(Catalog catalog, long indexGeneration) {}
+
+    private static final LinkedHashMap<String, CachedCatalog> catalogs = new LinkedHashMap<>(64, 0.75f, true);
+    private static long cachedEntries = 0;
+
+    private TarCatalogCache() {}
+
+    /**
+     * @return The cached catalog for this tar file if neither the tar file nor its sidecar have changed since; else null.
+     */
+    static synchronized Catalog get(String tarFileName, TarState current, long indexGeneration) {
+        CachedCatalog cached = catalogs.get(tarFileName);
+        if (cached == null) return null;
+        if (!cached.catalog().state().equals(current) || cached.indexGeneration() != indexGeneration) {
+            remove(tarFileName);
+            return null;
+        }
+        return cached.catalog();
+    }
+
+    /**
+     * @param indexGeneration The generation of the sidecar from before the catalog was loaded.
+     */
+    static synchronized void put(String tarFileName, Catalog catalog, long indexGeneration) {
+        remove(tarFileName);
+        if (catalog.entries().size() > MAX_CACHED_ENTRIES) return;
+        catalogs.put(tarFileName, new CachedCatalog(catalog, indexGeneration));
+        cachedEntries += catalog.entries().size();
+        Iterator<Map.Entry<String, CachedCatalog>> it = catalogs.entrySet().iterator();
+        while (cachedEntries > MAX_CACHED_ENTRIES && it.hasNext()) {
+            Catalog eldest = it.next().getValue().catalog();
+            cachedEntries -= eldest.entries().size();
+            it.remove();
+        }
+    }
+
+    static synchronized void invalidate(String tarFileName) {
+        remove(tarFileName);
+    }
+
+    public static synchronized void clear() {
+        catalogs.clear();
+        cachedEntries = 0;
+    }
+
+    public static synchronized int size() {
+        return catalogs.size();
+    }
+
+    private static void remove(String tarFileName) {
+        CachedCatalog removed = catalogs.remove(tarFileName);
+        if (removed != null) {
+            cachedEntries -= removed.catalog().entries().size();
+        }
+    }
+}
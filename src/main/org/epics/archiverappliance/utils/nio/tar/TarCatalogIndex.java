@@ -0,0 +1,285 @@
+package org.epics.archiverappliance.utils.nio.tar;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A sidecar file next to a tar file (<code>tartest.tar.idx</code> for <code>tartest.tar</code>) that persists the tar catalog.
+ * Loading the catalog from the sidecar avoids walking every header in the tar file.
+ * <p>
+ * The sidecar is a text file with one tab separated record per line.
+ * Every record starts with the operation and the length and last modified time of the tar file after the operation.
+ * <ul>
+ * <li><code>H len mtime deletedEntries</code> - The first line; written when the sidecar is rebuilt from the tar file.</li>
+ * <li><code>A len mtime headeroffset dataoffset size name</code> - An entry was appended.</li>
+ * <li><code>D len mtime headeroffset</code> - The entry at this header offset was logically deleted.</li>
+ * <li><code>R len mtime headeroffset name</code> - The entry at this header offset was renamed.</li>
+ * </ul>
+ * {@link EAATar} appends records as it changes the tar file.
+ * The sidecar is only used if the length and last modified time in its last record match the tar file.
+ * Otherwise (for example, if the tar file was changed by some other tool or if we crashed between updating the tar file and the sidecar),
+ * the sidecar is discarded and rebuilt from the tar file.
+ * <p>
+ * Deletes and renames rewrite a header in place and do not change the length of the tar file;
+ * on file systems with coarse modification times, they may not change the last modified time either.
+ * So, the length of the sidecar (which only grows between rebuilds) is used as a generation number for the cached catalogs.
+ */
+final class TarCatalogIndex {
+    private static final Logger logger = LogManager.getLogger(TarCatalogIndex.class.getName());
+    static final String INDEX_SUFFIX = ".idx";
+    private static final int MAX_RECORD_LENGTH = 4096;
+
+    /**
+     * The length and last modified time of a tar file; used to check that the sidecar and the cached catalogs are current.
+     */
+    record TarState(long length, long lastModified) {
+        /**
+         * @param tarPath Path to the tar file
+         * @return The state of the tar file or null if it does not exist.
+         */
+        static TarState of(Path tarPath) throws IOException {
+            try {
+                return new TarState(Files.size(tarPath), Files.getLastModifiedTime(tarPath).toMillis());
+            } catch (NoSuchFileException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The live entries in a tar file and the number of logically deleted entries.
+     */
+    record Catalog(TarState state, Map<String, TarEntry> entries, int deletedEntries) {}
+
+    private final Path indexPath;
+
+    TarCatalogIndex(String tarFileName) {
+        this.indexPath = Paths.get(tarFileName + INDEX_SUFFIX);
+    }
+
+    Path getIndexPath() {
+        return indexPath;
+    }
+
+    /**
+     * Replay the sidecar.
+     * @param current The current state of the tar file
+     * @return The catalog or null if the sidecar does not exist, cannot be parsed or is not current.
+     */
+    Catalog read(TarState current) {
+        if (!Files.exists(indexPath)) return null;
+        TreeMap<Long, TarEntry> entriesByOffset = new TreeMap<>();
+        int deletedEntries = 0;
+        TarState state = null;
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("H\t")) {
+                logger.warn("Tar catalog index {} does not start with a header", indexPath);
+                return null;
+            }
+            do {
+                String[] fields = line.split("\t", -1);
+                state = new TarState(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                switch (fields[0]) {
+                    case "H" -> {
+                        entriesByOffset.clear();
+                        deletedEntries = Integer.parseInt(fields[3]);
+                    }
+                    case "A" -> {
+                        long headerOffset = Long.parseLong(fields[3]);
+                        // Anything at or after this header has been overwritten.
+                        entriesByOffset.tailMap(headerOffset, true).clear();
+                        entriesByOffset.put(
+                                headerOffset,
+                                new TarEntry(
+                                        fields[6],
+                                        headerOffset,
+                                        Long.parseLong(fields[4]),
+                                        Long.parseLong(fields[5])));
+                    }
+                    case "D" -> {
+                        if (entriesByOffset.remove(Long.parseLong(fields[3])) != null) {
+                            deletedEntries++;
+                        }
+                    }
+                    case "R" -> {
+                        long headerOffset = Long.parseLong(fields[3]);
+                        TarEntry entry = entriesByOffset.get(headerOffset);
+                        if (entry != null) {
+                            TarEntry renamed = new TarEntry(fields[4], headerOffset, entry.dataoffset(), entry.size());
+                            if (renamed.isDeleted()) {
+                                entriesByOffset.remove(headerOffset);
+                                deletedEntries++;
+                            } else {
+                                entriesByOffset.put(headerOffset, renamed);
+                            }
+                        }
+                    }
+                    default -> {
+                        logger.warn("Unknown record {} in tar catalog index {}", fields[0], indexPath);
+                        return null;
+                    }
+                }
+            } while ((line = reader.readLine()) != null);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Exception reading tar catalog index " + indexPath + "; rebuilding it from the tar file", ex);
+            return null;
+        }
+
+        if (!current.equals(state)) {
+            logger.debug("Tar catalog index {} is for {}; the tar file is now {}", indexPath, state, current);
+            return null;
+        }
+        // Later entries with the same name take precedence; this is the same as walking the tar file.
+        Map<String, TarEntry> entries = new LinkedHashMap<>();
+        for (TarEntry entry : entriesByOffset.values()) {
+            entries.put(entry.entryName(), entry);
+        }
+        return new Catalog(state, entries, deletedEntries);
+    }
+
+    /**
+     * Replace the sidecar with one for this catalog.
+     * Failures are logged and otherwise ignored; we'll just walk the tar file again next time.
+     */
+    void write(Catalog catalog) {
+        Path tmpPath = null;
+        try {
+            tmpPath = Files.createTempFile(indexPath.toAbsolutePath().getParent(), "__eaaidx", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpPath, StandardCharsets.UTF_8)) {
+                writer.write(header(catalog.state(), catalog.deletedEntries()));
+                for (TarEntry entry : catalog.entries().values()) {
+                    writer.write(appendRecord(catalog.state(), entry));
+                }
+            }
+            Files.move(tmpPath, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmpPath = null;
+        } catch (IOException ex) {
+            logger.warn("Exception writing tar catalog index " + indexPath, ex);
+        } finally {
+            if (tmpPath != null) {
+                try {
+                    Files.deleteIfExists(tmpPath);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the records for a change to the tar file.
+     * If the sidecar is not current as of just before the change, it is deleted; it'll be rebuilt on the next load.
+     * @param before The state of the tar file before the change; null if the tar file did not exist.
+     * @param records The records; these should be generated using the state of the tar file after the change.
+     * @return true if the records were added; false if the sidecar was removed instead.
+     */
+    boolean append(TarState before, TarState after, List<String> records) {
+        try {
+            if (before == null) {
+                // A new tar file; start a new sidecar.
+                List<String> lines = new ArrayList<>(records.size() + 1);
+                lines.add(header(after, 0));
+                lines.addAll(records);
+                writeLines(lines, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                return true;
+            }
+            TarState lastState = readLastState();
+            if (!before.equals(lastState)) {
+                logger.debug("Tar catalog index {} is not current; removing it", indexPath);
+                Files.deleteIfExists(indexPath);
+                return false;
+            }
+            writeLines(records, StandardOpenOption.APPEND);
+            return true;
+        } catch (IOException ex) {
+            logger.warn("Exception updating tar catalog index " + indexPath + "; removing it", ex);
+            try {
+                Files.deleteIfExists(indexPath);
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(indexPath);
+    }
+
+    /**
+     * Every change to the tar file adds a record to the sidecar, rewrites it or deletes it; so this changes with every change.
+     * @return The generation of the sidecar; its length or -1 if it does not exist.
+     */
+    long generation() {
+        try {
+            return Files.size(indexPath);
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    private void writeLines(Collection<String> lines, StandardOpenOption... options) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        lines.forEach(buf::append);
+        List<StandardOpenOption> openOptions = new ArrayList<>(List.of(options));
+        openOptions.add(StandardOpenOption.WRITE);
+        Files.writeString(indexPath, buf, StandardCharsets.UTF_8, openOptions.toArray(new StandardOpenOption[0]));
+    }
+
+    /**
+     * Get the tar state from the last record without reading the whole sidecar.
+     */
+    private TarState readLastState() throws IOException {
+        if (!Files.exists(indexPath)) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(indexPath.toFile(), "r")) {
+            long length = raf.length();
+            int toRead = (int) Math.min(length, MAX_RECORD_LENGTH);
+            byte[] tail = new byte[toRead];
+            raf.seek(length - toRead);
+            raf.readFully(tail);
+            if (toRead == 0 || tail[toRead - 1] != '\n') return null;
+            int start = toRead - 2;
+            while (start >= 0 && tail[start] != '\n') start--;
+            if (start < 0 && toRead < length) return null;
+            String[] fields = new String(tail, start + 1, toRead - start - 2, StandardCharsets.UTF_8).split("\t", -1);
+            return new TarState(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static String header(TarState state, int deletedEntries) {
+        return "H\t" + state.length() + "\t" + state.lastModified() + "\t" + deletedEntries + "\n";
+    }
+
+    static String appendRecord(TarState state, TarEntry entry) {
+        return "A\t" + state.length() + "\t" + state.lastModified() + "\t" + entry.headeroffset() + "\t"
+                + entry.dataoffset() + "\t" + entry.size() + "\t" + entry.entryName() + "\n";
+    }
+
+    static String deleteRecord(TarState state, TarEntry entry) {
+        return "D\t" + state.length() + "\t" + state.lastModified() + "\t" + entry.headeroffset() + "\n";
+    }
+
+    static String renameRecord(TarState state, TarEntry entry, String newEntryName) {
+        return "R\t" + state.length() + "\t" + state.lastModified() + "\t" + entry.headeroffset() + "\t"
+                + newEntryName + "\n";
+    }
+}
@@ -0,0 +1,108 @@
+package edu.stanford.slac.archiverappliance.PB.data;
+
+import com.google.protobuf.WireFormat;
+import org.epics.archiverappliance.ByteArray;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Instant;
+
+/**
+ * The numeric scalar PB events decode the timestamp, value and alarm fields straight from the line.
+ * Check that these are the same as what we get from the protobuf message.
+ * The values, nanos and alarms include the bytes that need escaping.
+ */
+public class PBScalarWireFormatTest {
+    private static final String[] VALUES = {"0", "10", "13", "27", "-10", "1234"};
+    private static final int[] NANOS = {0, 10, 13, 27, 999999999};
+
+    private static DBRTimeEvent fromLine(ArchDBRTypes type, short year, ByteArray rawForm) throws Exception {
+        return DBR2PBTypeMapping.getPBClassFor(type)
+                .getUnmarshallingFromByteArrayConstructor()
+                .newInstance(year, new ByteArray(rawForm.toBytes()));
+    }
+
+    private static void compare(ArchDBRTypes type, DBRTimeEvent expected, short year) throws Exception {
+        DBRTimeEvent fast = fromLine(type, year, expected.getRawForm());
+        DBRTimeEvent parsed = fromLine(type, year, expected.getRawForm());
+        // Force the protobuf parse
+        Assertions.assertNotNull(parsed.getProtobufMessage());
+        Assertions.assertEquals(parsed.getEventTimeStamp(), fast.getEventTimeStamp());
+        Assertions.assertEquals(parsed.getEpochSeconds(), fast.getEpochSeconds());
+        Assertions.assertEquals(parsed.getSampleValue(), fast.getSampleValue());
+        Assertions.assertEquals(parsed.getSeverity(), fast.getSeverity());
+        Assertions.assertEquals(parsed.getStatus(), fast.getStatus());
+        Assertions.assertEquals(parsed.getRepeatCount(), fast.getRepeatCount());
+        Assertions.assertEquals(parsed.hasFieldValues(), fast.hasFieldValues());
+        Assertions.assertEquals(parsed.isActualChange(), fast.isActualChange());
+        // This falls back to the protobuf message.
+        Assertions.assertEquals(parsed.getFields(), fast.getFields());
+        Assertions.assertEquals(expected.getSampleValue(), fast.getSampleValue());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @EnumSource(
+            value = ArchDBRTypes.class,
+            names = {
+                "DBR_SCALAR_ENUM",
+                "DBR_SCALAR_DOUBLE",
+                "DBR_SCALAR_INT",
+                "DBR_SCALAR_FLOAT",
+                "DBR_SCALAR_SHORT",
+            })
+    public void testSameAsProtobuf(ArchDBRTypes type) throws Exception {
+        short year = TimeUtils.getCurrentYear();
+        Instant startOfYear = TimeUtils.getStartOfYear(year);
+        int secondsIntoYear = 10;
+        for (String value : VALUES) {
+            for (int nano : NANOS) {
+                for (int alarm : new int[] {0, 10, 13}) {
+                    Instant ts = startOfYear.plusSeconds(secondsIntoYear++).plusNanos(nano);
+                    DBRTimeEvent event = (DBRTimeEvent) new POJOEvent(type, ts, value, alarm, alarm % 4).makeClone();
+                    compare(type, event, year);
+                    event.addFieldValue("HIHI", "10\n13\r27");
+                    event.markAsActualChange();
+                    compare(type, event, year);
+                }
+            }
+        }
+    }
+
+    /**
+     * A line that is not a complete message falls back to the protobuf parse (and its recovery).
+     */
+    @ParameterizedTest(name = "{0}")
+    @EnumSource(
+            value = ArchDBRTypes.class,
+            names = {
+                "DBR_SCALAR_ENUM",
+                "DBR_SCALAR_DOUBLE",
+                "DBR_SCALAR_INT",
+                "DBR_SCALAR_FLOAT",
+                "DBR_SCALAR_SHORT",
+            })
+    public void testTruncatedLine(ArchDBRTypes type) throws Exception {
+        short year = TimeUtils.getCurrentYear();
+        DBRTimeEvent event = (DBRTimeEvent) new POJOEvent(
+                        type, TimeUtils.getStartOfYear(year).plusSeconds(100), "42", 0, 0)
+                .makeClone();
+        byte[] line = event.getRawForm().toBytes();
+        byte[] truncated = new byte[line.length - 1];
+        System.arraycopy(line, 0, truncated, 0, truncated.length);
+        Assertions.assertNull(PBScalarWireFormat.decode(new ByteArray(truncated), valWireType(type)));
+        Assertions.assertNotNull(PBScalarWireFormat.decode(new ByteArray(line), valWireType(type)));
+    }
+
+    private static int valWireType(ArchDBRTypes type) {
+        return switch (type) {
+            case DBR_SCALAR_DOUBLE -> WireFormat.WIRETYPE_FIXED64;
+            case DBR_SCALAR_FLOAT, DBR_SCALAR_INT -> WireFormat.WIRETYPE_FIXED32;
+            default -> WireFormat.WIRETYPE_VARINT;
+        };
+    }
+}
@@ -11,6 +11,7 @@ import edu.stanford.slac.archiverappliance.PB.search.EvenNumberSampleFileGenerat
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.ByteArray;
 import org.epics.archiverappliance.config.ConfigServiceForTests;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -27,6 +28,9 @@ import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Test the LineByteStream
@@ -480,4 +484,91 @@ public class LineByteStreamTest {
 
         f.delete();
     }
+
+    /**
+     * The memory mapped reads of a bounded range should return exactly the same lines as the channel.
+     * @throws Exception
+     */
+    @Test
+    public void testMappedRangeMatchesChannel() throws Exception {
+        String fileName = testFolder.getAbsolutePath() + "/" + "MappedLineByteStream.txt";
+        File f = new File(fileName);
+        DecimalFormat formatter = new DecimalFormat("LinePattern000000");
+        try (PrintWriter out = new PrintWriter(new BufferedOutputStream(new FileOutputStream(f, false)))) {
+            for (int line = 0; line < 2000; line++) {
+                out.print(formatter.format(line) + LineEscaper.NEWLINE_CHAR_STR);
+            }
+        }
+
+        long fileSize = f.length();
+        long previousMinSize = LineByteStream.MIN_MAPPED_RANGE_SIZE;
+        try {
+            LineByteStream.MIN_MAPPED_RANGE_SIZE = 0;
+            for (long start = 0; start < fileSize; start += 997) {
+                for (long end = start; end < fileSize + 20; end += 1009) {
+                    Assertions.assertEquals(
+                            readAllLines(f, start, end, false),
+                            readAllLines(f, start, end, true),
+                            "Mismatch between mapped and channel reads for start=" + start + " and end=" + end);
+                }
+            }
+        } finally {
+            LineByteStream.MIN_MAPPED_RANGE_SIZE = previousMinSize;
+            LineByteStream.USE_MEMORY_MAPPED_FILES = true;
+        }
+        f.delete();
+    }
+
+    /**
+     * A corrupt file without newlines should fail with a LineTooLongException in the mapped reads as well.
+     * @throws Exception
+     */
+    @Test
+    public void testMappedLineTooLong() throws Exception {
+        String fileName = testFolder.getAbsolutePath() + "/" + "MappedLineTooLong.txt";
+        File f = new File(fileName);
+        try (BufferedOutputStream fos = new BufferedOutputStream(new FileOutputStream(f, false))) {
+            byte[] line = new byte[LineByteStream.MAX_LINE_SIZE * 4];
+            Arrays.fill(line, (byte) '0');
+            fos.write(line);
+            fos.write(LineEscaper.NEWLINE_CHAR);
+        }
+
+        long previousMinSize = LineByteStream.MIN_MAPPED_RANGE_SIZE;
+        int previousIterations = LineByteStream.MAX_ITERATIONS_TO_DETERMINE_LINE;
+        try {
+            LineByteStream.MIN_MAPPED_RANGE_SIZE = 0;
+            LineByteStream.USE_MEMORY_MAPPED_FILES = true;
+            LineByteStream.MAX_ITERATIONS_TO_DETERMINE_LINE = 2;
+            try (LineByteStream lis = new LineByteStream(f.toPath(), 0, f.length())) {
+                Assertions.assertThrows(LineTooLongException.class, () -> lis.readLine(new ByteArray(8)));
+            }
+            try (LineByteStream lis = new LineByteStream(f.toPath(), 0, f.length())) {
+                Assertions.assertThrows(LineTooLongException.class, lis::readLine);
+            }
+            LineByteStream.MAX_ITERATIONS_TO_DETERMINE_LINE = previousIterations;
+            try (LineByteStream lis = new LineByteStream(f.toPath(), 0, f.length())) {
+                Assertions.assertEquals(LineByteStream.MAX_LINE_SIZE * 4, lis.readLine().length);
+            }
+        } finally {
+            LineByteStream.MIN_MAPPED_RANGE_SIZE = previousMinSize;
+            LineByteStream.MAX_ITERATIONS_TO_DETERMINE_LINE = previousIterations;
+        }
+        f.delete();
+    }
+
+    private static List<String> readAllLines(File f, long start, long end, boolean mapped) throws IOException {
+        LineByteStream.USE_MEMORY_MAPPED_FILES = mapped;
+        List<String> ret = new ArrayList<>();
+        try (LineByteStream lis = new LineByteStream(f.toPath(), start, end)) {
+            lis.seekToFirstNewLine();
+            ByteArray bar = new ByteArray(8);
+            lis.readLine(bar);
+            while (!bar.isEmpty()) {
+                ret.add(new String(bar.data, bar.off, bar.len, StandardCharsets.UTF_8));
+                lis.readLine(bar);
+            }
+        }
+        return ret;
+    }
 }
@@ -0,0 +1,224 @@
+package edu.stanford.slac.archiverappliance.PBOverHTTP;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadInfo;
+import edu.stanford.slac.archiverappliance.PB.utils.LineEscaper;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test the requests made by the PB over HTTP plugin against a minimal in process HTTP server.
+ */
+public class PBOverHTTPStoragePluginTest {
+    private HttpServer server;
+    private final AtomicReference<String> requestMethod = new AtomicReference<String>();
+    private final AtomicReference<String> requestPath = new AtomicReference<String>();
+    private final AtomicReference<String> requestContentType = new AtomicReference<String>();
+    private final AtomicReference<String> requestBody = new AtomicReference<String>();
+    private final CountDownLatch releaseSlowResponses = new CountDownLatch(1);
+    private final int defaultMaxConnectionsPerServer = PBOverHTTPClients.MAX_CONNECTIONS_PER_SERVER;
+    private final int defaultMaxConnections = PBOverHTTPClients.MAX_CONNECTIONS;
+    private final int defaultConnectionRequestTimeout = PBOverHTTPClients.CONNECTION_REQUEST_TIMEOUT_MS;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/retrieval/data/", exchange -> {
+            requestMethod.set(exchange.getRequestMethod());
+            requestPath.set(exchange.getRequestURI().getPath());
+            requestContentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+            try (InputStream is = exchange.getRequestBody()) {
+                requestBody.set(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            // No data for any PV.
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/error/data/", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        // Sends the header for a PV and then holds on to the connection until the test is done.
+        server.createContext("/slow/data/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(LineEscaper.escapeNewLines(PayloadInfo.newBuilder()
+                        .setPvname("test:slow")
+                        .setType(ArchDBRTypes.DBR_SCALAR_DOUBLE.getPBPayloadType())
+                        .setYear(TimeUtils.getCurrentYear())
+                        .build()
+                        .toByteArray()));
+                os.write(LineEscaper.NEWLINE_CHAR);
+                os.flush();
+                releaseSlowResponses.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException | IOException ex) {
+                // The client closed the connection.
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        releaseSlowResponses.countDown();
+        server.stop(0);
+        PBOverHTTPClients.closeAll();
+        PBOverHTTPClients.MAX_CONNECTIONS_PER_SERVER = defaultMaxConnectionsPerServer;
+        PBOverHTTPClients.MAX_CONNECTIONS = defaultMaxConnections;
+        PBOverHTTPClients.CONNECTION_REQUEST_TIMEOUT_MS = defaultConnectionRequestTimeout;
+    }
+
+    private String getDataURL() {
+        return "http://localhost:" + server.getAddress().getPort() + "/retrieval/data/getData.raw";
+    }
+
+    @Test
+    public void testMultiPVRequestIsPosted() throws Exception {
+        PBOverHTTPStoragePlugin storagePlugin = new PBOverHTTPStoragePlugin();
+        storagePlugin.setAccessURL(getDataURL());
+        Assertions.assertEquals(
+                getDataURL().replace("getData.raw", "getDataForPVs.raw"), storagePlugin.getMultiPVAccessURL());
+
+        Instant end = TimeUtils.now();
+        Instant start = end.minusSeconds(3600);
+        try (BasicContext context = new BasicContext()) {
+            List<Callable<EventStream>> callables = storagePlugin.getDataForMultiPVs(
+                    context, List.of("test:pv1", "test:pv2", "test:pv3"), start, end, null);
+            for (Callable<EventStream> callable : callables) {
+                try (EventStream stream = callable.call()) {
+                    Assertions.assertFalse(stream.iterator().hasNext());
+                }
+            }
+        }
+        Assertions.assertEquals("POST", requestMethod.get());
+        Assertions.assertEquals("/retrieval/data/getDataForPVs.raw", requestPath.get());
+        Assertions.assertEquals("text/plain", requestContentType.get());
+        Assertions.assertEquals("test:pv1\ntest:pv2\ntest:pv3", requestBody.get());
+    }
+
+    @Test
+    public void testClientIsShared() throws Exception {
+        String base = "http://localhost:" + server.getAddress().getPort();
+        Assertions.assertSame(
+                PBOverHTTPClients.getClient(base + "/retrieval/data/getData.raw"),
+                PBOverHTTPClients.getClient(base + "/retrieval/data/getDataForPVs.raw"));
+        Assertions.assertSame(
+                PBOverHTTPClients.getClient(base + "/retrieval/data/getData.raw"),
+                PBOverHTTPClients.getClient("http://localhost:1/retrieval/data/getData.raw"));
+
+        PBOverHTTPStoragePlugin storagePlugin = new PBOverHTTPStoragePlugin();
+        storagePlugin.setAccessURL(getDataURL());
+        Instant end = TimeUtils.now();
+        try (BasicContext context = new BasicContext()) {
+            for (int i = 0; i < 10; i++) {
+                List<Callable<EventStream>> callables =
+                        storagePlugin.getDataForPV(context, "test:pv" + i, end.minusSeconds(60), end, null);
+                for (Callable<EventStream> callable : callables) {
+                    callable.call().close();
+                }
+                Assertions.assertEquals("GET", requestMethod.get());
+            }
+        }
+    }
+
+    @Test
+    public void testPoolIsSizedPerServerAndInTotal() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PBOverHTTPClients.MAX_CONNECTIONS_PER_SERVER_PROPERTY, "7");
+        props.setProperty(PBOverHTTPClients.MAX_CONNECTIONS_PROPERTY, "70");
+        PBOverHTTPClients.configure(props);
+        PBOverHTTPClients.getClient(getDataURL());
+        Assertions.assertEquals(7, PBOverHTTPClients.getConnectionManager().getDefaultMaxPerRoute());
+        Assertions.assertEquals(70, PBOverHTTPClients.getConnectionManager().getMaxTotal());
+
+        props.setProperty(PBOverHTTPClients.MAX_CONNECTIONS_PER_SERVER_PROPERTY, "9");
+        PBOverHTTPClients.configure(props);
+        Assertions.assertEquals(9, PBOverHTTPClients.getConnectionManager().getDefaultMaxPerRoute());
+    }
+
+    @Test
+    public void testRequestIsMadeWhenTheStreamIsRead() throws Exception {
+        PBOverHTTPStoragePlugin storagePlugin = new PBOverHTTPStoragePlugin();
+        storagePlugin.setAccessURL(getDataURL());
+        Instant end = TimeUtils.now();
+        try (BasicContext context = new BasicContext()) {
+            List<Callable<EventStream>> callables =
+                    storagePlugin.getDataForPV(context, "test:pv", end.minusSeconds(60), end, null);
+            try (EventStream stream = callables.get(0).call()) {
+                Assertions.assertNull(requestMethod.get(), "The request should only be made when the stream is read");
+                Assertions.assertFalse(stream.iterator().hasNext());
+                Assertions.assertEquals("GET", requestMethod.get());
+            }
+        }
+    }
+
+    @Test
+    public void testErrorsAreNotEmptyStreams() throws Exception {
+        PBOverHTTPStoragePlugin storagePlugin = new PBOverHTTPStoragePlugin();
+        storagePlugin.setAccessURL(getDataURL().replace("/retrieval/", "/error/"));
+        Instant end = TimeUtils.now();
+        try (BasicContext context = new BasicContext()) {
+            List<Callable<EventStream>> callables =
+                    storagePlugin.getDataForPV(context, "test:pv", end.minusSeconds(60), end, null);
+            try (EventStream stream = callables.get(0).call()) {
+                Assertions.assertThrows(UncheckedIOException.class, stream::getDescription);
+            }
+        }
+    }
+
+    @Test
+    public void testTimingOutWaitingForAConnectionIsAnError() throws Exception {
+        PBOverHTTPClients.MAX_CONNECTIONS_PER_SERVER = 1;
+        PBOverHTTPClients.CONNECTION_REQUEST_TIMEOUT_MS = 500;
+        PBOverHTTPStoragePlugin storagePlugin = new PBOverHTTPStoragePlugin();
+        storagePlugin.setAccessURL(getDataURL().replace("/retrieval/", "/slow/"));
+        Instant end = TimeUtils.now();
+        try (BasicContext context = new BasicContext()) {
+            EventStream first = storagePlugin
+                    .getDataForPV(context, "test:slow", end.minusSeconds(60), end, null)
+                    .get(0)
+                    .call();
+            EventStream second = storagePlugin
+                    .getDataForPV(context, "test:slow", end.minusSeconds(60), end, null)
+                    .get(0)
+                    .call();
+            try (first; second) {
+                // The first stream holds the only connection to the server until it is closed.
+                Assertions.assertEquals("test:slow", first.getDescription().getPvName());
+                UncheckedIOException ex = Assertions.assertThrows(UncheckedIOException.class, second::getDescription);
+                Assertions.assertInstanceOf(ConnectionPoolTimeoutException.class, ex.getCause());
+            }
+            try (EventStream third = storagePlugin
+                    .getDataForPV(context, "test:slow", end.minusSeconds(60), end, null)
+                    .get(0)
+                    .call()) {
+                // Closing the first stream released its connection.
+                Assertions.assertEquals("test:slow", third.getDescription().getPvName());
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package edu.stanford.slac.archiverappliance.plain;
+
+import org.epics.archiverappliance.config.ConfigServiceForTests;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Test that the ETL append journal undoes appends that were not committed and leaves committed appends alone.
+ */
+public class AppendJournalTest {
+    private final File testFolder = new File(
+            ConfigServiceForTests.getDefaultPBTestFolder() + File.separator + AppendJournalTest.class.getSimpleName());
+    private final Path dataFile = testFolder.toPath().resolve("Journal.pb");
+    private final Path journal = AppendJournal.journalPath(dataFile);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.createDirectories(testFolder.toPath());
+        Files.deleteIfExists(dataFile);
+        Files.deleteIfExists(journal);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dataFile);
+        Files.deleteIfExists(journal);
+    }
+
+    @Test
+    public void testRollbackTruncatesToRecordedLength() throws IOException {
+        Files.write(dataFile, new byte[1000]);
+        AppendJournal.begin(dataFile);
+        Files.write(dataFile, new byte[500], StandardOpenOption.APPEND);
+        // A second begin in the same ETL run should not move the recorded length forward.
+        AppendJournal.begin(dataFile);
+        Files.write(dataFile, new byte[500], StandardOpenOption.APPEND);
+        Assertions.assertTrue(Files.exists(journal));
+
+        Assertions.assertTrue(AppendJournal.rollback(journal));
+        Assertions.assertEquals(1000, Files.size(dataFile));
+        Assertions.assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    public void testRollbackRemovesNewFile() throws IOException {
+        AppendJournal.begin(dataFile);
+        Files.write(dataFile, new byte[500]);
+        Assertions.assertTrue(AppendJournal.rollback(journal));
+        Assertions.assertFalse(Files.exists(dataFile));
+        Assertions.assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    public void testCommitKeepsAppendedData() throws IOException {
+        Files.write(dataFile, new byte[1000]);
+        AppendJournal.begin(dataFile);
+        Files.write(dataFile, new byte[500], StandardOpenOption.APPEND);
+        AppendJournal.commit(journal);
+        Assertions.assertEquals(1500, Files.size(dataFile));
+        Assertions.assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    public void testInvalidJournalIsIgnored() throws IOException {
+        Files.write(dataFile, new byte[1000]);
+        Files.write(journal, new byte[3]);
+        Assertions.assertFalse(AppendJournal.rollback(journal));
+        Assertions.assertEquals(1000, Files.size(dataFile));
+        Assertions.assertFalse(Files.exists(journal));
+    }
+}
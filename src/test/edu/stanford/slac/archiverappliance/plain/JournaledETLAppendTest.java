@@ -0,0 +1,135 @@
+package edu.stanford.slac.archiverappliance.plain;
+
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.PartitionGranularity;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigServiceForTests;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.etl.ETLContext;
+import org.epics.archiverappliance.utils.simulation.SimulationEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+/**
+ * Run ETL appends through the {@link PlainStoragePlugin} with <code>journalETLAppends</code> and check that a failed
+ * ETL run is undone by the next one.
+ */
+public class JournaledETLAppendTest {
+    private static final String PV_NAME = ConfigServiceForTests.ARCH_UNIT_TEST_PVNAME_PREFIX + "JournaledETLAppend";
+    private static final short YEAR = TimeUtils.getCurrentYear();
+    private final PlainCommonSetup setup = new PlainCommonSetup();
+    private PlainStoragePlugin storagePlugin;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        storagePlugin = new PlainStoragePlugin(PlainStorageType.PB);
+        setup.setUpRootFolder(
+                storagePlugin, JournaledETLAppendTest.class.getSimpleName(), PartitionGranularity.PARTITION_YEAR);
+        storagePlugin.setJournalETLAppends(true);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        setup.deleteTestFolder();
+    }
+
+    private static ArrayListEventStream makeEvents(int start, int end) {
+        ArrayListEventStream events = new ArrayListEventStream(
+                end - start, new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_DOUBLE, PV_NAME, YEAR));
+        for (int i = start; i < end; i++) {
+            events.add(new SimulationEvent(
+                    i * 60, YEAR, ArchDBRTypes.DBR_SCALAR_DOUBLE, new ScalarValue<Double>((double) i)));
+        }
+        return events;
+    }
+
+    private List<Path> findFiles(String suffix) throws IOException {
+        try (Stream<Path> paths = Files.walk(setup.getRootFolder().toPath())) {
+            return paths.filter(p -> p.getFileName().toString().endsWith(suffix)).toList();
+        }
+    }
+
+    private void checkEvents(int expectedCount) throws Exception {
+        int count = 0;
+        try (BasicContext context = new BasicContext()) {
+            List<Callable<EventStream>> callables = storagePlugin.getDataForPV(
+                    context, PV_NAME, TimeUtils.getStartOfYear(YEAR), TimeUtils.getStartOfYear(YEAR + 1));
+            for (Callable<EventStream> callable : callables) {
+                try (EventStream strm = callable.call()) {
+                    for (Event e : strm) {
+                        Assertions.assertEquals(
+                                count, e.getSampleValue().getValue().intValue(), "Missing or repeated event");
+                        count++;
+                    }
+                }
+            }
+        }
+        Assertions.assertEquals(expectedCount, count);
+    }
+
+    @Test
+    public void testFailedRunIsRolledBack() throws Exception {
+        try (ETLContext context = new ETLContext()) {
+            Assertions.assertTrue(storagePlugin.appendToETLAppendData(PV_NAME, makeEvents(0, 100), context));
+            storagePlugin.commitETLAppendData(PV_NAME, context);
+        }
+        List<Path> dataFiles = findFiles(".pb");
+        Assertions.assertEquals(1, dataFiles.size());
+        Path dataFile = dataFiles.getFirst();
+        long committedSize = Files.size(dataFile);
+        Assertions.assertTrue(findFiles(AppendJournal.JOURNAL_EXTENSION).isEmpty());
+
+        // This ETL run fails before it commits; the source keeps these events.
+        try (ETLContext context = new ETLContext()) {
+            Assertions.assertTrue(storagePlugin.appendToETLAppendData(PV_NAME, makeEvents(100, 200), context));
+        }
+        Assertions.assertTrue(Files.size(dataFile) > committedSize);
+        Assertions.assertEquals(1, findFiles(AppendJournal.JOURNAL_EXTENSION).size());
+        // A crash while recording the journal for the next partition leaves a temporary journal behind.
+        Path nextPartition = dataFile.resolveSibling(
+                dataFile.getFileName().toString().replace(Integer.toString(YEAR), Integer.toString(YEAR + 1)));
+        Path tmpJournal = Path.of(AppendJournal.journalPath(nextPartition) + AppendJournal.TEMP_EXTENSION);
+        Files.write(tmpJournal, new byte[3]);
+
+        // The next ETL run moves the same events again.
+        // The failed run is undone first; the cached append state still has the last event of the failed run and must
+        // be discarded or these events would be skipped.
+        try (ETLContext context = new ETLContext()) {
+            Assertions.assertTrue(storagePlugin.appendToETLAppendData(PV_NAME, makeEvents(100, 200), context));
+            storagePlugin.commitETLAppendData(PV_NAME, context);
+        }
+        Assertions.assertTrue(findFiles(AppendJournal.JOURNAL_EXTENSION).isEmpty());
+        Assertions.assertFalse(Files.exists(tmpJournal));
+        checkEvents(200);
+    }
+
+    @Test
+    public void testFailedRunThatCreatedTheFileIsRolledBack() throws Exception {
+        try (ETLContext context = new ETLContext()) {
+            Assertions.assertTrue(storagePlugin.appendToETLAppendData(PV_NAME, makeEvents(0, 100), context));
+        }
+        Assertions.assertEquals(1, findFiles(".pb").size());
+
+        try (ETLContext context = new ETLContext()) {
+            Assertions.assertTrue(storagePlugin.appendToETLAppendData(PV_NAME, makeEvents(0, 50), context));
+            storagePlugin.commitETLAppendData(PV_NAME, context);
+        }
+        Assertions.assertTrue(findFiles(AppendJournal.JOURNAL_EXTENSION).isEmpty());
+        checkEvents(50);
+    }
+}
@@ -0,0 +1,121 @@
+package edu.stanford.slac.archiverappliance.plain;
+
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarInt;
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarInt;
+import edu.stanford.slac.archiverappliance.PB.utils.LineEscaper;
+import edu.stanford.slac.archiverappliance.plain.pb.FileBackedPBEventStream;
+import edu.stanford.slac.archiverappliance.plain.pb.PBAppendDataStateData;
+import edu.stanford.slac.archiverappliance.plain.pb.PBEventFileWriter;
+import edu.stanford.slac.archiverappliance.plain.pb.PBFileInfo;
+import org.epics.archiverappliance.ByteArray;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.common.PartitionGranularity;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigService;
+import org.epics.archiverappliance.config.PVNameToKeyMapping;
+import org.epics.archiverappliance.etl.ETLContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test that the ETL bulk append of PB files has the kernel move all the bytes into the end of the destination.
+ */
+public class PBBulkAppendTest {
+    private static final String PV_NAME = "BULKAPPENDPV";
+    private static final short YEAR = TimeUtils.getCurrentYear();
+
+    @TempDir
+    Path testDir;
+
+    private final PVNameToKeyMapping pv2key = new PVNameToKeyMapping() {
+        @Override
+        public String convertPVNameToKey(String pv) {
+            return pv + ":";
+        }
+
+        @Override
+        public String[] breakIntoParts(String pv) {
+            return new String[] {pv};
+        }
+
+        @Override
+        public void initialize(ConfigService cs) {}
+
+        @Override
+        public PVNameToKeyMapping overrideTerminator(char c) {
+            return this;
+        }
+    };
+
+    @AfterEach
+    public void tearDown() {
+        PBAppendDataStateData.USE_TRANSFER_TO = true;
+    }
+
+    private static void writeEvents(Path pbFile, int start, int end) throws IOException {
+        try (PBEventFileWriter writer = new PBEventFileWriter(PV_NAME, pbFile, ArchDBRTypes.DBR_SCALAR_INT, YEAR)) {
+            for (int i = start; i < end; i++) {
+                byte[] escaped = LineEscaper.escapeNewLines(ScalarInt.newBuilder()
+                        .setSecondsintoyear(i * 60)
+                        .setNano(0)
+                        .setVal(i)
+                        .build()
+                        .toByteArray());
+                writer.append(new PBScalarInt(YEAR, new ByteArray(escaped)));
+            }
+        }
+    }
+
+    private void bulkAppend(String expectedMethod) throws IOException {
+        Path destFile = testDir.resolve(PV_NAME + ":" + YEAR + ".pb");
+        Path srcFile = Files.createDirectories(testDir.resolve("src")).resolve(PV_NAME + ":" + YEAR + ".pb");
+        writeEvents(destFile, 0, 500);
+        writeEvents(srcFile, 500, 1000);
+        long destSizeBefore = Files.size(destFile);
+        long srcSampleBytes = Files.size(srcFile) - new PBFileInfo(srcFile).getPositionOfFirstSample();
+
+        PBAppendDataStateData state = new PBAppendDataStateData(
+                PartitionGranularity.PARTITION_YEAR,
+                testDir.toString(),
+                "test",
+                null,
+                pv2key,
+                PathResolver.BASE_PATH_RESOLVER);
+        try (ETLContext context = new ETLContext();
+                FileBackedPBEventStream srcStream =
+                        new FileBackedPBEventStream(PV_NAME, srcFile, ArchDBRTypes.DBR_SCALAR_INT)) {
+            Assertions.assertTrue(state.bulkAppend(PV_NAME, context, srcStream, ".pb", null));
+        }
+
+        Assertions.assertEquals(expectedMethod, state.getBulkAppendMethod());
+        Assertions.assertEquals(srcSampleBytes, state.getBulkAppendedBytes());
+        Assertions.assertEquals(destSizeBefore + srcSampleBytes, Files.size(destFile));
+        int expectedValue = 0;
+        try (FileBackedPBEventStream destStream =
+                new FileBackedPBEventStream(PV_NAME, destFile, ArchDBRTypes.DBR_SCALAR_INT)) {
+            for (Event e : destStream) {
+                Assertions.assertEquals(expectedValue, e.getSampleValue().getValue().intValue());
+                expectedValue++;
+            }
+        }
+        Assertions.assertEquals(1000, expectedValue);
+    }
+
+    @Test
+    public void testTransferMovesAllTheBytes() throws IOException {
+        bulkAppend(AppendDataStateData.BULK_APPEND_TRANSFER);
+    }
+
+    @Test
+    public void testBufferedCopyMovesAllTheBytes() throws IOException {
+        PBAppendDataStateData.USE_TRANSFER_TO = false;
+        bulkAppend(AppendDataStateData.BULK_APPEND_BUFFERED);
+    }
+}
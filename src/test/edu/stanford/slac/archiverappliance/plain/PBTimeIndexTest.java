@@ -0,0 +1,145 @@
+package edu.stanford.slac.archiverappliance.plain;
+
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarDouble;
+import edu.stanford.slac.archiverappliance.plain.pb.FileBackedPBEventStream;
+import edu.stanford.slac.archiverappliance.plain.pb.PBEventFileWriter;
+import edu.stanford.slac.archiverappliance.plain.pb.PBFileInfo;
+import edu.stanford.slac.archiverappliance.plain.pb.PBTimeIndex;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.common.PartitionGranularity;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.YearSecondTimestamp;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigServiceForTests;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.etl.ETLInfo;
+import org.epics.archiverappliance.utils.simulation.SimulationEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Test the sparse time index for PB files.
+ * We write a file with one event a second and check that time based streams return the same data
+ * whether the index is fresh, stale or missing.
+ */
+public class PBTimeIndexTest {
+    private static final String pvName =
+            ConfigServiceForTests.ARCH_UNIT_TEST_PVNAME_PREFIX + ":" + PBTimeIndexTest.class.getSimpleName();
+    private static final int EVENT_COUNT = 100000;
+    private final short currentYear = TimeUtils.getCurrentYear();
+    private final File testFolder = new File(
+            ConfigServiceForTests.getDefaultPBTestFolder() + File.separator + PBTimeIndexTest.class.getSimpleName());
+    private final Path pbFile = testFolder.toPath().resolve("TimeIndex.pb");
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.createDirectories(testFolder.toPath());
+        Files.deleteIfExists(pbFile);
+        Files.deleteIfExists(PBTimeIndex.sidecarPath(pbFile));
+        writeEvents(pbFile, 0, EVENT_COUNT, false);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(pbFile);
+        Files.deleteIfExists(PBTimeIndex.sidecarPath(pbFile));
+    }
+
+    private void writeEvents(Path path, int startSecond, int count, boolean append) throws IOException {
+        try (PBEventFileWriter writer =
+                new PBEventFileWriter(pvName, path, ArchDBRTypes.DBR_SCALAR_DOUBLE, currentYear, append)) {
+            for (int second = startSecond; second < startSecond + count; second++) {
+                writer.append(new PBScalarDouble(new SimulationEvent(
+                        second, currentYear, ArchDBRTypes.DBR_SCALAR_DOUBLE, new ScalarValue<>((double) second))));
+            }
+        }
+    }
+
+    private long countEvents(int startSecond, int endSecond) throws IOException {
+        Instant start = TimeUtils.convertFromYearSecondTimestamp(new YearSecondTimestamp(currentYear, startSecond, 0));
+        Instant end = TimeUtils.convertFromYearSecondTimestamp(new YearSecondTimestamp(currentYear, endSecond, 0));
+        long count = 0;
+        try (EventStream strm =
+                new FileBackedPBEventStream(pvName, pbFile, ArchDBRTypes.DBR_SCALAR_DOUBLE, start, end, false)) {
+            for (Event e : strm) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testWriterCreatesIndex() throws IOException {
+        Assertions.assertTrue(Files.exists(PBTimeIndex.sidecarPath(pbFile)), "Writer should create the time index");
+        PBTimeIndex index = PBTimeIndex.forSearch(pbFile, new PBFileInfo(pbFile));
+        Assertions.assertNotNull(index);
+        long[] window = index.searchWindow(
+                new YearSecondTimestamp(currentYear, EVENT_COUNT / 2, 0), 0, Files.size(pbFile));
+        Assertions.assertTrue(
+                window[1] - window[0] <= 2L * PBTimeIndex.INDEX_INTERVAL_BYTES,
+                "Search window " + window[0] + "-" + window[1] + " should be limited by the index");
+        Assertions.assertEquals(1001, countEvents(EVENT_COUNT / 2, EVENT_COUNT / 2 + 1000));
+        Assertions.assertEquals(11, countEvents(10, 20));
+    }
+
+    @Test
+    public void testStaleIndexIsRebuilt() throws IOException {
+        // Replace the PB file with one that has different data; the old index is now stale.
+        Path sidecar = PBTimeIndex.sidecarPath(pbFile);
+        byte[] oldIndex = Files.readAllBytes(sidecar);
+        Files.delete(pbFile);
+        writeEvents(pbFile, 5, EVENT_COUNT, false);
+        Files.write(sidecar, oldIndex);
+        Assertions.assertEquals(1001, countEvents(EVENT_COUNT / 2, EVENT_COUNT / 2 + 1000));
+        Assertions.assertEquals(6, countEvents(0, 10));
+    }
+
+    @Test
+    public void testMissingAndPartialIndex() throws Exception {
+        // Appends that bypass the index; the index is built/extended in the background.
+        // The readers do not scan the file themselves; they search the whole file until the index has been built.
+        Path sidecar = PBTimeIndex.sidecarPath(pbFile);
+        Files.delete(sidecar);
+        writeEvents(pbFile, EVENT_COUNT, EVENT_COUNT, true);
+        for (int i = 0; i < 100 && !Files.exists(sidecar); i++) {
+            Assertions.assertEquals(1001, countEvents(EVENT_COUNT + 5000, EVENT_COUNT + 6000));
+            Thread.sleep(100);
+        }
+        Assertions.assertTrue(Files.exists(sidecar), "The time index should be built in the background");
+        Assertions.assertNotNull(PBTimeIndex.forSearch(pbFile, new PBFileInfo(pbFile)));
+        Assertions.assertEquals(1001, countEvents(EVENT_COUNT + 5000, EVENT_COUNT + 6000));
+
+        writeEvents(pbFile, 2 * EVENT_COUNT, EVENT_COUNT, true);
+        Assertions.assertEquals(1001, countEvents(2 * EVENT_COUNT + 5000, 2 * EVENT_COUNT + 6000));
+        Assertions.assertEquals(1001, countEvents(5000, 6000));
+    }
+
+    @Test
+    public void testIndexIsDeletedWithTheFile() throws IOException {
+        // ETL does not delete a file that has changed since the ETLInfo was generated; the index stays with it.
+        Path sidecar = PBTimeIndex.sidecarPath(pbFile);
+        PlainStoragePlugin plugin = new PlainStoragePlugin(PlainStorageType.PB);
+        long size = Files.size(pbFile);
+        plugin.markForDeletion(etlInfo(size - 1), null);
+        Assertions.assertTrue(Files.exists(pbFile), "A file that has changed should not be deleted");
+        Assertions.assertTrue(Files.exists(sidecar), "The index of a file that is kept should not be deleted");
+
+        plugin.markForDeletion(etlInfo(size), null);
+        Assertions.assertFalse(Files.exists(pbFile), "The file should have been deleted");
+        Assertions.assertFalse(Files.exists(sidecar), "The index should be deleted with the file");
+    }
+
+    private ETLInfo etlInfo(long size) {
+        return new ETLInfo(
+                pvName, ArchDBRTypes.DBR_SCALAR_DOUBLE, pbFile, PartitionGranularity.PARTITION_YEAR, null, null, size);
+    }
+}
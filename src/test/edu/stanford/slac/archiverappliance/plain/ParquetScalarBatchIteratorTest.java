@@ -0,0 +1,126 @@
+package edu.stanford.slac.archiverappliance.plain;
+
+import static org.epics.archiverappliance.utils.ui.URIUtils.pluginString;
+
+import org.apache.commons.io.FileUtils;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.ScalarBatchEventStream;
+import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.PartitionGranularity;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigService;
+import org.epics.archiverappliance.config.ConfigServiceForTests;
+import org.epics.archiverappliance.config.StoragePluginURLParser;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarEventBatch;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.utils.simulation.SimulationEventStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Check that the column wise batches from Parquet files have the same data as the event iterator.
+ */
+public class ParquetScalarBatchIteratorTest {
+    static String rootFolderName =
+            ConfigServiceForTests.getDefaultPBTestFolder() + "/" + ParquetScalarBatchIteratorTest.class.getSimpleName();
+    static ArchDBRTypes type = ArchDBRTypes.DBR_SCALAR_DOUBLE;
+    private static final String pvName = ConfigServiceForTests.ARCH_UNIT_TEST_PVNAME_PREFIX + ":"
+            + ParquetScalarBatchIteratorTest.class.getSimpleName();
+    static ConfigService configService;
+    static PlainStoragePlugin storagePlugin;
+    static final short currentYear = TimeUtils.getCurrentYear();
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        configService = new ConfigServiceForTests(1);
+        if (new File(rootFolderName).exists()) {
+            FileUtils.deleteDirectory(new File(rootFolderName));
+        }
+        assert new File(rootFolderName).mkdirs();
+        storagePlugin = (PlainStoragePlugin) StoragePluginURLParser.parseStoragePlugin(
+                pluginString(
+                        PlainStorageType.PARQUET,
+                        "localhost",
+                        "name=STS&rootFolder=" + rootFolderName + "/&partitionGranularity=PARTITION_DAY"),
+                configService);
+        try (BasicContext context = new BasicContext()) {
+            storagePlugin.appendData(
+                    context,
+                    pvName,
+                    new SimulationEventStream(
+                            type,
+                            (type, secondsIntoYear) -> new ScalarValue<Double>((double) (secondsIntoYear % 1000)),
+                            TimeUtils.getStartOfYear(currentYear),
+                            TimeUtils.getStartOfYear(currentYear)
+                                    .plusSeconds(3 * PartitionGranularity.PARTITION_DAY.getApproxSecondsPerChunk()),
+                            1));
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() throws Exception {
+        if (new File(rootFolderName).exists()) {
+            FileUtils.deleteDirectory(new File(rootFolderName));
+        }
+        configService.shutdownNow();
+    }
+
+    private static void compareBatchesAndEvents(Instant start, Instant end) throws Exception {
+        long totalEvents = 0;
+        try (BasicContext context = new BasicContext()) {
+            List<Callable<EventStream>> callables = storagePlugin.getDataForPV(context, pvName, start, end);
+            for (Callable<EventStream> callable : callables) {
+                try (EventStream strm = callable.call()) {
+                    Assertions.assertInstanceOf(ScalarBatchEventStream.class, strm);
+                    List<DBRTimeEvent> events = new ArrayList<>();
+                    for (Event e : strm) {
+                        events.add((DBRTimeEvent) e.makeClone());
+                    }
+                    Iterator<ScalarEventBatch> batches = ((ScalarBatchEventStream) strm).batchIterator();
+                    Assertions.assertNotNull(batches);
+                    int index = 0;
+                    while (batches.hasNext()) {
+                        ScalarEventBatch batch = batches.next();
+                        for (int i = 0; i < batch.size(); i++) {
+                            DBRTimeEvent expected = events.get(index++);
+                            Assertions.assertEquals(expected.getEventTimeStamp(), batch.toEvent(i).getEventTimeStamp());
+                            Assertions.assertEquals(
+                                    expected.getSampleValue().getValue().doubleValue(), batch.getValue(i), 0.0);
+                            Assertions.assertEquals(expected.getSeverity(), batch.getSeverity(i));
+                            Assertions.assertEquals(expected.getStatus(), batch.getStatus(i));
+                        }
+                    }
+                    Assertions.assertEquals(events.size(), index, "Batches and events differ in count");
+                    totalEvents += index;
+                }
+            }
+        }
+        Assertions.assertTrue(totalEvents > 0, "Expected some events between " + start + " and " + end);
+    }
+
+    @Test
+    public void testAllData() throws Exception {
+        compareBatchesAndEvents(
+                TimeUtils.getStartOfYear(currentYear).minusSeconds(10),
+                TimeUtils.getStartOfYear(currentYear).plusSeconds(4 * 86400));
+    }
+
+    @Test
+    public void testPartialDays() throws Exception {
+        Instant startOfYear = TimeUtils.getStartOfYear(currentYear);
+        compareBatchesAndEvents(startOfYear.plusSeconds(3600), startOfYear.plusSeconds(3600 + 600));
+        compareBatchesAndEvents(startOfYear.plusSeconds(86400 - 300), startOfYear.plusSeconds(2 * 86400 + 300));
+    }
+}
@@ -9,6 +9,7 @@ package edu.stanford.slac.archiverappliance.plain;
 
 import static org.epics.archiverappliance.utils.ui.URIUtils.pluginString;
 
+import edu.stanford.slac.archiverappliance.plain.pb.PBTimeIndex;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -34,6 +35,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.Callable;
 
@@ -129,6 +132,7 @@ public class RenamePVTest {
         long newPVEventCount = 0;
         int newPathCount = 0;
         int newPathForOldPVNameCount = -1;
+        int oldPVNameIndexCount = 0;
         try (BasicContext context = new BasicContext()) {
             List<Callable<EventStream>> callables = plugin.getDataForPV(
                     context,
@@ -156,6 +160,15 @@ public class RenamePVTest {
                             plugin.getPathResolver(),
                             configService.getPVNameToKeyConverter())
                     .length;
+            for (Path oldPath : PathNameUtility.getAllPathsForPV(
+                    context.getPaths(),
+                    plugin.getRootFolder(),
+                    oldPVName,
+                    plugin.getExtensionString(),
+                    plugin.getPathResolver(),
+                    configService.getPVNameToKeyConverter())) {
+                if (Files.exists(PBTimeIndex.sidecarPath(oldPath))) oldPVNameIndexCount++;
+            }
         }
 
         logger.info("Old count " + oldPVEventCount + " and new count " + newPVEventCount);
@@ -175,5 +188,6 @@ public class RenamePVTest {
                 oldPathCount,
                 "Path counts for the old PV name after the rename " + newPathForOldPVNameCount
                         + " is not the same as before the rename " + oldPathCount);
+        Assertions.assertEquals(0, oldPVNameIndexCount, "The indexes for the old PV name should have been removed");
     }
 }
@@ -0,0 +1,61 @@
+package org.epics.archiverappliance.common.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+/**
+ * Check the OpenMetrics text we generate for the various kinds of metrics.
+ */
+public class InstrumentationTest {
+    @Test
+    public void testCounter() {
+        Counter counter = Instrumentation.counter("archappl_test_counter", "A test counter");
+        Assertions.assertSame(counter, Instrumentation.counter("archappl_test_counter", "A test counter"));
+        long before = counter.get();
+        counter.increment();
+        counter.add(10);
+        String text = Instrumentation.toOpenMetrics();
+        Assertions.assertTrue(text.contains("# TYPE archappl_test_counter counter\n"), text);
+        Assertions.assertTrue(text.contains("\narchappl_test_counter_total " + (before + 11) + "\n"), text);
+        Assertions.assertTrue(text.endsWith("# EOF\n"), text);
+    }
+
+    @Test
+    public void testHistogramWithLabels() {
+        Instrumentation.Family<Histogram> family = Instrumentation.histogramFamily(
+                "archappl_test_latency_seconds", "A test histogram", "store", "mime");
+        Histogram histogram = family.labels("STS", "raw");
+        Assertions.assertSame(histogram, family.labels("STS", "raw"));
+        histogram.observe(0.001);
+        histogram.observeMillis(30);
+        histogram.observe(1000.0);
+        String text = Instrumentation.toOpenMetrics();
+        // The buckets are cumulative and inclusive of their upper bound.
+        Assertions.assertTrue(
+                text.contains("archappl_test_latency_seconds_bucket{store=\"STS\",mime=\"raw\",le=\"0.001\"} 1\n"),
+                text);
+        Assertions.assertTrue(
+                text.contains("archappl_test_latency_seconds_bucket{store=\"STS\",mime=\"raw\",le=\"0.05\"} 2\n"),
+                text);
+        Assertions.assertTrue(
+                text.contains("archappl_test_latency_seconds_bucket{store=\"STS\",mime=\"raw\",le=\"300.0\"} 2\n"),
+                text);
+        Assertions.assertTrue(
+                text.contains("archappl_test_latency_seconds_bucket{store=\"STS\",mime=\"raw\",le=\"+Inf\"} 3\n"),
+                text);
+        Assertions.assertTrue(
+                text.contains("archappl_test_latency_seconds_count{store=\"STS\",mime=\"raw\"} 3\n"), text);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> family.labels("STS"));
+    }
+
+    @Test
+    public void testGauges() {
+        Instrumentation.gauges(
+                "archappl_test_gauge", "A test gauge", "dest", () -> Map.of("MTS", 3, "L\"TS", 1.5));
+        String text = Instrumentation.toOpenMetrics();
+        Assertions.assertTrue(text.contains("archappl_test_gauge{dest=\"MTS\"} 3\n"), text);
+        Assertions.assertTrue(text.contains("archappl_test_gauge{dest=\"L\\\"TS\"} 1.5\n"), text);
+    }
+}
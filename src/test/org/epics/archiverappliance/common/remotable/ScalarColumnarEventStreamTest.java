@@ -0,0 +1,128 @@
+package org.epics.archiverappliance.common.remotable;
+
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarDouble;
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarInt;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarEventBatch;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Check that the events we get out of a {@link ScalarColumnarEventStream} are the events we put in.
+ */
+public class ScalarColumnarEventStreamTest {
+    private static final short YEAR = 2024;
+
+    private static DBRTimeEvent makeEvent(ArchDBRTypes dbrType, Instant ts, double value, int severity, int status) {
+        ScalarValue<?> sampleValue = dbrType == ArchDBRTypes.DBR_SCALAR_INT
+                ? new ScalarValue<Integer>((int) value)
+                : new ScalarValue<Double>(value);
+        return (DBRTimeEvent) new POJOEvent(dbrType, ts, sampleValue, status, severity).makeClone();
+    }
+
+    @Test
+    public void testEventsRoundTrip() {
+        RemotableEventStreamDesc desc =
+                new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_INT, "test:columnar", YEAR);
+        List<Event> events = ScalarColumnarEventStream.newEventList(4, desc);
+        Assertions.assertInstanceOf(ScalarColumnarEventStream.class, events);
+        Instant start = TimeUtils.convertFromEpochSeconds(TimeUtils.getStartOfYearInSeconds(YEAR), 0);
+        for (int i = 0; i < 100; i++) {
+            events.add(makeEvent(ArchDBRTypes.DBR_SCALAR_INT, start.plusMillis(i * 1500L), i, i % 3, i % 5));
+        }
+        Assertions.assertEquals(100, events.size());
+        int i = 0;
+        for (Event event : events) {
+            DBRTimeEvent dbrTimeEvent = (DBRTimeEvent) event;
+            Assertions.assertEquals(start.plusMillis(i * 1500L), event.getEventTimeStamp());
+            Assertions.assertEquals(Integer.valueOf(i), event.getSampleValue().getValue());
+            Assertions.assertEquals(i % 3, dbrTimeEvent.getSeverity());
+            Assertions.assertEquals(i % 5, dbrTimeEvent.getStatus());
+            Assertions.assertEquals(ArchDBRTypes.DBR_SCALAR_INT, event.getDBRType());
+            // The views convert into the PB form
+            Assertions.assertInstanceOf(PBScalarInt.class, event.makeClone());
+            i++;
+        }
+        Assertions.assertEquals(100, i);
+
+        events.clear();
+        Assertions.assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testFieldValuesAreKept() {
+        RemotableEventStreamDesc desc =
+                new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_DOUBLE, "test:columnar", YEAR);
+        ScalarColumnarEventStream events = new ScalarColumnarEventStream(0, desc);
+        Instant start = TimeUtils.convertFromEpochSeconds(TimeUtils.getStartOfYearInSeconds(YEAR), 0);
+        events.add(makeEvent(ArchDBRTypes.DBR_SCALAR_DOUBLE, start, 1.5, 0, 0));
+        PBScalarDouble withFields =
+                (PBScalarDouble) makeEvent(ArchDBRTypes.DBR_SCALAR_DOUBLE, start.plusSeconds(1), 2.5, 0, 0);
+        HashMap<String, String> fields = new HashMap<>();
+        fields.put("HIHI", "10.0");
+        withFields.setFieldValues(fields, true);
+        events.add(withFields);
+
+        Assertions.assertFalse(((DBRTimeEvent) events.get(0)).hasFieldValues());
+        DBRTimeEvent second = (DBRTimeEvent) events.get(1);
+        Assertions.assertTrue(second.hasFieldValues());
+        Assertions.assertTrue(second.isActualChange());
+        Assertions.assertEquals("10.0", second.getFieldValue("HIHI"));
+        Assertions.assertEquals(2.5, second.getSampleValue().getValue().doubleValue());
+    }
+
+    @Test
+    public void testBatchesSplitOnYears() {
+        RemotableEventStreamDesc desc =
+                new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_DOUBLE, "test:columnar", YEAR);
+        ScalarColumnarEventStream events = new ScalarColumnarEventStream(0, desc);
+        long startOfNextYear = TimeUtils.getStartOfYearInSeconds((short) (YEAR + 1));
+        // 1500 events before and 10 events after the new year
+        for (int i = -1500; i < 10; i++) {
+            events.add(makeEvent(
+                    ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                    TimeUtils.convertFromEpochSeconds(startOfNextYear + i, 0),
+                    i,
+                    0,
+                    0));
+        }
+        Iterator<ScalarEventBatch> batches = events.batchIterator();
+        int[] expectedSizes = {1024, 476, 10};
+        short[] expectedYears = {YEAR, YEAR, (short) (YEAR + 1)};
+        int value = -1500;
+        for (int b = 0; b < expectedSizes.length; b++) {
+            Assertions.assertTrue(batches.hasNext());
+            ScalarEventBatch batch = batches.next();
+            Assertions.assertEquals(expectedSizes[b], batch.size());
+            Assertions.assertEquals(expectedYears[b], batch.getYear());
+            for (int j = 0; j < batch.size(); j++) {
+                Assertions.assertEquals(startOfNextYear + value, batch.getEpochSeconds(j));
+                Assertions.assertEquals(value, batch.getValue(j));
+                value++;
+            }
+        }
+        Assertions.assertFalse(batches.hasNext());
+    }
+
+    @Test
+    public void testOtherTypesUseArrayLists() {
+        Assertions.assertInstanceOf(
+                ArrayListEventStream.class,
+                ScalarColumnarEventStream.newEventList(
+                        0, new RemotableEventStreamDesc(ArchDBRTypes.DBR_WAVEFORM_DOUBLE, "test:columnar", YEAR)));
+        Assertions.assertInstanceOf(
+                ArrayListEventStream.class,
+                ScalarColumnarEventStream.newEventList(
+                        0, new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_STRING, "test:columnar", YEAR)));
+    }
+}
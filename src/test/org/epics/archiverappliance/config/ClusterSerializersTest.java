@@ -0,0 +1,151 @@
+package org.epics.archiverappliance.config;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.pubsub.PubSubEvent;
+import org.epics.archiverappliance.mgmt.policy.PolicyConfig.SamplingMethod;
+import org.epics.archiverappliance.utils.ui.JSONEncoder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.function.Function;
+
+/**
+ * Round trip the objects we share in the cluster through the serializers in {@link ClusterSerializers}
+ * and check the near cache of typeinfos.
+ */
+public class ClusterSerializersTest {
+    private InternalSerializationService serializationService;
+
+    @BeforeEach
+    public void setUp() {
+        SerializationConfig serializationConfig = new SerializationConfig();
+        ClusterSerializers.register(serializationConfig);
+        serializationService = new DefaultSerializationServiceBuilder()
+                .setConfig(serializationConfig)
+                .build();
+    }
+
+    public static PVTypeInfo makeTypeInfo(String pvName) {
+        PVTypeInfo typeInfo = new PVTypeInfo(pvName, ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1);
+        typeInfo.setApplianceIdentity("appliance0");
+        typeInfo.setChunkKey(pvName.replace(':', '/') + ":");
+        typeInfo.setHostName("ioc0");
+        typeInfo.setUpperDisplayLimit(100.0);
+        typeInfo.setLowerDisplayLimit(-100.0);
+        typeInfo.setPrecision(3.0);
+        typeInfo.setUnits("mm");
+        typeInfo.setComputedEventRate(1.5f);
+        typeInfo.setCreationTime(TimeUtils.now());
+        typeInfo.setModificationTime(TimeUtils.now());
+        typeInfo.setSamplingMethod(SamplingMethod.MONITOR);
+        typeInfo.setSamplingPeriod(1.0f);
+        typeInfo.setPolicyName("default");
+        typeInfo.setDataStores(new String[] {"pb://localhost?name=STS", "pb://localhost?name=MTS"});
+        typeInfo.getExtraFields().put("ADEL", "0.1");
+        typeInfo.setArchiveFields(new String[] {"HIHI", "LOLO"});
+        typeInfo.setUsePVAccess(true);
+        return typeInfo;
+    }
+
+    @Test
+    public void testPVTypeInfoRoundTrip() throws Exception {
+        PVTypeInfo typeInfo = makeTypeInfo("test:serializers");
+        Data data = serializationService.toData(typeInfo);
+        PVTypeInfo readTypeInfo = serializationService.toObject(data);
+        JSONEncoder<PVTypeInfo> jsonEncoder = JSONEncoder.getEncoder(PVTypeInfo.class);
+        Assertions.assertEquals(jsonEncoder.encode(typeInfo), jsonEncoder.encode(readTypeInfo));
+        Assertions.assertEquals(jsonEncoder.encode(typeInfo), jsonEncoder.encode(typeInfo.copy()));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(typeInfo);
+        }
+        Assertions.assertTrue(
+                data.totalSize() < bos.size(),
+                "Encoded typeinfo is " + data.totalSize() + " bytes; Java serialization is " + bos.size() + " bytes");
+
+        // Typeinfos with the fields that are not set.
+        PVTypeInfo emptyTypeInfo = new PVTypeInfo();
+        PVTypeInfo readEmptyTypeInfo = serializationService.toObject(serializationService.toData(emptyTypeInfo));
+        Assertions.assertNull(readEmptyTypeInfo.getPvName());
+        Assertions.assertNull(readEmptyTypeInfo.getDBRType());
+        Assertions.assertNull(readEmptyTypeInfo.getCreationTime());
+        Assertions.assertEquals(0, readEmptyTypeInfo.getDataStores().length);
+    }
+
+    @Test
+    public void testApplianceInfoAndPubSubEventRoundTrip() {
+        ApplianceInfo applianceInfo = new ApplianceInfo(
+                "appliance0",
+                "http://localhost:17665/mgmt/bpl",
+                "http://localhost:17666/engine/bpl",
+                "http://localhost:17667/retrieval/bpl",
+                "http://localhost:17668/etl/bpl",
+                "localhost:16670",
+                "http://localhost:17669/retrieval");
+        ApplianceInfo readApplianceInfo = serializationService.toObject(serializationService.toData(applianceInfo));
+        Assertions.assertEquals(applianceInfo.getIdentity(), readApplianceInfo.getIdentity());
+        Assertions.assertEquals(applianceInfo.getMgmtURL(), readApplianceInfo.getMgmtURL());
+        Assertions.assertEquals(applianceInfo.getEngineURL(), readApplianceInfo.getEngineURL());
+        Assertions.assertEquals(applianceInfo.getRetrievalURL(), readApplianceInfo.getRetrievalURL());
+        Assertions.assertEquals(applianceInfo.getEtlURL(), readApplianceInfo.getEtlURL());
+        Assertions.assertEquals(applianceInfo.getClusterInetPort(), readApplianceInfo.getClusterInetPort());
+        Assertions.assertEquals(applianceInfo.getDataRetrievalURL(), readApplianceInfo.getDataRetrievalURL());
+
+        PubSubEvent pubSubEvent = new PubSubEvent("ComputeMetaInfo", "appliance1_engine", "test:pubsub");
+        pubSubEvent.setSource("appliance0");
+        pubSubEvent.setEventData("{\"key\": \"value\"}");
+        PubSubEvent readPubSubEvent = serializationService.toObject(serializationService.toData(pubSubEvent));
+        Assertions.assertEquals(pubSubEvent.generateEventDescription(), readPubSubEvent.generateEventDescription());
+        Assertions.assertEquals(pubSubEvent.getEventData(), readPubSubEvent.getEventData());
+    }
+
+    @Test
+    public void testNearCache() {
+        PVTypeInfoNearCache nearCache = new PVTypeInfoNearCache();
+        PVTypeInfo[] clusterValue = {makeTypeInfo("test:nearCache")};
+        int[] lookups = {0};
+        Function<String, PVTypeInfo> loader = pvName -> {
+            lookups[0]++;
+            return clusterValue[0] == null ? null : clusterValue[0].copy();
+        };
+
+        Assertions.assertEquals("appliance0", nearCache.get("test:nearCache", loader).getApplianceIdentity());
+        PVTypeInfo cached = nearCache.get("test:nearCache", loader);
+        Assertions.assertEquals(1, lookups[0]);
+        Assertions.assertEquals(1, nearCache.getHits());
+
+        // Changing what we get back should not change the cache.
+        cached.setApplianceIdentity("changedLocally");
+        Assertions.assertEquals("appliance0", nearCache.get("test:nearCache", loader).getApplianceIdentity());
+
+        clusterValue[0].setApplianceIdentity("appliance1");
+        nearCache.invalidate("test:nearCache");
+        Assertions.assertEquals("appliance1", nearCache.get("test:nearCache", loader).getApplianceIdentity());
+        Assertions.assertEquals(2, lookups[0]);
+
+        // PVs without a typeinfo are not cached
+        clusterValue[0] = null;
+        nearCache.invalidate("test:nearCache");
+        Assertions.assertNull(nearCache.get("test:nearCache", loader));
+        Assertions.assertNull(nearCache.get("test:nearCache", loader));
+        Assertions.assertEquals(4, lookups[0]);
+        Assertions.assertEquals(0, nearCache.size());
+
+        // An invalidation while we are looking up the value should not leave the old value in the cache.
+        clusterValue[0] = makeTypeInfo("test:nearCache");
+        nearCache.get("test:nearCache", pvName -> {
+            PVTypeInfo oldValue = loader.apply(pvName);
+            nearCache.invalidate(pvName);
+            return oldValue;
+        });
+        Assertions.assertEquals(0, nearCache.size());
+    }
+}
@@ -0,0 +1,98 @@
+package org.epics.archiverappliance.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Compare regex searches using the trigram index with brute force matching.
+ */
+public class PVNameIndexTest {
+    private static final String[] REGEXES = {
+        "XCOR.*",
+        ".*:BDES",
+        "XCOR:LI2[0-9]:.*:BDES",
+        "BPMS:LI21:[0-9]+:X",
+        "BPMS:LI21:2(0|1)1:X",
+        "BPMS:LI2?1:.*",
+        "BPMS:LI21:201:Xy?",
+        "BPMS:LI21:20{0,1}1:X",
+        "BPMS:LI21:201:X|XCOR:LI21:201:BDES",
+        "(?i)bpms:li21:201:x",
+        "\\QBPMS:LI21:201:X\\E",
+        "BPMS\\:LI21\\:\\d+\\:X",
+        "[XB][CP][OM][RS]:LI21:.*",
+        "BPMS:LI21:[]x]*201:X",
+        ".*",
+        "ABC",
+        "AB",
+        "nothing:matches:this",
+    };
+
+    private static List<String> makeNames(int count) {
+        Random random = new Random(42);
+        String[] devices = {"BPMS", "XCOR", "YCOR", "KLYS", "QUAD"};
+        String[] attributes = {"X", "Y", "TMIT", "BDES", "BACT", "BCTRL"};
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            names.add(devices[random.nextInt(devices.length)] + ":LI" + (20 + random.nextInt(10)) + ":"
+                    + (100 * (1 + random.nextInt(9)) + random.nextInt(3)) + ":"
+                    + attributes[random.nextInt(attributes.length)]);
+        }
+        names.add("AB");
+        names.add("ABC");
+        return names;
+    }
+
+    private static Set<String> bruteForce(Set<String> names, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        Set<String> ret = new HashSet<String>();
+        for (String name : names) {
+            if (pattern.matcher(name).matches()) ret.add(name);
+        }
+        return ret;
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        PVNameIndex index = new PVNameIndex();
+        Set<String> names = new HashSet<String>(makeNames(20000));
+        names.forEach(index::add);
+        Assertions.assertEquals(names.size(), index.size());
+        for (String regex : REGEXES) {
+            Assertions.assertEquals(bruteForce(names, regex), index.getNamesMatchingRegex(regex), regex);
+        }
+
+        // Remove half the names and then add some of them back; the ids of the removed names get reused.
+        List<String> nameList = new ArrayList<String>(names);
+        for (int i = 0; i < nameList.size(); i += 2) {
+            index.remove(nameList.get(i));
+            names.remove(nameList.get(i));
+        }
+        for (int i = 0; i < nameList.size(); i += 4) {
+            index.add(nameList.get(i));
+            names.add(nameList.get(i));
+        }
+        Assertions.assertEquals(names.size(), index.size());
+        for (String regex : REGEXES) {
+            Assertions.assertEquals(bruteForce(names, regex), index.getNamesMatchingRegex(regex), regex);
+        }
+    }
+
+    @Test
+    public void testRequiredLiterals() {
+        Assertions.assertEquals(List.of("XCOR:LI2", ":BDES"), PVNameIndex.requiredLiterals("XCOR:LI2[0-9]:.*:BDES"));
+        Assertions.assertEquals(List.of("BPMS:LI", "1:X"), PVNameIndex.requiredLiterals("BPMS:LI2?1:X"));
+        Assertions.assertEquals(List.of("BPMS:LI21:2", "1:X"), PVNameIndex.requiredLiterals("BPMS:LI21:2(0|1)1:X"));
+        Assertions.assertEquals(List.of("BPMS:LI21:"), PVNameIndex.requiredLiterals("BPMS\\:LI21\\:\\d+\\:X"));
+        Assertions.assertEquals(List.of(), PVNameIndex.requiredLiterals("BPMS:LI21:201:X|XCOR:LI21:201:BDES"));
+        Assertions.assertEquals(List.of(), PVNameIndex.requiredLiterals("(?i)bpms:li21:201:x"));
+        Assertions.assertEquals(List.of(), PVNameIndex.requiredLiterals(".*"));
+    }
+}
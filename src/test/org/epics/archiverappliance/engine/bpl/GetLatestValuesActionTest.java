@@ -0,0 +1,158 @@
+package org.epics.archiverappliance.engine.bpl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigService;
+import org.epics.archiverappliance.config.PVTypeInfo;
+import org.epics.archiverappliance.data.DBRTimeEvent;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.engine.model.ArchiveChannel;
+import org.epics.archiverappliance.engine.pv.EngineContext;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Test the names we resolve and the JSON we return in {@link GetLatestValuesAction}.
+ * The engine is mocked; the channels are keyed by the real PV name as in the engine's channel list.
+ */
+class GetLatestValuesActionTest {
+    private final Instant now = TimeUtils.convertFromEpochSeconds(TimeUtils.getCurrentEpochSeconds(), 123456789);
+    private ConfigService configService;
+    private final ConcurrentHashMap<String, ArchiveChannel> channelList = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        configService = mock(ConfigService.class);
+        EngineContext engineContext = mock(EngineContext.class);
+        when(configService.getEngineContext()).thenReturn(engineContext);
+        when(engineContext.getChannelList()).thenReturn(channelList);
+
+        // A PV with a value that also archives its HIHI field as part of the PV.
+        PVTypeInfo typeInfoA = new PVTypeInfo("TEST:A", ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1);
+        typeInfoA.addArchiveField("HIHI");
+        when(configService.getTypeInfoForPV("TEST:A")).thenReturn(typeInfoA);
+        channelList.put("TEST:A", makeChannel(makeEvent(1.5, 3, 2)));
+        when(configService.getRealNameForAlias("TEST:ALIAS")).thenReturn("TEST:A");
+
+        // A field that is archived as a PV of its own
+        channelList.put("TEST:B.HIHI", makeChannel(makeEvent(10.0, 0, 0)));
+
+        // A PV that has connected but has not archived a value yet
+        when(configService.getTypeInfoForPV("TEST:NOVALUE"))
+                .thenReturn(new PVTypeInfo("TEST:NOVALUE", ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1));
+        channelList.put("TEST:NOVALUE", makeChannel(null));
+
+        // A PV that is archived by another appliance
+        when(configService.getTypeInfoForPV("TEST:ELSEWHERE"))
+                .thenReturn(new PVTypeInfo("TEST:ELSEWHERE", ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1));
+    }
+
+    private DBRTimeEvent makeEvent(double value, int status, int severity) {
+        return (DBRTimeEvent) new POJOEvent(
+                        ArchDBRTypes.DBR_SCALAR_DOUBLE, now, new ScalarValue<Double>(value), status, severity)
+                .makeClone();
+    }
+
+    private static ArchiveChannel makeChannel(DBRTimeEvent lastValue) {
+        ArchiveChannel channel = mock(ArchiveChannel.class);
+        when(channel.getLastArchivedValue()).thenReturn(lastValue);
+        return channel;
+    }
+
+    private JSONObject getLatestValues(String pvNamesJson) throws IOException {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getContentType()).thenReturn("application/json");
+        when(req.getMethod()).thenReturn("POST");
+        ByteArrayInputStream body = new ByteArrayInputStream(pvNamesJson.getBytes(StandardCharsets.UTF_8));
+        when(req.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() {
+                return body.read();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return body.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {}
+        });
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {}
+        });
+
+        new GetLatestValuesAction().execute(req, resp, configService);
+        return (JSONObject) JSONValue.parse(bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testValuesAreKeyedByTheRequestedName() throws IOException {
+        JSONObject latestValues = getLatestValues("[\"TEST:A\", \"TEST:ALIAS\", \"TEST:B.HIHI\"]");
+        assertEquals(Set.of("TEST:A", "TEST:ALIAS", "TEST:B.HIHI"), latestValues.keySet());
+
+        JSONObject value = (JSONObject) latestValues.get("TEST:A");
+        assertEquals(now.getEpochSecond(), ((Number) value.get("secs")).longValue());
+        assertEquals(now.getNano(), ((Number) value.get("nanos")).intValue());
+        assertEquals(1.5, ((Number) value.get("val")).doubleValue());
+        assertEquals(2, ((Number) value.get("severity")).intValue());
+        assertEquals(3, ((Number) value.get("status")).intValue());
+
+        assertEquals(value, latestValues.get("TEST:ALIAS"), "An alias should return the value of the real PV");
+        assertEquals(10.0, ((Number) ((JSONObject) latestValues.get("TEST:B.HIHI")).get("val")).doubleValue());
+    }
+
+    @Test
+    void testPVsWithoutValuesAreLeftOut() throws IOException {
+        JSONObject latestValues = getLatestValues(
+                "[\"TEST:MISSING\", \"TEST:NOVALUE\", \"TEST:ELSEWHERE\", \"TEST:A.HIHI\", \"TEST:A\"]");
+        // TEST:A.HIHI is archived as part of TEST:A; the last value of the channel is not the value of the field.
+        assertEquals(Set.of("TEST:A"), latestValues.keySet());
+    }
+
+    @Test
+    void testNoValues() throws IOException {
+        assertEquals(0, getLatestValues("[\"TEST:MISSING\"]").size());
+        assertEquals(0, getLatestValues("[]").size());
+    }
+}
@@ -0,0 +1,108 @@
+package org.epics.archiverappliance.engine.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.HashMapEvent;
+import org.epics.archiverappliance.engine.model.SampleBuffer;
+import org.epics.archiverappliance.engine.pv.PVMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+/**
+ * Unit tests for the reuse of the double buffers in {@link SampleBuffer}.
+ * A buffer is only reused once the writer has released it using {@link SampleBuffer#releasePreviousSamples}.
+ */
+class SampleBufferReuseTest {
+
+    private static SampleBuffer makeBuffer(String name) {
+        return new SampleBuffer(
+                name,
+                10,
+                ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                new PVMetrics(name, null, -1, ArchDBRTypes.DBR_SCALAR_DOUBLE));
+    }
+
+    private static HashMapEvent makeEvent(double value) {
+        HashMap<String, Object> attrs = new HashMap<>();
+        attrs.put(HashMapEvent.SECS_FIELD_NAME, Long.toString(TimeUtils.getCurrentEpochSeconds()));
+        attrs.put(HashMapEvent.NANO_FIELD_NAME, "0");
+        attrs.put(HashMapEvent.VALUE_FIELD_NAME, value);
+        return new HashMapEvent(ArchDBRTypes.DBR_SCALAR_DOUBLE, attrs);
+    }
+
+    @Test
+    void releasedBufferIsReused() {
+        SampleBuffer buffer = makeBuffer("TEST:REUSE");
+        buffer.add(makeEvent(1.0));
+        buffer.resetSamples();
+        ArrayListEventStream first = buffer.getPreviousSamples();
+        assertEquals(1, first.size());
+        buffer.releasePreviousSamples(first);
+
+        buffer.add(makeEvent(2.0));
+        buffer.resetSamples();
+        assertSame(first, buffer.getCurrentSamples(), "A released buffer should be reused as the current buffer");
+        assertTrue(buffer.getCurrentSamples().isEmpty(), "A reused buffer should be cleared");
+        assertEquals(TimeUtils.getCurrentYear(), buffer.getCurrentSamples().getYear());
+        assertEquals(1, buffer.getPreviousSamples().size());
+    }
+
+    @Test
+    void unreleasedBufferIsNotReused() {
+        SampleBuffer buffer = makeBuffer("TEST:NOREUSE");
+        buffer.add(makeEvent(1.0));
+        buffer.resetSamples();
+        ArrayListEventStream inFlight = buffer.getPreviousSamples();
+
+        buffer.add(makeEvent(2.0));
+        buffer.resetSamples();
+        assertNotSame(inFlight, buffer.getCurrentSamples(), "A buffer still held by the writer must not be reused");
+        assertEquals(1, inFlight.size(), "The samples held by the writer must not be cleared");
+
+        // Releasing a stale buffer should not allow the current previous buffer to be reused.
+        buffer.releasePreviousSamples(inFlight);
+        ArrayListEventStream previous = buffer.getPreviousSamples();
+        buffer.resetSamples();
+        assertNotSame(previous, buffer.getCurrentSamples());
+        assertEquals(1, previous.size());
+    }
+
+    @Test
+    void yearChangeListenerIsCalledOnce() throws Exception {
+        SampleBuffer buffer = makeBuffer("TEST:YEARCHANGE");
+        int[] yearChanges = {0};
+        buffer.addYearListener(changed -> {
+            yearChanges[0]++;
+            changed.releasePreviousSamples(changed.resetSamples());
+        });
+        buffer.add(makeEvent(1.0));
+        HashMap<String, Object> attrs = new HashMap<>();
+        attrs.put(HashMapEvent.SECS_FIELD_NAME, Long.toString(TimeUtils.getStartOfYearInSeconds(TimeUtils.getCurrentYear() + 1) + 10));
+        attrs.put(HashMapEvent.NANO_FIELD_NAME, "0");
+        attrs.put(HashMapEvent.VALUE_FIELD_NAME, 2.0);
+        HashMapEvent nextYear = new HashMapEvent(ArchDBRTypes.DBR_SCALAR_DOUBLE, attrs);
+        buffer.add(nextYear);
+        buffer.add(nextYear);
+        assertEquals(1, yearChanges[0]);
+        assertEquals(2, buffer.getCurrentSamples().size());
+        assertEquals(TimeUtils.getCurrentYear() + 1, buffer.getCurrentSamples().getYear());
+    }
+
+    @Test
+    void emptyBufferReleasedByTheWriterIsReused() {
+        SampleBuffer buffer = makeBuffer("TEST:EMPTYREUSE");
+        // The writer releases the buffers it does not write (for example, if they are empty).
+        ArrayListEventStream empty = buffer.resetSamples();
+        assertSame(empty, buffer.getPreviousSamples());
+        buffer.releasePreviousSamples(empty);
+        buffer.resetSamples();
+        assertSame(empty, buffer.getCurrentSamples());
+    }
+}
@@ -0,0 +1,284 @@
+package org.epics.archiverappliance.engine.test;
+
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarDouble;
+import edu.stanford.slac.archiverappliance.PB.data.PBTypeSystem;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigServiceForTests;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.engine.writer.WriteAheadLog;
+import org.epics.archiverappliance.utils.simulation.SimulationEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test that samples logged in the engine's write ahead log are replayed after a crash and that checkpointed segments
+ * are not replayed.
+ */
+public class WriteAheadLogTest {
+    private static final Logger logger = LogManager.getLogger(WriteAheadLogTest.class.getName());
+    private final File walFolder = new File(
+            ConfigServiceForTests.getDefaultPBTestFolder() + File.separator + WriteAheadLogTest.class.getSimpleName());
+    private final short currentYear = TimeUtils.getCurrentYear();
+    private int defaultSegmentSize;
+    private int defaultStripes;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(walFolder);
+        defaultSegmentSize = WriteAheadLog.SEGMENT_SIZE;
+        defaultStripes = WriteAheadLog.STRIPES;
+        // Small segments so that we roll over while appending.
+        WriteAheadLog.SEGMENT_SIZE = 16 * 1024;
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        WriteAheadLog.SEGMENT_SIZE = defaultSegmentSize;
+        WriteAheadLog.STRIPES = defaultStripes;
+        FileUtils.deleteDirectory(walFolder);
+    }
+
+    private PBScalarDouble makeEvent(int secondsIntoYear) {
+        return new PBScalarDouble(new SimulationEvent(
+                secondsIntoYear,
+                currentYear,
+                ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                new ScalarValue<Double>((double) secondsIntoYear)));
+    }
+
+    private static void log(WriteAheadLog.ChannelLog channelLog, PBScalarDouble event) {
+        channelLog.markUnflushed(channelLog.append(event));
+    }
+
+    private HashMap<String, List<Event>> replay(WriteAheadLog wal) {
+        HashMap<String, List<Event>> replayed = new HashMap<>();
+        wal.replay(new PBTypeSystem(), (pvName, samples) -> {
+            Assertions.assertEquals(currentYear, samples.getYear());
+            replayed.computeIfAbsent(pvName, k -> new ArrayList<>()).addAll(samples);
+        });
+        return replayed;
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(walFolder.toPath());
+        WriteAheadLog.ChannelLog first = wal.register("test:wal:first", ArchDBRTypes.DBR_SCALAR_DOUBLE);
+        WriteAheadLog.ChannelLog second = wal.register("test:wal:second", ArchDBRTypes.DBR_SCALAR_DOUBLE);
+        for (int i = 0; i < 1000; i++) {
+            log(first, makeEvent(i));
+            log(second, makeEvent(i * 2));
+        }
+        // Samples of the wrong type are not logged.
+        Assertions.assertEquals(
+                WriteAheadLog.NO_SEGMENT,
+                wal.register("test:wal:int", ArchDBRTypes.DBR_SCALAR_INT).append(makeEvent(0)));
+        Assertions.assertTrue(walFolder.list().length > 1, "Expected the log to roll over into more segments");
+
+        // We do not close the log; this is what we'd see after a crash.
+        WriteAheadLog recovered = WriteAheadLog.open(walFolder.toPath());
+        Assertions.assertTrue(recovered.hasSegmentsToReplay());
+        HashMap<String, List<Event>> replayed = replay(recovered);
+        Assertions.assertEquals(2, replayed.size());
+        List<Event> firstSamples = replayed.get("test:wal:first");
+        List<Event> secondSamples = replayed.get("test:wal:second");
+        Assertions.assertEquals(1000, firstSamples.size());
+        Assertions.assertEquals(1000, secondSamples.size());
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(makeEvent(i).getEventTimeStamp(), firstSamples.get(i).getEventTimeStamp());
+            Assertions.assertEquals(
+                    i * 2.0, secondSamples.get(i).getSampleValue().getValue().doubleValue());
+        }
+
+        // The replayed segments are deleted
+        Assertions.assertFalse(recovered.hasSegmentsToReplay());
+        recovered.close();
+        Assertions.assertEquals(0, walFolder.list().length);
+    }
+
+    @Test
+    public void testCheckpointedSegmentsAreNotReplayed() throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(walFolder.toPath());
+        WriteAheadLog.ChannelLog flushed = wal.register("test:wal:flushed", ArchDBRTypes.DBR_SCALAR_DOUBLE);
+        WriteAheadLog.ChannelLog deferred = wal.register("test:wal:deferred", ArchDBRTypes.DBR_SCALAR_DOUBLE);
+        for (int i = 0; i < 500; i++) {
+            log(flushed, makeEvent(i));
+        }
+        log(deferred, makeEvent(0));
+
+        // A write cycle that writes out the first channel but not the second.
+        long rolledSegment = wal.roll();
+        flushed.aboutToFlush();
+        wal.checkpoint(Math.min(
+                rolledSegment,
+                Math.min(flushed.getOldestUnflushedSegment(), deferred.getOldestUnflushedSegment())));
+        for (int i = 500; i < 510; i++) {
+            log(flushed, makeEvent(i));
+        }
+
+        WriteAheadLog recovered = WriteAheadLog.open(walFolder.toPath());
+        HashMap<String, List<Event>> replayed = replay(recovered);
+        // The segments with the deferred channel's sample are kept; we may replay some of the flushed samples again.
+        Assertions.assertEquals(1, replayed.get("test:wal:deferred").size());
+        Assertions.assertTrue(replayed.get("test:wal:flushed").size() >= 10);
+
+        // Once both channels are written out, everything before the current segment is deleted.
+        WriteAheadLog.ChannelLog afterRecovery =
+                recovered.register("test:wal:flushed", ArchDBRTypes.DBR_SCALAR_DOUBLE);
+        log(afterRecovery, makeEvent(600));
+        rolledSegment = recovered.roll();
+        afterRecovery.aboutToFlush();
+        recovered.checkpoint(Math.min(rolledSegment, afterRecovery.getOldestUnflushedSegment()));
+        recovered.close();
+        Assertions.assertEquals(0, walFolder.list().length);
+    }
+
+    private Path segmentPath(long segmentId) {
+        return walFolder.toPath().resolve(String.format("%020d", segmentId) + WriteAheadLog.SEGMENT_EXTENSION);
+    }
+
+    /**
+     * Segments are unmapped when they are deleted; otherwise the mappings (and the blocks of the deleted files) are kept
+     * till the buffers are garbage collected. We look for the mappings in /proc/self/maps; so this only runs on Linux.
+     */
+    @Test
+    public void testDeletedSegmentsAreUnmapped() throws IOException {
+        Path procMaps = Path.of("/proc/self/maps");
+        Assumptions.assumeTrue(Files.isReadable(procMaps), "This needs /proc/self/maps");
+        WriteAheadLog.STRIPES = 1;
+        WriteAheadLog wal = WriteAheadLog.open(walFolder.toPath());
+        WriteAheadLog.ChannelLog channelLog = wal.register("test:wal:unmap", ArchDBRTypes.DBR_SCALAR_DOUBLE);
+        List<Long> segmentIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            segmentIds.add(channelLog.append(makeEvent(i)));
+            wal.roll();
+        }
+        Assertions.assertTrue(isMapped(procMaps, segmentIds.get(0)), "The segments should be mapped while in use");
+        wal.checkpoint(wal.roll());
+        for (long segmentId : segmentIds) {
+            Assertions.assertFalse(Files.exists(segmentPath(segmentId)));
+            Assertions.assertFalse(isMapped(procMaps, segmentId), "Segment " + segmentId + " is still mapped");
+        }
+        long currentSegment = segmentIds.get(segmentIds.size() - 1) + 1;
+        Assertions.assertTrue(isMapped(procMaps, currentSegment), "The current segment should still be mapped");
+        wal.close();
+        Assertions.assertFalse(isMapped(procMaps, currentSegment), "Closing the log should release the mappings");
+    }
+
+    private boolean isMapped(Path procMaps, long segmentId) throws IOException {
+        String segmentFile = walFolder.getName() + File.separator + segmentPath(segmentId).getFileName();
+        return Files.readString(procMaps).contains(segmentFile);
+    }
+
+    @Test
+    public void testBackgroundFlushKeepsItsSegment() throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(walFolder.toPath());
+        WriteAheadLog.ChannelLog channelLog = wal.register("test:wal:yearchange", ArchDBRTypes.DBR_SCALAR_DOUBLE);
+        long segmentId = channelLog.append(makeEvent(0));
+        channelLog.markUnflushed(segmentId);
+
+        // A year change write is started; the write cycles that run while it is in flight do not have its samples.
+        Assertions.assertEquals(segmentId, channelLog.aboutToFlushInBackground());
+        for (int i = 0; i < 2; i++) {
+            long rolledSegment = wal.roll();
+            channelLog.aboutToFlush();
+            wal.checkpoint(Math.min(rolledSegment, channelLog.getOldestUnflushedSegment()));
+            log(channelLog, makeEvent(i + 1));
+        }
+        Assertions.assertTrue(Files.exists(segmentPath(segmentId)), "The segment of a write in flight was deleted");
+
+        // The write failed; we still keep the segment.
+        channelLog.backgroundFlushDone(segmentId, false);
+        Assertions.assertEquals(segmentId, channelLog.getOldestUnflushedSegment());
+        wal.checkpoint(Math.min(wal.roll(), channelLog.getOldestUnflushedSegment()));
+        Assertions.assertTrue(Files.exists(segmentPath(segmentId)));
+
+        // Once the samples are written, the segment is deleted in the next checkpoint.
+        Assertions.assertEquals(segmentId, channelLog.aboutToFlushInBackground());
+        channelLog.backgroundFlushDone(segmentId, true);
+        Assertions.assertEquals(WriteAheadLog.NO_SEGMENT, channelLog.getOldestUnflushedSegment());
+        wal.checkpoint(wal.roll());
+        Assertions.assertFalse(Files.exists(segmentPath(segmentId)));
+        wal.close();
+    }
+
+    /**
+     * Many CA/PVA callback threads log samples at the same time; check that none of the samples are lost or reordered
+     * and log the throughput with one stripe and with the default number of stripes.
+     */
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        WriteAheadLog.SEGMENT_SIZE = 1024 * 1024;
+        int writers = 16;
+        int samplesPerWriter = 20000;
+        for (int stripes : new int[] {1, defaultStripes}) {
+            WriteAheadLog.STRIPES = stripes;
+            FileUtils.deleteDirectory(walFolder);
+            WriteAheadLog wal = WriteAheadLog.open(walFolder.toPath());
+            List<WriteAheadLog.ChannelLog> channelLogs = new ArrayList<>();
+            List<PBScalarDouble> events = new ArrayList<>();
+            for (int i = 0; i < samplesPerWriter; i++) {
+                events.add(makeEvent(i));
+            }
+            for (int w = 0; w < writers; w++) {
+                channelLogs.add(wal.register("test:wal:concurrent:" + w, ArchDBRTypes.DBR_SCALAR_DOUBLE));
+            }
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+                for (WriteAheadLog.ChannelLog channelLog : channelLogs) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        for (PBScalarDouble event : events) {
+                            log(channelLog, event);
+                        }
+                        return null;
+                    }));
+                }
+                long startNanos = System.nanoTime();
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+                logger.info(
+                        "Logged {} samples from {} threads into {} stripes at {} samples/s",
+                        writers * samplesPerWriter,
+                        writers,
+                        stripes,
+                        (long) (writers * samplesPerWriter / seconds));
+            }
+
+            // We do not close the log; replay what a crash would leave behind.
+            HashMap<String, List<Event>> replayed = replay(WriteAheadLog.open(walFolder.toPath()));
+            Assertions.assertEquals(writers, replayed.size());
+            for (List<Event> samples : replayed.values()) {
+                Assertions.assertEquals(samplesPerWriter, samples.size());
+                for (int i = 0; i < samplesPerWriter; i++) {
+                    Assertions.assertEquals(
+                            (double) i, samples.get(i).getSampleValue().getValue().doubleValue());
+                }
+            }
+        }
+    }
+}
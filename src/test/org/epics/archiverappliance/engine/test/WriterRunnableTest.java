@@ -9,6 +9,7 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarDouble;
 import org.epics.archiverappliance.Event;
 import org.epics.archiverappliance.EventStream;
 import org.epics.archiverappliance.Writer;
@@ -17,14 +18,20 @@ import org.epics.archiverappliance.common.TimeUtils;
 import org.epics.archiverappliance.config.ArchDBRTypes;
 import org.epics.archiverappliance.config.ConfigService;
 import org.epics.archiverappliance.data.HashMapEvent;
+import org.epics.archiverappliance.data.ScalarValue;
 import org.epics.archiverappliance.engine.model.ArchiveChannel;
 import org.epics.archiverappliance.engine.model.SampleBuffer;
 import org.epics.archiverappliance.engine.pv.EngineContext;
 import org.epics.archiverappliance.engine.pv.PVMetrics;
+import org.epics.archiverappliance.engine.writer.WriteAheadLog;
 import org.epics.archiverappliance.engine.writer.WriterRunnable;
+import org.epics.archiverappliance.utils.simulation.SimulationEvent;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -65,6 +72,11 @@ class WriterRunnableTest {
      */
     private ConfigService buildConfigService(
             ConcurrentHashMap<String, ArchiveChannel> channelList, int writeThreadCount) {
+        return buildConfigService(channelList, writeThreadCount, false);
+    }
+
+    private ConfigService buildConfigService(
+            ConcurrentHashMap<String, ArchiveChannel> channelList, int writeThreadCount, boolean adaptive) {
         EngineContext engineContext = mock(EngineContext.class);
         when(engineContext.getChannelList()).thenReturn(channelList);
         when(engineContext.getWriteThreadCount()).thenReturn(writeThreadCount);
@@ -72,6 +84,7 @@ class WriterRunnableTest {
         Properties props = new Properties();
         props.setProperty(
                 "org.epics.archiverappliance.engine.epics.writeThreadCount", Integer.toString(writeThreadCount));
+        props.setProperty("org.epics.archiverappliance.engine.epics.adaptiveWritePeriod", Boolean.toString(adaptive));
 
         ConfigService configService = mock(ConfigService.class);
         when(configService.getEngineContext()).thenReturn(engineContext);
@@ -507,6 +520,90 @@ class WriterRunnableTest {
         verify(channel).aboutToWriteBuffer(any());
     }
 
+    /**
+     * The year change write is not waited for by the write cycle; the write cycles that run while it is in flight must
+     * not delete the segment of the write ahead log with its samples.
+     */
+    @Test
+    void testYearChangeWriteKeepsItsSegmentInTheWriteAheadLog(@TempDir Path walFolder) throws Exception {
+        CountDownLatch yearChangeWriteStarted = new CountDownLatch(1);
+        CountDownLatch finishYearChangeWrite = new CountDownLatch(1);
+        AtomicInteger writeCount = new AtomicInteger(0);
+        Writer blockingWriter = new Writer() {
+            @Override
+            public int appendData(BasicContext ctx, String pvName, EventStream stream) {
+                if (writeCount.getAndIncrement() == 0) {
+                    yearChangeWriteStarted.countDown();
+                    try {
+                        finishYearChangeWrite.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return 0;
+            }
+
+            @Override
+            public Event getLastKnownEvent(BasicContext ctx, String pvName) {
+                return null;
+            }
+        };
+
+        String name = "TEST:YEARCHANGE:WAL";
+        SampleBuffer buffer = new SampleBuffer(
+                name,
+                10,
+                ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                new PVMetrics(name, null, -1, ArchDBRTypes.DBR_SCALAR_DOUBLE));
+        WriteAheadLog wal = WriteAheadLog.open(walFolder);
+        WriteAheadLog.ChannelLog walLog = wal.register(name, ArchDBRTypes.DBR_SCALAR_DOUBLE);
+
+        ArchiveChannel channel = mock(ArchiveChannel.class);
+        when(channel.getName()).thenReturn(name);
+        when(channel.getSampleBuffer()).thenReturn(buffer);
+        when(channel.getWriter()).thenReturn(blockingWriter);
+        when(channel.getWALLog()).thenReturn(walLog);
+
+        ConcurrentHashMap<String, ArchiveChannel> channelList = new ConcurrentHashMap<>();
+        channelList.put(name, channel);
+        ConfigService configService = buildConfigService(channelList, 0);
+        when(configService.getEngineContext().getWriteAheadLog()).thenReturn(wal);
+        WriterRunnable writerRunnable = new WriterRunnable(configService);
+        writerRunnable.addChannel(channel);
+
+        // Log and buffer a sample as ArchiveChannel does; the next year's sample goes into a newer segment.
+        short currentYear = TimeUtils.getCurrentYear();
+        PBScalarDouble thisYear = new PBScalarDouble(new SimulationEvent(
+                0, currentYear, ArchDBRTypes.DBR_SCALAR_DOUBLE, new ScalarValue<Double>(1.0)));
+        long yearChangeSegment = walLog.append(thisYear);
+        buffer.add(thisYear);
+        walLog.markUnflushed(yearChangeSegment);
+        wal.roll();
+        PBScalarDouble nextYear = new PBScalarDouble(new SimulationEvent(
+                0, (short) (currentYear + 1), ArchDBRTypes.DBR_SCALAR_DOUBLE, new ScalarValue<Double>(2.0)));
+        long nextYearSegment = walLog.append(nextYear);
+        buffer.add(nextYear);
+        walLog.markUnflushed(nextYearSegment);
+        assertTrue(yearChangeWriteStarted.await(5, TimeUnit.SECONDS), "Year-change write should start");
+
+        Path segmentPath =
+                walFolder.resolve(String.format("%020d", yearChangeSegment) + WriteAheadLog.SEGMENT_EXTENSION);
+        writerRunnable.flushBuffer();
+        writerRunnable.flushBuffer();
+        assertTrue(Files.exists(segmentPath), "The segment of the year-change write in flight was deleted");
+
+        finishYearChangeWrite.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (walLog.getOldestUnflushedSegment() != WriteAheadLog.NO_SEGMENT
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        writerRunnable.flushBuffer();
+        writerRunnable.shutdown();
+        assertFalse(Files.exists(segmentPath), "The segment should be deleted once the year-change write is done");
+        wal.close();
+    }
+
     /**
      * Verifies that removeChannel flushes any buffered samples synchronously before
      * the channel is removed, so no data is lost on archival stop.
@@ -585,4 +682,211 @@ class WriterRunnableTest {
 
         verify(writer, never()).appendData(any(), any(), any());
     }
+
+    /**
+     * In the adaptive mode, a channel whose buffer is filling up is flushed right away while channels with fewer
+     * samples wait for their flush period; flushBuffer() still writes everything.
+     */
+    @Test
+    void testAdaptiveWriteFlushesHotChannelsFirst() throws Exception {
+        Set<String> channelsWritten = ConcurrentHashMap.newKeySet();
+        Writer trackingWriter = new Writer() {
+            @Override
+            public int appendData(BasicContext ctx, String pvName, EventStream stream) {
+                channelsWritten.add(pvName);
+                for (@SuppressWarnings("unused") Event e : stream) {}
+                return 0;
+            }
+
+            @Override
+            public Event getLastKnownEvent(BasicContext ctx, String pvName) {
+                return null;
+            }
+        };
+
+        ConcurrentHashMap<String, ArchiveChannel> channelList = new ConcurrentHashMap<>();
+        WriterRunnable writerRunnable = new WriterRunnable(buildConfigService(channelList, 0, true));
+        writerRunnable.setWritingPeriod(10);
+        assertTrue(writerRunnable.isAdaptive());
+        assertEquals(5.0, writerRunnable.getSchedulingPeriod());
+
+        // Capacity 20: the hot channel is 60% full, the normal one 20% and the idle one 5%
+        long base = TimeUtils.getCurrentEpochSeconds();
+        int[] sampleCounts = {12, 4, 1};
+        String[] names = {"TEST:HOT:PV", "TEST:NORMAL:PV", "TEST:IDLE:PV"};
+        for (int i = 0; i < names.length; i++) {
+            SampleBuffer buffer = new SampleBuffer(
+                    names[i],
+                    20,
+                    ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                    new PVMetrics(names[i], null, -1, ArchDBRTypes.DBR_SCALAR_DOUBLE));
+            ArchiveChannel channel = mock(ArchiveChannel.class);
+            when(channel.getName()).thenReturn(names[i]);
+            when(channel.getSampleBuffer()).thenReturn(buffer);
+            when(channel.getWriter()).thenReturn(trackingWriter);
+            channelList.put(names[i], channel);
+            writerRunnable.addChannel(channel);
+            for (int s = 0; s < sampleCounts[i]; s++) {
+                buffer.add(makeEventAt(base + s));
+            }
+        }
+
+        writerRunnable.run();
+        assertEquals(Set.of("TEST:HOT:PV"), channelsWritten, "Only the channel that is filling up is flushed");
+
+        writerRunnable.flushBuffer();
+        writerRunnable.shutdown();
+        assertEquals(Set.of(names), channelsWritten, "flushBuffer must write all the channels");
+    }
+
+    /**
+     * In the adaptive mode, the appends for channels in the same folder are coalesced into batches that run one
+     * append after the other in PV name order.
+     */
+    @Test
+    void testAdaptiveWriteCoalescesAppends() {
+        int channelCount = WriterRunnable.MAX_APPENDS_PER_BATCH * 2;
+        AtomicInteger concurrentWrites = new AtomicInteger(0);
+        AtomicInteger maxConcurrentWrites = new AtomicInteger(0);
+        Writer cappedWriter = new Writer() {
+            @Override
+            public int appendData(BasicContext ctx, String pvName, EventStream stream) {
+                int current = concurrentWrites.incrementAndGet();
+                maxConcurrentWrites.updateAndGet(m -> Math.max(m, current));
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                concurrentWrites.decrementAndGet();
+                for (@SuppressWarnings("unused") Event e : stream) {}
+                return 0;
+            }
+
+            @Override
+            public Event getLastKnownEvent(BasicContext ctx, String pvName) {
+                return null;
+            }
+        };
+
+        ConcurrentHashMap<String, ArchiveChannel> channelList = new ConcurrentHashMap<>();
+        WriterRunnable writerRunnable = new WriterRunnable(buildConfigService(channelList, 0, true));
+        writerRunnable.setWritingPeriod(10);
+        for (int i = 0; i < channelCount; i++) {
+            String name = "TEST:PV:" + i;
+            SampleBuffer buffer = new SampleBuffer(
+                    name,
+                    1,
+                    ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                    new PVMetrics(name, null, -1, ArchDBRTypes.DBR_SCALAR_DOUBLE));
+            buffer.add(makeEvent());
+
+            ArchiveChannel channel = mock(ArchiveChannel.class);
+            when(channel.getName()).thenReturn(name);
+            when(channel.getSampleBuffer()).thenReturn(buffer);
+            when(channel.getWriter()).thenReturn(cappedWriter);
+            channelList.put(name, channel);
+            writerRunnable.addChannel(channel);
+        }
+
+        writerRunnable.run();
+        writerRunnable.shutdown();
+
+        assertTrue(
+                maxConcurrentWrites.get() <= 2,
+                "Two batches should run at most two appends at a time, but observed " + maxConcurrentWrites.get());
+    }
+
+    /**
+     * In the adaptive mode, an idle channel is deferred for several write cycles while the write ahead log rolls to a
+     * new segment every cycle. The segment with the idle channel's sample must be kept even if this is more segments
+     * than the log would otherwise keep.
+     */
+    @Test
+    void testAdaptiveWriteKeepsTheSegmentsOfDeferredChannels(@TempDir Path walFolder) throws Exception {
+        int savedStripes = WriteAheadLog.STRIPES;
+        int savedMaxSegments = WriteAheadLog.MAX_SEGMENTS;
+        WriteAheadLog.STRIPES = 1;
+        WriteAheadLog.MAX_SEGMENTS = 2;
+        try (WriteAheadLog wal = WriteAheadLog.open(walFolder)) {
+            Writer trackingWriter = new Writer() {
+                @Override
+                public int appendData(BasicContext ctx, String pvName, EventStream stream) {
+                    for (@SuppressWarnings("unused") Event e : stream) {}
+                    return 0;
+                }
+
+                @Override
+                public Event getLastKnownEvent(BasicContext ctx, String pvName) {
+                    return null;
+                }
+            };
+
+            ConcurrentHashMap<String, ArchiveChannel> channelList = new ConcurrentHashMap<>();
+            ConfigService configService = buildConfigService(channelList, 0, true);
+            when(configService.getEngineContext().getWriteAheadLog()).thenReturn(wal);
+            WriterRunnable writerRunnable = new WriterRunnable(configService);
+            writerRunnable.setWritingPeriod(10);
+
+            String[] names = {"TEST:WAL:HOT", "TEST:WAL:IDLE"};
+            SampleBuffer[] buffers = new SampleBuffer[names.length];
+            WriteAheadLog.ChannelLog[] walLogs = new WriteAheadLog.ChannelLog[names.length];
+            for (int i = 0; i < names.length; i++) {
+                buffers[i] = new SampleBuffer(
+                        names[i],
+                        20,
+                        ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                        new PVMetrics(names[i], null, -1, ArchDBRTypes.DBR_SCALAR_DOUBLE));
+                walLogs[i] = wal.register(names[i], ArchDBRTypes.DBR_SCALAR_DOUBLE);
+                ArchiveChannel channel = mock(ArchiveChannel.class);
+                when(channel.getName()).thenReturn(names[i]);
+                when(channel.getSampleBuffer()).thenReturn(buffers[i]);
+                when(channel.getWriter()).thenReturn(trackingWriter);
+                when(channel.getWALLog()).thenReturn(walLogs[i]);
+                channelList.put(names[i], channel);
+                writerRunnable.addChannel(channel);
+            }
+
+            // Log and buffer samples as ArchiveChannel does; the idle channel has one sample, the hot one fills up.
+            short currentYear = TimeUtils.getCurrentYear();
+            int secondsIntoYear = 0;
+            PBScalarDouble idleSample = new PBScalarDouble(new SimulationEvent(
+                    secondsIntoYear++, currentYear, ArchDBRTypes.DBR_SCALAR_DOUBLE, new ScalarValue<Double>(0.0)));
+            long idleSegment = walLogs[1].append(idleSample);
+            buffers[1].add(idleSample);
+            walLogs[1].markUnflushed(idleSegment);
+            Path idleSegmentPath =
+                    walFolder.resolve(String.format("%020d", idleSegment) + WriteAheadLog.SEGMENT_EXTENSION);
+
+            for (int cycle = 0; cycle < 8; cycle++) {
+                for (int s = 0; s < 12; s++) {
+                    PBScalarDouble hotSample = new PBScalarDouble(new SimulationEvent(
+                            secondsIntoYear++,
+                            currentYear,
+                            ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                            new ScalarValue<Double>(1.0)));
+                    long hotSegment = walLogs[0].append(hotSample);
+                    buffers[0].add(hotSample);
+                    walLogs[0].markUnflushed(hotSegment);
+                }
+                writerRunnable.run();
+                assertEquals(
+                        idleSegment,
+                        walLogs[1].getOldestUnflushedSegment(),
+                        "The idle channel should be deferred in cycle " + cycle);
+                assertTrue(
+                        Files.exists(idleSegmentPath),
+                        "The segment with the deferred channel's sample was dropped in cycle " + cycle);
+            }
+
+            writerRunnable.flushBuffer();
+            writerRunnable.shutdown();
+            assertEquals(WriteAheadLog.NO_SEGMENT, walLogs[1].getOldestUnflushedSegment());
+            assertFalse(
+                    Files.exists(idleSegmentPath), "The segment should be deleted once the idle channel is written");
+        } finally {
+            WriteAheadLog.STRIPES = savedStripes;
+            WriteAheadLog.MAX_SEGMENTS = savedMaxSegments;
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package org.epics.archiverappliance.etl;
+
+import org.epics.archiverappliance.etl.common.ETLIOSlots;
+import org.epics.archiverappliance.etl.common.ETLMetricsIntoStore;
+import org.epics.archiverappliance.etl.common.ETLStage;
+import org.epics.archiverappliance.etl.common.OutOfSpaceHandling;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ETL jobs into a destination are bounded by the configured number of slots.
+ * Jobs over this limit wait and show up as the queue depth in the ETL metrics.
+ */
+public class ETLIOSlotsTest {
+    @Test
+    public void testJobsWaitForSlots() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(ETLIOSlots.MAX_CONCURRENT_ETL_JOBS + ".MTS", "2");
+        ETLMetricsIntoStore metrics = new ETLMetricsIntoStore("MTS");
+        ETLIOSlots slots = metrics.getIOSlots(props);
+        Assertions.assertEquals(2, slots.getMaxConcurrentJobs());
+        Assertions.assertSame(slots, metrics.getIOSlots(props));
+
+        ETLIOSlots.Slot first = slots.acquire();
+        ETLIOSlots.Slot second = slots.acquire();
+        Assertions.assertEquals(2, metrics.getETLJobsRunning());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<Void> third = CompletableFuture.runAsync(
+                    () -> {
+                        try (ETLIOSlots.Slot slot = slots.acquire()) {
+                            // Nothing to do
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    },
+                    executor);
+            long waitUntil = System.currentTimeMillis() + 10000;
+            while (metrics.getETLJobsWaiting() != 1 && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(1, metrics.getETLJobsWaiting());
+            Assertions.assertFalse(third.isDone());
+            first.close();
+            third.get(10, TimeUnit.SECONDS);
+        }
+        second.close();
+        Assertions.assertEquals(0, metrics.getETLJobsWaiting());
+        Assertions.assertEquals(0, metrics.getETLJobsRunning());
+    }
+
+    @Test
+    public void testDefaultFromAllDestinations() {
+        Properties props = new Properties();
+        props.setProperty(ETLIOSlots.MAX_CONCURRENT_ETL_JOBS, "3");
+        Assertions.assertEquals(
+                3, new ETLMetricsIntoStore("LTS").getIOSlots(props).getMaxConcurrentJobs());
+        // We have not looked at the file system; so we fall back to the default for local disks.
+        Assertions.assertEquals(
+                ETLIOSlots.LOCALDISK_CONCURRENT_ETL_JOBS,
+                new ETLMetricsIntoStore("LTS").getIOSlots(new Properties()).getMaxConcurrentJobs());
+    }
+
+    @Test
+    public void testSlotsAreSizedOnceTheFileStoreIsKnown(@TempDir Path rootFolder) throws Exception {
+        ETLMetricsIntoStore metrics = new ETLMetricsIntoStore("LTS");
+        ETLIOSlots unknownFileStore = metrics.getIOSlots(new Properties());
+        Assertions.assertNull(metrics.getFileStoreType());
+        metrics.getUsableSpaceFromCache(rootFolder.toString());
+        Assertions.assertNotNull(metrics.getFileStoreType());
+        ETLIOSlots knownFileStore = metrics.getIOSlots(new Properties());
+        Assertions.assertNotSame(unknownFileStore, knownFileStore);
+        Assertions.assertSame(knownFileStore, metrics.getIOSlots(new Properties()));
+    }
+
+    @Test
+    public void testOnlyOneJobRunsAStage() throws Exception {
+        ETLStage etlStage = new ETLStage(
+                "test:etl:running",
+                null,
+                null,
+                null,
+                0,
+                new ETLMetricsIntoStore("MTS"),
+                OutOfSpaceHandling.DELETE_SRC_STREAMS_IF_FIRST_DEST_WHEN_OUT_OF_SPACE);
+        int jobs = 16;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> began = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                began.add(executor.submit(etlStage::tryBeginRunning));
+            }
+            int running = 0;
+            for (Future<Boolean> f : began) {
+                if (f.get(10, TimeUnit.SECONDS)) running++;
+            }
+            Assertions.assertEquals(1, running);
+        }
+        Assertions.assertTrue(etlStage.isCurrentlyRunning());
+        etlStage.doneRunning();
+        Assertions.assertFalse(etlStage.isCurrentlyRunning());
+        Assertions.assertTrue(etlStage.tryBeginRunning());
+    }
+}
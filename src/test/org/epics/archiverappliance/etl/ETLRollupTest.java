@@ -0,0 +1,248 @@
+package org.epics.archiverappliance.etl;
+
+import static org.epics.archiverappliance.utils.ui.URIUtils.pluginString;
+
+import edu.stanford.slac.archiverappliance.plain.PlainStoragePlugin;
+import edu.stanford.slac.archiverappliance.plain.PlainStorageType;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.EventStream;
+import org.epics.archiverappliance.common.BasicContext;
+import org.epics.archiverappliance.common.PartitionGranularity;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.YearSecondTimestamp;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.ConfigService;
+import org.epics.archiverappliance.config.ConfigServiceForTests;
+import org.epics.archiverappliance.config.PVTypeInfo;
+import org.epics.archiverappliance.config.StoragePluginURLParser;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.retrieval.postprocessors.PostProcessorWithConsolidatedEventStream;
+import org.epics.archiverappliance.retrieval.postprocessors.PostProcessors;
+import org.epics.archiverappliance.retrieval.postprocessors.SummaryStatsPostProcessor;
+import org.epics.archiverappliance.utils.simulation.SimulationEvent;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+/**
+ * Test the rollups maintained by ETL.
+ * We move data from a STS with hourly partitions into a MTS with daily partitions that maintains rollups.
+ * The summary statistics computed from the rollups should be the same as those computed from the raw data.
+ */
+public class ETLRollupTest {
+    private static final Logger logger = LogManager.getLogger(ETLRollupTest.class.getName());
+    private static ConfigService configService;
+    String rootFolderName = ConfigServiceForTests.getDefaultPBTestFolder() + "/" + "ETLRollupTest";
+    short currentYear = TimeUtils.getCurrentYear();
+    ArchDBRTypes type = ArchDBRTypes.DBR_SCALAR_DOUBLE;
+
+    private static Stream<Arguments> provideArguments() {
+        return ETLTestPlugins.providePlainStorageTypeArguments();
+    }
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        configService = new ConfigServiceForTests(-1);
+    }
+
+    @AfterAll
+    public static void tearDown() throws Exception {
+        configService.shutdownNow();
+    }
+
+    private Map<Instant, Double> summarize(
+            PlainStoragePlugin plugin,
+            String pvName,
+            String postProcessorUserArg,
+            PVTypeInfo typeInfo,
+            Instant start,
+            Instant end)
+            throws Exception {
+        SummaryStatsPostProcessor postProcessor =
+                (SummaryStatsPostProcessor) PostProcessors.findPostProcessor(postProcessorUserArg);
+        postProcessor.initialize(postProcessorUserArg, pvName);
+        postProcessor.estimateMemoryConsumption(pvName, typeInfo, start, end, null);
+        try (BasicContext context = new BasicContext()) {
+            List<Callable<EventStream>> callables = plugin.getDataForPV(context, pvName, start, end, postProcessor);
+            for (Callable<EventStream> callable : callables) {
+                callable.call();
+            }
+        }
+        return consolidate(postProcessor);
+    }
+
+    /**
+     * Like the retrieval servlet for a request served by two stores; the raw data up to the split comes from the first
+     * store and the rest from the second store which uses its rollups.
+     * The split is on a rollup boundary but not on a bin boundary; so both stores add to the bin with the split.
+     */
+    private Map<Instant, Double> summarizeAcrossStores(
+            PlainStoragePlugin rawPlugin,
+            PlainStoragePlugin rollupPlugin,
+            String pvName,
+            String postProcessorUserArg,
+            PVTypeInfo typeInfo,
+            Instant start,
+            Instant split,
+            Instant end)
+            throws Exception {
+        SummaryStatsPostProcessor postProcessor =
+                (SummaryStatsPostProcessor) PostProcessors.findPostProcessor(postProcessorUserArg);
+        postProcessor.initialize(postProcessorUserArg, pvName);
+        postProcessor.estimateMemoryConsumption(pvName, typeInfo, start, end, null);
+        Assertions.assertTrue(
+                postProcessor.canUseRollups(900, split, end), "The rollups should be used after the split");
+        try (BasicContext context = new BasicContext()) {
+            for (Callable<EventStream> callable :
+                    rawPlugin.getDataForPV(context, pvName, start, split.minusSeconds(1), postProcessor)) {
+                callable.call();
+            }
+            for (Callable<EventStream> callable :
+                    rollupPlugin.getDataForPV(context, pvName, split, end, postProcessor)) {
+                callable.call();
+            }
+        }
+        return consolidate(postProcessor);
+    }
+
+    private static Map<Instant, Double> consolidate(SummaryStatsPostProcessor postProcessor) {
+        Map<Instant, Double> ret = new LinkedHashMap<>();
+        try (EventStream strm =
+                ((PostProcessorWithConsolidatedEventStream) postProcessor).getConsolidatedEventStream()) {
+            for (Event e : strm) {
+                ret.put(e.getEventTimeStamp(), e.getSampleValue().getValue().doubleValue());
+            }
+        }
+        return ret;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideArguments")
+    public void testRollupsDuringETL(PlainStorageType stsPlainStorageType, PlainStorageType mtsPlainStorageType)
+            throws Exception {
+        String pvName = ConfigServiceForTests.ARCH_UNIT_TEST_PVNAME_PREFIX + "ETLRollupTest" + stsPlainStorageType
+                + mtsPlainStorageType;
+        if (new File(rootFolderName).exists()) {
+            FileUtils.deleteDirectory(new File(rootFolderName));
+        }
+        PlainStoragePlugin srcPlainPlugin = (PlainStoragePlugin) StoragePluginURLParser.parseStoragePlugin(
+                pluginString(
+                        stsPlainStorageType,
+                        "localhost",
+                        "name=STS&rootFolder=" + rootFolderName + "/src&partitionGranularity=PARTITION_HOUR"),
+                configService);
+        PlainStoragePlugin destPlainPlugin = (PlainStoragePlugin) StoragePluginURLParser.parseStoragePlugin(
+                pluginString(
+                        mtsPlainStorageType,
+                        "localhost",
+                        "name=MTS&rootFolder=" + rootFolderName
+                                + "/dest&partitionGranularity=PARTITION_DAY&pp=rollup_60&pp=rollup_900"),
+                configService);
+        // The same folder without the rollups; this computes the statistics from the raw data.
+        PlainStoragePlugin rawPlainPlugin = (PlainStoragePlugin) StoragePluginURLParser.parseStoragePlugin(
+                pluginString(
+                        mtsPlainStorageType,
+                        "localhost",
+                        "name=MTSRAW&rootFolder=" + rootFolderName + "/dest&partitionGranularity=PARTITION_DAY"),
+                configService);
+        PVTypeInfo typeInfo = new PVTypeInfo(pvName, ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1);
+        typeInfo.setDataStores(
+                new String[] {srcPlainPlugin.getURLRepresentation(), destPlainPlugin.getURLRepresentation()});
+        typeInfo.setComputedStorageRate(40);
+        configService.updateTypeInfoForPV(pvName, typeInfo);
+        configService.registerPVToAppliance(pvName, configService.getMyApplianceInfo());
+        configService.getETLLookup().manualControlForUnitTests();
+
+        // Runs of 37 minutes so that the rollup buckets span ETL runs.
+        int eventsPerRun = 37 * 60;
+        int totalSeconds = PartitionGranularity.PARTITION_DAY.getApproxSecondsPerChunk();
+        for (int runStart = 0; runStart < totalSeconds; runStart += eventsPerRun) {
+            try (BasicContext context = new BasicContext()) {
+                ArrayListEventStream testData =
+                        new ArrayListEventStream(eventsPerRun, new RemotableEventStreamDesc(type, pvName, currentYear));
+                for (int second = runStart; second < runStart + eventsPerRun && second < totalSeconds; second++) {
+                    testData.add(new SimulationEvent(
+                            second, currentYear, type, new ScalarValue<Double>((double) ((second * 7) % 113))));
+                }
+                srcPlainPlugin.appendData(context, pvName, testData);
+            }
+            int etlSeconds = runStart + eventsPerRun + PartitionGranularity.PARTITION_HOUR.getApproxSecondsPerChunk();
+            Instant etlTime =
+                    TimeUtils.convertFromYearSecondTimestamp(new YearSecondTimestamp(currentYear, etlSeconds, 0));
+            ETLExecutor.runETLs(configService, etlTime);
+        }
+
+        try (Stream<Path> files = Files.walk(Path.of(rootFolderName, "dest"))) {
+            Assertions.assertTrue(
+                    files.anyMatch(p -> p.getFileName().toString().endsWith("rollup_900")),
+                    "ETL did not generate any rollups");
+        }
+
+        Instant startOfYear = TimeUtils.getStartOfYear(currentYear);
+        // The whole day; a range with a sample before the start and a sample at the end (which are in rollup buckets
+        // outside the range); and a range that is not aligned with the rollups.
+        Instant[][] ranges = {
+            {startOfYear, startOfYear.plusSeconds(totalSeconds)},
+            {startOfYear.plusSeconds(2 * 3600), startOfYear.plusSeconds(14 * 3600)},
+            {startOfYear.plusSeconds(2 * 3600 + 17), startOfYear.plusSeconds(14 * 3600 - 29)},
+        };
+        for (Instant[] range : ranges) {
+            for (String postProcessorUserArg : new String[] {"mean_3600", "max_900", "min_1800", "count_3600"}) {
+                Map<Instant, Double> fromRaw =
+                        summarize(rawPlainPlugin, pvName, postProcessorUserArg, typeInfo, range[0], range[1]);
+                Map<Instant, Double> fromRollups =
+                        summarize(destPlainPlugin, pvName, postProcessorUserArg, typeInfo, range[0], range[1]);
+                logger.info("Comparing " + fromRaw.size() + " bins for " + postProcessorUserArg + " from " + range[0]);
+                Assertions.assertFalse(fromRaw.isEmpty(), "No data for " + postProcessorUserArg);
+                Assertions.assertEquals(
+                        fromRaw.keySet(),
+                        fromRollups.keySet(),
+                        "Bins differ for " + postProcessorUserArg + " from " + range[0]);
+                for (Map.Entry<Instant, Double> rawBin : fromRaw.entrySet()) {
+                    Assertions.assertEquals(
+                            rawBin.getValue(),
+                            fromRollups.get(rawBin.getKey()),
+                            1e-9,
+                            "Bin " + rawBin.getKey() + " differs for " + postProcessorUserArg + " from " + range[0]);
+                }
+            }
+        }
+
+        Instant start = startOfYear.plusSeconds(2 * 3600);
+        Instant split = startOfYear.plusSeconds(5 * 3600 + 900);
+        Instant end = startOfYear.plusSeconds(14 * 3600);
+        for (String postProcessorUserArg : new String[] {"mean_3600", "max_3600", "min_1800", "count_3600"}) {
+            Map<Instant, Double> fromRaw =
+                    summarize(rawPlainPlugin, pvName, postProcessorUserArg, typeInfo, start, end);
+            Map<Instant, Double> acrossStores = summarizeAcrossStores(
+                    rawPlainPlugin, destPlainPlugin, pvName, postProcessorUserArg, typeInfo, start, split, end);
+            Assertions.assertEquals(
+                    fromRaw.keySet(), acrossStores.keySet(), "Bins differ across stores for " + postProcessorUserArg);
+            for (Map.Entry<Instant, Double> rawBin : fromRaw.entrySet()) {
+                Assertions.assertEquals(
+                        rawBin.getValue(),
+                        acrossStores.get(rawBin.getKey()),
+                        1e-9,
+                        "Bin " + rawBin.getKey() + " differs across stores for " + postProcessorUserArg);
+            }
+        }
+    }
+}
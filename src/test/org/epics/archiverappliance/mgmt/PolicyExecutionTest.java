@@ -5,11 +5,18 @@ import org.apache.logging.log4j.Logger;
 import org.epics.archiverappliance.config.ConfigServiceForTests;
 import org.epics.archiverappliance.config.DefaultConfigService;
 import org.epics.archiverappliance.mgmt.policy.ExecutePolicy;
+import org.epics.archiverappliance.mgmt.policy.ExecutePolicyPool;
 import org.epics.archiverappliance.mgmt.policy.PolicyConfig;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PolicyExecutionTest {
     Logger logger = LogManager.getLogger(PolicyExecutionTest.class);
@@ -47,4 +54,59 @@ public class PolicyExecutionTest {
             }
         }
     }
+
+    @Test
+    public void testConcurrentPolicyExecution() throws Exception {
+        DefaultConfigService configService = new ConfigServiceForTests(-1);
+        configService
+                .getInstallationProperties()
+                .setProperty("org.epics.archiverappliance.mgmt.policy.ExecutePolicyPool.size", "4");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (ExecutePolicy executePolicy = new ExecutePolicy(configService);
+                ExecutePolicyPool executePolicyPool = new ExecutePolicyPool(configService)) {
+            List<Future<PolicyConfig>> results = new ArrayList<Future<PolicyConfig>>();
+            List<PolicyConfig> expected = new ArrayList<PolicyConfig>();
+            for (int i = 0; i < 200; i++) {
+                HashMap<String, Object> pvInfo = new HashMap<String, Object>();
+                pvInfo.put("eventRate", (float) (i % 7 + 1));
+                pvInfo.put("storageRate", (float) (i % 50));
+                pvInfo.put("RTYP", "ai");
+                String pvName = (i % 2 == 0 ? "BPMS:" : "test:") + i;
+                expected.add(executePolicy.computePolicyForPV(pvName, pvInfo));
+                results.add(executor.submit(() -> executePolicyPool.computePolicyForPV(pvName, pvInfo)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                PolicyConfig policyConfig = results.get(i).get();
+                Assertions.assertEquals(expected.get(i).getPolicyName(), policyConfig.getPolicyName());
+                Assertions.assertEquals(expected.get(i).getSamplingPeriod(), policyConfig.getSamplingPeriod());
+                Assertions.assertTrue(Arrays.equals(expected.get(i).getDataStores(), policyConfig.getDataStores()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMemoizedPolicyExecution() throws Exception {
+        DefaultConfigService configService = new ConfigServiceForTests(-1);
+        configService
+                .getInstallationProperties()
+                .setProperty("org.epics.archiverappliance.mgmt.policy.ExecutePolicyPool.memoizePolicies", "true");
+        try (ExecutePolicyPool executePolicyPool = new ExecutePolicyPool(configService)) {
+            HashMap<String, Object> pvInfo = new HashMap<String, Object>();
+            pvInfo.put("eventRate", 1.0f);
+            pvInfo.put("storageRate", 1.0f);
+            pvInfo.put("RTYP", "ai");
+            PolicyConfig first = executePolicyPool.computePolicyForPV("test:1", pvInfo);
+            // Same event rate bucket; so this should come from the memoized results.
+            pvInfo.put("eventRate", 1.01f);
+            PolicyConfig second = executePolicyPool.computePolicyForPV("test:2", pvInfo);
+            Assertions.assertNotSame(first, second);
+            Assertions.assertEquals(first.getPolicyName(), second.getPolicyName());
+            Assertions.assertTrue(Arrays.equals(first.getDataStores(), second.getDataStores()));
+            second.getDataStores()[0] = "changed";
+            PolicyConfig third = executePolicyPool.computePolicyForPV("test:3", pvInfo);
+            Assertions.assertTrue(Arrays.equals(first.getDataStores(), third.getDataStores()));
+        }
+    }
 }
@@ -0,0 +1,101 @@
+package org.epics.archiverappliance.retrieval;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.epics.archiverappliance.retrieval.workers.RetrievalExecutors;
+import org.epics.archiverappliance.retrieval.workers.SerialExecutorService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Post processors are not thread safe; so the tasks for a PV must run one at a time and in order even on a shared pool.
+ * Also, check that the memory budget used for parallel post processing is returned once the PV is done.
+ */
+public class SerialExecutorServiceTest {
+
+    @Test
+    public void testTasksRunSeriallyInOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger concurrent = new AtomicInteger(0);
+            AtomicInteger maxConcurrent = new AtomicInteger(0);
+            AtomicInteger terminations = new AtomicInteger(0);
+            SerialExecutorService serial = new SerialExecutorService(pool, terminations::incrementAndGet);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int task = i;
+                futures.add(serial.submit(() -> {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    seen.add(task);
+                    concurrent.decrementAndGet();
+                }));
+            }
+            serial.shutdown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertTrue(serial.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(1, maxConcurrent.get(), "Tasks in a serial executor should never overlap");
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i, seen.get(i).intValue());
+            }
+            assertEquals(1, terminations.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMemoryBudgetIsReleased() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(RetrievalExecutors.POST_PROCESSING_MEMORY_BUDGET_MB, "10");
+        try (RetrievalExecutors executors = new RetrievalExecutors(props)) {
+            ExecutorService parallel = executors.newPostProcessingExecutor("TEST:PV1", 8 * 1024 * 1024);
+            assertTrue(parallel instanceof SerialExecutorService);
+            assertEquals(2, executors.getAvailableMemoryBudgetMB());
+
+            // Does not fit in what is left; falls back to the current thread.
+            ExecutorService fallback = executors.newPostProcessingExecutor("TEST:PV2", 4 * 1024 * 1024);
+            assertTrue(!(fallback instanceof SerialExecutorService));
+            fallback.shutdown();
+
+            assertEquals(42, parallel.submit(() -> 42).get().intValue());
+            parallel.shutdown();
+            assertTrue(parallel.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(10, executors.getAvailableMemoryBudgetMB());
+        }
+    }
+
+    @Test
+    public void testDataSourceExecutorTerminatesAfterItsTasks() throws Exception {
+        try (RetrievalExecutors executors = new RetrievalExecutors(new Properties())) {
+            ExecutorService dataSourceExecutor = executors.newDataSourceExecutor();
+            CountDownLatch release = new CountDownLatch(1);
+            Future<Integer> inFlight = dataSourceExecutor.submit(() -> {
+                release.await();
+                return 42;
+            });
+            dataSourceExecutor.shutdown();
+            assertTrue(dataSourceExecutor.isShutdown());
+            assertFalse(dataSourceExecutor.isTerminated(), "A task is still in flight");
+            assertFalse(dataSourceExecutor.awaitTermination(100, TimeUnit.MILLISECONDS));
+            release.countDown();
+            assertEquals(42, inFlight.get().intValue());
+            assertTrue(dataSourceExecutor.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(dataSourceExecutor.isTerminated());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.epics.archiverappliance.retrieval.mimeresponses;
+
+import edu.stanford.slac.archiverappliance.PB.data.PBScalarDouble;
+import edu.stanford.slac.archiverappliance.PB.data.PBVectorDouble;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampNanoTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.epics.archiverappliance.common.POJOEvent;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.data.ScalarStringSampleValue;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.data.VectorValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write a multi PV response using the Arrow response and read it back using Arrow's stream reader.
+ */
+public class ArrowResponseTest {
+    private static final int SCALAR_EVENTS = ArrowResponse.ROWS_PER_BATCH * 2 + 100;
+    private static final int VECTOR_EVENTS = 100;
+    private static final int ELEMENT_COUNT = 16;
+
+    @Test
+    public void testMultiPVResponse() throws Exception {
+        Instant start = TimeUtils.getStartOfYear(TimeUtils.getCurrentYear());
+        Instant end = start.plusSeconds(SCALAR_EVENTS);
+        short year = TimeUtils.getCurrentYear();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ArrowResponse response = new ArrowResponse();
+        response.setOutputStream(bos);
+
+        RemotableEventStreamDesc scalarDesc =
+                new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_DOUBLE, "test:scalar", year);
+        scalarDesc.addHeader("EGU", "mm");
+        response.processingPV(null, "test:scalar", start, end, scalarDesc);
+        for (int i = 0; i < SCALAR_EVENTS; i++) {
+            response.consumeEvent(new PBScalarDouble(new POJOEvent(
+                    ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                    start.plusSeconds(i).plusNanos(i),
+                    new ScalarValue<Double>((double) i),
+                    0,
+                    i % 4)));
+        }
+
+        response.processingPV(null, "test:nodata", start, end, null);
+
+        response.processingPV(
+                null,
+                "test:vector",
+                start,
+                end,
+                new RemotableEventStreamDesc(ArchDBRTypes.DBR_WAVEFORM_DOUBLE, "test:vector", year));
+        for (int i = 0; i < VECTOR_EVENTS; i++) {
+            List<Double> values = new ArrayList<Double>();
+            for (int j = 0; j < ELEMENT_COUNT; j++) {
+                values.add((double) (i * j));
+            }
+            response.consumeEvent(new PBVectorDouble(new POJOEvent(
+                    ArchDBRTypes.DBR_WAVEFORM_DOUBLE, start.plusSeconds(i), new VectorValue<Double>(values), 0, 0)));
+        }
+
+        response.processingPV(
+                null,
+                "test:string",
+                start,
+                end,
+                new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_STRING, "test:string", year));
+        response.consumeEvent(new POJOEvent(
+                ArchDBRTypes.DBR_SCALAR_STRING, start, new ScalarStringSampleValue("Some string"), 0, 0));
+        response.close();
+
+        ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
+        try (BufferAllocator allocator = new RootAllocator()) {
+            try (ArrowStreamReader reader = new ArrowStreamReader(bis, allocator)) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                Assertions.assertEquals("test:scalar", root.getSchema().getCustomMetadata().get("pvName"));
+                Assertions.assertEquals("mm", root.getSchema().getCustomMetadata().get("EGU"));
+                int eventCount = 0;
+                int batchCount = 0;
+                while (reader.loadNextBatch()) {
+                    batchCount++;
+                    TimeStampNanoTZVector timestamps = (TimeStampNanoTZVector) root.getVector("timestamp");
+                    Float8Vector values = (Float8Vector) root.getVector("value");
+                    IntVector severities = (IntVector) root.getVector("severity");
+                    for (int row = 0; row < root.getRowCount(); row++) {
+                        Instant ts = start.plusSeconds(eventCount).plusNanos(eventCount);
+                        long epochNanos = ts.getEpochSecond() * 1_000_000_000L + ts.getNano();
+                        Assertions.assertEquals(epochNanos, timestamps.get(row));
+                        Assertions.assertEquals(eventCount, values.get(row));
+                        Assertions.assertEquals(eventCount % 4, severities.get(row));
+                        eventCount++;
+                    }
+                }
+                Assertions.assertEquals(SCALAR_EVENTS, eventCount);
+                Assertions.assertEquals(3, batchCount);
+            }
+
+            try (ArrowStreamReader reader = new ArrowStreamReader(bis, allocator)) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                Assertions.assertEquals("test:nodata", root.getSchema().getCustomMetadata().get("pvName"));
+                Assertions.assertFalse(reader.loadNextBatch());
+            }
+
+            try (ArrowStreamReader reader = new ArrowStreamReader(bis, allocator)) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                Assertions.assertEquals("test:vector", root.getSchema().getCustomMetadata().get("pvName"));
+                Assertions.assertTrue(reader.loadNextBatch());
+                Assertions.assertEquals(VECTOR_EVENTS, root.getRowCount());
+                ListVector values = (ListVector) root.getVector("value");
+                for (int row = 0; row < VECTOR_EVENTS; row++) {
+                    List<?> elements = values.getObject(row);
+                    Assertions.assertEquals(ELEMENT_COUNT, elements.size());
+                    for (int j = 0; j < ELEMENT_COUNT; j++) {
+                        Assertions.assertEquals((double) (row * j), elements.get(j));
+                    }
+                }
+                Assertions.assertFalse(reader.loadNextBatch());
+            }
+
+            try (ArrowStreamReader reader = new ArrowStreamReader(bis, allocator)) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                Assertions.assertTrue(reader.loadNextBatch());
+                Assertions.assertEquals(
+                        "Some string", ((VarCharVector) root.getVector("value")).getObject(0).toString());
+                Assertions.assertFalse(reader.loadNextBatch());
+            }
+            Assertions.assertEquals(0, bis.available());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.epics.archiverappliance.retrieval.mimeresponses;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The streaming JSON writer should produce the same text as the String based encoding it replaces.
+ */
+public class JSONStreamWriterTest {
+    private interface WriterAction {
+        void write(JSONStreamWriter writer) throws IOException;
+    }
+
+    private static String written(int bufferSize, WriterAction action) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (JSONStreamWriter writer = new JSONStreamWriter(bos, bufferSize)) {
+            action.write(writer);
+        }
+        return bos.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        double[] doubles = {
+            0.0, -0.0, 1.0, -1.5, Math.PI, 1e-300, 1.7976931348623157E308, Double.MIN_VALUE, Double.NaN, 123456789.125
+        };
+        StringBuilder expected = new StringBuilder();
+        for (double d : doubles) {
+            expected.append(Double.toString(d)).append(',');
+        }
+        expected.append(Float.toString(0.1f)).append(',').append(Long.MIN_VALUE);
+        // A small buffer so that numbers straddle the flushes.
+        Assertions.assertEquals(expected.toString(), written(32, writer -> {
+            for (double d : doubles) {
+                writer.writeDouble(d).writeAscii(",");
+            }
+            writer.writeFloat(0.1f).writeAscii(",").writeLong(Long.MIN_VALUE);
+        }));
+    }
+
+    @Test
+    public void testEscaping() throws IOException {
+        String nonAscii = "\u00E9\u20AC\uD83D\uDE00";
+        Assertions.assertEquals(
+                "a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\\u0001\\u007F\\u2028\u00E9\\u20AC\uD83D\uDE00",
+                written(64, writer -> writer.writeEscaped("a\"b\\c/d\b\f\n\r\t\u0001\u007F\u2028" + nonAscii)));
+        // A small buffer so that the multi byte characters straddle the flushes.
+        String longNonAscii = nonAscii.repeat(20);
+        Assertions.assertEquals(longNonAscii, written(32, writer -> writer.write(longNonAscii)));
+        Assertions.assertEquals("", written(64, writer -> writer.writeEscaped(null)));
+    }
+}
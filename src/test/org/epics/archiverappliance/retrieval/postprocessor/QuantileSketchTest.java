@@ -0,0 +1,145 @@
+package org.epics.archiverappliance.retrieval.postprocessor;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.epics.archiverappliance.Event;
+import org.epics.archiverappliance.common.TimeUtils;
+import org.epics.archiverappliance.common.YearSecondTimestamp;
+import org.epics.archiverappliance.common.remotable.ArrayListEventStream;
+import org.epics.archiverappliance.common.remotable.RemotableEventStreamDesc;
+import org.epics.archiverappliance.config.ArchDBRTypes;
+import org.epics.archiverappliance.config.PVTypeInfo;
+import org.epics.archiverappliance.data.ScalarValue;
+import org.epics.archiverappliance.retrieval.CallableEventStream;
+import org.epics.archiverappliance.retrieval.postprocessors.Kurtosis;
+import org.epics.archiverappliance.retrieval.postprocessors.Percentile;
+import org.epics.archiverappliance.retrieval.postprocessors.PostProcessor;
+import org.epics.archiverappliance.retrieval.postprocessors.PostProcessors;
+import org.epics.archiverappliance.retrieval.postprocessors.QuantileSketch;
+import org.epics.archiverappliance.utils.simulation.SimulationEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compare the bounded memory quantile sketch and the streaming moments with DescriptiveStatistics.
+ */
+public class QuantileSketchTest {
+    private static final String pvName = "Test_QuantileSketch";
+
+    @Test
+    public void testSmallBinsAreExact() {
+        Random random = new Random(42);
+        QuantileSketch sketch = new QuantileSketch();
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        for (int i = 0; i < 150; i++) {
+            double val = random.nextGaussian();
+            sketch.addValue(val);
+            stats.addValue(val);
+        }
+        sketch.addValue(Double.NaN);
+        Assertions.assertTrue(sketch.isExact());
+        Assertions.assertEquals(150, sketch.getN());
+        for (double p : new double[] {1, 25, 50, 75, 99.9, 100}) {
+            Assertions.assertEquals(stats.getPercentile(p), sketch.getPercentile(p), 0.0, "Percentile " + p);
+        }
+    }
+
+    @Test
+    public void testLargeBinsAreWithinTheRankError() {
+        Random random = new Random(7);
+        int count = 1_000_000;
+        double[] values = new double[count];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < count; i++) {
+            // A skewed distribution with some structure in the order of arrival.
+            values[i] = Math.exp(random.nextGaussian()) + (i % 1000) / 1000.0;
+            sketch.addValue(values[i]);
+        }
+        Assertions.assertFalse(sketch.isExact());
+        Arrays.sort(values);
+        for (double p : new double[] {1, 10, 50, 90, 99}) {
+            double estimate = sketch.getPercentile(p);
+            int rank = Arrays.binarySearch(values, estimate);
+            rank = rank >= 0 ? rank : -rank - 1;
+            double rankError = Math.abs(rank - p / 100.0 * count) / count;
+            Assertions.assertTrue(rankError < 0.02, "Rank error " + rankError + " for percentile " + p);
+        }
+        Assertions.assertEquals(values[count - 1], sketch.getPercentile(100), 0.0);
+        Assertions.assertTrue(QuantileSketch.estimateMemoryConsumption(count, QuantileSketch.DEFAULT_K) < 16 * 1024);
+    }
+
+    @Test
+    public void testPercentilePostProcessor() throws Exception {
+        PostProcessor postProcessor = PostProcessors.findPostProcessor("percentile_90_3600");
+        Assertions.assertInstanceOf(Percentile.class, postProcessor);
+        Percentile percentile = (Percentile) postProcessor;
+        percentile.initialize("percentile_90_3600", pvName);
+        Assertions.assertEquals(90.0, percentile.getPercentile(), 0.0);
+        Assertions.assertEquals(3600, percentile.getIntervalSecs());
+        Assertions.assertEquals("percentile_90_3600", percentile.getExtension());
+
+        short currentYear = TimeUtils.getCurrentYear();
+        YearSecondTimestamp startOfSamples = TimeUtils.convertToYearSecondTimestamp(
+                TimeUtils.convertFromISO8601String(currentYear + "-02-01T00:00:00.000Z"));
+        ArrayListEventStream testData = new ArrayListEventStream(
+                0, new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_DOUBLE, pvName, currentYear));
+        // One sample a second for an hour; the values are 0..3599 in each bin.
+        for (int s = 0; s < 3 * 3600; s++) {
+            testData.add(new SimulationEvent(
+                    startOfSamples.getSecondsintoyear() + s,
+                    currentYear,
+                    ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                    new ScalarValue<Double>((double) (s % 3600))));
+        }
+        Instant start = TimeUtils.convertFromISO8601String(currentYear + "-02-01T00:00:00.000Z");
+        Instant end = TimeUtils.convertFromISO8601String(currentYear + "-02-01T02:59:59.000Z");
+        long estimate = percentile.estimateMemoryConsumption(
+                pvName, new PVTypeInfo(pvName, ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1), start, end, null);
+        Assertions.assertTrue(estimate > 0 && estimate < 64 * 1024, "Memory estimate " + estimate);
+        percentile.wrap(CallableEventStream.makeOneStreamCallable(testData, null, false)).call();
+        int eventCount = 0;
+        for (Event e : percentile.getConsolidatedEventStream()) {
+            double val = e.getSampleValue().getValue().doubleValue();
+            Assertions.assertEquals(0.9 * 3600, val, 0.02 * 3600, "90th percentile of bin " + eventCount);
+            eventCount++;
+        }
+        Assertions.assertEquals(3, eventCount);
+    }
+
+    @Test
+    public void testStreamingKurtosis() throws Exception {
+        Random random = new Random(11);
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        short currentYear = TimeUtils.getCurrentYear();
+        YearSecondTimestamp startOfSamples = TimeUtils.convertToYearSecondTimestamp(
+                TimeUtils.convertFromISO8601String(currentYear + "-02-01T00:00:00.000Z"));
+        ArrayListEventStream testData = new ArrayListEventStream(
+                0, new RemotableEventStreamDesc(ArchDBRTypes.DBR_SCALAR_DOUBLE, pvName, currentYear));
+        for (int s = 0; s < 3600; s++) {
+            double val = random.nextGaussian() * 3 + 10;
+            stats.addValue(val);
+            testData.add(new SimulationEvent(
+                    startOfSamples.getSecondsintoyear() + s,
+                    currentYear,
+                    ArchDBRTypes.DBR_SCALAR_DOUBLE,
+                    new ScalarValue<Double>(val)));
+        }
+        Kurtosis kurtosis = new Kurtosis();
+        kurtosis.initialize("kurtosis_3600", pvName);
+        Instant start = TimeUtils.convertFromISO8601String(currentYear + "-02-01T00:00:00.000Z");
+        Instant end = TimeUtils.convertFromISO8601String(currentYear + "-02-01T00:59:59.000Z");
+        kurtosis.estimateMemoryConsumption(
+                pvName, new PVTypeInfo(pvName, ArchDBRTypes.DBR_SCALAR_DOUBLE, true, 1), start, end, null);
+        kurtosis.wrap(CallableEventStream.makeOneStreamCallable(testData, null, false)).call();
+        int eventCount = 0;
+        for (Event e : kurtosis.getConsolidatedEventStream()) {
+            Assertions.assertEquals(
+                    stats.getKurtosis(), e.getSampleValue().getValue().doubleValue(), 1e-9);
+            eventCount++;
+        }
+        Assertions.assertEquals(1, eventCount);
+    }
+}
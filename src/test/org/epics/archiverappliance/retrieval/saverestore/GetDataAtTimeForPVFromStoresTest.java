@@ -32,6 +32,7 @@ import org.epics.archiverappliance.data.FieldValues;
 import org.epics.archiverappliance.data.SampleValue;
 import org.epics.archiverappliance.data.ScalarValue;
 import org.epics.archiverappliance.data.VectorValue;
+import org.epics.archiverappliance.retrieval.GetDataAtTime;
 import org.epics.archiverappliance.retrieval.PVWithData;
 import org.json.simple.JSONValue;
 import org.junit.jupiter.api.AfterAll;
@@ -46,10 +47,13 @@ import java.io.IOException;
 import java.time.Instant;
 import java.time.Period;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -260,4 +264,37 @@ public class GetDataAtTimeForPVFromStoresTest {
             }
         }
     }
+
+    @ParameterizedTest
+    @MethodSource("provideTimesAndFields")
+    void testGetDataInBulk(
+            String pvNameBase, Instant when, Map<String, String> expectedFieldVals, PlainStorageType plainStorageType)
+            throws Exception {
+        // Ask for all the PVs (and one that does not exist) together; we should get the same samples as asking one
+        // PV at a time. Use small batches so that we have more than one batch per store.
+        int pvsPerBatch = GetDataAtTime.PVS_PER_BATCH;
+        GetDataAtTime.PVS_PER_BATCH = 1;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<String> pvNames = new ArrayList<String>();
+            for (PlainStorageType storageType : PlainStorageType.values()) {
+                for (String pv : pvs) {
+                    pvNames.add(pv + "_" + storageType.name());
+                }
+            }
+            pvNames.add("nonexistent:pv");
+            Period searchPeriod = Period.parse("P1D");
+            Map<String, Event> bulkData =
+                    GetDataAtTime.getDataAtTimeForPVsFromStores(pvNames, when, searchPeriod, configService, executor);
+            Assertions.assertEquals(pvNames.size() - 1, bulkData.size());
+            String pvName = pvNameBase + "_" + plainStorageType.name();
+            Event expected = getDataAtTimeForPVFromStores(pvName, when, searchPeriod, configService).event();
+            Assertions.assertEquals(expected.getEventTimeStamp(), bulkData.get(pvName).getEventTimeStamp());
+            Assertions.assertEquals(
+                    ((FieldValues) expected).getFields(), ((FieldValues) bulkData.get(pvName)).getFields());
+        } finally {
+            GetDataAtTime.PVS_PER_BATCH = pvsPerBatch;
+            executor.shutdown();
+        }
+    }
 }
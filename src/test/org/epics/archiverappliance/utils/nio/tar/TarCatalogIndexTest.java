@@ -0,0 +1,170 @@
+package org.epics.archiverappliance.utils.nio.tar;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Test that the catalog we get from the sidecar index (and the cache) is the same as the one we get by walking the tar file
+ * as we append, delete, rename and optimize.
+ */
+public class TarCatalogIndexTest {
+    private Path testFolder;
+    private String tarFileName;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        testFolder = Files.createTempDirectory("TarCatalogIndexTest");
+        tarFileName = testFolder.resolve("tartest.tar").toString();
+        TarCatalogCache.clear();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(testFolder.toFile());
+        TarCatalogCache.clear();
+    }
+
+    private List<TarEntry> makeInputs(String... entryNames) throws Exception {
+        List<TarEntry> inputs = new ArrayList<TarEntry>();
+        for (String entryName : entryNames) {
+            File srcFile = testFolder.resolve(entryName + ".src").toFile();
+            Files.writeString(srcFile.toPath(), ("Contents of " + entryName + "\n").repeat(100));
+            inputs.add(new TarEntry(entryName, srcFile));
+        }
+        return inputs;
+    }
+
+    /**
+     * Load the catalog from the sidecar and then again by walking the tar file and check that they are the same.
+     */
+    private Map<String, TarEntry> checkCatalog(EAATar tarFile) throws Exception {
+        Path indexPath = Path.of(tarFileName + TarCatalogIndex.INDEX_SUFFIX);
+        Assertions.assertTrue(Files.exists(indexPath), "Missing sidecar " + indexPath);
+        TarCatalogCache.clear();
+        Map<String, TarEntry> fromIndex = tarFile.loadCatalog();
+        boolean hasDeletedFromIndex = tarFile.hasDeletedEntries();
+        Files.delete(indexPath);
+        TarCatalogCache.clear();
+        Map<String, TarEntry> fromTar = tarFile.loadCatalog();
+        Assertions.assertEquals(fromTar, fromIndex);
+        Assertions.assertEquals(tarFile.hasDeletedEntries(), hasDeletedFromIndex);
+        // Loading the catalog from the tar file should have rebuilt the sidecar.
+        Assertions.assertTrue(Files.exists(indexPath));
+        return fromTar;
+    }
+
+    @Test
+    public void testIndexTracksChanges() throws Exception {
+        EAATar tarFile = new EAATar(tarFileName);
+        tarFile.appendFiles(makeInputs("tartest:2014.pb", "tartest:2015.pb"));
+        tarFile.appendFiles(makeInputs("tartest:2016.pb"));
+        Map<String, TarEntry> catalog = checkCatalog(tarFile);
+        Assertions.assertEquals(
+                List.of("tartest:2014.pb", "tartest:2015.pb", "tartest:2016.pb"), List.copyOf(catalog.keySet()));
+        Assertions.assertFalse(tarFile.hasDeletedEntries());
+
+        tarFile.markFileAsDeleted(catalog.get("tartest:2015.pb"));
+        tarFile.renameEntry(catalog.get("tartest:2016.pb"), "tartest:2017.pb");
+        catalog = checkCatalog(tarFile);
+        Assertions.assertEquals(List.of("tartest:2014.pb", "tartest:2017.pb"), List.copyOf(catalog.keySet()));
+        Assertions.assertTrue(tarFile.hasDeletedEntries());
+
+        tarFile.optimize();
+        Assertions.assertFalse(tarFile.hasDeletedEntries());
+        catalog = checkCatalog(tarFile);
+        Assertions.assertEquals(List.of("tartest:2014.pb", "tartest:2017.pb"), List.copyOf(catalog.keySet()));
+        try (RandomAccessFile raf = new RandomAccessFile(tarFileName, "r")) {
+            TarEntry entry = catalog.get("tartest:2017.pb");
+            byte[] contents = new byte[(int) entry.size()];
+            raf.seek(entry.dataoffset());
+            raf.readFully(contents);
+            Assertions.assertTrue(
+                    new String(contents, StandardCharsets.UTF_8).startsWith("Contents of tartest:2016.pb"));
+        }
+    }
+
+    @Test
+    public void testStaleIndexIsRebuilt() throws Exception {
+        EAATar tarFile = new EAATar(tarFileName);
+        tarFile.appendFiles(makeInputs("tartest:2014.pb", "tartest:2015.pb"));
+        Path indexPath = Path.of(tarFileName + TarCatalogIndex.INDEX_SUFFIX);
+        byte[] staleIndex = Files.readAllBytes(indexPath);
+        tarFile.appendFiles(makeInputs("tartest:2016.pb"));
+
+        // Simulate a change to the tar file that did not make it into the sidecar.
+        Files.write(indexPath, staleIndex);
+        TarCatalogCache.clear();
+        Assertions.assertEquals(3, tarFile.loadCatalog().size());
+
+        // A corrupt sidecar is also rebuilt.
+        Files.writeString(indexPath, "Not a catalog\n");
+        TarCatalogCache.clear();
+        Assertions.assertEquals(3, tarFile.loadCatalog().size());
+        checkCatalog(tarFile);
+    }
+
+    @Test
+    public void testCatalogIsShared() throws Exception {
+        EAATar tarFile = new EAATar(tarFileName);
+        tarFile.appendFiles(makeInputs("tartest:2014.pb"));
+        Map<String, TarEntry> first = new EAATar(tarFileName).loadCatalog();
+        Assertions.assertSame(first, new EAATar(tarFileName).loadCatalog());
+        Assertions.assertEquals(1, TarCatalogCache.size());
+        tarFile.appendFiles(makeInputs("tartest:2015.pb"));
+        Assertions.assertEquals(2, new EAATar(tarFileName).loadCatalog().size());
+    }
+
+    @Test
+    public void testInPlaceChangesInvalidateOtherCaches() throws Exception {
+        EAATar tarFile = new EAATar(tarFileName);
+        tarFile.appendFiles(makeInputs("tartest:2014.pb", "tartest:2015.pb", "tartest:2016.pb"));
+        Map<String, TarEntry> catalog = tarFile.loadCatalog();
+        Path tarPath = Path.of(tarFileName);
+        long generation = new TarCatalogIndex(tarFileName).generation();
+        TarCatalogIndex.Catalog cached =
+                TarCatalogCache.get(tarFileName, TarCatalogIndex.TarState.of(tarPath), generation);
+        Assertions.assertNotNull(cached);
+        FileTime lastModified = Files.getLastModifiedTime(tarPath);
+
+        tarFile.markFileAsDeleted(catalog.get("tartest:2015.pb"));
+        tarFile.renameEntry(catalog.get("tartest:2016.pb"), "tartest:2017.pb");
+        // Simulate a file system with coarse modification times and a cache (in some other war) that was not invalidated.
+        Files.setLastModifiedTime(tarPath, lastModified);
+        TarCatalogCache.put(tarFileName, cached, generation);
+        Assertions.assertEquals(
+                List.of("tartest:2014.pb", "tartest:2017.pb"),
+                List.copyOf(new EAATar(tarFileName).loadCatalog().keySet()));
+    }
+
+    @Test
+    public void testIndexIsDeletedWithTheTarFile() throws Exception {
+        Path indexPath = Path.of(tarFileName + TarCatalogIndex.INDEX_SUFFIX);
+        EAATar tarFile = new EAATar(tarFileName);
+        tarFile.appendFiles(makeInputs("tartest:2014.pb"));
+        Assertions.assertTrue(Files.exists(indexPath));
+        Files.delete(Path.of(tarFileName));
+        Assertions.assertTrue(tarFile.loadCatalog().isEmpty());
+        Assertions.assertFalse(Files.exists(indexPath));
+
+        // Optimizing a tar file with only deleted entries deletes it.
+        tarFile.appendFiles(makeInputs("tartest:2015.pb"));
+        tarFile.markFileAsDeleted(tarFile.loadCatalog().get("tartest:2015.pb"));
+        tarFile.optimize();
+        Assertions.assertFalse(Files.exists(Path.of(tarFileName)));
+        Assertions.assertFalse(Files.exists(indexPath));
+        Assertions.assertTrue(tarFile.loadCatalog().isEmpty());
+    }
+}